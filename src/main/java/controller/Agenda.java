@@ -22,9 +22,15 @@
  */
 package controller;
 
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
 import java.util.LinkedList;
-import java.util.stream.Collectors;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
 
 /**
  * Class that represents an agenda like data structure. The agenda is made up
@@ -35,34 +41,183 @@ import java.util.stream.Collectors;
  * the moment.
  * <p>
  * The lists of pending goals and preempted goals are sorted by priority. See
- * {@link PDDLSingleGoal} to get more information.
+ * {@link PDDLSingleGoal} to get more information. Goals with the same priority
+ * keep the order in which they were added to the list. Both lists are indexed
+ * by the goals' predicates, so choosing, halting and searching goals don't
+ * need to go through the whole lists.
  *
  * @author Vladislav Nikolov Vasilev
  */
 public class Agenda {
-    private LinkedList<PDDLSingleGoal> pendingGoals;
-    private LinkedList<PDDLSingleGoal> preemptedGoals;
+    private GoalQueue pendingGoals;
+    private GoalQueue preemptedGoals;
     private LinkedList<PDDLSingleGoal> reachedGoals;
     private PDDLSingleGoal currentGoal;
 
+    /**
+     * Class that represents a list of goals sorted by priority. The goals are
+     * stored in a balanced tree ordered by their priority and the order in which
+     * they were added, and they are indexed by their predicates.
+     */
+    private static class GoalQueue implements Iterable<PDDLSingleGoal> {
+        private final TreeSet<Entry> entries;
+        private final Map<String, List<Entry>> entriesByPredicate;
+        private long nextOrder;
+
+        /**
+         * Class that represents a goal along with the order in which it was added.
+         */
+        private static class Entry {
+            private final PDDLSingleGoal goal;
+            private final long order;
+
+            private Entry(PDDLSingleGoal goal, long order) {
+                this.goal = goal;
+                this.order = order;
+            }
+        }
+
+        private static final Comparator<Entry> ORDER = Comparator
+                .<Entry>comparingInt(entry -> entry.goal.getPriority())
+                .thenComparingLong(entry -> entry.order);
+
+        private GoalQueue() {
+            this.entries = new TreeSet<>(GoalQueue.ORDER);
+            this.entriesByPredicate = new HashMap<>();
+            this.nextOrder = 0;
+        }
+
+        private void add(PDDLSingleGoal goal) {
+            Entry entry = new Entry(goal, this.nextOrder++);
+            this.entries.add(entry);
+            this.entriesByPredicate.computeIfAbsent(goal.getGoalPredicate(), predicate -> new ArrayList<>()).add(entry);
+        }
+
+        private PDDLSingleGoal peek() {
+            return this.entries.isEmpty() ? null : this.entries.first().goal;
+        }
+
+        private PDDLSingleGoal poll() {
+            PDDLSingleGoal goal = this.peek();
+
+            if (goal != null) {
+                this.removeEntry(this.entries.first());
+            }
+
+            return goal;
+        }
+
+        /**
+         * Method that removes the first goal of the list that is equal to the given one.
+         *
+         * @param goal Goal to be removed.
+         * @return Returns true if the goal has been removed and false otherwise.
+         */
+        private boolean remove(PDDLSingleGoal goal) {
+            Entry first = null;
+
+            for (Entry entry : this.entriesByPredicate.getOrDefault(goal.getGoalPredicate(), Collections.emptyList())) {
+                if (entry.goal.equals(goal) && (first == null || GoalQueue.ORDER.compare(entry, first) < 0)) {
+                    first = entry;
+                }
+            }
+
+            if (first != null) {
+                this.removeEntry(first);
+            }
+
+            return first != null;
+        }
+
+        /**
+         * Method that searches a goal given its predicate. If several goals have the
+         * same predicate, the last one of the list is returned.
+         *
+         * @param predicate Predicate to be searched.
+         * @return Returns the goal or null if no goal has the predicate.
+         */
+        private PDDLSingleGoal find(String predicate) {
+            Entry last = null;
+
+            for (Entry entry : this.entriesByPredicate.getOrDefault(predicate, Collections.emptyList())) {
+                if (last == null || GoalQueue.ORDER.compare(entry, last) > 0) {
+                    last = entry;
+                }
+            }
+
+            return last != null ? last.goal : null;
+        }
+
+        private void removeEntry(Entry entry) {
+            List<Entry> sharedPredicate = this.entriesByPredicate.get(entry.goal.getGoalPredicate());
+
+            this.entries.remove(entry);
+            sharedPredicate.remove(entry);
+
+            if (sharedPredicate.isEmpty()) {
+                this.entriesByPredicate.remove(entry.goal.getGoalPredicate());
+            }
+        }
+
+        private boolean isEmpty() {
+            return this.entries.isEmpty();
+        }
+
+        private List<PDDLSingleGoal> toList() {
+            List<PDDLSingleGoal> goals = new ArrayList<>(this.entries.size());
+            this.forEach(goals::add);
+
+            return Collections.unmodifiableList(goals);
+        }
+
+        @Override
+        public Iterator<PDDLSingleGoal> iterator() {
+            Iterator<Entry> iterEntries = this.entries.iterator();
+
+            return new Iterator<PDDLSingleGoal>() {
+                @Override
+                public boolean hasNext() {
+                    return iterEntries.hasNext();
+                }
+
+                @Override
+                public PDDLSingleGoal next() {
+                    return iterEntries.next().goal;
+                }
+            };
+        }
+    }
+
     /**
      * Class constructor.
      *
      * @param goals List of goals
      */
     public Agenda(LinkedList<PDDLSingleGoal> goals) {
-        this.pendingGoals = this.sortListByPriority(goals);
-        this.preemptedGoals = new LinkedList<>();
+        this.pendingGoals = new GoalQueue();
+        this.preemptedGoals = new GoalQueue();
         this.reachedGoals = new LinkedList<>();
         this.currentGoal = null;
+
+        goals.forEach(this.pendingGoals::add);
     }
 
-    public LinkedList<PDDLSingleGoal> getPendingGoals() {
-        return this.pendingGoals;
+    /**
+     * Method that returns the pending goals sorted by priority.
+     *
+     * @return Returns an unmodifiable list with the pending goals.
+     */
+    public List<PDDLSingleGoal> getPendingGoals() {
+        return this.pendingGoals.toList();
     }
 
-    public LinkedList<PDDLSingleGoal> getPreemptedGoals() {
-        return this.preemptedGoals;
+    /**
+     * Method that returns the preempted goals sorted by priority.
+     *
+     * @return Returns an unmodifiable list with the preempted goals.
+     */
+    public List<PDDLSingleGoal> getPreemptedGoals() {
+        return this.preemptedGoals.toList();
     }
 
     public LinkedList<PDDLSingleGoal> getReachedGoals() {
@@ -86,23 +241,21 @@ public class Agenda {
 
         if (!this.pendingGoals.isEmpty() && this.preemptedGoals.isEmpty()) {
             // If there are only pending goals, choose the first one
-            this.currentGoal = this.pendingGoals.removeFirst();
+            this.currentGoal = this.pendingGoals.poll();
         } else if (this.pendingGoals.isEmpty() && !this.preemptedGoals.isEmpty()) {
             // If there are only preempted goals, choose the first one
-            this.currentGoal = this.preemptedGoals.removeFirst();
+            this.currentGoal = this.preemptedGoals.poll();
         } else if (!this.pendingGoals.isEmpty() && !this.preemptedGoals.isEmpty()) {
             // If there are both pending and preempted goals, choose the best one according
             // to their priority. Pending goals are preferred over preempted goals in case
             // their priorities are equal
-            PDDLSingleGoal firstPending = this.pendingGoals.getFirst(),
-                    firstPreempted = this.preemptedGoals.getFirst();
+            PDDLSingleGoal firstPending = this.pendingGoals.peek(),
+                    firstPreempted = this.preemptedGoals.peek();
 
             if (firstPreempted.getPriority() < firstPending.getPriority()) {
-                this.currentGoal = firstPreempted;
-                this.preemptedGoals.removeFirst();
+                this.currentGoal = this.preemptedGoals.poll();
             } else {
-                this.currentGoal = firstPending;
-                this.pendingGoals.removeFirst();
+                this.currentGoal = this.pendingGoals.poll();
             }
         } else {
             // If both lists are empty, then there's no goal to be set
@@ -112,13 +265,80 @@ public class Agenda {
         return setGoal;
     }
 
+    /**
+     * Method that sets a given goal as the current goal. The goal is removed from
+     * the pending goals list or from the preempted goals list.
+     *
+     * @param goal Goal to be set as the current goal.
+     * @return Returns true if the goal has been set successfully or false if it
+     * isn't pending nor preempted.
+     */
+    public boolean setCurrentGoal(PDDLSingleGoal goal) {
+        if (!this.pendingGoals.remove(goal) && !this.preemptedGoals.remove(goal)) {
+            return false;
+        }
+
+        this.currentGoal = goal;
+
+        return true;
+    }
+
+    /**
+     * Method that changes the order of the pending goals. The goals are added
+     * again in the given order, so goals with the same priority are chosen in
+     * that order.
+     *
+     * @param goals Pending goals in their new order.
+     * @throws IllegalArgumentException Thrown when the goals aren't the pending goals.
+     */
+    public void reorderPendingGoals(List<PDDLSingleGoal> goals) {
+        List<PDDLSingleGoal> pending = new ArrayList<>(this.pendingGoals.toList());
+
+        if (goals.size() != pending.size() || !pending.containsAll(goals)) {
+            throw new IllegalArgumentException("The goals must be the pending goals");
+        }
+
+        GoalQueue reordered = new GoalQueue();
+        goals.forEach(reordered::add);
+        this.pendingGoals = reordered;
+    }
+
+    /**
+     * Method that returns the goals that will be set as the current goal next,
+     * in the same order in which {@link #setCurrentGoal()} would choose them.
+     * The agenda isn't modified.
+     *
+     * @param numGoals Maximum number of goals to be returned.
+     * @return Returns a list with the next goals.
+     */
+    public List<PDDLSingleGoal> getUpcomingGoals(int numGoals) {
+        List<PDDLSingleGoal> upcomingGoals = new ArrayList<>();
+        Iterator<PDDLSingleGoal> iterPending = this.pendingGoals.iterator(),
+                iterPreempted = this.preemptedGoals.iterator();
+        PDDLSingleGoal nextPending = iterPending.hasNext() ? iterPending.next() : null,
+                nextPreempted = iterPreempted.hasNext() ? iterPreempted.next() : null;
+
+        while (upcomingGoals.size() < numGoals && (nextPending != null || nextPreempted != null)) {
+            // Pending goals are preferred over preempted goals in case their priorities are equal
+            if (nextPending == null
+                    || (nextPreempted != null && nextPreempted.getPriority() < nextPending.getPriority())) {
+                upcomingGoals.add(nextPreempted);
+                nextPreempted = iterPreempted.hasNext() ? iterPreempted.next() : null;
+            } else {
+                upcomingGoals.add(nextPending);
+                nextPending = iterPending.hasNext() ? iterPending.next() : null;
+            }
+        }
+
+        return upcomingGoals;
+    }
+
     /**
      * Method that allows to halt the current goal in case some discrepancy is found.
      */
     public void haltCurrentGoal() {
-        // Store the current goal in the preempted goals list
-        this.preemptedGoals.addLast(this.currentGoal);
-        this.preemptedGoals = this.sortListByPriority(this.preemptedGoals);
+        // Store the current goal in the preempted goals list, after the goals with the same priority
+        this.preemptedGoals.add(this.currentGoal);
 
         this.currentGoal = null;
     }
@@ -143,7 +363,7 @@ public class Agenda {
      * found and null otherwise.
      */
     public PDDLSingleGoal containedPredicateInPendingGoals(String predicate) {
-        return this.containedPredicateInGoalsList(predicate, this.pendingGoals);
+        return this.pendingGoals.find(predicate);
     }
 
     /**
@@ -155,7 +375,7 @@ public class Agenda {
      * found and null otherwise.
      */
     public PDDLSingleGoal containedPredicateInPreemptedGoals(String predicate) {
-        return this.containedPredicateInGoalsList(predicate, this.preemptedGoals);
+        return this.preemptedGoals.find(predicate);
     }
 
     /**
@@ -213,40 +433,6 @@ public class Agenda {
         return builder.toString();
     }
 
-    /**
-     * Method that sorts a list of goals. The list is sorted by priority.
-     *
-     * @param list LinkedList of goals to be sorted
-     * @return Returns the input list sorted by priority.
-     */
-    private LinkedList<PDDLSingleGoal> sortListByPriority(LinkedList<PDDLSingleGoal> list) {
-        return list
-                .stream()
-                .sorted(Comparator.comparingInt(PDDLSingleGoal::getPriority))
-                .collect(Collectors.toCollection(LinkedList::new));
-    }
-
-    /**
-     * Method used to check if a PDDL predicate is contained in some list of the
-     * agenda.
-     *
-     * @param predicate Predicate to be searched in a given list.
-     * @param goalsList List of PDDLSingleGoal in which the predicate is searched.
-     * @return Returns a PDDLSingleGoal instance containing the predicate if it is
-     * found and null otherwise.
-     */
-    private PDDLSingleGoal containedPredicateInGoalsList(String predicate, LinkedList<PDDLSingleGoal> goalsList) {
-        PDDLSingleGoal containedGoal = null;
-
-        for (PDDLSingleGoal goal : goalsList) {
-            if (goal.getGoalPredicate().equals(predicate)) {
-                containedGoal = goal;
-            }
-        }
-
-        return containedGoal;
-    }
-
     /**
      * Method that allows to move a goal instance from a given list to the reached
      * goals list.
@@ -254,7 +440,7 @@ public class Agenda {
      * @param goal      PDDLSingleGoal instance to be moved.
      * @param goalsList List from which the goal will be removed.
      */
-    private void setReachedFromList(PDDLSingleGoal goal, LinkedList<PDDLSingleGoal> goalsList) {
+    private void setReachedFromList(PDDLSingleGoal goal, GoalQueue goalsList) {
         goalsList.remove(goal);
         this.reachedGoals.addLast(goal);
     }
@@ -0,0 +1,444 @@
+/*
+ * AgentConfiguration.java
+ *
+ * Copyright (C) 2020 Vladislav Nikolov Vasilev
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see https://www.gnu.org/licenses/gpl-3.0.html.
+ */
+
+/**
+ * Package that contains the planning agent along with its data structures.
+ */
+package controller;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+/**
+ * Class that contains the configuration of the planning agents. Each agent
+ * receives its configuration when it's created, so several agents with
+ * different configurations can play at the same time in the same JVM.
+ * <p>
+ * The resources that can be shared between executions, the plan cache and the
+ * HTTP client, are created the first time they are needed and shared by every
+ * agent that uses the same configuration. Thus, the configuration shouldn't be
+ * modified once an agent has been created with it.
+ *
+ * @author Vladislav Nikolov Vasilev
+ */
+public class AgentConfiguration {
+    /**
+     * Default directory in which the runtime information is saved.
+     */
+    public static final String DEFAULT_OUTPUT_DIRECTORY = "output";
+
+    private String gameConfigFile;
+    private boolean debugMode;
+    private boolean saveInformation;
+    private String outputDirectory = AgentConfiguration.DEFAULT_OUTPUT_DIRECTORY;
+    private boolean localHost;
+    private String plannerName;
+    private int speculativeGoals = 0;
+    private boolean anytime;
+    private double actTimeFraction = 0.5;
+    private String fallbackPolicyName;
+    private boolean planRepair = true;
+    private boolean problemPruning = true;
+    private int parallelGoals = 0;
+    private String goalOrderingName;
+    private boolean hierarchical;
+    private boolean planValidation = true;
+    private int lookaheadHorizon = 0;
+    private int lookaheadSamples = PlanLookahead.DEFAULT_SAMPLES;
+    private int httpConnectTimeout = PlannerHttpClient.DEFAULT_CONNECT_TIMEOUT;
+    private int httpReadTimeout = PlannerHttpClient.DEFAULT_READ_TIMEOUT;
+    private int httpRetries = PlannerHttpClient.DEFAULT_MAX_RETRIES;
+    private boolean compressRequests;
+    private boolean httpFallback = true;
+    private boolean problemSessions = true;
+    private boolean persistentPlanCache;
+
+    // Resources shared by the agents created with this configuration
+    private PlanCache planCache;
+    private PlannerHttpClient httpClient;
+
+    public String getGameConfigFile() {
+        return this.gameConfigFile;
+    }
+
+    public void setGameConfigFile(String path) {
+        this.gameConfigFile = path;
+    }
+
+    public boolean isDebugMode() {
+        return this.debugMode;
+    }
+
+    public void setDebugMode(boolean debugMode) {
+        this.debugMode = debugMode;
+    }
+
+    public boolean isSaveInformation() {
+        return this.saveInformation;
+    }
+
+    public void setSaveInformation(boolean saveInformation) {
+        this.saveInformation = saveInformation;
+    }
+
+    public String getOutputDirectory() {
+        return this.outputDirectory;
+    }
+
+    /**
+     * Method that sets the directory in which the problems, the plans and the
+     * log of the game are saved. Agents that play at the same time must use
+     * different directories.
+     *
+     * @param outputDirectory Path of the directory.
+     */
+    public void setOutputDirectory(String outputDirectory) {
+        this.outputDirectory = outputDirectory;
+    }
+
+    public boolean isLocalHost() {
+        return this.localHost;
+    }
+
+    public void setLocalHost(boolean localHost) {
+        this.localHost = localHost;
+    }
+
+    public String getPlannerName() {
+        return this.plannerName;
+    }
+
+    public void setPlanner(String plannerName) {
+        this.plannerName = plannerName;
+    }
+
+    public boolean isAnytime() {
+        return this.anytime;
+    }
+
+    /**
+     * Method that enables or disables the anytime mode. In this mode, the planner
+     * is called in a worker thread and the agent executes the actions chosen by
+     * the fallback policy until the plan is ready, so no turn lasts longer than
+     * the given fraction of the time available.
+     *
+     * @param anytime Boolean telling whether the anytime mode is enabled.
+     */
+    public void setAnytime(boolean anytime) {
+        this.anytime = anytime;
+    }
+
+    public int getParallelGoals() {
+        return this.parallelGoals;
+    }
+
+    /**
+     * Method that enables parallel goal selection. When it is enabled and there
+     * are several goals with the best priority, a plan to each of them is searched
+     * concurrently and the goal with the shortest plan is chosen.
+     *
+     * @param parallelGoals Maximum number of concurrent calls to the planner. If it
+     *                      is 0, the goals are chosen by the agenda.
+     */
+    public void setParallelGoals(int parallelGoals) {
+        this.parallelGoals = parallelGoals;
+    }
+
+    public boolean isPlanRepair() {
+        return this.planRepair;
+    }
+
+    /**
+     * Method that enables or disables plan repair. When it is enabled, the agent
+     * tries to reconnect the current state to the plan before halting the current
+     * goal due to a discrepancy.
+     *
+     * @param planRepair Boolean telling whether plans have to be repaired.
+     */
+    public void setPlanRepair(boolean planRepair) {
+        this.planRepair = planRepair;
+    }
+
+    public boolean isProblemPruning() {
+        return this.problemPruning;
+    }
+
+    /**
+     * Method that enables or disables the pruning of the problems. When it is
+     * enabled, the cells that can't be used by any plan are removed from the
+     * problems before calling the planner.
+     *
+     * @param problemPruning Boolean telling whether problems have to be pruned.
+     */
+    public void setProblemPruning(boolean problemPruning) {
+        this.problemPruning = problemPruning;
+    }
+
+    public boolean isHierarchical() {
+        return this.hierarchical;
+    }
+
+    /**
+     * Method that enables or disables hierarchical planning. When it is enabled,
+     * the planner only receives an abstract problem without the movements between
+     * cells, which are found natively (see {@link HierarchicalPlanner}).
+     *
+     * @param hierarchical Boolean telling whether problems have to be abstracted.
+     */
+    public void setHierarchical(boolean hierarchical) {
+        this.hierarchical = hierarchical;
+    }
+
+    public boolean isPlanValidation() {
+        return this.planValidation;
+    }
+
+    /**
+     * Method that enables or disables plan validation. When it is enabled, the rest
+     * of the plan is simulated every turn from the current state, so a discrepancy is
+     * handled as soon as some upcoming action can't be executed.
+     *
+     * @param planValidation Boolean telling whether plans have to be validated.
+     */
+    public void setPlanValidation(boolean planValidation) {
+        this.planValidation = planValidation;
+    }
+
+    public int getLookaheadHorizon() {
+        return this.lookaheadHorizon;
+    }
+
+    /**
+     * Method that sets how many of the next actions of the plan are executed with
+     * the forward model every turn to predict failures caused by the NPCs (see
+     * {@link PlanLookahead}).
+     *
+     * @param lookaheadHorizon Number of simulated actions. If it is 0, the plan
+     *                         isn't simulated with the forward model.
+     */
+    public void setLookaheadHorizon(int lookaheadHorizon) {
+        this.lookaheadHorizon = lookaheadHorizon;
+    }
+
+    public int getLookaheadSamples() {
+        return this.lookaheadSamples;
+    }
+
+    /**
+     * Method that sets how many times the next actions of the plan are simulated
+     * with the forward model, each time with a different random seed.
+     *
+     * @param lookaheadSamples Number of simulations.
+     */
+    public void setLookaheadSamples(int lookaheadSamples) {
+        this.lookaheadSamples = lookaheadSamples;
+    }
+
+    public int getHttpConnectTimeout() {
+        return this.httpConnectTimeout;
+    }
+
+    /**
+     * Method that sets the maximum time spent opening a connection to the HTTP
+     * planner. The deadline of each call also applies.
+     *
+     * @param httpConnectTimeout Timeout in milliseconds.
+     */
+    public void setHttpConnectTimeout(int httpConnectTimeout) {
+        this.httpConnectTimeout = httpConnectTimeout;
+    }
+
+    public int getHttpReadTimeout() {
+        return this.httpReadTimeout;
+    }
+
+    /**
+     * Method that sets the maximum time without receiving data from the HTTP
+     * planner. The deadline of each call also applies.
+     *
+     * @param httpReadTimeout Timeout in milliseconds. If it is 0, only the
+     *                        deadline of each call is used.
+     */
+    public void setHttpReadTimeout(int httpReadTimeout) {
+        this.httpReadTimeout = httpReadTimeout;
+    }
+
+    public int getHttpRetries() {
+        return this.httpRetries;
+    }
+
+    /**
+     * Method that sets how many times a call to the HTTP planner is retried if
+     * the planner can't be reached or is unavailable.
+     *
+     * @param httpRetries Maximum number of retries of each call.
+     */
+    public void setHttpRetries(int httpRetries) {
+        this.httpRetries = httpRetries;
+    }
+
+    public boolean isCompressRequests() {
+        return this.compressRequests;
+    }
+
+    /**
+     * Method that enables or disables the compression of the problems sent to
+     * the HTTP planner, which must accept request bodies compressed with gzip.
+     *
+     * @param compressRequests Boolean telling whether requests have to be compressed.
+     */
+    public void setCompressRequests(boolean compressRequests) {
+        this.compressRequests = compressRequests;
+    }
+
+    public boolean isHttpFallback() {
+        return this.httpFallback;
+    }
+
+    /**
+     * Method that enables or disables the fallback of the HTTP planner. When it is
+     * enabled, the problems that can't be sent to the HTTP planner are solved by
+     * the embedded planner.
+     *
+     * @param httpFallback Boolean telling whether the embedded planner is used
+     *                     when the HTTP planner can't be called.
+     */
+    public void setHttpFallback(boolean httpFallback) {
+        this.httpFallback = httpFallback;
+    }
+
+    public boolean isProblemSessions() {
+        return this.problemSessions;
+    }
+
+    /**
+     * Method that enables or disables the sessions of the planner running on
+     * localhost (see {@link SessionHttpPlanner}). When they are enabled, only the
+     * changes of the problems since the previous call are sent to the planner.
+     *
+     * @param problemSessions Boolean telling whether the problems are sent to the
+     *                        planner running on localhost through sessions.
+     */
+    public void setProblemSessions(boolean problemSessions) {
+        this.problemSessions = problemSessions;
+    }
+
+    public double getActTimeFraction() {
+        return this.actTimeFraction;
+    }
+
+    public void setActTimeFraction(double actTimeFraction) {
+        this.actTimeFraction = actTimeFraction;
+    }
+
+    public String getFallbackPolicyName() {
+        return this.fallbackPolicyName;
+    }
+
+    public void setFallbackPolicy(String fallbackPolicyName) {
+        this.fallbackPolicyName = fallbackPolicyName;
+    }
+
+    public String getGoalOrderingName() {
+        return this.goalOrderingName;
+    }
+
+    /**
+     * Method that sets how the pending goals with the same priority are ordered
+     * when the agent is created and after each discrepancy (see {@link GoalOrderer}).
+     *
+     * @param goalOrderingName Name of the ordering (nearest or 2-opt). If it is
+     *                         null, the goals keep the order of the configuration
+     *                         file.
+     */
+    public void setGoalOrdering(String goalOrderingName) {
+        this.goalOrderingName = goalOrderingName;
+    }
+
+    public int getSpeculativeGoals() {
+        return this.speculativeGoals;
+    }
+
+    /**
+     * Method that sets how many upcoming goals of the agenda are planned in the
+     * background while the agent executes the plan to the current goal.
+     *
+     * @param speculativeGoals Number of upcoming goals. If it is 0, speculative
+     *                         planning is disabled.
+     */
+    public void setSpeculativeGoals(int speculativeGoals) {
+        this.speculativeGoals = speculativeGoals;
+    }
+
+    public boolean isPersistentPlanCache() {
+        return this.persistentPlanCache;
+    }
+
+    /**
+     * Method that enables or disables the on-disk tier of the plan cache. When it is
+     * enabled, plans are stored in the 'output/cache' directory and reused between
+     * different executions.
+     *
+     * @param persistentPlanCache Boolean telling whether plans have to be stored on disk.
+     */
+    public void setPersistentPlanCache(boolean persistentPlanCache) {
+        this.persistentPlanCache = persistentPlanCache;
+    }
+
+    /**
+     * Method that returns the cache of plans shared by the agents created with
+     * this configuration, creating it the first time it is needed.
+     *
+     * @return Returns the plan cache.
+     */
+    public synchronized PlanCache getPlanCache() {
+        if (this.planCache == null) {
+            Path directory = this.persistentPlanCache ? Paths.get(PlanCache.DEFAULT_DIRECTORY) : null;
+            this.planCache = new PlanCache(PlanCache.DEFAULT_CAPACITY, directory);
+        }
+
+        return this.planCache;
+    }
+
+    /**
+     * Method that returns the client shared by the HTTP planners of the agents
+     * created with this configuration, so that connections are reused. It is
+     * created the first time it is needed.
+     *
+     * @return Returns the HTTP client.
+     */
+    public synchronized PlannerHttpClient getHttpClient() {
+        if (this.httpClient == null) {
+            this.httpClient = new PlannerHttpClient(this.httpConnectTimeout, this.httpReadTimeout, this.httpRetries,
+                    this.compressRequests);
+        }
+
+        return this.httpClient;
+    }
+
+    /**
+     * Method that returns whether the HTTP client has been created or not, so
+     * that its stats can be shown without creating it.
+     *
+     * @return Returns true if some agent has used the HTTP client.
+     */
+    public synchronized boolean hasHttpClient() {
+        return this.httpClient != null;
+    }
+}
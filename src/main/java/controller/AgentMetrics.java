@@ -0,0 +1,259 @@
+/*
+ * AgentMetrics.java
+ *
+ * Copyright (C) 2020 Vladislav Nikolov Vasilev
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see https://www.gnu.org/licenses/gpl-3.0.html.
+ */
+
+/**
+ * Package that contains the planning agent along with its data structures.
+ */
+package controller;
+
+import kong.unirest.json.JSONObject;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Class that holds the histograms of the metrics of the planning agent. Each
+ * metric has a name and is either the latency of a phase of the agent, which
+ * is recorded in microseconds, or a size, like the number of facts of the
+ * problems or the length of the plans. The metrics can be added up and
+ * exported to CSV or JSON.
+ *
+ * @author Vladislav Nikolov Vasilev
+ */
+public class AgentMetrics {
+    // Latencies of the phases of the agent
+    public static final String TURN = "turn";
+    public static final String TRANSLATION = "translation";
+    public static final String PROBLEM_WRITING = "problem-writing";
+    public static final String PLANNER_CALL = "planner-call";
+    public static final String HTTP_REQUEST = "http-request";
+    public static final String JSON_PARSING = "json-parsing";
+    public static final String PLAN_PARSING = "plan-parsing";
+
+    // Sizes of the problems and the plans
+    public static final String PROBLEM_OBJECTS = "problem-objects";
+    public static final String PROBLEM_FACTS = "problem-facts";
+    public static final String PLAN_LENGTH = "plan-length";
+
+    public static final String CSV_HEADER = "metric,unit,count,min,mean,p50,p90,p99,max";
+    private static final String LATENCY_UNIT = "us";
+    private static final String SIZE_UNIT = "count";
+
+    private final Map<String, Histogram> histograms;
+    private final Set<String> latencies;
+
+    /**
+     * Class constructor. Creates empty metrics.
+     */
+    public AgentMetrics() {
+        this.histograms = new TreeMap<>();
+        this.latencies = new HashSet<>();
+    }
+
+    /**
+     * Method that records a size or any other value of a metric.
+     *
+     * @param name  Name of the metric.
+     * @param value Value to be recorded.
+     */
+    public void record(String name, long value) {
+        this.getOrCreateHistogram(name, false).record(value);
+    }
+
+    /**
+     * Method that records the time elapsed since a phase started.
+     *
+     * @param name      Name of the phase.
+     * @param startTime Value returned by {@link System#nanoTime()} when the
+     *                  phase started.
+     */
+    public void recordTime(String name, long startTime) {
+        this.recordLatency(name, System.nanoTime() - startTime);
+    }
+
+    /**
+     * Method that records the latency of a phase.
+     *
+     * @param name  Name of the phase.
+     * @param nanos Latency in nanoseconds.
+     */
+    public void recordLatency(String name, long nanos) {
+        this.getOrCreateHistogram(name, true).record(TimeUnit.NANOSECONDS.toMicros(nanos));
+    }
+
+    /**
+     * Method that returns the histogram of a metric.
+     *
+     * @param name Name of the metric.
+     * @return Returns the histogram or null if nothing has been recorded.
+     */
+    public synchronized Histogram getHistogram(String name) {
+        return this.histograms.get(name);
+    }
+
+    /**
+     * Method that returns the names of the recorded metrics in alphabetical
+     * order.
+     *
+     * @return Returns a list with the names.
+     */
+    public synchronized List<String> getNames() {
+        return new ArrayList<>(this.histograms.keySet());
+    }
+
+    /**
+     * Method that returns the unit of a metric.
+     *
+     * @param name Name of the metric.
+     * @return Returns "us" if the metric is the latency of a phase, which is
+     * recorded in microseconds, and "count" otherwise.
+     */
+    public synchronized String getUnit(String name) {
+        return this.latencies.contains(name) ? AgentMetrics.LATENCY_UNIT : AgentMetrics.SIZE_UNIT;
+    }
+
+    public synchronized boolean isEmpty() {
+        return this.histograms.isEmpty();
+    }
+
+    /**
+     * Method that adds other metrics to these ones.
+     *
+     * @param other Other metrics.
+     */
+    public void add(AgentMetrics other) {
+        Map<String, Histogram> otherHistograms;
+        Set<String> otherLatencies;
+
+        synchronized (other) {
+            otherHistograms = new TreeMap<>(other.histograms);
+            otherLatencies = new HashSet<>(other.latencies);
+        }
+
+        otherHistograms.forEach((name, histogram) ->
+                this.getOrCreateHistogram(name, otherLatencies.contains(name)).add(histogram));
+    }
+
+    /**
+     * Method that returns the metrics as a JSON object. Each metric contains
+     * its unit, a summary of the values and the histogram, so the metrics of
+     * several runs can be added up later.
+     *
+     * @return Returns a JSON object with the metrics.
+     */
+    public synchronized JSONObject toJSON() {
+        JSONObject json = new JSONObject();
+
+        this.histograms.forEach((name, histogram) -> {
+            JSONObject metric = histogram.toJSON();
+            metric.put("unit", this.getUnit(name));
+            metric.put("mean", histogram.getMean());
+            metric.put("p50", histogram.getValueAtPercentile(50));
+            metric.put("p90", histogram.getValueAtPercentile(90));
+            metric.put("p99", histogram.getValueAtPercentile(99));
+            json.put(name, metric);
+        });
+
+        return json;
+    }
+
+    /**
+     * Method that creates metrics from a JSON object returned by
+     * {@link #toJSON()}.
+     *
+     * @param json JSON object with the metrics.
+     * @return Returns the metrics.
+     */
+    public static AgentMetrics fromJSON(JSONObject json) {
+        AgentMetrics metrics = new AgentMetrics();
+
+        for (String name : json.keySet()) {
+            JSONObject metric = json.getJSONObject(name);
+            boolean latency = AgentMetrics.LATENCY_UNIT.equals(metric.optString("unit"));
+            metrics.getOrCreateHistogram(name, latency).add(Histogram.fromJSON(metric));
+        }
+
+        return metrics;
+    }
+
+    /**
+     * Method that returns a CSV line with the summary of each metric. The lines
+     * don't include the header, which is {@link #CSV_HEADER}.
+     *
+     * @return Returns a list with the CSV lines.
+     */
+    public synchronized List<String> toCSV() {
+        List<String> lines = new ArrayList<>();
+
+        this.histograms.forEach((name, histogram) -> lines.add(String.format(Locale.ROOT,
+                "%s,%s,%d,%d,%.2f,%d,%d,%d,%d", name, this.getUnit(name), histogram.getCount(),
+                histogram.getMin(), histogram.getMean(), histogram.getValueAtPercentile(50),
+                histogram.getValueAtPercentile(90), histogram.getValueAtPercentile(99), histogram.getMax())));
+
+        return lines;
+    }
+
+    /**
+     * Method that writes the metrics to a file. The metrics are written as CSV
+     * if the name of the file ends with .csv and as JSON otherwise.
+     *
+     * @param path Path of the file.
+     * @throws IOException If the file can't be written.
+     */
+    public void write(Path path) throws IOException {
+        if (path.getParent() != null) {
+            Files.createDirectories(path.getParent());
+        }
+
+        if (path.getFileName().toString().toLowerCase(Locale.ROOT).endsWith(".csv")) {
+            List<String> lines = new ArrayList<>();
+            lines.add(AgentMetrics.CSV_HEADER);
+            lines.addAll(this.toCSV());
+            Files.write(path, lines, StandardCharsets.UTF_8);
+        } else {
+            Files.write(path, this.toJSON().toString(2).getBytes(StandardCharsets.UTF_8));
+        }
+    }
+
+    /**
+     * Method that returns the histogram of a metric, creating it if it doesn't
+     * exist.
+     *
+     * @param name    Name of the metric.
+     * @param latency Boolean telling whether the metric is a latency.
+     * @return Returns the histogram.
+     */
+    private synchronized Histogram getOrCreateHistogram(String name, boolean latency) {
+        if (latency) {
+            this.latencies.add(name);
+        }
+
+        return this.histograms.computeIfAbsent(name, key -> new Histogram());
+    }
+}
@@ -0,0 +1,502 @@
+/*
+ * AgentStatistics.java
+ *
+ * Copyright (C) 2020 Vladislav Nikolov Vasilev
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see https://www.gnu.org/licenses/gpl-3.0.html.
+ */
+
+/**
+ * Package that contains the planning agent along with its data structures.
+ */
+package controller;
+
+import kong.unirest.json.JSONObject;
+
+import java.util.Map;
+
+/**
+ * Class that collects the statistics of the games played by the planning
+ * agents. Each game gets its own instance, which is returned once the game has
+ * finished, and the statistics of several games can be added up. The counters
+ * can be updated from the background threads of the agent.
+ *
+ * @author Vladislav Nikolov Vasilev
+ */
+public class AgentStatistics {
+    private int games;
+    private int wins;
+    private double score;
+    private long ticks;
+    private long executionTime;
+    private long planningTime;
+    private int goals;
+    private int plannerCalls;
+    private int discrepancies;
+    private int planRepairs;
+    private int plannerTimeouts;
+    private int upcomingDiscrepancies;
+    private long validationTime;
+    private int predictedFailures;
+    private int predictedDeaths;
+    private long lookaheadTime;
+    private long totalFacts;
+    private long prunedFacts;
+    private int parallelGoalSelections;
+    private int abstractPlans;
+    private int hierarchicalFallbacks;
+    private long hierarchicalFacts;
+    private long abstractFacts;
+    private int speculativePlans;
+    private int speculativePlansUsed;
+    private int httpFallbackCalls;
+    private int problemSessions;
+    private int deltaProblems;
+    private long sentProblemCharacters;
+    private long totalProblemCharacters;
+    private int turnsWaitingPlanner;
+    private int maxTurnsWaitingPlanner;
+    private final Map<String, PortfolioPlanner.BackendStats> portfolioStats;
+    private final AgentMetrics metrics;
+
+    /**
+     * Class constructor. Creates empty statistics.
+     */
+    public AgentStatistics() {
+        this.portfolioStats = PortfolioPlanner.createStats();
+        this.metrics = new AgentMetrics();
+    }
+
+    public synchronized int getGames() {
+        return this.games;
+    }
+
+    public synchronized int getWins() {
+        return this.wins;
+    }
+
+    public synchronized double getScore() {
+        return this.score;
+    }
+
+    public synchronized long getTicks() {
+        return this.ticks;
+    }
+
+    public synchronized long getExecutionTime() {
+        return this.executionTime;
+    }
+
+    public synchronized long getPlanningTime() {
+        return this.planningTime;
+    }
+
+    public synchronized int getGoals() {
+        return this.goals;
+    }
+
+    public synchronized int getPlannerCalls() {
+        return this.plannerCalls;
+    }
+
+    public synchronized int getDiscrepancies() {
+        return this.discrepancies;
+    }
+
+    public synchronized int getPlanRepairs() {
+        return this.planRepairs;
+    }
+
+    public synchronized int getPlannerTimeouts() {
+        return this.plannerTimeouts;
+    }
+
+    public synchronized int getUpcomingDiscrepancies() {
+        return this.upcomingDiscrepancies;
+    }
+
+    public synchronized long getValidationTime() {
+        return this.validationTime;
+    }
+
+    public synchronized int getPredictedFailures() {
+        return this.predictedFailures;
+    }
+
+    public synchronized int getPredictedDeaths() {
+        return this.predictedDeaths;
+    }
+
+    public synchronized long getLookaheadTime() {
+        return this.lookaheadTime;
+    }
+
+    public synchronized long getTotalFacts() {
+        return this.totalFacts;
+    }
+
+    public synchronized long getPrunedFacts() {
+        return this.prunedFacts;
+    }
+
+    public synchronized int getParallelGoalSelections() {
+        return this.parallelGoalSelections;
+    }
+
+    public synchronized int getAbstractPlans() {
+        return this.abstractPlans;
+    }
+
+    public synchronized int getHierarchicalFallbacks() {
+        return this.hierarchicalFallbacks;
+    }
+
+    public synchronized long getHierarchicalFacts() {
+        return this.hierarchicalFacts;
+    }
+
+    public synchronized long getAbstractFacts() {
+        return this.abstractFacts;
+    }
+
+    public synchronized int getSpeculativePlans() {
+        return this.speculativePlans;
+    }
+
+    public synchronized int getSpeculativePlansUsed() {
+        return this.speculativePlansUsed;
+    }
+
+    public synchronized int getHttpFallbackCalls() {
+        return this.httpFallbackCalls;
+    }
+
+    public synchronized int getProblemSessions() {
+        return this.problemSessions;
+    }
+
+    public synchronized int getDeltaProblems() {
+        return this.deltaProblems;
+    }
+
+    public synchronized long getSentProblemCharacters() {
+        return this.sentProblemCharacters;
+    }
+
+    public synchronized long getTotalProblemCharacters() {
+        return this.totalProblemCharacters;
+    }
+
+    public synchronized int getTurnsWaitingPlanner() {
+        return this.turnsWaitingPlanner;
+    }
+
+    public synchronized int getMaxTurnsWaitingPlanner() {
+        return this.maxTurnsWaitingPlanner;
+    }
+
+    /**
+     * Method that returns the stats of the backends of the portfolio planner,
+     * indexed by their names. The map is synchronized.
+     *
+     * @return Returns the stats of the backends.
+     */
+    public Map<String, PortfolioPlanner.BackendStats> getPortfolioStats() {
+        return this.portfolioStats;
+    }
+
+    public AgentMetrics getMetrics() {
+        return this.metrics;
+    }
+
+    /**
+     * Method that records the result of a game.
+     *
+     * @param won   Boolean telling whether the game has been won.
+     * @param score Final score of the game.
+     * @param ticks Number of ticks the game has lasted.
+     */
+    public synchronized void recordGame(boolean won, double score, long ticks) {
+        this.games++;
+        this.wins += won ? 1 : 0;
+        this.score += score;
+        this.ticks += ticks;
+    }
+
+    public synchronized void addExecutionTime(long executionTime) {
+        this.executionTime += executionTime;
+    }
+
+    /**
+     * Method that adds the time spent waiting for the planner.
+     *
+     * @param planningTime Time spent in the call to the planner in milliseconds.
+     */
+    public synchronized void addPlanningTime(long planningTime) {
+        this.planningTime += planningTime;
+    }
+
+    public synchronized void addGoals(int goals) {
+        this.goals += goals;
+    }
+
+    public synchronized void recordPlannerCall() {
+        this.plannerCalls++;
+    }
+
+    public synchronized void recordPlannerTimeout() {
+        this.plannerTimeouts++;
+    }
+
+    /**
+     * Method that records a discrepancy between the expected and the observed
+     * state of the game.
+     *
+     * @param repaired Boolean telling whether the plan has been repaired instead
+     *                 of calling the planner again.
+     */
+    public synchronized void recordDiscrepancy(boolean repaired) {
+        this.discrepancies++;
+        this.planRepairs += repaired ? 1 : 0;
+    }
+
+    /**
+     * Method that records a validation of the rest of the plan.
+     *
+     * @param time        Time spent validating the plan in nanoseconds.
+     * @param discrepancy Boolean telling whether some upcoming action can't be
+     *                    executed.
+     */
+    public synchronized void recordValidation(long time, boolean discrepancy) {
+        this.validationTime += time;
+        this.upcomingDiscrepancies += discrepancy ? 1 : 0;
+    }
+
+    public synchronized void addLookaheadTime(long lookaheadTime) {
+        this.lookaheadTime += lookaheadTime;
+    }
+
+    /**
+     * Method that records a failure of the plan predicted with the forward model.
+     *
+     * @param death Boolean telling whether the avatar dies in the prediction.
+     */
+    public synchronized void recordPredictedFailure(boolean death) {
+        this.predictedFailures++;
+        this.predictedDeaths += death ? 1 : 0;
+    }
+
+    /**
+     * Method that records the facts of a problem and how many of them have been
+     * removed by pruning.
+     *
+     * @param totalFacts  Number of facts of the problem.
+     * @param prunedFacts Number of removed facts.
+     */
+    public synchronized void addFacts(long totalFacts, long prunedFacts) {
+        this.totalFacts += totalFacts;
+        this.prunedFacts += prunedFacts;
+    }
+
+    public synchronized void recordParallelGoalSelection() {
+        this.parallelGoalSelections++;
+    }
+
+    /**
+     * Method that adds the stats of a hierarchical planner.
+     *
+     * @param planner Hierarchical planner.
+     */
+    public synchronized void addHierarchicalStats(HierarchicalPlanner planner) {
+        this.abstractPlans += planner.getAbstractPlans();
+        this.hierarchicalFallbacks += planner.getFallbacks();
+        this.hierarchicalFacts += planner.getFacts();
+        this.abstractFacts += planner.getAbstractFacts();
+    }
+
+    public synchronized void addSpeculativePlans(int speculativePlans) {
+        this.speculativePlans += speculativePlans;
+    }
+
+    public synchronized void recordSpeculativePlanUsed() {
+        this.speculativePlansUsed++;
+    }
+
+    public synchronized void addHttpFallbackCalls(int httpFallbackCalls) {
+        this.httpFallbackCalls += httpFallbackCalls;
+    }
+
+    /**
+     * Method that adds the stats of a planner that sends the problems through
+     * sessions.
+     *
+     * @param planner Session planner.
+     */
+    public synchronized void addSessionStats(SessionHttpPlanner planner) {
+        this.problemSessions += planner.getSessions();
+        this.deltaProblems += planner.getDeltaCalls();
+        this.sentProblemCharacters += planner.getSentCharacters();
+        this.totalProblemCharacters += planner.getProblemCharacters();
+    }
+
+    /**
+     * Method that records a turn in which the agent has waited for the planner.
+     *
+     * @param turnsWaiting Number of turns the agent has been waiting for the
+     *                     current plan.
+     */
+    public synchronized void recordTurnWaitingPlanner(int turnsWaiting) {
+        this.turnsWaitingPlanner++;
+        this.maxTurnsWaitingPlanner = Math.max(this.maxTurnsWaitingPlanner, turnsWaiting);
+    }
+
+    /**
+     * Method that adds the statistics of other games to these ones.
+     *
+     * @param other Statistics of the other games.
+     */
+    public void add(AgentStatistics other) {
+        // The other statistics are copied first to avoid holding both locks
+        AgentStatistics copy = new AgentStatistics();
+
+        synchronized (other) {
+            copy.games = other.games;
+            copy.wins = other.wins;
+            copy.score = other.score;
+            copy.ticks = other.ticks;
+            copy.executionTime = other.executionTime;
+            copy.planningTime = other.planningTime;
+            copy.goals = other.goals;
+            copy.plannerCalls = other.plannerCalls;
+            copy.discrepancies = other.discrepancies;
+            copy.planRepairs = other.planRepairs;
+            copy.plannerTimeouts = other.plannerTimeouts;
+            copy.upcomingDiscrepancies = other.upcomingDiscrepancies;
+            copy.validationTime = other.validationTime;
+            copy.predictedFailures = other.predictedFailures;
+            copy.predictedDeaths = other.predictedDeaths;
+            copy.lookaheadTime = other.lookaheadTime;
+            copy.totalFacts = other.totalFacts;
+            copy.prunedFacts = other.prunedFacts;
+            copy.parallelGoalSelections = other.parallelGoalSelections;
+            copy.abstractPlans = other.abstractPlans;
+            copy.hierarchicalFallbacks = other.hierarchicalFallbacks;
+            copy.hierarchicalFacts = other.hierarchicalFacts;
+            copy.abstractFacts = other.abstractFacts;
+            copy.speculativePlans = other.speculativePlans;
+            copy.speculativePlansUsed = other.speculativePlansUsed;
+            copy.httpFallbackCalls = other.httpFallbackCalls;
+            copy.problemSessions = other.problemSessions;
+            copy.deltaProblems = other.deltaProblems;
+            copy.sentProblemCharacters = other.sentProblemCharacters;
+            copy.totalProblemCharacters = other.totalProblemCharacters;
+            copy.turnsWaitingPlanner = other.turnsWaitingPlanner;
+            copy.maxTurnsWaitingPlanner = other.maxTurnsWaitingPlanner;
+        }
+
+        synchronized (this) {
+            this.games += copy.games;
+            this.wins += copy.wins;
+            this.score += copy.score;
+            this.ticks += copy.ticks;
+            this.executionTime += copy.executionTime;
+            this.planningTime += copy.planningTime;
+            this.goals += copy.goals;
+            this.plannerCalls += copy.plannerCalls;
+            this.discrepancies += copy.discrepancies;
+            this.planRepairs += copy.planRepairs;
+            this.plannerTimeouts += copy.plannerTimeouts;
+            this.upcomingDiscrepancies += copy.upcomingDiscrepancies;
+            this.validationTime += copy.validationTime;
+            this.predictedFailures += copy.predictedFailures;
+            this.predictedDeaths += copy.predictedDeaths;
+            this.lookaheadTime += copy.lookaheadTime;
+            this.totalFacts += copy.totalFacts;
+            this.prunedFacts += copy.prunedFacts;
+            this.parallelGoalSelections += copy.parallelGoalSelections;
+            this.abstractPlans += copy.abstractPlans;
+            this.hierarchicalFallbacks += copy.hierarchicalFallbacks;
+            this.hierarchicalFacts += copy.hierarchicalFacts;
+            this.abstractFacts += copy.abstractFacts;
+            this.speculativePlans += copy.speculativePlans;
+            this.speculativePlansUsed += copy.speculativePlansUsed;
+            this.httpFallbackCalls += copy.httpFallbackCalls;
+            this.problemSessions += copy.problemSessions;
+            this.deltaProblems += copy.deltaProblems;
+            this.sentProblemCharacters += copy.sentProblemCharacters;
+            this.totalProblemCharacters += copy.totalProblemCharacters;
+            this.turnsWaitingPlanner += copy.turnsWaitingPlanner;
+            this.maxTurnsWaitingPlanner = Math.max(this.maxTurnsWaitingPlanner, copy.maxTurnsWaitingPlanner);
+        }
+
+        synchronized (other.portfolioStats) {
+            other.portfolioStats.forEach((name, stats) -> this.portfolioStats
+                    .computeIfAbsent(name, key -> new PortfolioPlanner.BackendStats()).add(stats));
+        }
+
+        this.metrics.add(other.metrics);
+    }
+
+    /**
+     * Method that returns the results of the games, the main counters and the
+     * metrics as a JSON object, so they can be sent to another process.
+     *
+     * @return Returns a JSON object with the statistics.
+     */
+    public synchronized JSONObject toJSON() {
+        JSONObject json = new JSONObject();
+        json.put("games", this.games);
+        json.put("wins", this.wins);
+        json.put("score", this.score);
+        json.put("ticks", this.ticks);
+        json.put("executionTime", this.executionTime);
+        json.put("planningTime", this.planningTime);
+        json.put("goals", this.goals);
+        json.put("plannerCalls", this.plannerCalls);
+        json.put("discrepancies", this.discrepancies);
+        json.put("planRepairs", this.planRepairs);
+        json.put("plannerTimeouts", this.plannerTimeouts);
+        json.put("metrics", this.metrics.toJSON());
+
+        return json;
+    }
+
+    /**
+     * Method that creates statistics from a JSON object returned by
+     * {@link #toJSON()}. The rest of the counters are zero.
+     *
+     * @param json JSON object with the statistics.
+     * @return Returns the statistics.
+     */
+    public static AgentStatistics fromJSON(JSONObject json) {
+        AgentStatistics statistics = new AgentStatistics();
+        statistics.games = json.getInt("games");
+        statistics.wins = json.getInt("wins");
+        statistics.score = json.getDouble("score");
+        statistics.ticks = json.getLong("ticks");
+        statistics.executionTime = json.getLong("executionTime");
+        statistics.planningTime = json.getLong("planningTime");
+        statistics.goals = json.getInt("goals");
+        statistics.plannerCalls = json.getInt("plannerCalls");
+        statistics.discrepancies = json.getInt("discrepancies");
+        statistics.planRepairs = json.getInt("planRepairs");
+        statistics.plannerTimeouts = json.getInt("plannerTimeouts");
+
+        if (json.has("metrics")) {
+            statistics.metrics.add(AgentMetrics.fromJSON(json.getJSONObject("metrics")));
+        }
+
+        return statistics;
+    }
+}
@@ -0,0 +1,138 @@
+/*
+ * AtomTable.java
+ *
+ * Copyright (C) 2020 Vladislav Nikolov Vasilev
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see https://www.gnu.org/licenses/gpl-3.0.html.
+ */
+
+/**
+ * Package that contains the planning agent along with its data structures.
+ */
+package controller;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Class that interns ground atoms, assigning a unique integer to each one of
+ * them. It allows to represent states as bitsets and the preconditions and
+ * effects of actions as arrays of integers, so checking them doesn't require
+ * any string comparison.
+ *
+ * @author Vladislav Nikolov Vasilev
+ */
+public class AtomTable {
+    private List<String> atoms;
+    private Map<String, Integer> atomIndices;
+
+    /**
+     * Class constructor. Creates an empty table.
+     */
+    public AtomTable() {
+        this.atoms = new ArrayList<>();
+        this.atomIndices = new HashMap<>();
+    }
+
+    public List<String> getAtoms() {
+        return Collections.unmodifiableList(this.atoms);
+    }
+
+    /**
+     * Method that returns the number of atoms of the table.
+     *
+     * @return Returns the number of registered atoms.
+     */
+    public int size() {
+        return this.atoms.size();
+    }
+
+    /**
+     * Method that returns the index associated to an atom. If the atom hasn't been
+     * registered yet, a new index is assigned to it.
+     *
+     * @param atom Ground atom, for example "(at p c_1_1)".
+     * @return Returns the index of the atom.
+     */
+    public int intern(String atom) {
+        Integer index = this.atomIndices.get(atom);
+
+        if (index == null) {
+            index = this.atoms.size();
+            this.atoms.add(atom);
+            this.atomIndices.put(atom, index);
+        }
+
+        return index;
+    }
+
+    /**
+     * Method that interns a list of atoms.
+     *
+     * @param atoms List of ground atoms.
+     * @return Returns the indices of the atoms.
+     */
+    public int[] intern(List<String> atoms) {
+        int[] indices = new int[atoms.size()];
+
+        for (int i = 0; i < indices.length; i++) {
+            indices[i] = this.intern(atoms.get(i));
+        }
+
+        return indices;
+    }
+
+    /**
+     * Method that returns the index of an atom without registering it.
+     *
+     * @param atom Ground atom.
+     * @return Returns the index of the atom or -1 if it isn't registered.
+     */
+    public int indexOf(String atom) {
+        return this.atomIndices.getOrDefault(atom, -1);
+    }
+
+    /**
+     * Method that returns the atom associated to an index.
+     *
+     * @param index Index of the atom.
+     * @return Returns the atom.
+     */
+    public String get(int index) {
+        return this.atoms.get(index);
+    }
+
+    /**
+     * Method that checks whether an atom holds in a state.
+     *
+     * @param state State represented as a bitset of atom indices.
+     * @param atom  Ground atom.
+     * @return Returns true if the atom is registered and holds in the state, and
+     * false otherwise.
+     */
+    public boolean holds(BitSet state, String atom) {
+        int index = this.indexOf(atom);
+
+        return index >= 0 && state.get(index);
+    }
+
+    @Override
+    public String toString() {
+        return String.format("{ AtomTable atoms: %d }", this.atoms.size());
+    }
+}
@@ -0,0 +1,225 @@
+/*
+ * EmbeddedPlanner.java
+ *
+ * Copyright (C) 2020 Vladislav Nikolov Vasilev
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see https://www.gnu.org/licenses/gpl-3.0.html.
+ */
+
+/**
+ * Package that contains the planning agent along with its data structures.
+ */
+package controller;
+
+import kong.unirest.json.JSONArray;
+import kong.unirest.json.JSONObject;
+
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.Set;
+
+/**
+ * Class that implements a forward search planner which runs inside the JVM.
+ * The problem is grounded (see {@link PDDLGrounder}) and then solved with
+ * greedy best-first search guided by the relaxed plan heuristic (see
+ * {@link RelaxedPlanHeuristic}).
+ * <p>
+ * The planner's response follows the same format as the responses of the
+ * online solver, so it can be translated into a {@link PDDLPlan} without
+ * any further changes.
+ *
+ * @author Vladislav Nikolov Vasilev
+ */
+public class EmbeddedPlanner implements Planner {
+    /**
+     * Number of expanded nodes between two consecutive deadline checks.
+     */
+    private static final int DEADLINE_CHECK_INTERVAL = 64;
+
+    /**
+     * Class that represents a node of the search space.
+     */
+    private static class SearchNode {
+        private BitSet state;
+        private SearchNode parent;
+        private GroundAction action;
+        private int heuristic;
+        private long order;
+
+        private SearchNode(BitSet state, SearchNode parent, GroundAction action, int heuristic, long order) {
+            this.state = state;
+            this.parent = parent;
+            this.action = action;
+            this.heuristic = heuristic;
+            this.order = order;
+        }
+    }
+
+    /**
+     * Class constructor.
+     */
+    public EmbeddedPlanner() {
+    }
+
+    /**
+     * Method that solves a problem given the contents of the domain and problem
+     * files.
+     *
+     * @param domain  Content of the domain file.
+     * @param problem Content of the problem file.
+     * @return Returns a JSONObject with the same structure as the online solver's
+     * responses. If no plan is found, the status of the response is "error".
+     * @throws PlannerException Thrown when the domain or the problem can't be parsed.
+     */
+    public JSONObject solve(String domain, String problem) throws PlannerException {
+        return this.solve(domain, problem, PlanningDeadline.none());
+    }
+
+    @Override
+    public JSONObject solve(String domain, String problem, PlanningDeadline deadline) throws PlannerException {
+        deadline.check();
+        GroundTask task = PDDLGrounder.ground(PDDLParser.parseDomain(domain), PDDLParser.parseProblem(problem),
+                deadline);
+        List<GroundAction> plan = this.search(task, deadline);
+
+        return EmbeddedPlanner.createResponse(plan);
+    }
+
+    @Override
+    public String getName() {
+        return "embedded";
+    }
+
+    /**
+     * Method that searches a plan for a ground task using greedy best-first search.
+     * Ties between nodes with the same heuristic value are broken in FIFO order.
+     *
+     * @param task Ground task.
+     * @return Returns the list of actions of the plan or null if the task is unsolvable.
+     */
+    public List<GroundAction> search(GroundTask task) {
+        return this.search(task, PlanningDeadline.none());
+    }
+
+    /**
+     * Method that searches a plan for a ground task using greedy best-first search,
+     * stopping the search if the deadline expires or the call is cancelled.
+     *
+     * @param task     Ground task.
+     * @param deadline Deadline of the search.
+     * @return Returns the list of actions of the plan or null if the task is unsolvable.
+     * @throws PlannerTimeoutException Thrown when the deadline expires before finding a plan.
+     */
+    public List<GroundAction> search(GroundTask task, PlanningDeadline deadline) throws PlannerTimeoutException {
+        RelaxedPlanHeuristic heuristic = new RelaxedPlanHeuristic(task);
+        PriorityQueue<SearchNode> open = new PriorityQueue<>(
+                Comparator.<SearchNode>comparingInt(node -> node.heuristic).thenComparingLong(node -> node.order));
+        Set<BitSet> closed = new HashSet<>();
+        long generated = 0;
+
+        BitSet initialState = task.getInitialState();
+        int initialHeuristic = heuristic.evaluate(initialState);
+
+        if (initialHeuristic == RelaxedPlanHeuristic.DEAD_END) {
+            return null;
+        }
+
+        open.add(new SearchNode(initialState, null, null, initialHeuristic, generated++));
+        closed.add(initialState);
+        long expanded = 0;
+
+        while (!open.isEmpty()) {
+            if (++expanded % EmbeddedPlanner.DEADLINE_CHECK_INTERVAL == 0) {
+                deadline.check();
+            }
+
+            SearchNode node = open.poll();
+
+            if (task.isGoal(node.state)) {
+                return EmbeddedPlanner.extractPlan(node);
+            }
+
+            for (GroundAction action : task.getActions()) {
+                if (!action.isApplicable(node.state)) {
+                    continue;
+                }
+
+                BitSet successor = action.apply(node.state);
+
+                if (closed.add(successor)) {
+                    int h = heuristic.evaluate(successor);
+
+                    if (h != RelaxedPlanHeuristic.DEAD_END) {
+                        open.add(new SearchNode(successor, node, action, h, generated++));
+                    }
+                }
+            }
+        }
+
+        return null;
+    }
+
+    /**
+     * Method that creates a response in the format used by the online solver.
+     *
+     * @param plan List of actions of the plan or null if no plan has been found.
+     * @return Returns the JSONObject which represents the response.
+     */
+    public static JSONObject createResponse(List<GroundAction> plan) {
+        JSONObject response = new JSONObject();
+        JSONObject result = new JSONObject();
+
+        if (plan == null) {
+            response.put("status", "error");
+            result.put("output", "The embedded planner couldn't find a plan for the given problem");
+        } else {
+            JSONArray steps = new JSONArray();
+
+            for (GroundAction action : plan) {
+                JSONObject step = new JSONObject();
+                step.put("name", action.getInstance());
+                step.put("action", action.getDescription());
+                steps.put(step);
+            }
+
+            response.put("status", "ok");
+            result.put("plan", steps);
+        }
+
+        response.put("result", result);
+
+        return response;
+    }
+
+    /**
+     * Method that extracts a plan by following the parents of a goal node.
+     *
+     * @param node Goal node.
+     * @return Returns the list of actions that lead from the initial state to the node.
+     */
+    private static List<GroundAction> extractPlan(SearchNode node) {
+        LinkedList<GroundAction> plan = new LinkedList<>();
+
+        for (SearchNode current = node; current.parent != null; current = current.parent) {
+            plan.addFirst(current.action);
+        }
+
+        return Collections.unmodifiableList(plan);
+    }
+}
@@ -0,0 +1,120 @@
+/*
+ * ExperimentManifest.java
+ *
+ * Copyright (C) 2020 Vladislav Nikolov Vasilev
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see https://www.gnu.org/licenses/gpl-3.0.html.
+ */
+
+/**
+ * Package that contains the planning agent along with its data structures.
+ */
+package controller;
+
+import org.yaml.snakeyaml.Yaml;
+import org.yaml.snakeyaml.constructor.Constructor;
+
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedList;
+import java.util.List;
+
+/**
+ * Class that contains the description of a set of experiments. It is loaded from
+ * a YAML file. Each experiment plays some levels of a game with a configuration
+ * of the agent under several random seeds.
+ *
+ * @author Vladislav Nikolov Vasilev
+ */
+public class ExperimentManifest {
+    /**
+     * Placeholder of the configuration file's path replaced by the level.
+     */
+    public static final String LEVEL_PLACEHOLDER = "{level}";
+
+    public int workers;
+    public int timeout;
+    public LinkedList<Experiment> experiments;
+
+    public ExperimentManifest() {
+    }
+
+    /**
+     * Class that contains the description of an experiment.
+     */
+    public static class Experiment {
+        public String name;
+        public int game;
+        public ArrayList<Integer> levels;
+        public String config;
+        public ArrayList<Integer> seeds;
+        public ArrayList<String> options;
+
+        public Experiment() {
+        }
+    }
+
+    /**
+     * Method that loads a manifest from a YAML file.
+     *
+     * @param path Path of the YAML file.
+     * @return Returns the manifest.
+     * @throws IOException Thrown when the file can't be read.
+     */
+    public static ExperimentManifest load(String path) throws IOException {
+        Yaml yaml = new Yaml(new Constructor(ExperimentManifest.class));
+
+        try (InputStream inputStream = new FileInputStream(path)) {
+            return yaml.load(inputStream);
+        }
+    }
+
+    /**
+     * Method that returns the runs of the experiments: one for each level and
+     * seed of every experiment. The configuration file's path can contain the
+     * placeholder {level}, which is replaced by the index of the level. The
+     * experiments without a name are named after their options.
+     *
+     * @param games Games that can be played, as read by {@link tools.Utils#readGames}.
+     * @return Returns the runs in the order in which they are described.
+     */
+    public List<ExperimentRun> getRuns(String[][] games) {
+        List<ExperimentRun> runs = new ArrayList<>();
+
+        if (this.experiments == null) {
+            return runs;
+        }
+
+        for (Experiment experiment : this.experiments) {
+            List<String> options = experiment.options != null ? experiment.options : Collections.emptyList();
+            String name = experiment.name != null ? experiment.name
+                    : options.isEmpty() ? "default" : String.join(" ", options);
+
+            for (int level : experiment.levels) {
+                String config = experiment.config.replace(ExperimentManifest.LEVEL_PLACEHOLDER,
+                        String.valueOf(level));
+
+                for (int seed : experiment.seeds) {
+                    runs.add(new ExperimentRun(name, experiment.game, games[experiment.game][1], level, config, seed,
+                            options));
+                }
+            }
+        }
+
+        return runs;
+    }
+}
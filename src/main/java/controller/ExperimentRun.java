@@ -0,0 +1,178 @@
+/*
+ * ExperimentRun.java
+ *
+ * Copyright (C) 2020 Vladislav Nikolov Vasilev
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see https://www.gnu.org/licenses/gpl-3.0.html.
+ */
+
+/**
+ * Package that contains the planning agent along with its data structures.
+ */
+package controller;
+
+import kong.unirest.json.JSONObject;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Class that represents a game of an experiment: the level of a game played
+ * with a configuration, a random seed and the options of the agent.
+ *
+ * @author Vladislav Nikolov Vasilev
+ */
+public class ExperimentRun {
+    private final String experiment;
+    private final int game;
+    private final String gameName;
+    private final int level;
+    private final String config;
+    private final int seed;
+    private final List<String> options;
+
+    /**
+     * Class constructor.
+     *
+     * @param experiment Name of the experiment.
+     * @param game       Index of the game in the list of games.
+     * @param gameName   Name of the game.
+     * @param level      Index of the level.
+     * @param config     Path of the YAML configuration file of the agent.
+     * @param seed       Random seed of the game.
+     * @param options    Command line options of the agent.
+     */
+    public ExperimentRun(String experiment, int game, String gameName, int level, String config, int seed,
+                         List<String> options) {
+        this.experiment = experiment;
+        this.game = game;
+        this.gameName = gameName;
+        this.level = level;
+        this.config = config;
+        this.seed = seed;
+        this.options = new ArrayList<>(options);
+    }
+
+    public String getExperiment() {
+        return this.experiment;
+    }
+
+    public int getGame() {
+        return this.game;
+    }
+
+    public String getGameName() {
+        return this.gameName;
+    }
+
+    public int getLevel() {
+        return this.level;
+    }
+
+    public String getConfig() {
+        return this.config;
+    }
+
+    public int getSeed() {
+        return this.seed;
+    }
+
+    public List<String> getOptions() {
+        return this.options;
+    }
+
+    /**
+     * Method that returns the key that identifies the run. The results of the
+     * runs are looked up by this key when an experiment is resumed.
+     *
+     * @return Returns the key of the run.
+     */
+    public String getKey() {
+        return ExperimentRun.createKey(this.experiment, this.game, this.level, this.config, this.seed);
+    }
+
+    /**
+     * Method that returns the key of the group of the run. The runs that only
+     * differ in their seeds belong to the same group, whose results are
+     * aggregated.
+     *
+     * @return Returns the key of the group.
+     */
+    public String getGroupKey() {
+        return String.join("|", this.experiment, String.valueOf(this.game), String.valueOf(this.level),
+                this.config);
+    }
+
+    /**
+     * Method that returns the name of the directory in which the output of the
+     * run is saved.
+     *
+     * @return Returns the name of the directory.
+     */
+    public String getDirectoryName() {
+        String name = String.format("%s_%s_lvl%d_seed%d", this.experiment, this.gameName, this.level, this.seed);
+
+        return name.replaceAll("[^A-Za-z0-9._-]", "_");
+    }
+
+    /**
+     * Method that returns the run as a JSON object.
+     *
+     * @return Returns a JSON object with the fields of the run.
+     */
+    public JSONObject toJSON() {
+        JSONObject json = new JSONObject();
+        json.put("experiment", this.experiment);
+        json.put("game", this.game);
+        json.put("gameName", this.gameName);
+        json.put("level", this.level);
+        json.put("config", this.config);
+        json.put("seed", this.seed);
+        json.put("options", this.options);
+
+        return json;
+    }
+
+    /**
+     * Method that returns the key of the run saved in a JSON object returned by
+     * {@link #toJSON()}.
+     *
+     * @param json JSON object with the fields of the run.
+     * @return Returns the key of the run.
+     */
+    public static String getKey(JSONObject json) {
+        return ExperimentRun.createKey(json.getString("experiment"), json.getInt("game"), json.getInt("level"),
+                json.getString("config"), json.getInt("seed"));
+    }
+
+    /**
+     * Method that creates the key of a run from its fields.
+     *
+     * @param experiment Name of the experiment.
+     * @param game       Index of the game.
+     * @param level      Index of the level.
+     * @param config     Path of the configuration file of the agent.
+     * @param seed       Random seed of the game.
+     * @return Returns the key of the run.
+     */
+    private static String createKey(String experiment, int game, int level, String config, int seed) {
+        return String.join("|", experiment, String.valueOf(game), String.valueOf(level), config,
+                String.valueOf(seed));
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s %s lvl%d seed %d", this.experiment, this.gameName, this.level, this.seed);
+    }
+}
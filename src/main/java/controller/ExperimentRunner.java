@@ -0,0 +1,446 @@
+/*
+ * ExperimentRunner.java
+ *
+ * Copyright (C) 2020 Vladislav Nikolov Vasilev
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see https://www.gnu.org/licenses/gpl-3.0.html.
+ */
+
+/**
+ * Package that contains the planning agent along with its data structures.
+ */
+package controller;
+
+import kong.unirest.json.JSONArray;
+import kong.unirest.json.JSONException;
+import kong.unirest.json.JSONObject;
+import tools.Utils;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Class that plays the runs of a set of experiments and aggregates their
+ * results. The GVGAI framework keeps its registries in static fields, so each
+ * game is played headless in its own JVM. The games are played by a pool of
+ * workers, which by default has as many workers as available processors.
+ * <p>
+ * The result of each run is appended to the file runs.jsonl as soon as the
+ * game finishes. When the experiments are run again with the same output
+ * directory, the runs whose results are already in that file are skipped, so
+ * long sweeps can be stopped and resumed. Once every run has finished, the
+ * results of the runs that only differ in their seeds are aggregated and saved
+ * in the files summary.csv and summary.json.
+ *
+ * @author Vladislav Nikolov Vasilev
+ */
+public class ExperimentRunner {
+    /**
+     * Default directory in which the results of the experiments are saved.
+     */
+    public static final String DEFAULT_OUTPUT_DIRECTORY = "output/experiments";
+
+    /**
+     * File that contains the games that can be played.
+     */
+    public static final String GAMES_FILE = "examples/all_games_sp.csv";
+
+    // Class that plays a single game with the planning agent
+    private static final String GAME_LAUNCHER = "tracks.singlePlayer.Test";
+
+    private final List<ExperimentRun> runs;
+    private final Path outputDirectory;
+    private final int workers;
+    private final int timeout;
+
+    // Results of the runs indexed by their keys and counters of the current execution
+    private final Map<String, JSONObject> results;
+    private int finishedRuns;
+    private int failedRuns;
+    private int skippedRuns;
+
+    /**
+     * Class constructor.
+     *
+     * @param runs            Runs of the experiments.
+     * @param outputDirectory Directory in which the results are saved.
+     * @param workers         Number of games played at the same time (0 uses the
+     *                        number of available processors).
+     * @param timeout         Maximum time in seconds of a game (0 means no limit).
+     */
+    public ExperimentRunner(List<ExperimentRun> runs, String outputDirectory, int workers, int timeout) {
+        this.runs = new ArrayList<>(runs);
+        this.outputDirectory = Paths.get(outputDirectory);
+        this.workers = workers > 0 ? workers : Runtime.getRuntime().availableProcessors();
+        this.timeout = timeout;
+        this.results = new HashMap<>();
+    }
+
+    /**
+     * Class constructor. Creates a runner for the experiments of a manifest.
+     *
+     * @param manifest        Manifest of the experiments.
+     * @param outputDirectory Directory in which the results are saved.
+     */
+    public ExperimentRunner(ExperimentManifest manifest, String outputDirectory) {
+        this(manifest.getRuns(Utils.readGames(ExperimentRunner.GAMES_FILE)), outputDirectory, manifest.workers,
+                manifest.timeout);
+    }
+
+    public int getWorkers() {
+        return this.workers;
+    }
+
+    public synchronized int getFinishedRuns() {
+        return this.finishedRuns;
+    }
+
+    public synchronized int getFailedRuns() {
+        return this.failedRuns;
+    }
+
+    public synchronized int getSkippedRuns() {
+        return this.skippedRuns;
+    }
+
+    /**
+     * Method that plays the runs whose results haven't been saved yet and
+     * aggregates the results of every run.
+     *
+     * @return Returns the aggregated statistics of each group of runs, indexed by
+     * its first run and in the order of the runs.
+     * @throws IOException          Thrown when the results can't be read or saved.
+     * @throws InterruptedException Thrown when the runner is interrupted while it
+     *                              waits for the games.
+     */
+    public Map<ExperimentRun, AgentStatistics> run() throws IOException, InterruptedException {
+        Files.createDirectories(this.outputDirectory);
+        Path resultsFile = this.outputDirectory.resolve("runs.jsonl");
+        this.readResults(resultsFile);
+
+        List<ExperimentRun> pendingRuns = new ArrayList<>();
+
+        for (ExperimentRun run : this.runs) {
+            if (!this.results.containsKey(run.getKey())) {
+                pendingRuns.add(run);
+            }
+        }
+
+        synchronized (this) {
+            this.skippedRuns = this.runs.size() - pendingRuns.size();
+        }
+
+        // Each worker waits for the JVM that plays its game and appends the result as soon as it finishes
+        ExecutorService pool = Executors.newFixedThreadPool(this.workers);
+
+        try (BufferedWriter writer = Files.newBufferedWriter(resultsFile, StandardCharsets.UTF_8,
+                StandardOpenOption.CREATE, StandardOpenOption.APPEND)) {
+            for (ExperimentRun run : pendingRuns) {
+                pool.execute(() -> this.playRun(run, writer, pendingRuns.size()));
+            }
+
+            pool.shutdown();
+            pool.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+        } finally {
+            pool.shutdownNow();
+        }
+
+        Map<ExperimentRun, AgentStatistics> summary = this.aggregateResults();
+        this.writeSummary(summary);
+
+        return summary;
+    }
+
+    /**
+     * Method that plays a run and saves its result.
+     *
+     * @param run       Run to be played.
+     * @param writer    Writer of the results file.
+     * @param totalRuns Number of runs played in this execution.
+     */
+    private void playRun(ExperimentRun run, BufferedWriter writer, int totalRuns) {
+        AgentStatistics statistics;
+
+        try {
+            statistics = this.playGame(run);
+        } catch (IOException e) {
+            statistics = null;
+            System.err.println(String.format("Couldn't play %s: %s", run, e.getMessage()));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return;
+        }
+
+        synchronized (this) {
+            this.finishedRuns++;
+
+            if (statistics == null) {
+                this.failedRuns++;
+                System.out.println(String.format("[%d/%d] %s failed (see %s)", this.finishedRuns, totalRuns, run,
+                        this.getRunDirectory(run).resolve("game.log")));
+                return;
+            }
+
+            JSONObject result = run.toJSON();
+            result.put("statistics", statistics.toJSON());
+            this.results.put(run.getKey(), result);
+
+            try {
+                writer.write(result.toString());
+                writer.newLine();
+                writer.flush();
+            } catch (IOException e) {
+                System.err.println(String.format("Couldn't save the result of %s: %s", run, e.getMessage()));
+            }
+
+            System.out.println(String.format("[%d/%d] %s: %s, score %.1f, %d ticks, %d planner calls",
+                    this.finishedRuns, totalRuns, run, statistics.getWins() > 0 ? "won" : "lost",
+                    statistics.getScore(), statistics.getTicks(), statistics.getPlannerCalls()));
+        }
+    }
+
+    /**
+     * Method that plays the game of a run in a new JVM. The output of the game
+     * and the information saved by the agent are stored in the directory of the
+     * run.
+     *
+     * @param run Run to be played.
+     * @return Returns the statistics of the game or null if the game hasn't
+     * finished.
+     * @throws IOException          Thrown when the JVM can't be started.
+     * @throws InterruptedException Thrown when the worker is interrupted while it
+     *                              waits for the game.
+     */
+    protected AgentStatistics playGame(ExperimentRun run) throws IOException, InterruptedException {
+        Path runDirectory = this.getRunDirectory(run);
+        Path statisticsFile = runDirectory.resolve("statistics.json");
+        Files.createDirectories(runDirectory);
+        Files.deleteIfExists(statisticsFile);
+
+        List<String> command = new ArrayList<>(Arrays.asList(
+                Paths.get(System.getProperty("java.home"), "bin", "java").toString(),
+                "-cp", System.getProperty("java.class.path"),
+                ExperimentRunner.GAME_LAUNCHER,
+                "-g", String.valueOf(run.getGame()),
+                "-l", String.valueOf(run.getLevel()),
+                "-c", run.getConfig(),
+                "--seed", String.valueOf(run.getSeed()),
+                "--headless",
+                "--output-dir", runDirectory.toString(),
+                "--statistics", statisticsFile.toString()));
+        command.addAll(run.getOptions());
+
+        Process process = new ProcessBuilder(command)
+                .redirectErrorStream(true)
+                .redirectOutput(runDirectory.resolve("game.log").toFile())
+                .start();
+
+        try {
+            if (this.timeout > 0) {
+                process.waitFor(this.timeout, TimeUnit.SECONDS);
+            } else {
+                process.waitFor();
+            }
+        } finally {
+            process.destroyForcibly();
+        }
+
+        // The statistics are written once the game is over, even if the JVM doesn't exit by itself
+        if (!Files.exists(statisticsFile)) {
+            return null;
+        }
+
+        try {
+            return AgentStatistics.fromJSON(new JSONObject(
+                    new String(Files.readAllBytes(statisticsFile), StandardCharsets.UTF_8)));
+        } catch (JSONException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Method that returns the directory in which the output of a run is saved.
+     *
+     * @param run Run.
+     * @return Returns the path of the directory.
+     */
+    protected Path getRunDirectory(ExperimentRun run) {
+        return this.outputDirectory.resolve("runs").resolve(run.getDirectoryName());
+    }
+
+    /**
+     * Method that reads the results saved by previous executions. Lines that
+     * can't be parsed, like a line that was being written when the runner was
+     * stopped, are ignored.
+     *
+     * @param resultsFile Path of the results file.
+     * @throws IOException Thrown when the file can't be read.
+     */
+    private void readResults(Path resultsFile) throws IOException {
+        if (!Files.exists(resultsFile)) {
+            return;
+        }
+
+        for (String line : Files.readAllLines(resultsFile, StandardCharsets.UTF_8)) {
+            try {
+                JSONObject result = new JSONObject(line);
+                this.results.put(ExperimentRun.getKey(result), result);
+            } catch (JSONException e) {
+                // Incomplete result
+            }
+        }
+
+        // Make sure that the next result starts in a new line
+        try (RandomAccessFile file = new RandomAccessFile(resultsFile.toFile(), "rw")) {
+            if (file.length() > 0) {
+                file.seek(file.length() - 1);
+
+                if (file.read() != '\n') {
+                    file.write('\n');
+                }
+            }
+        }
+    }
+
+    /**
+     * Method that adds up the results of the runs that only differ in their
+     * seeds. The runs that have failed are left out.
+     *
+     * @return Returns the aggregated statistics of each group of runs.
+     */
+    private Map<ExperimentRun, AgentStatistics> aggregateResults() {
+        Map<String, ExperimentRun> groups = new HashMap<>();
+        Map<ExperimentRun, AgentStatistics> summary = new LinkedHashMap<>();
+
+        for (ExperimentRun run : this.runs) {
+            JSONObject result = this.results.get(run.getKey());
+
+            if (result != null) {
+                ExperimentRun group = groups.computeIfAbsent(run.getGroupKey(), key -> run);
+                summary.computeIfAbsent(group, key -> new AgentStatistics())
+                        .add(AgentStatistics.fromJSON(result.getJSONObject("statistics")));
+            }
+        }
+
+        return summary;
+    }
+
+    /**
+     * Method that saves the aggregated results in the files summary.csv and
+     * summary.json, and the metrics of each group in metrics.csv. The averages
+     * are computed over the runs of each group.
+     *
+     * @param summary Aggregated statistics of each group of runs.
+     * @throws IOException Thrown when the files can't be written.
+     */
+    private void writeSummary(Map<ExperimentRun, AgentStatistics> summary) throws IOException {
+        List<String> lines = new ArrayList<>();
+        lines.add("experiment,game,level,config,runs,wins,win_rate,mean_score,mean_ticks,mean_planner_calls,"
+                + "mean_discrepancies,mean_planning_time,mean_execution_time");
+        List<String> metricLines = new ArrayList<>();
+        metricLines.add("experiment,game,level,config," + AgentMetrics.CSV_HEADER);
+        JSONArray groups = new JSONArray();
+
+        summary.forEach((run, statistics) -> {
+            int games = statistics.getGames();
+            String prefix = String.join(",", ExperimentRunner.escapeCsv(run.getExperiment()), run.getGameName(),
+                    String.valueOf(run.getLevel()), ExperimentRunner.escapeCsv(run.getConfig()));
+            statistics.getMetrics().toCSV().forEach(line -> metricLines.add(prefix + "," + line));
+            lines.add(String.join(",", ExperimentRunner.escapeCsv(run.getExperiment()), run.getGameName(),
+                    String.valueOf(run.getLevel()), ExperimentRunner.escapeCsv(run.getConfig()),
+                    String.valueOf(games), String.valueOf(statistics.getWins()),
+                    ExperimentRunner.format((double) statistics.getWins() / games),
+                    ExperimentRunner.format(statistics.getScore() / games),
+                    ExperimentRunner.format((double) statistics.getTicks() / games),
+                    ExperimentRunner.format((double) statistics.getPlannerCalls() / games),
+                    ExperimentRunner.format((double) statistics.getDiscrepancies() / games),
+                    ExperimentRunner.format((double) statistics.getPlanningTime() / games),
+                    ExperimentRunner.format((double) statistics.getExecutionTime() / games)));
+
+            JSONObject group = run.toJSON();
+            group.remove("seed");
+            group.put("runs", games);
+            group.put("winRate", (double) statistics.getWins() / games);
+            group.put("statistics", statistics.toJSON());
+            groups.put(group);
+        });
+
+        Files.write(this.outputDirectory.resolve("summary.csv"), lines, StandardCharsets.UTF_8);
+        Files.write(this.outputDirectory.resolve("metrics.csv"), metricLines, StandardCharsets.UTF_8);
+        Files.write(this.outputDirectory.resolve("summary.json"),
+                groups.toString(2).getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Method that quotes a CSV field if it contains commas or quotes.
+     *
+     * @param field Field.
+     * @return Returns the escaped field.
+     */
+    private static String escapeCsv(String field) {
+        return field.contains(",") || field.contains("\"") ? "\"" + field.replace("\"", "\"\"") + "\"" : field;
+    }
+
+    /**
+     * Method that formats a number of the summary with three decimals.
+     *
+     * @param value Number.
+     * @return Returns the formatted number.
+     */
+    private static String format(double value) {
+        return String.format(Locale.ROOT, "%.3f", value);
+    }
+
+    /**
+     * Method that runs the experiments described by a manifest. The first
+     * argument is the path of the manifest and the optional second one is the
+     * directory in which the results are saved (output/experiments by default).
+     *
+     * @param args Command line arguments.
+     * @throws IOException          Thrown when the manifest can't be read or the
+     *                              results can't be saved.
+     * @throws InterruptedException Thrown when the runner is interrupted.
+     */
+    public static void main(String[] args) throws IOException, InterruptedException {
+        if (args.length < 1) {
+            System.err.println("Usage: ExperimentRunner <manifest> [output directory]");
+            System.exit(1);
+        }
+
+        String outputDirectory = args.length > 1 ? args[1] : ExperimentRunner.DEFAULT_OUTPUT_DIRECTORY;
+        ExperimentRunner runner = new ExperimentRunner(ExperimentManifest.load(args[0]), outputDirectory);
+        System.out.println(String.format("Playing %d runs with %d workers", runner.runs.size(), runner.getWorkers()));
+
+        Map<ExperimentRun, AgentStatistics> summary = runner.run();
+
+        System.out.println(String.format("\n%d runs played (%d failed), %d skipped because they had already been "
+                + "played", runner.getFinishedRuns(), runner.getFailedRuns(), runner.getSkippedRuns()));
+        summary.forEach((run, statistics) -> System.out.println(String.format(
+                "%s %s lvl%d: %d/%d wins, mean score %.2f, mean ticks %.1f", run.getExperiment(), run.getGameName(),
+                run.getLevel(), statistics.getWins(), statistics.getGames(),
+                statistics.getScore() / statistics.getGames(),
+                (double) statistics.getTicks() / statistics.getGames())));
+        System.out.println(String.format("Results saved in %s", runner.outputDirectory));
+    }
+}
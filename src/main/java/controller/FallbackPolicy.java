@@ -0,0 +1,51 @@
+/*
+ * FallbackPolicy.java
+ *
+ * Copyright (C) 2020 Vladislav Nikolov Vasilev
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see https://www.gnu.org/licenses/gpl-3.0.html.
+ */
+
+/**
+ * Package that contains the planning agent along with its data structures.
+ */
+package controller;
+
+import core.game.StateObservation;
+import ontology.Types;
+
+/**
+ * Interface implemented by the policies that choose the action executed by
+ * the {@link PlanningAgent} while it is waiting for the planner. A policy
+ * must return before the given deadline expires.
+ *
+ * @author Vladislav Nikolov Vasilev
+ */
+public interface FallbackPolicy {
+    /**
+     * Method that chooses the action executed in the current turn.
+     *
+     * @param stateObservation State observation of the game.
+     * @param deadline         Deadline before which the action must be chosen.
+     * @return Returns the action to be executed.
+     */
+    Types.ACTIONS act(StateObservation stateObservation, PlanningDeadline deadline);
+
+    /**
+     * Method that returns the name of the policy, which is used in logs.
+     *
+     * @return Returns the name of the policy.
+     */
+    String getName();
+}
@@ -46,6 +46,9 @@ public class GameInformation {
     public Map<Position, String> connections;
     public Map<String, Types.ACTIONS> actionsCorrespondence;
     public LinkedList<PDDLSingleGoal> goals;
+    public String planner;
+    public ArrayList<String> plannerCommand;
+    public ArrayList<String> portfolio;
 
     public GameInformation() {
     }
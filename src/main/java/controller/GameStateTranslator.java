@@ -0,0 +1,399 @@
+/*
+ * GameStateTranslator.java
+ *
+ * Copyright (C) 2020 Vladislav Nikolov Vasilev
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see https://www.gnu.org/licenses/gpl-3.0.html.
+ */
+
+/**
+ * Package that contains the planning agent along with its data structures.
+ */
+package controller;
+
+import core.game.Observation;
+import core.game.StateObservation;
+import core.vgdl.VGDLRegistry;
+import tools.Pair;
+import tools.Vector2d;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Class that translates game states into PDDL predicates and objects
+ * incrementally. The predicates and objects generated by each cell of the
+ * observation grid are cached along with the sprite types found in the cell,
+ * so only the cells whose content has changed since the last translation
+ * are instantiated again. The resulting predicates and objects are the same
+ * ones (and in the same order) as the ones generated by translating the whole
+ * grid.
+ * <p>
+ * The translator also maintains the game state as a bitset of atoms
+ * interned in an {@link AtomTable}, so that predicates can be checked
+ * without comparing strings. It also keeps a table from sprite types (itype)
+ * to sprite names, which avoids searching the {@link VGDLRegistry} every time
+ * a sprite is found.
+ *
+ * @author Vladislav Nikolov Vasilev
+ */
+public class GameStateTranslator {
+    private GameInformation gameInformation;
+    private Map<String, Set<String>> gameElementVars;
+
+    // Table of atoms and game state represented as a bitset of atoms
+    private AtomTable atomTable;
+    private BitSet state;
+    private int[] connectionAtoms;
+
+    // Table from sprite types to sprite names
+    private String[] spriteNames;
+
+    // Cell objects and cached information of each cell
+    private String[][] cellObjects;
+    private int[][][] cellTypes;
+    private CellTranslation[][] cellTranslations;
+    private int numCellPredicates;
+
+    // Last known avatar orientation
+    private Position avatarOrientation;
+
+    // Buffer used to read the sprite types of a cell
+    private int[] typesBuffer;
+
+    /**
+     * Class that contains the predicates and objects generated by a cell.
+     */
+    private static class CellTranslation {
+        private List<String> predicates = new ArrayList<>();
+        private int[] atoms;
+        private List<Pair<String, String>> objects = new ArrayList<>();
+        private boolean dependsOnOrientation = false;
+    }
+
+    /**
+     * Class constructor.
+     *
+     * @param gameInformation Game information.
+     * @param gameElementVars Map from game elements to the variables that appear
+     *                        in their predicates.
+     * @param atomTable       Table in which the atoms of the game state are interned.
+     */
+    public GameStateTranslator(GameInformation gameInformation, Map<String, Set<String>> gameElementVars,
+                               AtomTable atomTable) {
+        this.gameInformation = gameInformation;
+        this.gameElementVars = gameElementVars;
+        this.atomTable = atomTable;
+        this.state = new BitSet();
+        this.spriteNames = new String[0];
+        this.typesBuffer = new int[8];
+    }
+
+    public AtomTable getAtomTable() {
+        return this.atomTable;
+    }
+
+    /**
+     * Method that returns the game state of the last translation. Its bits are
+     * the indices of the atoms that hold.
+     *
+     * @return Returns the game state as a bitset.
+     */
+    public BitSet getState() {
+        return this.state;
+    }
+
+    /**
+     * Method that returns the name of a sprite type.
+     *
+     * @param itype Sprite type.
+     * @return Returns the name of the sprite type or null if it isn't registered.
+     */
+    public String getSpriteName(int itype) {
+        if (itype >= this.spriteNames.length) {
+            // Build the table again, since new sprite types have been registered
+            VGDLRegistry registry = VGDLRegistry.GetInstance();
+            String[] names = new String[Math.max(itype + 1, registry.numSpriteTypes())];
+
+            for (int i = 0; i < names.length; i++) {
+                names[i] = registry.getRegisteredSpriteKey(i);
+            }
+
+            this.spriteNames = names;
+        }
+
+        return itype >= 0 ? this.spriteNames[itype] : null;
+    }
+
+    /**
+     * Method that translates a game state. The list of predicates and the
+     * sets of objects are updated so that they represent the new game state.
+     * They must only be modified by this translator. The bitset state is
+     * updated as well.
+     *
+     * @param stateObservation State observation of the game.
+     * @param predicates       List of predicates of the game state.
+     * @param objects          Map from variables to the objects of the game state.
+     * @param connections      Connection predicates, which are added after the
+     *                         predicates of the cells.
+     * @param savedGoals       Reached goals that are added at the end of the predicates.
+     * @return Returns the number of cells that have been translated again.
+     */
+    public int translate(StateObservation stateObservation, List<String> predicates,
+                         Map<String, Set<String>> objects, Set<String> connections, List<String> savedGoals) {
+        ArrayList<Observation>[][] grid = stateObservation.getObservationGrid();
+        final int X_MAX = grid.length, Y_MAX = grid[0].length;
+
+        // Reset cached information if the grid has changed its dimensions
+        if (this.cellTranslations == null || this.cellTranslations.length != X_MAX
+                || this.cellTranslations[0].length != Y_MAX) {
+            this.initializeCells(X_MAX, Y_MAX);
+        }
+
+        if (this.connectionAtoms == null || this.connectionAtoms.length != connections.size()) {
+            this.connectionAtoms = this.atomTable.intern(new ArrayList<>(connections));
+        }
+
+        Position orientation = this.gameInformation.orientationCorrespondence != null
+                ? this.getAvatarOrientation(stateObservation) : null;
+        boolean changedOrientation = orientation != this.avatarOrientation;
+        this.avatarOrientation = orientation;
+
+        int changedCells = 0;
+
+        for (int y = 0; y < Y_MAX; y++) {
+            for (int x = 0; x < X_MAX; x++) {
+                CellTranslation translation = this.cellTranslations[x][y];
+                boolean changedTypes = this.updateCellTypes(grid[x][y], x, y);
+
+                if (translation == null || changedTypes || (changedOrientation && translation.dependsOnOrientation)) {
+                    this.cellTranslations[x][y] = this.translateCell(x, y);
+                    changedCells++;
+                }
+            }
+        }
+
+        if (changedCells > 0) {
+            // Rebuild the predicates and objects keeping the order of the cells
+            predicates.clear();
+            objects.values().forEach(Set::clear);
+
+            for (int y = 0; y < Y_MAX; y++) {
+                for (int x = 0; x < X_MAX; x++) {
+                    CellTranslation translation = this.cellTranslations[x][y];
+
+                    predicates.addAll(translation.predicates);
+                    translation.objects.forEach(object -> objects.get(object.first).add(object.second));
+                    objects.get(this.gameInformation.cellVariable).add(this.cellObjects[x][y]);
+                }
+            }
+
+            this.numCellPredicates = predicates.size();
+            predicates.addAll(connections);
+        } else {
+            // Only the saved goals might have changed
+            predicates.subList(this.numCellPredicates + connections.size(), predicates.size()).clear();
+        }
+
+        predicates.addAll(savedGoals);
+
+        // Update the bitset state
+        this.state.clear();
+
+        for (int y = 0; y < Y_MAX; y++) {
+            for (int x = 0; x < X_MAX; x++) {
+                for (int atom : this.cellTranslations[x][y].atoms) {
+                    this.state.set(atom);
+                }
+            }
+        }
+
+        for (int atom : this.connectionAtoms) {
+            this.state.set(atom);
+        }
+
+        for (String goal : savedGoals) {
+            this.state.set(this.atomTable.intern(goal));
+        }
+
+        return changedCells;
+    }
+
+    /**
+     * Method that initializes the cached information of the cells.
+     *
+     * @param xMax Number of cells in the X axis.
+     * @param yMax Number of cells in the Y axis.
+     */
+    private void initializeCells(int xMax, int yMax) {
+        this.cellObjects = new String[xMax][yMax];
+        this.cellTypes = new int[xMax][yMax][];
+        this.cellTranslations = new CellTranslation[xMax][yMax];
+
+        for (int y = 0; y < yMax; y++) {
+            for (int x = 0; x < xMax; x++) {
+                this.cellObjects[x][y] = String.format("%s_%d_%d", this.gameInformation.cellVariable, x, y)
+                        .replace("?", "");
+            }
+        }
+    }
+
+    /**
+     * Method that updates the sprite types found in a cell.
+     *
+     * @param observations Observations of the cell.
+     * @param x            X coordinate of the cell.
+     * @param y            Y coordinate of the cell.
+     * @return Returns true if the set of sprite types of the cell has changed
+     * and false otherwise.
+     */
+    private boolean updateCellTypes(List<Observation> observations, int x, int y) {
+        if (this.typesBuffer.length < observations.size()) {
+            this.typesBuffer = new int[observations.size() * 2];
+        }
+
+        // Read the sorted set of sprite types of the cell
+        int numTypes = 0;
+
+        for (Observation observation : observations) {
+            int i = numTypes;
+
+            while (i > 0 && this.typesBuffer[i - 1] > observation.itype) {
+                i--;
+            }
+
+            if (i > 0 && this.typesBuffer[i - 1] == observation.itype) {
+                continue;
+            }
+
+            System.arraycopy(this.typesBuffer, i, this.typesBuffer, i + 1, numTypes - i);
+            this.typesBuffer[i] = observation.itype;
+            numTypes++;
+        }
+
+        int[] previousTypes = this.cellTypes[x][y];
+
+        if (previousTypes != null && previousTypes.length == numTypes) {
+            int i = 0;
+
+            while (i < numTypes && previousTypes[i] == this.typesBuffer[i]) {
+                i++;
+            }
+
+            if (i == numTypes) {
+                return false;
+            }
+        }
+
+        this.cellTypes[x][y] = Arrays.copyOf(this.typesBuffer, numTypes);
+
+        return true;
+    }
+
+    /**
+     * Method that instantiates the predicates and objects of a cell from its
+     * sprite types. Cells without sprites are considered to contain the
+     * "background" element.
+     *
+     * @param x X coordinate of the cell.
+     * @param y Y coordinate of the cell.
+     * @return Returns the translation of the cell.
+     */
+    private CellTranslation translateCell(int x, int y) {
+        CellTranslation translation = new CellTranslation();
+        Set<String> cellElements = new HashSet<>();
+
+        for (int itype : this.cellTypes[x][y]) {
+            cellElements.add(this.getSpriteName(itype));
+        }
+
+        if (cellElements.isEmpty()) {
+            cellElements.add("background");
+        }
+
+        for (String cellElement : cellElements) {
+            // If the element is in the domain, instantiate its predicates
+            if (!this.gameInformation.gameElementsCorrespondence.containsKey(cellElement)) {
+                continue;
+            }
+
+            for (String predicate : this.gameInformation.gameElementsCorrespondence.get(cellElement)) {
+                String predicateInstance = predicate;
+
+                // Iterate over all the variables associated to the game element and
+                // instantiate those who appear in the predicate
+                for (String variable : this.gameElementVars.get(cellElement)) {
+                    if (predicate.contains(variable)) {
+                        String variableInstance;
+
+                        if (variable.equals(this.gameInformation.avatarVariable)) {
+                            variableInstance = variable.replace("?", "");
+
+                            // If orientations are being used, add predicate associated
+                            // to the player's orientation
+                            if (this.gameInformation.orientationCorrespondence != null) {
+                                translation.predicates.add(this.gameInformation.orientationCorrespondence
+                                        .get(this.avatarOrientation)
+                                        .replace(variable, variableInstance));
+                                translation.dependsOnOrientation = true;
+                            }
+                        } else {
+                            variableInstance = String.format("%s_%d_%d", variable, x, y).replace("?", "");
+                        }
+
+                        // Add instantiated variables to the predicate
+                        predicateInstance = predicateInstance.replace(variable, variableInstance);
+
+                        // Save instantiated variable
+                        translation.objects.add(new Pair<>(variable, variableInstance));
+                    }
+                }
+
+                // Save instantiated predicate
+                translation.predicates.add(predicateInstance);
+            }
+        }
+
+        translation.atoms = this.atomTable.intern(translation.predicates);
+
+        return translation;
+    }
+
+    /**
+     * Method that obtains the orientation of the avatar.
+     *
+     * @param stateObservation State observation of the game.
+     * @return Returns the orientation of the avatar or null if it has no orientation.
+     */
+    private Position getAvatarOrientation(StateObservation stateObservation) {
+        Vector2d avatarOrientation = stateObservation.getAvatarOrientation();
+
+        if (avatarOrientation.x == 1.0) {
+            return Position.RIGHT;
+        } else if (avatarOrientation.x == -1.0) {
+            return Position.LEFT;
+        } else if (avatarOrientation.y == 1.0) {
+            return Position.DOWN;
+        } else if (avatarOrientation.y == -1.0) {
+            return Position.UP;
+        }
+
+        return null;
+    }
+}
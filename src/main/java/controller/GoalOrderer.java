@@ -0,0 +1,355 @@
+/*
+ * GoalOrderer.java
+ *
+ * Copyright (C) 2020 Vladislav Nikolov Vasilev
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see https://www.gnu.org/licenses/gpl-3.0.html.
+ */
+
+/**
+ * Package that contains the planning agent along with its data structures.
+ */
+package controller;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Class that orders the goals with the same priority so the avatar walks as
+ * little as possible between them. The goals are located in the cells of the
+ * objects they refer to, and the distances between cells are computed by
+ * breadth-first search over the cells that can be entered according to the
+ * static preconditions of the movements of the domain (see
+ * {@link ProblemPruner#findMovementGraph}). The goals are visited in a tour
+ * that starts in the avatar's cell, built by choosing the nearest goal each
+ * time and, optionally, improved with 2-opt moves (reversing a section of the
+ * tour) and or-opt moves (moving a section of up to three goals elsewhere).
+ * <p>
+ * Goals that can't be located, like exiting the level, keep their positions
+ * among the goals with the same priority.
+ *
+ * @author Vladislav Nikolov Vasilev
+ */
+public class GoalOrderer {
+    /**
+     * Name of the ordering that visits the nearest goal each time.
+     */
+    public static final String NEAREST_NEIGHBOUR = "nearest";
+
+    /**
+     * Name of the ordering that improves the nearest neighbour tour with 2-opt and or-opt moves.
+     */
+    public static final String TWO_OPT = "2-opt";
+
+    // Distance to the cells that can't be reached, which makes them the last ones of the tours
+    private static final int UNREACHABLE = Integer.MAX_VALUE / 4;
+
+    private final ProblemPruner movements;
+    private final boolean twoOpt;
+
+    /**
+     * Class constructor.
+     *
+     * @param domain Domain from which the movements are extracted.
+     * @param name   Name of the ordering (nearest or 2-opt).
+     * @throws PlannerException Thrown when the name of the ordering is unknown.
+     */
+    public GoalOrderer(PDDLDomain domain, String name) throws PlannerException {
+        if (!name.equals(GoalOrderer.NEAREST_NEIGHBOUR) && !name.equals(GoalOrderer.TWO_OPT)) {
+            throw new PlannerException(String.format("Unknown goal ordering: %s", name));
+        }
+
+        this.movements = new ProblemPruner(domain);
+        this.twoOpt = name.equals(GoalOrderer.TWO_OPT);
+    }
+
+    /**
+     * Method that orders a list of goals sorted by priority. The tour of each
+     * priority starts where the tour of the previous one ends, and 2-opt moves
+     * also take into account the distance to the first goal of the next
+     * priorities that can be located.
+     *
+     * @param goals  Goals sorted by priority.
+     * @param avatar Name of the avatar's object.
+     * @param init   Predicates of the current state.
+     * @return Returns the goals in the new order, which are the given ones if the
+     * avatar can't be located.
+     */
+    public List<PDDLSingleGoal> order(List<PDDLSingleGoal> goals, String avatar, Collection<String> init) {
+        Map<String, String> locations = this.movements.findLocations(init);
+        String current = locations.get(avatar.toLowerCase());
+
+        if (current == null) {
+            return new ArrayList<>(goals);
+        }
+
+        Map<String, Set<String>> graph = this.movements.findMovementGraph(init);
+        Map<String, Map<String, Integer>> distances = new HashMap<>();
+        List<PDDLSingleGoal> ordered = new ArrayList<>(goals);
+        int first = 0;
+
+        while (first < ordered.size()) {
+            // Goals with the same priority
+            int last = first;
+
+            while (last < ordered.size() && ordered.get(last).getPriority() == ordered.get(first).getPriority()) {
+                last++;
+            }
+
+            List<Integer> slots = new ArrayList<>();
+            List<PDDLSingleGoal> located = new ArrayList<>();
+            List<String> cells = new ArrayList<>();
+
+            for (int i = first; i < last; i++) {
+                String cell = GoalOrderer.locate(ordered.get(i).getGoalPredicate(), locations, graph);
+
+                if (cell != null) {
+                    slots.add(i);
+                    located.add(ordered.get(i));
+                    cells.add(cell);
+                }
+            }
+
+            if (!located.isEmpty()) {
+                String end = null;
+
+                for (int i = last; i < ordered.size() && end == null; i++) {
+                    end = GoalOrderer.locate(ordered.get(i).getGoalPredicate(), locations, graph);
+                }
+
+                List<Integer> tour = this.findTour(current, end, cells, graph, distances);
+
+                for (int i = 0; i < tour.size(); i++) {
+                    ordered.set(slots.get(i), located.get(tour.get(i)));
+                }
+
+                current = cells.get(tour.get(tour.size() - 1));
+            }
+
+            first = last;
+        }
+
+        return ordered;
+    }
+
+    /**
+     * Method that finds the cell of a goal: the cell of the first object of the
+     * goal that is located, or the first cell that appears in the goal.
+     *
+     * @param goal      Goal predicate.
+     * @param locations Map from each located object to its cell.
+     * @param graph     Movement graph.
+     * @return Returns the cell of the goal or null if it can't be located.
+     */
+    private static String locate(String goal, Map<String, String> locations, Map<String, Set<String>> graph) {
+        for (String token : goal.toLowerCase().replace("(", " ").replace(")", " ").trim().split("\\s+")) {
+            if (locations.containsKey(token)) {
+                return locations.get(token);
+            } else if (graph.containsKey(token)) {
+                return token;
+            }
+        }
+
+        return null;
+    }
+
+    /**
+     * Method that finds a short path that starts in a cell and visits the given
+     * cells.
+     *
+     * @param start     Initial cell.
+     * @param end       Cell visited after the path or null if the path can end
+     *                  anywhere.
+     * @param cells     Cells to be visited.
+     * @param graph     Movement graph.
+     * @param distances Distances from the cells whose searches have already been
+     *                  done, which is updated with the new searches.
+     * @return Returns the indices of the cells in the order in which they are visited.
+     */
+    private List<Integer> findTour(String start, String end, List<String> cells, Map<String, Set<String>> graph,
+                                   Map<String, Map<String, Integer>> distances) {
+        List<Integer> tour = new ArrayList<>();
+        boolean[] visited = new boolean[cells.size()];
+        String current = start;
+
+        // Nearest neighbour
+        while (tour.size() < cells.size()) {
+            Map<String, Integer> fromCurrent = GoalOrderer.getDistances(current, graph, distances);
+            int nearest = -1;
+
+            for (int i = 0; i < cells.size(); i++) {
+                if (!visited[i] && (nearest < 0 || GoalOrderer.distance(fromCurrent, cells.get(i))
+                        < GoalOrderer.distance(fromCurrent, cells.get(nearest)))) {
+                    nearest = i;
+                }
+            }
+
+            visited[nearest] = true;
+            tour.add(nearest);
+            current = cells.get(nearest);
+        }
+
+        if (this.twoOpt) {
+            GoalOrderer.improveTour(start, end, cells, tour, graph, distances);
+        }
+
+        return tour;
+    }
+
+    /**
+     * Method that improves a path with 2-opt moves, which visit a section of the
+     * path backwards, and or-opt moves, which visit a short section of the path
+     * somewhere else, until no move makes the path shorter. As the path doesn't
+     * have to return to its start, the last section can be moved as well. The
+     * whole length is computed for each move, so the distances don't need to be
+     * symmetric.
+     *
+     * @param start     Initial cell.
+     * @param end       Cell visited after the path or null if the path can end
+     *                  anywhere.
+     * @param cells     Cells to be visited.
+     * @param tour      Indices of the cells in the order in which they are
+     *                  visited, which is modified.
+     * @param graph     Movement graph.
+     * @param distances Distances from the cells whose searches have already been done.
+     */
+    private static void improveTour(String start, String end, List<String> cells, List<Integer> tour,
+                                    Map<String, Set<String>> graph, Map<String, Map<String, Integer>> distances) {
+        long length = GoalOrderer.length(start, end, cells, tour, graph, distances);
+        boolean improved = true;
+
+        while (improved) {
+            improved = false;
+
+            for (int i = 0; i < tour.size() - 1; i++) {
+                for (int j = i + 1; j < tour.size(); j++) {
+                    Collections.reverse(tour.subList(i, j + 1));
+                    long newLength = GoalOrderer.length(start, end, cells, tour, graph, distances);
+
+                    if (newLength < length) {
+                        length = newLength;
+                        improved = true;
+                    } else {
+                        Collections.reverse(tour.subList(i, j + 1));
+                    }
+                }
+            }
+
+            // Sections of up to three goals are also moved to other positions of the path (or-opt moves)
+            for (int size = 1; size <= 3; size++) {
+                for (int i = 0; i + size <= tour.size(); i++) {
+                    List<Integer> section = new ArrayList<>(tour.subList(i, i + size));
+
+                    for (int j = 0; j <= tour.size() - size; j++) {
+                        if (j == i) {
+                            continue;
+                        }
+
+                        tour.subList(i, i + size).clear();
+                        tour.addAll(j, section);
+                        long newLength = GoalOrderer.length(start, end, cells, tour, graph, distances);
+
+                        if (newLength < length) {
+                            length = newLength;
+                            improved = true;
+                            break;
+                        }
+
+                        tour.subList(j, j + size).clear();
+                        tour.addAll(i, section);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Method that computes the length of a path.
+     *
+     * @param start     Initial cell.
+     * @param end       Cell visited after the path or null if the path can end
+     *                  anywhere.
+     * @param cells     Cells to be visited.
+     * @param tour      Indices of the cells in the order in which they are visited.
+     * @param graph     Movement graph.
+     * @param distances Distances from the cells whose searches have already been done.
+     * @return Returns the number of movements of the path.
+     */
+    private static long length(String start, String end, List<String> cells, List<Integer> tour,
+                               Map<String, Set<String>> graph, Map<String, Map<String, Integer>> distances) {
+        long length = 0;
+        String current = start;
+
+        for (int index : tour) {
+            length += GoalOrderer.distance(GoalOrderer.getDistances(current, graph, distances), cells.get(index));
+            current = cells.get(index);
+        }
+
+        if (end != null) {
+            length += GoalOrderer.distance(GoalOrderer.getDistances(current, graph, distances), end);
+        }
+
+        return length;
+    }
+
+    /**
+     * Method that returns the distances from a cell to the rest of the cells. They
+     * are computed by breadth-first search the first time they are needed.
+     *
+     * @param cell      Initial cell.
+     * @param graph     Movement graph.
+     * @param distances Distances from the cells whose searches have already been done.
+     * @return Returns a map from each reachable cell to its distance.
+     */
+    private static Map<String, Integer> getDistances(String cell, Map<String, Set<String>> graph,
+                                                     Map<String, Map<String, Integer>> distances) {
+        return distances.computeIfAbsent(cell, start -> {
+            Map<String, Integer> reached = new HashMap<>();
+            Deque<String> open = new ArrayDeque<>();
+            reached.put(start, 0);
+            open.add(start);
+
+            while (!open.isEmpty()) {
+                String current = open.poll();
+
+                for (String next : graph.getOrDefault(current, Collections.emptySet())) {
+                    if (!reached.containsKey(next)) {
+                        reached.put(next, reached.get(current) + 1);
+                        open.add(next);
+                    }
+                }
+            }
+
+            return reached;
+        });
+    }
+
+    /**
+     * Method that returns the distance to a cell.
+     *
+     * @param distances Distances from the initial cell.
+     * @param cell      Cell.
+     * @return Returns the distance or a large number if the cell can't be reached.
+     */
+    private static int distance(Map<String, Integer> distances, String cell) {
+        return distances.getOrDefault(cell, GoalOrderer.UNREACHABLE);
+    }
+}
@@ -0,0 +1,161 @@
+/*
+ * GoalSelector.java
+ *
+ * Copyright (C) 2020 Vladislav Nikolov Vasilev
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see https://www.gnu.org/licenses/gpl-3.0.html.
+ */
+
+/**
+ * Package that contains the planning agent along with its data structures.
+ */
+package controller;
+
+import kong.unirest.json.JSONObject;
+
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Class that chooses the next goal among several goals with the same priority.
+ * A plan to each of them is searched concurrently on a bounded pool of threads
+ * and the goal with the shortest plan is chosen.
+ * <p>
+ * Every plan found is stored in the plan cache, so the plan to the chosen goal
+ * is retrieved from it without calling the planner again. The plans to the
+ * goals that haven't been chosen are also kept, and they are reused in later
+ * selections if they are still valid.
+ *
+ * @author Vladislav Nikolov Vasilev
+ */
+public class GoalSelector {
+    /**
+     * Default number of threads of the pool.
+     */
+    public static final int DEFAULT_THREADS = 4;
+
+    private final Planner planner;
+    private final PlanCache planCache;
+    private final ExecutorService pool;
+
+    // Plans to the goals that haven't been chosen yet
+    private final Map<String, JSONObject> alternativePlans;
+
+    /**
+     * Class constructor.
+     *
+     * @param planner    Planner used to solve the goals.
+     * @param planCache  Plan cache in which the plans are stored.
+     * @param numThreads Maximum number of concurrent calls to the planner.
+     */
+    public GoalSelector(Planner planner, PlanCache planCache, int numThreads) {
+        AtomicInteger threadCount = new AtomicInteger();
+
+        this.planner = planner;
+        this.planCache = planCache;
+        this.alternativePlans = new HashMap<>();
+        this.pool = Executors.newFixedThreadPool(numThreads, runnable -> {
+            Thread thread = new Thread(runnable, "goal-selector-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Method that chooses the goal with the shortest plan. The calls to the planner
+     * that haven't finished when the deadline expires are cancelled.
+     *
+     * @param domain   Content of the domain file.
+     * @param problems Map from each candidate goal to its problem. In case of a
+     *                 tie, the first goal of the map is chosen.
+     * @param deadline Deadline of the selection.
+     * @return Returns the chosen goal or null if no plan has been found.
+     */
+    public String select(String domain, Map<String, String> problems, PlanningDeadline deadline) {
+        Map<String, PDDLProblem> parsedProblems = new LinkedHashMap<>();
+        Map<String, CompletableFuture<JSONObject>> responses = new LinkedHashMap<>();
+        PlanningDeadline callsDeadline = deadline.remainingMillis() == Long.MAX_VALUE
+                ? PlanningDeadline.none() : PlanningDeadline.after(deadline.remainingMillis());
+
+        for (Map.Entry<String, String> entry : problems.entrySet()) {
+            String goal = entry.getKey(), problem = entry.getValue();
+            PDDLProblem parsedProblem = PDDLParser.parseProblem(problem);
+            JSONObject response = this.planCache.get(domain, parsedProblem);
+
+            if (response == null) {
+                JSONObject alternativePlan = this.alternativePlans.remove(goal);
+
+                if (alternativePlan != null && this.planCache.isValid(domain, parsedProblem, alternativePlan)) {
+                    response = alternativePlan;
+                }
+            }
+
+            parsedProblems.put(goal, parsedProblem);
+            responses.put(goal, response != null ? CompletableFuture.completedFuture(response)
+                    : CompletableFuture.supplyAsync(() -> this.planner.solve(domain, problem, callsDeadline), this.pool));
+        }
+
+        // Wait for every call until the deadline expires
+        try {
+            CompletableFuture.allOf(responses.values().toArray(new CompletableFuture<?>[0]))
+                    .get(callsDeadline.remainingMillis(), TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException | TimeoutException e) {
+            // Calls that have failed or haven't finished are ignored
+        } finally {
+            callsDeadline.cancel();
+        }
+
+        String selectedGoal = null;
+        int shortestLength = Integer.MAX_VALUE;
+
+        for (Map.Entry<String, CompletableFuture<JSONObject>> entry : responses.entrySet()) {
+            JSONObject response = entry.getValue().isCompletedExceptionally() ? null : entry.getValue().getNow(null);
+
+            if (response == null || !response.optString("status").equals("ok")) {
+                continue;
+            }
+
+            String goal = entry.getKey();
+            int length = response.getJSONObject("result").getJSONArray("plan").length();
+            this.planCache.put(domain, parsedProblems.get(goal), response);
+            this.alternativePlans.put(goal, response);
+
+            if (length < shortestLength) {
+                selectedGoal = goal;
+                shortestLength = length;
+            }
+        }
+
+        this.alternativePlans.remove(selectedGoal);
+
+        return selectedGoal;
+    }
+
+    /**
+     * Method that stops the threads of the pool.
+     */
+    public void close() {
+        this.pool.shutdownNow();
+    }
+}
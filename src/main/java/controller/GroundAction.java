@@ -0,0 +1,251 @@
+/*
+ * GroundAction.java
+ *
+ * Copyright (C) 2020 Vladislav Nikolov Vasilev
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see https://www.gnu.org/licenses/gpl-3.0.html.
+ */
+
+/**
+ * Package that contains the planning agent along with its data structures.
+ */
+package controller;
+
+import java.util.BitSet;
+import java.util.List;
+
+/**
+ * Class that represents a grounded PDDL action. Every atom is represented by
+ * its index in the atom table of a {@link GroundTask}, so preconditions and
+ * effects are stored as arrays of integers and states as bitsets.
+ *
+ * @author Vladislav Nikolov Vasilev
+ */
+public class GroundAction {
+    private PDDLActionSchema schema;
+    private List<String> arguments;
+    private int[] positivePreconditions;
+    private int[] negativePreconditions;
+    private int[] addEffects;
+    private int[] deleteEffects;
+    private List<ConditionalEffect> conditionalEffects;
+
+    /**
+     * Class that represents a grounded conditional effect. The add and delete
+     * effects only take place if the positive conditions hold and the negative
+     * conditions don't hold in the state in which the action is applied.
+     */
+    public static class ConditionalEffect {
+        private int[] positiveConditions;
+        private int[] negativeConditions;
+        private int[] addEffects;
+        private int[] deleteEffects;
+
+        /**
+         * Class constructor.
+         *
+         * @param positiveConditions Atoms that must hold.
+         * @param negativeConditions Atoms that mustn't hold.
+         * @param addEffects         Atoms that become true.
+         * @param deleteEffects      Atoms that become false.
+         */
+        public ConditionalEffect(int[] positiveConditions, int[] negativeConditions,
+                                 int[] addEffects, int[] deleteEffects) {
+            this.positiveConditions = positiveConditions;
+            this.negativeConditions = negativeConditions;
+            this.addEffects = addEffects;
+            this.deleteEffects = deleteEffects;
+        }
+
+        public int[] getPositiveConditions() {
+            return this.positiveConditions;
+        }
+
+        public int[] getNegativeConditions() {
+            return this.negativeConditions;
+        }
+
+        public int[] getAddEffects() {
+            return this.addEffects;
+        }
+
+        public int[] getDeleteEffects() {
+            return this.deleteEffects;
+        }
+
+        /**
+         * Method that checks whether the conditions of the effect hold in a state.
+         *
+         * @param state State in which the conditions are checked.
+         * @return Returns true if the effect takes place and false otherwise.
+         */
+        public boolean isTriggered(BitSet state) {
+            return GroundAction.holds(state, this.positiveConditions, this.negativeConditions);
+        }
+    }
+
+    /**
+     * Class constructor.
+     *
+     * @param schema                Action schema from which the action has been grounded.
+     * @param arguments             Objects bound to the schema's parameters.
+     * @param positivePreconditions Atoms that must hold.
+     * @param negativePreconditions Atoms that mustn't hold.
+     * @param addEffects            Unconditional add effects.
+     * @param deleteEffects         Unconditional delete effects.
+     * @param conditionalEffects    List of conditional effects.
+     */
+    public GroundAction(PDDLActionSchema schema, List<String> arguments,
+                        int[] positivePreconditions, int[] negativePreconditions,
+                        int[] addEffects, int[] deleteEffects,
+                        List<ConditionalEffect> conditionalEffects) {
+        this.schema = schema;
+        this.arguments = arguments;
+        this.positivePreconditions = positivePreconditions;
+        this.negativePreconditions = negativePreconditions;
+        this.addEffects = addEffects;
+        this.deleteEffects = deleteEffects;
+        this.conditionalEffects = conditionalEffects;
+    }
+
+    public PDDLActionSchema getSchema() {
+        return this.schema;
+    }
+
+    public List<String> getArguments() {
+        return this.arguments;
+    }
+
+    public int[] getPositivePreconditions() {
+        return this.positivePreconditions;
+    }
+
+    public int[] getNegativePreconditions() {
+        return this.negativePreconditions;
+    }
+
+    public int[] getAddEffects() {
+        return this.addEffects;
+    }
+
+    public int[] getDeleteEffects() {
+        return this.deleteEffects;
+    }
+
+    public List<ConditionalEffect> getConditionalEffects() {
+        return this.conditionalEffects;
+    }
+
+    /**
+     * Method that returns the action instance, as it is written in a plan.
+     *
+     * @return Returns the action instance, for example "(move-up p c_1_2 c_1_1)".
+     */
+    public String getInstance() {
+        StringBuilder builder = new StringBuilder();
+        builder.append('(').append(this.schema.getName());
+        this.arguments.forEach(argument -> builder.append(' ').append(argument));
+        builder.append(')');
+
+        return builder.toString();
+    }
+
+    /**
+     * Method that returns the instantiated description of the action.
+     *
+     * @return Returns the description of the action, using the same layout
+     * as the planner's responses.
+     */
+    public String getDescription() {
+        return this.schema.describe(this.arguments);
+    }
+
+    /**
+     * Method that checks whether the action can be applied in a state.
+     *
+     * @param state State to be checked.
+     * @return Returns true if all the preconditions hold and false otherwise.
+     */
+    public boolean isApplicable(BitSet state) {
+        return GroundAction.holds(state, this.positivePreconditions, this.negativePreconditions);
+    }
+
+    /**
+     * Method that applies the action to a state. The state passed as parameter
+     * isn't modified. Delete effects are applied before add effects, so an atom
+     * that is both added and deleted ends up being true.
+     *
+     * @param state State in which the action is applied.
+     * @return Returns the resulting state.
+     */
+    public BitSet apply(BitSet state) {
+        BitSet successor = (BitSet) state.clone();
+
+        for (int atom : this.deleteEffects) {
+            successor.clear(atom);
+        }
+
+        for (ConditionalEffect effect : this.conditionalEffects) {
+            if (effect.isTriggered(state)) {
+                for (int atom : effect.deleteEffects) {
+                    successor.clear(atom);
+                }
+            }
+        }
+
+        for (int atom : this.addEffects) {
+            successor.set(atom);
+        }
+
+        for (ConditionalEffect effect : this.conditionalEffects) {
+            if (effect.isTriggered(state)) {
+                for (int atom : effect.addEffects) {
+                    successor.set(atom);
+                }
+            }
+        }
+
+        return successor;
+    }
+
+    @Override
+    public String toString() {
+        return this.getInstance();
+    }
+
+    /**
+     * Method that checks whether a set of positive atoms hold and a set of negative
+     * atoms don't hold in a given state.
+     *
+     * @param state    State to be checked.
+     * @param positive Atoms that must hold.
+     * @param negative Atoms that mustn't hold.
+     * @return Returns true if the conditions are satisfied and false otherwise.
+     */
+    static boolean holds(BitSet state, int[] positive, int[] negative) {
+        for (int atom : positive) {
+            if (!state.get(atom)) {
+                return false;
+            }
+        }
+
+        for (int atom : negative) {
+            if (state.get(atom)) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+}
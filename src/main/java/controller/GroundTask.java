@@ -0,0 +1,127 @@
+/*
+ * GroundTask.java
+ *
+ * Copyright (C) 2020 Vladislav Nikolov Vasilev
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see https://www.gnu.org/licenses/gpl-3.0.html.
+ */
+
+/**
+ * Package that contains the planning agent along with its data structures.
+ */
+package controller;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+
+/**
+ * Class that represents a grounded planning task. It contains the table of
+ * fluent atoms, the grounded actions, the initial state and the goal.
+ *
+ * @author Vladislav Nikolov Vasilev
+ */
+public class GroundTask {
+    private AtomTable atomTable;
+    private List<GroundAction> actions;
+    private BitSet initialState;
+    private int[] positiveGoals;
+    private int[] negativeGoals;
+
+    /**
+     * Class constructor. Creates an empty task.
+     */
+    public GroundTask() {
+        this.atomTable = new AtomTable();
+        this.actions = new ArrayList<>();
+        this.initialState = new BitSet();
+        this.positiveGoals = new int[0];
+        this.negativeGoals = new int[0];
+    }
+
+    public AtomTable getAtomTable() {
+        return this.atomTable;
+    }
+
+    public List<String> getAtoms() {
+        return this.atomTable.getAtoms();
+    }
+
+    public List<GroundAction> getActions() {
+        return this.actions;
+    }
+
+    public void setActions(List<GroundAction> actions) {
+        this.actions = actions;
+    }
+
+    public BitSet getInitialState() {
+        return this.initialState;
+    }
+
+    public int[] getPositiveGoals() {
+        return this.positiveGoals;
+    }
+
+    public int[] getNegativeGoals() {
+        return this.negativeGoals;
+    }
+
+    /**
+     * Method that sets the goal of the task.
+     *
+     * @param positiveGoals Atoms that must hold in a goal state.
+     * @param negativeGoals Atoms that mustn't hold in a goal state.
+     */
+    public void setGoal(int[] positiveGoals, int[] negativeGoals) {
+        this.positiveGoals = positiveGoals;
+        this.negativeGoals = negativeGoals;
+    }
+
+    /**
+     * Method that returns the index associated to an atom. If the atom hasn't been
+     * registered yet, a new index is assigned to it.
+     *
+     * @param atom Ground atom, for example "(at p c_1_1)".
+     * @return Returns the index of the atom.
+     */
+    public int intern(String atom) {
+        return this.atomTable.intern(atom);
+    }
+
+    /**
+     * Method that returns the index of an atom without registering it.
+     *
+     * @param atom Ground atom.
+     * @return Returns the index of the atom or -1 if it isn't registered.
+     */
+    public int indexOf(String atom) {
+        return this.atomTable.indexOf(atom);
+    }
+
+    /**
+     * Method that checks whether a state satisfies the goal.
+     *
+     * @param state State to be checked.
+     * @return Returns true if the state is a goal state and false otherwise.
+     */
+    public boolean isGoal(BitSet state) {
+        return GroundAction.holds(state, this.positiveGoals, this.negativeGoals);
+    }
+
+    @Override
+    public String toString() {
+        return String.format("{ GroundTask atoms: %d, Actions: %d }", this.atomTable.size(), this.actions.size());
+    }
+}
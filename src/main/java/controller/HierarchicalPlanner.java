@@ -0,0 +1,969 @@
+/*
+ * HierarchicalPlanner.java
+ *
+ * Copyright (C) 2020 Vladislav Nikolov Vasilev
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see https://www.gnu.org/licenses/gpl-3.0.html.
+ */
+
+/**
+ * Package that contains the planning agent along with its data structures.
+ */
+package controller;
+
+import kong.unirest.json.JSONArray;
+import kong.unirest.json.JSONObject;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.function.Predicate;
+
+/**
+ * Planner that splits a problem in two levels. The movements of the avatar
+ * between cells are solved natively by breadth-first search over the grid,
+ * while the wrapped planner only receives an abstract problem which contains
+ * the cells in which something can be done (the cells of the objects the
+ * actions interact with, their neighbours, the avatar's cell and the cells of
+ * the goal). Instead of the connections between every pair of neighbouring
+ * cells, the abstract problem groups the cells into regions in which every
+ * cell can be reached from the others, tells which regions can be reached from
+ * each other, and new actions move the avatar between reachable regions.
+ * <p>
+ * Everything is extracted from the domain. A navigation action either moves an
+ * object to a connected cell without changing anything but the cells involved
+ * (for example, move-up), or only changes the object that is moved (for example,
+ * turn-up). The rest of the actions of the abstract plan are refined into a plan
+ * of the original problem by inserting, before each of them, the shortest
+ * sequence of navigation actions that makes it applicable. If the abstract
+ * problem can't be solved or its plan can't be refined, the original problem is
+ * given to the wrapped planner.
+ *
+ * @author Vladislav Nikolov Vasilev
+ */
+public class HierarchicalPlanner implements Planner {
+    /**
+     * Name of the action which takes the avatar from a cell to the region of the cell.
+     */
+    public static final String LEAVE_ACTION = "leave-cell";
+
+    /**
+     * Name of the action which takes the avatar from a region to a reachable region.
+     */
+    public static final String CROSS_ACTION = "cross-region";
+
+    /**
+     * Name of the action which takes the avatar from a region to one of its cells.
+     */
+    public static final String ENTER_ACTION = "enter-cell";
+
+    /**
+     * Name of the predicate which tells the region a cell belongs to. Every cell
+     * of a region can be reached from the rest of its cells.
+     */
+    public static final String REGION_PREDICATE = "cell-region";
+
+    /**
+     * Name of the predicate which tells that a region can be reached from another one.
+     */
+    public static final String REACHABLE_PREDICATE = "region-reachable";
+
+    /**
+     * Name of the predicate which tells that the avatar is in a region, but not
+     * in any particular cell of it.
+     */
+    public static final String IN_REGION_PREDICATE = "in-region";
+
+    /**
+     * Default maximum number of nodes expanded by each search of navigation actions.
+     */
+    public static final int DEFAULT_MAX_NODES = 20000;
+
+    /**
+     * Number of expanded nodes between two consecutive deadline checks.
+     */
+    private static final int DEADLINE_CHECK_INTERVAL = 64;
+
+    private final Planner planner;
+    private final int maxNodes;
+
+    // Analysis of the last domain, which is only repeated if the domain changes
+    private String domainText;
+    private Navigation navigation;
+
+    // Statistics
+    private int abstractPlans;
+    private int fallbacks;
+    private long facts;
+    private long abstractFacts;
+
+    /**
+     * Class that contains the navigation actions of a domain and the abstract
+     * domain built from them.
+     */
+    private static class Navigation {
+        private PDDLDomain domain;
+        private String abstractDomain;
+        private String locationPredicate;
+        private int cellPosition;
+        private String moverType;
+        private String cellType;
+        private Map<String, String[]> movements = new HashMap<>();
+        private Set<String> turns = new HashSet<>();
+        private Set<String> orientationPredicates = new HashSet<>();
+        private Set<String> linkPredicates = new HashSet<>();
+        private Set<String> keyTypes = new HashSet<>();
+    }
+
+    /**
+     * Class that represents a node of the search space of navigation actions.
+     */
+    private static class SearchNode {
+        private BitSet state;
+        private SearchNode parent;
+        private GroundAction action;
+
+        private SearchNode(BitSet state, SearchNode parent, GroundAction action) {
+            this.state = state;
+            this.parent = parent;
+            this.action = action;
+        }
+    }
+
+    /**
+     * Class constructor.
+     *
+     * @param planner  Planner which solves the abstract problems.
+     * @param maxNodes Maximum number of nodes expanded by each search of navigation
+     *                 actions.
+     */
+    public HierarchicalPlanner(Planner planner, int maxNodes) {
+        this.planner = planner;
+        this.maxNodes = maxNodes;
+    }
+
+    /**
+     * Class constructor. Uses the default maximum number of nodes.
+     *
+     * @param planner Planner which solves the abstract problems.
+     */
+    public HierarchicalPlanner(Planner planner) {
+        this(planner, HierarchicalPlanner.DEFAULT_MAX_NODES);
+    }
+
+    public Planner getPlanner() {
+        return this.planner;
+    }
+
+    public synchronized int getAbstractPlans() {
+        return this.abstractPlans;
+    }
+
+    public synchronized int getFallbacks() {
+        return this.fallbacks;
+    }
+
+    public synchronized long getFacts() {
+        return this.facts;
+    }
+
+    public synchronized long getAbstractFacts() {
+        return this.abstractFacts;
+    }
+
+    @Override
+    public JSONObject solve(String domain, String problem, PlanningDeadline deadline) throws PlannerException {
+        deadline.check();
+        Navigation navigation = this.getNavigation(domain);
+
+        if (navigation != null) {
+            PDDLProblem parsedProblem = PDDLParser.parseProblem(problem);
+            GroundTask task = PDDLGrounder.ground(navigation.domain, parsedProblem, deadline);
+            Set<String> movers = new HashSet<>();
+            parsedProblem.getObjects().forEach((object, type) -> {
+                if (navigation.domain.isSubtype(type, navigation.moverType)) {
+                    movers.add(object);
+                }
+            });
+
+            List<String> abstractInit = new ArrayList<>();
+            String abstractProblem = this.createAbstractProblem(navigation, parsedProblem, task, movers,
+                    abstractInit);
+            List<GroundAction> plan = null;
+
+            if (abstractProblem != null) {
+                JSONObject response;
+
+                try {
+                    response = this.planner.solve(navigation.abstractDomain, abstractProblem, deadline);
+                } catch (PlannerTimeoutException e) {
+                    throw e;
+                } catch (PlannerException e) {
+                    response = null;
+                }
+
+                if (response != null && response.getString("status").equals("ok")) {
+                    plan = this.refine(navigation, task, movers,
+                            response.getJSONObject("result").getJSONArray("plan"), deadline);
+                }
+            }
+
+            if (plan != null) {
+                this.recordAbstractPlan(parsedProblem.getInit().size(), abstractInit.size());
+
+                return EmbeddedPlanner.createResponse(plan);
+            }
+        }
+
+        this.recordFallback();
+
+        return this.planner.solve(domain, problem, deadline);
+    }
+
+    @Override
+    public String getName() {
+        return "hierarchical-" + this.planner.getName();
+    }
+
+    /**
+     * Method that returns the navigation actions of a domain, analysing the domain
+     * only if it has changed since the last call.
+     *
+     * @param domain Content of the domain file.
+     * @return Returns the navigation actions or null if the domain doesn't contain
+     * any movement.
+     * @throws PlannerException Thrown when the domain can't be parsed.
+     */
+    private synchronized Navigation getNavigation(String domain) throws PlannerException {
+        if (!domain.equals(this.domainText)) {
+            this.navigation = HierarchicalPlanner.analyseDomain(domain, PDDLParser.parseDomain(domain));
+            this.domainText = domain;
+        }
+
+        return this.navigation;
+    }
+
+    private synchronized void recordAbstractPlan(int facts, int abstractFacts) {
+        this.abstractPlans++;
+        this.facts += facts;
+        this.abstractFacts += abstractFacts;
+    }
+
+    private synchronized void recordFallback() {
+        this.fallbacks++;
+    }
+
+    /**
+     * Method that finds the navigation actions of a domain and creates the
+     * abstract domain. Only the movements of the first object that can be moved
+     * are taken into account.
+     *
+     * @param text   Content of the domain file.
+     * @param domain Parsed domain.
+     * @return Returns the navigation actions or null if the domain doesn't contain
+     * any movement.
+     */
+    private static Navigation analyseDomain(String text, PDDLDomain domain) {
+        Navigation navigation = new Navigation();
+        navigation.domain = domain;
+        Set<String> fluents = domain.getFluentPredicates();
+
+        for (PDDLActionSchema schema : domain.getActions().values()) {
+            List<PDDLFormula> effects = schema.getEffect().getConjuncts();
+
+            for (PDDLFormula added : effects) {
+                for (PDDLFormula deleted : effects) {
+                    String[] movement = HierarchicalPlanner.findMovement(schema, added, deleted, fluents, navigation);
+
+                    if (movement != null && !navigation.movements.containsKey(schema.getName())) {
+                        navigation.movements.put(schema.getName(), movement);
+                    }
+                }
+            }
+        }
+
+        if (navigation.movements.isEmpty()) {
+            return null;
+        }
+
+        // Actions that only change the moved object, such as turns, are navigation actions as well
+        for (PDDLActionSchema schema : domain.getActions().values()) {
+            boolean onlyMover = !schema.getParameters().isEmpty() && schema.getParameterTypes().stream()
+                    .allMatch(type -> domain.isSubtype(type, navigation.moverType));
+            List<PDDLFormula> atoms = new ArrayList<>();
+            HierarchicalPlanner.collectEffectAtoms(schema.getEffect(), atoms);
+
+            if (onlyMover && atoms.stream().noneMatch(atom -> atom.getPredicate().equals(navigation.locationPredicate))) {
+                navigation.turns.add(schema.getName());
+                atoms.forEach(atom -> navigation.orientationPredicates.add(atom.getPredicate()));
+            }
+        }
+
+        // The objects the rest of the actions interact with determine the cells of the abstract problem
+        for (PDDLActionSchema schema : domain.getActions().values()) {
+            if (!navigation.movements.containsKey(schema.getName()) && !navigation.turns.contains(schema.getName())) {
+                for (String type : schema.getParameterTypes()) {
+                    if (!domain.isSubtype(type, navigation.cellType) && !domain.isSubtype(type, navigation.moverType)) {
+                        navigation.keyTypes.add(type);
+                    }
+                }
+            }
+        }
+
+        navigation.abstractDomain = HierarchicalPlanner.createAbstractDomain(text, navigation);
+
+        return navigation;
+    }
+
+    /**
+     * Method that checks whether an add effect and a delete effect of an action
+     * schema move an object to a connected cell without changing anything else
+     * but the cells involved and the moved object.
+     *
+     * @param schema     Action schema.
+     * @param added      Effect that adds an atom.
+     * @param deleted    Effect that deletes an atom.
+     * @param fluents    Fluent predicates of the domain.
+     * @param navigation Navigation actions found so far.
+     * @return Returns the parameters of the moved object and of the origin and
+     * destination cells or null if the effects aren't a movement.
+     */
+    private static String[] findMovement(PDDLActionSchema schema, PDDLFormula added, PDDLFormula deleted,
+                                         Set<String> fluents, Navigation navigation) {
+        if (added.getKind() != PDDLFormula.Kind.ATOM || deleted.getKind() != PDDLFormula.Kind.NOT
+                || deleted.getChildren().get(0).getKind() != PDDLFormula.Kind.ATOM) {
+            return null;
+        }
+
+        PDDLFormula deletedAtom = deleted.getChildren().get(0);
+
+        if (!added.getPredicate().equals(deletedAtom.getPredicate())
+                || added.getTerms().size() != 2 || deletedAtom.getTerms().size() != 2) {
+            return null;
+        }
+
+        int cellPosition = added.getTerms().get(0).equals(deletedAtom.getTerms().get(0)) ? 1 : 0;
+        String mover = added.getTerms().get(1 - cellPosition);
+        String from = deletedAtom.getTerms().get(cellPosition), to = added.getTerms().get(cellPosition);
+        List<String> parameters = schema.getParameters();
+
+        if (!mover.equals(deletedAtom.getTerms().get(1 - cellPosition)) || from.equals(to)
+                || !parameters.contains(mover) || !parameters.contains(from) || !parameters.contains(to)) {
+            return null;
+        }
+
+        String moverType = schema.getParameterTypes().get(parameters.indexOf(mover));
+        String cellType = schema.getParameterTypes().get(parameters.indexOf(to));
+
+        // Only the movements of the first object that can be moved are used
+        if (navigation.locationPredicate != null && (!navigation.locationPredicate.equals(added.getPredicate())
+                || navigation.cellPosition != cellPosition || !navigation.moverType.equals(moverType))) {
+            return null;
+        }
+
+        // The cells must be statically linked
+        Set<String> links = new HashSet<>();
+
+        for (PDDLFormula literal : schema.getPrecondition().getConjuncts()) {
+            if (literal.getKind() == PDDLFormula.Kind.ATOM && !fluents.contains(literal.getPredicate())
+                    && literal.getTerms().contains(from) && literal.getTerms().contains(to)) {
+                links.add(literal.getPredicate());
+            }
+        }
+
+        List<PDDLFormula> atoms = new ArrayList<>();
+        HierarchicalPlanner.collectEffectAtoms(schema.getEffect(), atoms);
+        List<String> allowed = Arrays.asList(mover, from, to);
+
+        if (links.isEmpty() || !atoms.stream().allMatch(atom -> atom.getTerms().stream()
+                .allMatch(term -> !term.startsWith("?") || allowed.contains(term)))) {
+            return null;
+        }
+
+        navigation.locationPredicate = added.getPredicate();
+        navigation.cellPosition = cellPosition;
+        navigation.moverType = moverType;
+        navigation.cellType = cellType;
+        navigation.linkPredicates.addAll(links);
+
+        return new String[]{mover, from, to};
+    }
+
+    /**
+     * Method that creates the abstract domain. The avatar moves between reachable
+     * cells in three steps: it leaves its cell and stands in the region of the
+     * cell, it crosses to a reachable region and it enters a cell of that region.
+     * This way, the number of ground actions grows linearly with the number of
+     * key cells.
+     *
+     * @param text       Content of the domain file.
+     * @param navigation Navigation actions of the domain.
+     * @return Returns the content of the abstract domain.
+     */
+    private static String createAbstractDomain(String text, Navigation navigation) {
+        String location = String.format(navigation.cellPosition == 1 ? "(%s ?m ?c)" : "(%s ?c ?m)",
+                navigation.locationPredicate);
+        StringBuilder builder = new StringBuilder(text.trim());
+
+        int predicates = text.toLowerCase().indexOf("(:predicates") + "(:predicates".length();
+        builder.insert(predicates, String.format("\n    (%s ?c ?r - %s)\n    (%s ?r1 ?r2 - %s)\n    (%s ?m - %s ?r - %s)",
+                HierarchicalPlanner.REGION_PREDICATE, navigation.cellType,
+                HierarchicalPlanner.REACHABLE_PREDICATE, navigation.cellType,
+                HierarchicalPlanner.IN_REGION_PREDICATE, navigation.moverType, navigation.cellType));
+
+        String actions = String.format("\n  (:action %1$s\n"
+                        + "    :parameters (?m - %4$s ?c ?r - %5$s)\n"
+                        + "    :precondition (and\n"
+                        + "      %6$s\n"
+                        + "      (%7$s ?c ?r)\n"
+                        + "    )\n"
+                        + "    :effect (and\n"
+                        + "      (not %6$s)\n"
+                        + "      (%9$s ?m ?r)\n"
+                        + "    )\n"
+                        + "  )\n"
+                        + "\n  (:action %2$s\n"
+                        + "    :parameters (?m - %4$s ?r1 ?r2 - %5$s)\n"
+                        + "    :precondition (and\n"
+                        + "      (%9$s ?m ?r1)\n"
+                        + "      (%8$s ?r1 ?r2)\n"
+                        + "    )\n"
+                        + "    :effect (and\n"
+                        + "      (not (%9$s ?m ?r1))\n"
+                        + "      (%9$s ?m ?r2)\n"
+                        + "    )\n"
+                        + "  )\n"
+                        + "\n  (:action %3$s\n"
+                        + "    :parameters (?m - %4$s ?c ?r - %5$s)\n"
+                        + "    :precondition (and\n"
+                        + "      (%9$s ?m ?r)\n"
+                        + "      (%7$s ?c ?r)\n"
+                        + "    )\n"
+                        + "    :effect (and\n"
+                        + "      (not (%9$s ?m ?r))\n"
+                        + "      %6$s\n"
+                        + "    )\n"
+                        + "  )\n",
+                HierarchicalPlanner.LEAVE_ACTION, HierarchicalPlanner.CROSS_ACTION, HierarchicalPlanner.ENTER_ACTION,
+                navigation.moverType, navigation.cellType, location, HierarchicalPlanner.REGION_PREDICATE,
+                HierarchicalPlanner.REACHABLE_PREDICATE, HierarchicalPlanner.IN_REGION_PREDICATE);
+        builder.insert(builder.lastIndexOf(")"), actions);
+
+        return builder.toString();
+    }
+
+    /**
+     * Method that creates the abstract problem. Only the key cells are kept: the
+     * cells of the goal, the cells in which the moved objects are, and the cells
+     * of the objects the rest of the actions interact with and the neighbours of
+     * these cells in which the moved objects can stand. The regions and the
+     * reachability between them are computed in the initial state.
+     *
+     * @param navigation   Navigation actions of the domain.
+     * @param problem      Original problem.
+     * @param task         Ground task of the original problem.
+     * @param movers       Objects that can be moved.
+     * @param abstractInit List in which the initial state of the abstract problem is stored.
+     * @return Returns the content of the abstract problem or null if it isn't
+     * smaller than the original one.
+     */
+    private String createAbstractProblem(Navigation navigation, PDDLProblem problem, GroundTask task,
+                                         Set<String> movers, List<String> abstractInit) {
+        PDDLDomain domain = navigation.domain;
+        Map<String, String> objects = problem.getObjects();
+        Set<String> goalObjects = new HashSet<>(Arrays.asList(
+                problem.getGoal().toString().replace("(", " ").replace(")", " ").trim().split("\\s+")));
+        Set<String> keyCells = new LinkedHashSet<>();
+        Map<String, Set<String>> neighbours = new HashMap<>();
+        List<List<String>> initParts = new ArrayList<>();
+
+        for (String atom : problem.getInit()) {
+            List<String> parts = PDDLGrounder.splitAtom(atom);
+            initParts.add(parts);
+
+            if (navigation.linkPredicates.contains(parts.get(0))) {
+                for (String cell : parts.subList(1, parts.size())) {
+                    parts.subList(1, parts.size()).stream().filter(other -> !other.equals(cell))
+                            .forEach(other -> neighbours.computeIfAbsent(cell, key -> new HashSet<>()).add(other));
+                }
+            }
+        }
+
+        // Only the neighbours in which the moved objects can stand are key cells
+        Map<String, List<String>> edges = this.findEdges(navigation, task, movers);
+        Set<String> enterableCells = new HashSet<>();
+        edges.values().forEach(enterableCells::addAll);
+
+        for (List<String> parts : initParts) {
+            if (parts.get(0).equals(navigation.locationPredicate) && parts.size() == 3) {
+                String object = parts.get(2 - navigation.cellPosition), cell = parts.get(1 + navigation.cellPosition);
+                String type = objects.get(object);
+
+                if (movers.contains(object)) {
+                    keyCells.add(cell);
+                } else if (type != null && navigation.keyTypes.stream().anyMatch(key -> domain.isSubtype(type, key))) {
+                    keyCells.add(cell);
+                    neighbours.getOrDefault(cell, Collections.emptySet()).stream()
+                            .filter(enterableCells::contains)
+                            .forEach(keyCells::add);
+                }
+            }
+        }
+
+        objects.forEach((object, type) -> {
+            if (goalObjects.contains(object) && domain.isSubtype(type, navigation.cellType)) {
+                keyCells.add(object);
+            }
+        });
+
+        Set<String> cells = new HashSet<>();
+        objects.forEach((object, type) -> {
+            if (domain.isSubtype(type, navigation.cellType)) {
+                cells.add(object);
+            }
+        });
+
+        if (keyCells.size() >= cells.size()) {
+            return null;
+        }
+
+        // Keep the facts of the key cells and add the reachability between them
+        Set<String> keptObjects = new HashSet<>(keyCells);
+        Iterator<String> iterInit = problem.getInit().iterator();
+
+        for (List<String> parts : initParts) {
+            String atom = iterInit.next();
+            List<String> arguments = parts.subList(1, parts.size());
+
+            if (arguments.stream().noneMatch(argument -> cells.contains(argument) && !keyCells.contains(argument))) {
+                abstractInit.add(atom);
+                keptObjects.addAll(arguments);
+            }
+        }
+
+        // Every key cell belongs to the region (strongly connected component) represented by one of its key cells
+        Map<String, Integer> components = HierarchicalPlanner.findComponents(cells, edges);
+        Map<Integer, String> representatives = new HashMap<>();
+        Map<Integer, Integer> keyCellsByComponent = new HashMap<>();
+
+        for (String cell : keyCells) {
+            Integer component = components.get(cell);
+            representatives.putIfAbsent(component, cell);
+            keyCellsByComponent.merge(component, 1, Integer::sum);
+            abstractInit.add(String.format("(%s %s %s)", HierarchicalPlanner.REGION_PREDICATE, cell,
+                    representatives.get(component)));
+        }
+
+        BitSet[] reachable = HierarchicalPlanner.findReachableComponents(components, edges);
+
+        for (Map.Entry<Integer, String> region : representatives.entrySet()) {
+            for (int reached : reachable[region.getKey()].stream().toArray()) {
+                if (representatives.containsKey(reached)
+                        && (reached != region.getKey() || keyCellsByComponent.get(reached) > 1)) {
+                    abstractInit.add(String.format("(%s %s %s)", HierarchicalPlanner.REACHABLE_PREDICATE,
+                            region.getValue(), representatives.get(reached)));
+                }
+            }
+        }
+
+        StringBuilder builder = new StringBuilder();
+        builder.append(String.format("(define (problem %s-abstract)\n", problem.getName()));
+        builder.append(String.format("    (:domain %s)\n", problem.getDomainName()));
+        builder.append("    (:objects\n");
+        objects.forEach((object, type) -> {
+            if (keptObjects.contains(object) || (goalObjects.contains(object) && !cells.contains(object))) {
+                builder.append("        ").append(object).append(" - ").append(type).append('\n');
+            }
+        });
+        builder.append("    )\n");
+        builder.append("    (:init\n");
+        abstractInit.forEach(atom -> builder.append("        ").append(atom).append('\n'));
+        builder.append("    )\n");
+        builder.append("    (:goal\n");
+        builder.append("        ").append(problem.getGoal()).append('\n');
+        builder.append("    )\n");
+        builder.append(")");
+
+        return builder.toString();
+    }
+
+    /**
+     * Method that finds the cells which can be entered from each cell in the
+     * initial state of a task. The preconditions about the position and the
+     * orientation of the moved object are ignored, as they are achieved by the
+     * navigation actions themselves.
+     *
+     * @param navigation Navigation actions of the domain.
+     * @param task       Ground task.
+     * @param movers     Objects that can be moved.
+     * @return Returns a map from each cell to the cells that can be entered from it.
+     */
+    private Map<String, List<String>> findEdges(Navigation navigation, GroundTask task, Set<String> movers) {
+        BitSet ignored = HierarchicalPlanner.getMoverAtoms(navigation, task, movers, true);
+        BitSet state = task.getInitialState();
+        Map<String, List<String>> edges = new HashMap<>();
+
+        for (GroundAction action : task.getActions()) {
+            String[] movement = navigation.movements.get(action.getSchema().getName());
+
+            if (movement != null && HierarchicalPlanner.holdsIgnoring(state, action, ignored)) {
+                Map<String, String> binding = action.getSchema().bind(action.getArguments());
+                edges.computeIfAbsent(binding.get(movement[1]), cell -> new ArrayList<>()).add(binding.get(movement[2]));
+            }
+        }
+
+        return edges;
+    }
+
+    /**
+     * Method that finds the strongly connected components of the graph of cells,
+     * using Kosaraju's algorithm.
+     *
+     * @param cells Cells of the problem.
+     * @param edges Map from each cell to the cells that can be entered from it.
+     * @return Returns a map from each cell to the index of its component.
+     */
+    private static Map<String, Integer> findComponents(Set<String> cells, Map<String, List<String>> edges) {
+        // First pass: order the cells by the time at which their depth-first search finishes
+        List<String> order = new ArrayList<>();
+        Set<String> visited = new HashSet<>();
+        Map<String, List<String>> reversedEdges = new HashMap<>();
+
+        for (String cell : cells) {
+            if (!visited.add(cell)) {
+                continue;
+            }
+
+            Deque<String> stack = new ArrayDeque<>(Collections.singleton(cell));
+            Map<String, Iterator<String>> successors = new HashMap<>();
+
+            while (!stack.isEmpty()) {
+                String current = stack.peek();
+                Iterator<String> iterator = successors.computeIfAbsent(current,
+                        key -> edges.getOrDefault(key, Collections.emptyList()).iterator());
+
+                if (iterator.hasNext()) {
+                    String next = iterator.next();
+                    reversedEdges.computeIfAbsent(next, key -> new ArrayList<>()).add(current);
+
+                    if (visited.add(next)) {
+                        stack.push(next);
+                    }
+                } else {
+                    order.add(stack.pop());
+                }
+            }
+        }
+
+        // Second pass: the cells reached backwards from each unassigned cell form a component
+        Map<String, Integer> components = new HashMap<>();
+        int numComponents = 0;
+
+        for (int i = order.size() - 1; i >= 0; i--) {
+            String cell = order.get(i);
+
+            if (components.containsKey(cell)) {
+                continue;
+            }
+
+            int component = numComponents++;
+            Deque<String> stack = new ArrayDeque<>(Collections.singleton(cell));
+            components.put(cell, component);
+
+            while (!stack.isEmpty()) {
+                for (String previous : reversedEdges.getOrDefault(stack.pop(), Collections.emptyList())) {
+                    if (!components.containsKey(previous)) {
+                        components.put(previous, component);
+                        stack.push(previous);
+                    }
+                }
+            }
+        }
+
+        return components;
+    }
+
+    /**
+     * Method that finds the components that can be reached from each component.
+     * Kosaraju's algorithm finds the components in topological order, so the
+     * components reachable from a component are computed from the components
+     * that come after it.
+     *
+     * @param components Map from each cell to the index of its component.
+     * @param edges      Map from each cell to the cells that can be entered from it.
+     * @return Returns the set of reachable components of each component, including
+     * the component itself.
+     */
+    private static BitSet[] findReachableComponents(Map<String, Integer> components,
+                                                    Map<String, List<String>> edges) {
+        int numComponents = (int) components.values().stream().distinct().count();
+        List<List<String>> cellsByComponent = new ArrayList<>();
+
+        for (int i = 0; i < numComponents; i++) {
+            cellsByComponent.add(new ArrayList<>());
+        }
+
+        components.forEach((cell, component) -> cellsByComponent.get(component).add(cell));
+        BitSet[] reachable = new BitSet[numComponents];
+
+        for (int component = numComponents - 1; component >= 0; component--) {
+            reachable[component] = new BitSet(numComponents);
+            reachable[component].set(component);
+
+            for (String cell : cellsByComponent.get(component)) {
+                for (String next : edges.getOrDefault(cell, Collections.emptyList())) {
+                    int nextComponent = components.get(next);
+
+                    if (nextComponent != component) {
+                        reachable[component].or(reachable[nextComponent]);
+                    }
+                }
+            }
+        }
+
+        return reachable;
+    }
+
+    /**
+     * Method that refines an abstract plan into a plan of the original problem.
+     * Navigation actions of the abstract plan are skipped, and each of the rest
+     * of its actions is preceded by the shortest sequence of navigation actions
+     * that makes it applicable.
+     *
+     * @param navigation   Navigation actions of the domain.
+     * @param task         Ground task of the original problem.
+     * @param movers       Objects that can be moved.
+     * @param abstractPlan Steps of the abstract plan.
+     * @param deadline     Deadline of the refinement.
+     * @return Returns the refined plan or null if it can't be refined.
+     * @throws PlannerTimeoutException Thrown when the deadline expires.
+     */
+    private List<GroundAction> refine(Navigation navigation, GroundTask task, Set<String> movers,
+                                      JSONArray abstractPlan, PlanningDeadline deadline) throws PlannerTimeoutException {
+        BitSet locationAtoms = HierarchicalPlanner.getMoverAtoms(navigation, task, movers, false);
+        BitSet navigationAtoms = HierarchicalPlanner.getMoverAtoms(navigation, task, movers, true);
+        Map<String, GroundAction> actionsByInstance = new HashMap<>();
+        Map<Integer, List<GroundAction>> navigationActions = new HashMap<>();
+
+        // Navigation actions are indexed by the position of the moved object they require (-1 if none)
+        for (GroundAction action : task.getActions()) {
+            if (navigation.movements.containsKey(action.getSchema().getName())
+                    || navigation.turns.contains(action.getSchema().getName())) {
+                int location = Arrays.stream(action.getPositivePreconditions())
+                        .filter(locationAtoms::get).findFirst().orElse(-1);
+                navigationActions.computeIfAbsent(location, key -> new ArrayList<>()).add(action);
+            } else {
+                actionsByInstance.put(action.getInstance(), action);
+            }
+        }
+
+        List<GroundAction> plan = new ArrayList<>();
+        BitSet state = task.getInitialState();
+
+        for (int i = 0; i < abstractPlan.length(); i++) {
+            List<String> parts = PDDLGrounder.splitAtom(abstractPlan.getJSONObject(i).getString("name")
+                    .trim().toLowerCase());
+            String schema = parts.get(0);
+
+            if (schema.equals(HierarchicalPlanner.LEAVE_ACTION) || schema.equals(HierarchicalPlanner.CROSS_ACTION)
+                    || schema.equals(HierarchicalPlanner.ENTER_ACTION) || navigation.movements.containsKey(schema)
+                    || navigation.turns.contains(schema)) {
+                continue;
+            }
+
+            GroundAction action = actionsByInstance.get(String.format("(%s)", String.join(" ", parts)));
+
+            if (action == null) {
+                return null;
+            }
+
+            if (!action.isApplicable(state)) {
+                state = this.navigate(state, action::isApplicable, navigationActions, locationAtoms,
+                        navigationAtoms, plan, deadline);
+
+                if (state == null) {
+                    return null;
+                }
+            }
+
+            plan.add(action);
+            state = action.apply(state);
+        }
+
+        if (!task.isGoal(state)) {
+            state = this.navigate(state, task::isGoal, navigationActions, locationAtoms, navigationAtoms, plan,
+                    deadline);
+        }
+
+        return state != null ? plan : null;
+    }
+
+    /**
+     * Method that searches the shortest sequence of navigation actions that leads
+     * to a state which satisfies a condition. States are compared only by the
+     * position and the orientation of the moved object, as the rest of the changes
+     * made by navigation actions don't prevent other navigation actions.
+     *
+     * @param state             State from which the search starts.
+     * @param condition         Condition that the reached state must satisfy.
+     * @param navigationActions Ground navigation actions, indexed by the position of
+     *                          the moved object they require.
+     * @param locationAtoms     Atoms about the position of the moved object.
+     * @param navigationAtoms   Atoms about the position and orientation of the moved object.
+     * @param plan              Plan to which the found actions are appended.
+     * @param deadline          Deadline of the search.
+     * @return Returns the reached state or null if no state satisfying the condition
+     * has been found.
+     * @throws PlannerTimeoutException Thrown when the deadline expires.
+     */
+    private BitSet navigate(BitSet state, Predicate<BitSet> condition,
+                            Map<Integer, List<GroundAction>> navigationActions, BitSet locationAtoms,
+                            BitSet navigationAtoms, List<GroundAction> plan, PlanningDeadline deadline)
+            throws PlannerTimeoutException {
+        Queue<SearchNode> open = new ArrayDeque<>();
+        Set<BitSet> closed = new HashSet<>();
+        open.add(new SearchNode(state, null, null));
+        closed.add(HierarchicalPlanner.project(state, navigationAtoms));
+        int expanded = 0;
+
+        while (!open.isEmpty() && expanded < this.maxNodes) {
+            if (++expanded % HierarchicalPlanner.DEADLINE_CHECK_INTERVAL == 0) {
+                deadline.check();
+            }
+
+            SearchNode node = open.poll();
+
+            if (condition.test(node.state)) {
+                List<GroundAction> path = new ArrayList<>();
+
+                for (SearchNode current = node; current.parent != null; current = current.parent) {
+                    path.add(current.action);
+                }
+
+                Collections.reverse(path);
+                plan.addAll(path);
+
+                return node.state;
+            }
+
+            List<GroundAction> candidates = new ArrayList<>(
+                    navigationActions.getOrDefault(-1, Collections.emptyList()));
+            BitSet locations = HierarchicalPlanner.project(node.state, locationAtoms);
+
+            for (int atom = locations.nextSetBit(0); atom >= 0; atom = locations.nextSetBit(atom + 1)) {
+                candidates.addAll(navigationActions.getOrDefault(atom, Collections.emptyList()));
+            }
+
+            for (GroundAction action : candidates) {
+                if (action.isApplicable(node.state)) {
+                    BitSet successor = action.apply(node.state);
+
+                    if (closed.add(HierarchicalPlanner.project(successor, navigationAtoms))) {
+                        open.add(new SearchNode(successor, node, action));
+                    }
+                }
+            }
+        }
+
+        return null;
+    }
+
+    /**
+     * Method that returns the atoms about the position (and optionally the
+     * orientation) of the objects that can be moved.
+     *
+     * @param navigation  Navigation actions of the domain.
+     * @param task        Ground task.
+     * @param movers      Objects that can be moved.
+     * @param orientation Whether to include the atoms changed by turns or not.
+     * @return Returns the set of atoms.
+     */
+    private static BitSet getMoverAtoms(Navigation navigation, GroundTask task, Set<String> movers,
+                                        boolean orientation) {
+        BitSet atoms = new BitSet();
+        List<String> table = task.getAtoms();
+
+        for (int i = 0; i < table.size(); i++) {
+            List<String> parts = PDDLGrounder.splitAtom(table.get(i));
+
+            if ((orientation && navigation.orientationPredicates.contains(parts.get(0)))
+                    || (parts.get(0).equals(navigation.locationPredicate) && parts.size() == 3
+                    && movers.contains(parts.get(2 - navigation.cellPosition)))) {
+                atoms.set(i);
+            }
+        }
+
+        return atoms;
+    }
+
+    /**
+     * Method that checks whether the preconditions of an action hold in a state,
+     * ignoring some atoms.
+     *
+     * @param state   State to be checked.
+     * @param action  Ground action.
+     * @param ignored Atoms that are ignored.
+     * @return Returns true if the rest of the preconditions hold and false otherwise.
+     */
+    private static boolean holdsIgnoring(BitSet state, GroundAction action, BitSet ignored) {
+        for (int atom : action.getPositivePreconditions()) {
+            if (!ignored.get(atom) && !state.get(atom)) {
+                return false;
+            }
+        }
+
+        for (int atom : action.getNegativePreconditions()) {
+            if (!ignored.get(atom) && state.get(atom)) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    private static BitSet project(BitSet state, BitSet atoms) {
+        BitSet projection = (BitSet) state.clone();
+        projection.and(atoms);
+
+        return projection;
+    }
+
+    /**
+     * Method that collects the atoms added or deleted by an effect, including
+     * the conditional ones.
+     *
+     * @param effect Effect of an action schema.
+     * @param atoms  List in which the atoms are stored.
+     */
+    private static void collectEffectAtoms(PDDLFormula effect, List<PDDLFormula> atoms) {
+        if (effect.getKind() == PDDLFormula.Kind.ATOM) {
+            atoms.add(effect);
+        } else if (effect.getKind() == PDDLFormula.Kind.WHEN) {
+            HierarchicalPlanner.collectEffectAtoms(effect.getChildren().get(1), atoms);
+        } else {
+            effect.getChildren().forEach(child -> HierarchicalPlanner.collectEffectAtoms(child, atoms));
+        }
+    }
+}
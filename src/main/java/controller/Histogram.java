@@ -0,0 +1,244 @@
+/*
+ * Histogram.java
+ *
+ * Copyright (C) 2020 Vladislav Nikolov Vasilev
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see https://www.gnu.org/licenses/gpl-3.0.html.
+ */
+
+/**
+ * Package that contains the planning agent along with its data structures.
+ */
+package controller;
+
+import kong.unirest.json.JSONObject;
+
+/**
+ * Class that counts how many times each value has been recorded, in the same
+ * way as HDR histograms do. Values are grouped into buckets whose width grows
+ * with the magnitude of the values: the first 128 values have their own
+ * buckets, and each following power of two is split into 64 buckets. Thus,
+ * the percentiles are computed with a relative error below 1.6%, whatever
+ * the range of the values, using a fixed amount of memory. Histograms can be
+ * added up, so the results of several games can be combined.
+ *
+ * @author Vladislav Nikolov Vasilev
+ */
+public class Histogram {
+    // Number of bits of the buckets of the first values and of each power of two
+    private static final int SUB_BUCKET_BITS = 7;
+    private static final int SUB_BUCKETS = 1 << Histogram.SUB_BUCKET_BITS;
+    private static final int HALF_SUB_BUCKETS = Histogram.SUB_BUCKETS / 2;
+    private static final int BUCKETS = Histogram.SUB_BUCKETS
+            + (Long.SIZE - Histogram.SUB_BUCKET_BITS) * Histogram.HALF_SUB_BUCKETS;
+
+    private final long[] counts;
+    private long count;
+    private long sum;
+    private long min;
+    private long max;
+
+    /**
+     * Class constructor. Creates an empty histogram.
+     */
+    public Histogram() {
+        this.counts = new long[Histogram.BUCKETS];
+        this.min = Long.MAX_VALUE;
+        this.max = 0;
+    }
+
+    public synchronized long getCount() {
+        return this.count;
+    }
+
+    public synchronized long getSum() {
+        return this.sum;
+    }
+
+    /**
+     * Method that returns the smallest recorded value.
+     *
+     * @return Returns the smallest value or 0 if the histogram is empty.
+     */
+    public synchronized long getMin() {
+        return this.count > 0 ? this.min : 0;
+    }
+
+    public synchronized long getMax() {
+        return this.max;
+    }
+
+    /**
+     * Method that returns the mean of the recorded values.
+     *
+     * @return Returns the mean or 0 if the histogram is empty.
+     */
+    public synchronized double getMean() {
+        return this.count > 0 ? (double) this.sum / this.count : 0;
+    }
+
+    /**
+     * Method that records a value. Negative values are recorded as 0.
+     *
+     * @param value Value to be recorded.
+     */
+    public synchronized void record(long value) {
+        long recorded = Math.max(value, 0);
+        this.counts[Histogram.getBucket(recorded)]++;
+        this.count++;
+        this.sum += recorded;
+        this.min = Math.min(this.min, recorded);
+        this.max = Math.max(this.max, recorded);
+    }
+
+    /**
+     * Method that returns the value below which a percentage of the recorded
+     * values are. As the values are grouped into buckets, the highest value of
+     * the bucket is returned.
+     *
+     * @param percentile Percentage between 0 and 100.
+     * @return Returns the value at the percentile or 0 if the histogram is empty.
+     */
+    public synchronized long getValueAtPercentile(double percentile) {
+        if (this.count == 0) {
+            return 0;
+        }
+
+        long target = Math.max(1, (long) Math.ceil(Math.min(percentile, 100) / 100 * this.count));
+        long accumulated = 0;
+
+        for (int bucket = 0; bucket < this.counts.length; bucket++) {
+            accumulated += this.counts[bucket];
+
+            if (accumulated >= target) {
+                return Math.max(this.getMin(), Math.min(Histogram.getHighestValue(bucket), this.max));
+            }
+        }
+
+        return this.max;
+    }
+
+    /**
+     * Method that adds the values recorded in another histogram to this one.
+     *
+     * @param other Other histogram.
+     */
+    public void add(Histogram other) {
+        // The other histogram is copied first to avoid holding both locks
+        long[] otherCounts;
+        long otherCount, otherSum, otherMin, otherMax;
+
+        synchronized (other) {
+            otherCounts = other.counts.clone();
+            otherCount = other.count;
+            otherSum = other.sum;
+            otherMin = other.min;
+            otherMax = other.max;
+        }
+
+        synchronized (this) {
+            for (int bucket = 0; bucket < this.counts.length; bucket++) {
+                this.counts[bucket] += otherCounts[bucket];
+            }
+
+            this.count += otherCount;
+            this.sum += otherSum;
+            this.min = Math.min(this.min, otherMin);
+            this.max = Math.max(this.max, otherMax);
+        }
+    }
+
+    /**
+     * Method that returns the histogram as a JSON object. Only the buckets which
+     * contain values are included.
+     *
+     * @return Returns a JSON object with the histogram.
+     */
+    public synchronized JSONObject toJSON() {
+        JSONObject buckets = new JSONObject();
+
+        for (int bucket = 0; bucket < this.counts.length; bucket++) {
+            if (this.counts[bucket] > 0) {
+                buckets.put(String.valueOf(bucket), this.counts[bucket]);
+            }
+        }
+
+        JSONObject json = new JSONObject();
+        json.put("count", this.count);
+        json.put("sum", this.sum);
+        json.put("min", this.getMin());
+        json.put("max", this.max);
+        json.put("buckets", buckets);
+
+        return json;
+    }
+
+    /**
+     * Method that creates a histogram from a JSON object returned by
+     * {@link #toJSON()}.
+     *
+     * @param json JSON object with the histogram.
+     * @return Returns the histogram.
+     */
+    public static Histogram fromJSON(JSONObject json) {
+        Histogram histogram = new Histogram();
+        JSONObject buckets = json.getJSONObject("buckets");
+
+        for (String bucket : buckets.keySet()) {
+            histogram.counts[Integer.parseInt(bucket)] = buckets.getLong(bucket);
+        }
+
+        histogram.count = json.getLong("count");
+        histogram.sum = json.getLong("sum");
+        histogram.min = histogram.count > 0 ? json.getLong("min") : Long.MAX_VALUE;
+        histogram.max = json.getLong("max");
+
+        return histogram;
+    }
+
+    /**
+     * Method that returns the bucket of a value.
+     *
+     * @param value Non-negative value.
+     * @return Returns the index of the bucket.
+     */
+    private static int getBucket(long value) {
+        if (value < Histogram.SUB_BUCKETS) {
+            return (int) value;
+        }
+
+        // The value is shifted so it has as many bits as the first half of the sub-buckets
+        int shift = Long.SIZE - Long.numberOfLeadingZeros(value) - Histogram.SUB_BUCKET_BITS;
+
+        return Histogram.SUB_BUCKETS + (shift - 1) * Histogram.HALF_SUB_BUCKETS
+                + (int) (value >>> shift) - Histogram.HALF_SUB_BUCKETS;
+    }
+
+    /**
+     * Method that returns the highest value that is recorded in a bucket.
+     *
+     * @param bucket Index of the bucket.
+     * @return Returns the highest value of the bucket.
+     */
+    private static long getHighestValue(int bucket) {
+        if (bucket < Histogram.SUB_BUCKETS) {
+            return bucket;
+        }
+
+        int shift = (bucket - Histogram.SUB_BUCKETS) / Histogram.HALF_SUB_BUCKETS + 1;
+        long top = (bucket - Histogram.SUB_BUCKETS) % Histogram.HALF_SUB_BUCKETS + Histogram.HALF_SUB_BUCKETS;
+
+        return ((top + 1) << shift) - 1;
+    }
+}
@@ -0,0 +1,138 @@
+/*
+ * HttpPlanner.java
+ *
+ * Copyright (C) 2020 Vladislav Nikolov Vasilev
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see https://www.gnu.org/licenses/gpl-3.0.html.
+ */
+
+/**
+ * Package that contains the planning agent along with its data structures.
+ */
+package controller;
+
+import kong.unirest.json.JSONObject;
+
+/**
+ * Planner that sends the problems to a remote solver through HTTP. It can be
+ * used with the online solver from planning.domains or with a solver running
+ * on localhost. The requests are sent by a {@link PlannerHttpClient}, which
+ * reuses the connections and retries the calls that fail. If the solver can't
+ * be called, the problem is solved by a local fallback planner (if any).
+ *
+ * @author Vladislav Nikolov Vasilev
+ */
+public class HttpPlanner implements Planner {
+    /**
+     * URL of the online solver.
+     */
+    public static final String REMOTE_URL = "http://solver.planning.domains/solve";
+
+    /**
+     * URL of the solver running on localhost.
+     */
+    public static final String LOCALHOST_URL = "http://localhost:5000/solve";
+
+    private String url;
+    private PlannerHttpClient client;
+    private Planner fallback;
+    private int fallbackCalls;
+    private AgentMetrics metrics;
+
+    /**
+     * Class constructor.
+     *
+     * @param url      URL to which the problems will be sent.
+     * @param client   Client used to send the problems.
+     * @param fallback Planner used when the solver can't be called. If it is null,
+     *                 the error is thrown instead.
+     */
+    public HttpPlanner(String url, PlannerHttpClient client, Planner fallback) {
+        this.url = url;
+        this.client = client;
+        this.fallback = fallback;
+    }
+
+    public String getUrl() {
+        return this.url;
+    }
+
+    public PlannerHttpClient getClient() {
+        return this.client;
+    }
+
+    public synchronized int getFallbackCalls() {
+        return this.fallbackCalls;
+    }
+
+    public AgentMetrics getMetrics() {
+        return this.metrics;
+    }
+
+    /**
+     * Method that sets the metrics in which the latencies of the requests and
+     * the time spent parsing the responses are recorded.
+     *
+     * @param metrics Metrics of the agent. If it is null, nothing is recorded.
+     */
+    public void setMetrics(AgentMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+    @Override
+    public String getName() {
+        return String.format("http(%s)", this.url);
+    }
+
+    @Override
+    public JSONObject solve(String domain, String problem, PlanningDeadline deadline) throws PlannerException {
+        // Create JSON object which will be sent in the request's body
+        JSONObject jsonObject = new JSONObject();
+        jsonObject.put("domain", domain);
+        jsonObject.put("problem", problem);
+
+        try {
+            return this.client.post(this.url, jsonObject, deadline, this.metrics);
+        } catch (PlannerTimeoutException e) {
+            throw e;
+        } catch (PlannerException e) {
+            return this.fallback(domain, problem, deadline, e);
+        }
+    }
+
+    /**
+     * Method that solves a problem with the fallback planner after the solver
+     * couldn't be called.
+     *
+     * @param domain   Content of the domain file.
+     * @param problem  Content of the problem file.
+     * @param deadline Deadline of the call.
+     * @param error    Error thrown when calling the solver.
+     * @return Returns the response of the fallback planner.
+     * @throws PlannerException Thrown when there's no fallback planner (the given
+     *                          error is thrown) or when the fallback planner fails.
+     */
+    protected JSONObject fallback(String domain, String problem, PlanningDeadline deadline, PlannerException error)
+            throws PlannerException {
+        if (this.fallback == null) {
+            throw error;
+        }
+
+        synchronized (this) {
+            this.fallbackCalls++;
+        }
+
+        return this.fallback.solve(domain, problem, deadline);
+    }
+}
@@ -0,0 +1,770 @@
+/*
+ * MacroMiner.java
+ *
+ * Copyright (C) 2020 Vladislav Nikolov Vasilev
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see https://www.gnu.org/licenses/gpl-3.0.html.
+ */
+
+/**
+ * Package that contains the planning agent along with its data structures.
+ */
+package controller;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * Class that mines macro operators from the plans found by the planner. A macro
+ * operator replaces a frequent sequence of actions (for example, turning and
+ * then moving in the same direction), so the planner needs fewer steps to reach
+ * the goals. Sequences are lifted before being counted: each object is replaced
+ * by a variable, so "(turn-down p) (move-down p c_1_1 c_1_2)" and
+ * "(turn-down p) (move-down p c_4_3 c_4_4)" are occurrences of the same sequence.
+ * <p>
+ * The precondition and the effect of a macro operator are obtained by composing
+ * the ones of its steps: the conditions of each step are regressed through the
+ * effects of the previous ones. If two atoms can only be told apart by the
+ * objects bound to their variables, an inequality is added to the precondition,
+ * since different variables always correspond to different objects in the
+ * mined sequences. Sequences which can't be composed exactly (for example, when
+ * a step needs a fact that a previous step only changes under some condition)
+ * are discarded.
+ * <p>
+ * The steps of each macro operator are written in a comment before the action
+ * (see {@link #MACRO_DIRECTIVE}), so the domain can still be given to any
+ * planner and the plans can be expanded back by {@link PDDLAction}.
+ *
+ * @author Vladislav Nikolov Vasilev
+ */
+public class MacroMiner {
+    /**
+     * Comment that precedes the steps of a macro operator in the domain file.
+     */
+    public static final String MACRO_DIRECTIVE = ";; macro";
+
+    /**
+     * Prefix of the names of the macro operators.
+     */
+    public static final String MACRO_PREFIX = "macro-";
+
+    /**
+     * Default maximum number of steps of a macro operator.
+     */
+    public static final int DEFAULT_MAX_LENGTH = 2;
+
+    /**
+     * Default minimum number of occurrences of a sequence to become a macro operator.
+     */
+    public static final int DEFAULT_MIN_SUPPORT = 5;
+
+    /**
+     * Default maximum number of parameters of a macro operator. Each parameter
+     * multiplies the number of ground actions of the macro operator.
+     */
+    public static final int DEFAULT_MAX_PARAMETERS = 4;
+
+    private PDDLDomain domain;
+    private int maxLength;
+    private int minSupport;
+    private int maxParameters;
+    private Map<String, Sequence> sequences;
+    private Map<String, Integer> supports;
+
+    /**
+     * Result of regressing a literal through the effects of a sequence of actions.
+     */
+    private enum Regression {
+        TRUE,
+        FALSE,
+        KEEP,
+        UNKNOWN
+    }
+
+    /**
+     * Class that represents a lifted sequence of actions. The arguments of each
+     * step are indices of variables, which are numbered in order of appearance.
+     */
+    private static class Sequence {
+        private String key;
+        private List<String> names;
+        private List<int[]> arguments;
+        private int support;
+
+        /**
+         * Class constructor.
+         *
+         * @param key       Key of the sequence.
+         * @param names     Names of the actions of the sequence.
+         * @param arguments Variables bound to the parameters of each action.
+         */
+        private Sequence(String key, List<String> names, List<int[]> arguments) {
+            this.key = key;
+            this.names = names;
+            this.arguments = arguments;
+            this.support = 0;
+        }
+    }
+
+    /**
+     * Class that represents a single literal of the effect of a macro operator
+     * along with the conditions under which it takes place.
+     */
+    private static class Effect {
+        private List<PDDLFormula> conditions;
+        private PDDLFormula literal;
+
+        /**
+         * Class constructor.
+         *
+         * @param conditions Conditions of the effect (empty if it is unconditional).
+         * @param literal    Literal made true by the effect.
+         */
+        private Effect(List<PDDLFormula> conditions, PDDLFormula literal) {
+            this.conditions = conditions;
+            this.literal = literal;
+        }
+
+        private boolean isAdd() {
+            return this.literal.getKind() != PDDLFormula.Kind.NOT;
+        }
+
+        private PDDLFormula getAtom() {
+            return this.isAdd() ? this.literal : this.literal.getChildren().get(0);
+        }
+    }
+
+    /**
+     * Class that contains the state of the composition of a macro operator.
+     */
+    private class Composition {
+        private List<String> parameters = new ArrayList<>();
+        private Map<String, String> types = new HashMap<>();
+        private List<PDDLFormula> preconditions = new ArrayList<>();
+        private List<PDDLFormula> inequalities = new ArrayList<>();
+        private Set<String> distinctTerms = new HashSet<>();
+        private List<Effect> effects = new ArrayList<>();
+        private List<PDDLFormula> steps = new ArrayList<>();
+
+        /**
+         * Method that appends an action to the macro operator.
+         *
+         * @param schema    Action schema.
+         * @param arguments Variables bound to the parameters of the action.
+         * @return Returns true if the action could be appended and false otherwise.
+         */
+        private boolean append(PDDLActionSchema schema, int[] arguments) {
+            Map<String, String> binding = new HashMap<>();
+            List<String> stepTerms = new ArrayList<>();
+
+            for (int i = 0; i < arguments.length; i++) {
+                String type = schema.getParameterTypes().get(i);
+
+                if (arguments[i] == this.parameters.size()) {
+                    String parameter = schema.getParameters().get(i);
+
+                    for (int suffix = 2; this.parameters.contains(parameter); suffix++) {
+                        parameter = schema.getParameters().get(i) + "-" + suffix;
+                    }
+
+                    this.parameters.add(parameter);
+                    this.types.put(parameter, type);
+                } else {
+                    // The type of a variable is the most specific one among its parameters
+                    String parameter = this.parameters.get(arguments[i]);
+                    String currentType = this.types.get(parameter);
+
+                    if (MacroMiner.this.domain.isSubtype(type, currentType)) {
+                        this.types.put(parameter, type);
+                    } else if (!MacroMiner.this.domain.isSubtype(currentType, type)) {
+                        return false;
+                    }
+                }
+
+                binding.put(schema.getParameters().get(i), this.parameters.get(arguments[i]));
+                stepTerms.add(this.parameters.get(arguments[i]));
+            }
+
+            // Every condition of the action is regressed through the effects of the previous steps
+            for (PDDLFormula literal : MacroMiner.rename(schema.getPrecondition(), binding).getConjuncts()) {
+                Regression regression = this.regress(literal);
+
+                if (regression == Regression.FALSE || regression == Regression.UNKNOWN) {
+                    return false;
+                } else if (regression == Regression.KEEP && !this.contains(this.preconditions, literal)) {
+                    this.preconditions.add(literal);
+                }
+            }
+
+            List<Effect> stepEffects = new ArrayList<>();
+
+            for (PDDLFormula effect : MacroMiner.rename(schema.getEffect(), binding).getConjuncts()) {
+                boolean conditional = effect.getKind() == PDDLFormula.Kind.WHEN;
+                List<PDDLFormula> conditions = new ArrayList<>();
+                boolean triggered = true;
+
+                if (conditional) {
+                    for (PDDLFormula condition : effect.getChildren().get(0).getConjuncts()) {
+                        Regression regression = this.regress(condition);
+
+                        if (regression == Regression.UNKNOWN) {
+                            return false;
+                        } else if (regression == Regression.FALSE) {
+                            triggered = false;
+                        } else if (regression == Regression.KEEP) {
+                            conditions.add(condition);
+                        }
+                    }
+                }
+
+                if (triggered) {
+                    for (PDDLFormula literal : (conditional ? effect.getChildren().get(1) : effect).getConjuncts()) {
+                        stepEffects.add(new Effect(conditions, literal));
+                    }
+                }
+            }
+
+            for (Effect effect : stepEffects) {
+                if (!this.merge(effect)) {
+                    return false;
+                }
+            }
+
+            this.steps.add(PDDLFormula.atom(schema.getName(), stepTerms));
+
+            return true;
+        }
+
+        /**
+         * Method that regresses a literal through the effects of the current
+         * steps, which means finding the condition that must hold before the
+         * steps for the literal to hold after them.
+         *
+         * @param literal Literal to be regressed.
+         * @return Returns TRUE or FALSE if the literal has always that value after
+         * the steps, KEEP if the steps don't change it and UNKNOWN if the result
+         * can't be written as a conjunction.
+         */
+        private Regression regress(PDDLFormula literal) {
+            boolean positive = literal.getKind() != PDDLFormula.Kind.NOT;
+            PDDLFormula atom = positive ? literal : literal.getChildren().get(0);
+            Boolean value = null;
+
+            if (atom.getKind() == PDDLFormula.Kind.EQUALS) {
+                String left = atom.getTerms().get(0), right = atom.getTerms().get(1);
+
+                if (left.equals(right)) {
+                    value = true;
+                } else if (this.isDistinct(left, right)) {
+                    value = false;
+                } else {
+                    return Regression.KEEP;
+                }
+            } else {
+                boolean add = false, delete = false, conditionalAdd = false, conditionalDelete = false;
+
+                for (Effect effect : this.effects) {
+                    if (this.unify(atom, effect.getAtom())) {
+                        boolean conditional = !effect.conditions.isEmpty();
+                        add |= effect.isAdd() && !conditional;
+                        delete |= !effect.isAdd() && !conditional;
+                        conditionalAdd |= effect.isAdd() && conditional;
+                        conditionalDelete |= !effect.isAdd() && conditional;
+                    }
+                }
+
+                // Add effects are applied after delete effects
+                if (add) {
+                    value = true;
+                } else if (conditionalAdd) {
+                    return Regression.UNKNOWN;
+                } else if (delete) {
+                    value = false;
+                } else if (conditionalDelete) {
+                    return Regression.UNKNOWN;
+                } else {
+                    return Regression.KEEP;
+                }
+            }
+
+            return value == positive ? Regression.TRUE : Regression.FALSE;
+        }
+
+        /**
+         * Method that adds an effect of a new step to the effects of the macro
+         * operator. The effects of the previous steps on the same atom are
+         * overridden if the new effect is unconditional.
+         *
+         * @param effect Effect of the new step.
+         * @return Returns true if the effect could be added and false if the
+         * result would be different from executing the steps one after another.
+         */
+        private boolean merge(Effect effect) {
+            Iterator<Effect> iterator = this.effects.iterator();
+
+            while (iterator.hasNext()) {
+                Effect previous = iterator.next();
+
+                if (this.unify(effect.getAtom(), previous.getAtom())) {
+                    if (effect.conditions.isEmpty()) {
+                        iterator.remove();
+                    } else if (previous.isAdd() && !effect.isAdd()) {
+                        // Within a single action, the add effect would prevail
+                        return false;
+                    }
+                }
+            }
+
+            this.effects.add(effect);
+
+            return true;
+        }
+
+        /**
+         * Method that checks whether two atoms are the same. If they could only be
+         * told apart by the objects bound to their variables, an inequality is
+         * added to the precondition so that they are always different.
+         *
+         * @param first  First atom.
+         * @param second Second atom.
+         * @return Returns true if both atoms are the same and false otherwise.
+         */
+        private boolean unify(PDDLFormula first, PDDLFormula second) {
+            if (!first.getPredicate().equals(second.getPredicate()) ||
+                    first.getTerms().size() != second.getTerms().size()) {
+                return false;
+            }
+
+            String left = null, right = null;
+
+            for (int i = 0; i < first.getTerms().size(); i++) {
+                String firstTerm = first.getTerms().get(i), secondTerm = second.getTerms().get(i);
+
+                if (firstTerm.equals(secondTerm)) {
+                    continue;
+                } else if (this.isDistinct(firstTerm, secondTerm)) {
+                    return false;
+                } else if (left == null) {
+                    left = firstTerm;
+                    right = secondTerm;
+                }
+            }
+
+            if (left == null) {
+                return true;
+            }
+
+            this.distinctTerms.add(left + " " + right);
+            this.distinctTerms.add(right + " " + left);
+            this.inequalities.add(PDDLFormula.not(PDDLFormula.equality(left, right)));
+
+            return false;
+        }
+
+        /**
+         * Method that checks whether two different terms always denote different objects.
+         *
+         * @param first  First term.
+         * @param second Second term.
+         * @return Returns true if the terms can't be bound to the same object.
+         */
+        private boolean isDistinct(String first, String second) {
+            String firstType = this.getType(first), secondType = this.getType(second);
+
+            return (!first.startsWith("?") && !second.startsWith("?")) ||
+                    this.distinctTerms.contains(first + " " + second) ||
+                    !(MacroMiner.this.domain.isSubtype(firstType, secondType) ||
+                            MacroMiner.this.domain.isSubtype(secondType, firstType));
+        }
+
+        /**
+         * Method that returns the type of a term.
+         *
+         * @param term Variable of the macro operator or constant of the domain.
+         * @return Returns the type of the term.
+         */
+        private String getType(String term) {
+            String type = term.startsWith("?") ? this.types.get(term) : MacroMiner.this.domain.getConstants().get(term);
+
+            return type != null ? type : "object";
+        }
+
+        /**
+         * Method that checks whether a list of formulas contains a given formula.
+         *
+         * @param formulas List of formulas.
+         * @param formula  Formula to be found.
+         * @return Returns true if the formula is in the list and false otherwise.
+         */
+        private boolean contains(List<PDDLFormula> formulas, PDDLFormula formula) {
+            String text = formula.toString();
+
+            return formulas.stream().anyMatch(other -> other.toString().equals(text));
+        }
+
+        /**
+         * Method that creates the action schema of the macro operator.
+         *
+         * @param name Name of the macro operator.
+         * @return Returns the action schema.
+         */
+        private PDDLActionSchema createSchema(String name) {
+            List<PDDLFormula> precondition = new ArrayList<>(this.preconditions);
+            precondition.addAll(this.inequalities);
+
+            // Effects with the same conditions are written together
+            Map<String, List<Effect>> effectGroups = new LinkedHashMap<>();
+
+            for (Effect effect : this.effects) {
+                effectGroups.computeIfAbsent(effect.conditions.toString(), key -> new ArrayList<>()).add(effect);
+            }
+
+            List<PDDLFormula> effect = new ArrayList<>();
+
+            for (List<Effect> group : effectGroups.values()) {
+                List<PDDLFormula> conditions = group.get(0).conditions;
+                List<PDDLFormula> literals = group.stream().map(e -> e.literal).collect(Collectors.toList());
+
+                if (conditions.isEmpty()) {
+                    effect.addAll(literals);
+                } else {
+                    effect.add(PDDLFormula.when(
+                            conditions.size() == 1 ? conditions.get(0) : PDDLFormula.and(conditions),
+                            literals.size() == 1 ? literals.get(0) : PDDLFormula.and(literals)));
+                }
+            }
+
+            List<String> parameterTypes = this.parameters.stream().map(this.types::get).collect(Collectors.toList());
+            PDDLActionSchema schema = new PDDLActionSchema(name, this.parameters, parameterTypes,
+                    PDDLFormula.and(precondition), PDDLFormula.and(effect));
+            schema.setSteps(this.steps);
+
+            return schema;
+        }
+    }
+
+    /**
+     * Class constructor.
+     *
+     * @param domain        Domain whose actions appear in the plans.
+     * @param maxLength     Maximum number of steps of a macro operator.
+     * @param minSupport    Minimum number of occurrences of a sequence to become a
+     *                      macro operator.
+     * @param maxParameters Maximum number of parameters of a macro operator.
+     */
+    public MacroMiner(PDDLDomain domain, int maxLength, int minSupport, int maxParameters) {
+        this.domain = domain;
+        this.maxLength = maxLength;
+        this.minSupport = minSupport;
+        this.maxParameters = maxParameters;
+        this.sequences = new HashMap<>();
+        this.supports = new HashMap<>();
+    }
+
+    /**
+     * Class constructor. Uses the default limits.
+     *
+     * @param domain Domain whose actions appear in the plans.
+     */
+    public MacroMiner(PDDLDomain domain) {
+        this(domain, MacroMiner.DEFAULT_MAX_LENGTH, MacroMiner.DEFAULT_MIN_SUPPORT, MacroMiner.DEFAULT_MAX_PARAMETERS);
+    }
+
+    /**
+     * Method that returns the number of occurrences of the sequence of a mined
+     * macro operator.
+     *
+     * @param name Name of the macro operator.
+     * @return Returns the number of occurrences of its sequence in the plans.
+     */
+    public int getSupport(String name) {
+        return this.supports.getOrDefault(name, 0);
+    }
+
+    /**
+     * Method that reads a plan saved by the agent, which contains the description
+     * of each action (see {@link PDDLActionSchema#describe(List)}).
+     *
+     * @param text Content of the plan file.
+     * @return Returns the list of actions of the plan. Each action is a list
+     * whose first element is the name of the action and the rest are its arguments.
+     * @throws PlannerException Thrown when an action can't be parsed.
+     */
+    public static List<List<String>> parsePlan(String text) throws PlannerException {
+        List<List<String>> plan = new ArrayList<>();
+
+        for (String description : text.split("(?i)(?=\\(:action)")) {
+            if (description.trim().isEmpty()) {
+                continue;
+            }
+
+            PDDLActionSchema action = PDDLParser.parseAction(description);
+            List<String> step = new ArrayList<>();
+            step.add(action.getName());
+            step.addAll(action.getParameters());
+            plan.add(step);
+        }
+
+        return plan;
+    }
+
+    /**
+     * Method that counts the sequences of actions of a plan. Only the sequences
+     * in which every action shares some object with the previous ones are
+     * counted, since the rest can't be joined into a macro operator with few
+     * parameters.
+     *
+     * @param plan List of actions of the plan, as returned by {@link #parsePlan(String)}.
+     */
+    public void addPlan(List<List<String>> plan) {
+        for (int start = 0; start < plan.size(); start++) {
+            Map<String, Integer> variables = new HashMap<>();
+            List<String> names = new ArrayList<>();
+            List<int[]> arguments = new ArrayList<>();
+
+            for (int end = start; end < plan.size() && names.size() < this.maxLength; end++) {
+                List<String> step = plan.get(end);
+                PDDLActionSchema schema = this.domain.getActions().get(step.get(0));
+
+                if (schema == null || schema.getParameters().size() != step.size() - 1) {
+                    break;
+                }
+
+                int[] stepArguments = new int[step.size() - 1];
+                boolean connected = names.isEmpty() || stepArguments.length == 0;
+
+                for (int i = 0; i < stepArguments.length; i++) {
+                    Integer variable = variables.get(step.get(i + 1));
+
+                    if (variable == null) {
+                        variable = variables.size();
+                        variables.put(step.get(i + 1), variable);
+                    } else {
+                        connected = true;
+                    }
+
+                    stepArguments[i] = variable;
+                }
+
+                if (!connected || variables.size() > this.maxParameters) {
+                    break;
+                }
+
+                names.add(step.get(0));
+                arguments.add(stepArguments);
+
+                if (names.size() > 1) {
+                    String key = MacroMiner.createKey(names, arguments);
+                    this.sequences.computeIfAbsent(key,
+                            k -> new Sequence(k, new ArrayList<>(names), new ArrayList<>(arguments))).support++;
+                }
+            }
+        }
+    }
+
+    /**
+     * Method that creates the macro operators of the most frequent sequences.
+     * Sequences are ranked by the number of steps they would save to the planner
+     * (their number of occurrences times their number of steps minus one). The
+     * sequences which are already macro operators of the domain are skipped.
+     *
+     * @param maxMacros Maximum number of macro operators.
+     * @return Returns the list of macro operators.
+     */
+    public List<PDDLActionSchema> mine(int maxMacros) {
+        Set<String> keys = new HashSet<>();
+        Set<String> names = new HashSet<>(this.domain.getActions().keySet());
+        List<PDDLActionSchema> macros = new ArrayList<>();
+
+        for (PDDLActionSchema action : this.domain.getActions().values()) {
+            if (action.isMacro()) {
+                keys.add(MacroMiner.createKey(action.getSteps()));
+            }
+        }
+
+        List<Sequence> candidates = this.sequences.values().stream()
+                .filter(sequence -> sequence.support >= this.minSupport)
+                .sorted(Comparator.comparingInt((Sequence sequence) -> -sequence.support * (sequence.names.size() - 1))
+                        .thenComparing(sequence -> sequence.key))
+                .collect(Collectors.toList());
+
+        for (Sequence sequence : candidates) {
+            if (macros.size() >= maxMacros) {
+                break;
+            }
+
+            if (keys.contains(sequence.key)) {
+                continue;
+            }
+
+            Composition composition = new Composition();
+            boolean composed = true;
+
+            for (int i = 0; i < sequence.names.size() && composed; i++) {
+                composed = composition.append(this.domain.getActions().get(sequence.names.get(i)),
+                        sequence.arguments.get(i));
+            }
+
+            if (composed) {
+                String name = MacroMiner.MACRO_PREFIX + String.join("-", sequence.names);
+
+                for (int suffix = 2; names.contains(name); suffix++) {
+                    name = MacroMiner.MACRO_PREFIX + String.join("-", sequence.names) + "-" + suffix;
+                }
+
+                macros.add(composition.createSchema(name));
+                names.add(name);
+                keys.add(sequence.key);
+                this.supports.put(name, sequence.support);
+            }
+        }
+
+        return macros;
+    }
+
+    /**
+     * Method that writes a macro operator as it must be appended to the domain
+     * file, preceded by the comment which contains its steps.
+     *
+     * @param macro Macro operator.
+     * @return Returns the PDDL text of the macro operator.
+     */
+    public static String write(PDDLActionSchema macro) {
+        StringBuilder builder = new StringBuilder();
+
+        builder.append("  ").append(MacroMiner.MACRO_DIRECTIVE);
+        macro.getSteps().forEach(step -> builder.append(' ').append(step));
+        builder.append('\n');
+
+        builder.append("  (:action ").append(macro.getName()).append('\n');
+        builder.append("    :parameters (");
+
+        for (int i = 0; i < macro.getParameters().size(); i++) {
+            builder.append(i > 0 ? " " : "").append(macro.getParameters().get(i))
+                    .append(" - ").append(macro.getParameterTypes().get(i));
+        }
+
+        builder.append(")\n");
+        builder.append("    :precondition\n");
+        macro.getPrecondition().write(builder, Collections.emptyMap(), "      ");
+        builder.append("    :effect\n");
+        macro.getEffect().write(builder, Collections.emptyMap(), "      ");
+        builder.append("  )\n");
+
+        return builder.toString();
+    }
+
+    /**
+     * Method that appends a list of macro operators to a domain.
+     *
+     * @param domainText Content of the domain file.
+     * @param macros     List of macro operators.
+     * @return Returns the content of the domain with the macro operators.
+     */
+    public static String appendMacros(String domainText, List<PDDLActionSchema> macros) {
+        StringBuilder builder = new StringBuilder();
+        int end = domainText.lastIndexOf(')');
+
+        builder.append(domainText, 0, end);
+
+        for (PDDLActionSchema macro : macros) {
+            builder.append('\n').append(MacroMiner.write(macro));
+        }
+
+        builder.append(domainText.substring(end));
+
+        return builder.toString();
+    }
+
+    /**
+     * Method that creates the key of a lifted sequence of actions.
+     *
+     * @param names     Names of the actions.
+     * @param arguments Variables bound to the parameters of each action.
+     * @return Returns the key of the sequence, for example "turn-down 0; move-down 0 1 2".
+     */
+    private static String createKey(List<String> names, List<int[]> arguments) {
+        StringBuilder builder = new StringBuilder();
+
+        for (int i = 0; i < names.size(); i++) {
+            builder.append(i > 0 ? "; " : "").append(names.get(i));
+
+            for (int argument : arguments.get(i)) {
+                builder.append(' ').append(argument);
+            }
+        }
+
+        return builder.toString();
+    }
+
+    /**
+     * Method that creates the key of the steps of a macro operator of the domain.
+     *
+     * @param steps Steps of the macro operator.
+     * @return Returns the key of the sequence of steps.
+     */
+    private static String createKey(List<PDDLFormula> steps) {
+        Map<String, Integer> variables = new HashMap<>();
+        List<String> names = new ArrayList<>();
+        List<int[]> arguments = new ArrayList<>();
+
+        for (PDDLFormula step : steps) {
+            names.add(step.getPredicate());
+            arguments.add(step.getTerms().stream()
+                    .mapToInt(term -> variables.computeIfAbsent(term, t -> variables.size()))
+                    .toArray());
+        }
+
+        return MacroMiner.createKey(names, arguments);
+    }
+
+    /**
+     * Method that renames the terms of a formula.
+     *
+     * @param formula Formula to be renamed.
+     * @param binding Map from the old terms to the new ones. Terms that aren't
+     *                contained in the map are left as they are.
+     * @return Returns the renamed formula.
+     */
+    private static PDDLFormula rename(PDDLFormula formula, Map<String, String> binding) {
+        List<String> terms = formula.getTerms().stream()
+                .map(term -> binding.getOrDefault(term, term))
+                .collect(Collectors.toList());
+        List<PDDLFormula> children = formula.getChildren().stream()
+                .map(child -> MacroMiner.rename(child, binding))
+                .collect(Collectors.toList());
+
+        switch (formula.getKind()) {
+            case ATOM:
+                return PDDLFormula.atom(formula.getPredicate(), terms);
+            case EQUALS:
+                return PDDLFormula.equality(terms.get(0), terms.get(1));
+            case NOT:
+                return PDDLFormula.not(children.get(0));
+            case WHEN:
+                return PDDLFormula.when(children.get(0), children.get(1));
+            default:
+                return PDDLFormula.and(children);
+        }
+    }
+}
@@ -23,19 +23,25 @@
 package controller;
 
 import ontology.Types;
-import tools.Pair;
 
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.BitSet;
 import java.util.List;
 import java.util.Map;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
 
 /**
  * Class that represents a PDDL action. A PDDLAction object contains a PDDL
  * action instance and its corresponding GVGAI action, a list of instantiated
- * preconditions and a list of instantiated effects.
+ * preconditions and a list of instantiated effects. Preconditions and effects
+ * are also interned in an {@link AtomTable}, so they can be checked against
+ * a bitset state.
+ * <p>
+ * Actions are instantiated from the action schemas of the domain (see
+ * {@link PDDLDomain}) or, if the schema isn't available, from the description
+ * returned by the planner, which is read by the {@link PDDLParser}. Macro
+ * operators are expanded into the actions they are made of, since each PDDL
+ * action must correspond to a single GVGAI action.
  *
  * @author Vladislav Nikolov Vasilev
  */
@@ -44,6 +50,9 @@ public class PDDLAction {
     private Types.ACTIONS GVGAIAction;
     private List<String> preconditions;
     private List<PDDLEffect> effects;
+    private AtomTable atomTable;
+    private int[] positivePreconditionAtoms;
+    private int[] negativePreconditionAtoms;
 
     /**
      * Class that represents an effect of a PDDL action. An effect is consists of
@@ -53,10 +62,16 @@ public class PDDLAction {
     public class PDDLEffect {
         private String effectPredicate;
         private List<String> conditions;
+        private int effectAtom;
+        private boolean negated;
+        private int atom;
+        private int[] positiveConditionAtoms;
+        private int[] negativeConditionAtoms;
 
         /**
          * Class constructor. Creates a new instance with a given effect predicate
-         * and a list of conditions.
+         * and a list of conditions. The predicate and the conditions are interned
+         * in the atom table of the action.
          *
          * @param effectPredicate Instantiated effect predicate.
          * @param conditions      List of conditions that must be met for the effect to
@@ -65,6 +80,16 @@ public class PDDLAction {
         public PDDLEffect(String effectPredicate, List<String> conditions) {
             this.effectPredicate = effectPredicate;
             this.conditions = conditions;
+            this.effectAtom = PDDLAction.this.atomTable.intern(effectPredicate);
+            this.negated = effectPredicate.startsWith("(not ");
+            this.atom = this.negated
+                    ? PDDLAction.this.atomTable.intern(effectPredicate.substring("(not ".length(),
+                    effectPredicate.length() - 1).trim())
+                    : this.effectAtom;
+
+            int[][] conditionAtoms = PDDLAction.this.internLiterals(conditions);
+            this.positiveConditionAtoms = conditionAtoms[0];
+            this.negativeConditionAtoms = conditionAtoms[1];
         }
 
         /**
@@ -85,6 +110,52 @@ public class PDDLAction {
             return this.conditions;
         }
 
+        public AtomTable getAtomTable() {
+            return PDDLAction.this.atomTable;
+        }
+
+        public int getEffectAtom() {
+            return this.effectAtom;
+        }
+
+        /**
+         * Method that tells whether the effect deletes an atom.
+         *
+         * @return Returns true if the effect predicate is negated and false otherwise.
+         */
+        public boolean isDelete() {
+            return this.negated;
+        }
+
+        /**
+         * Method that returns the atom added or deleted by the effect. Unlike
+         * {@link #getEffectAtom()}, negated effects return the atom without the
+         * negation, so the effect can be applied to a bitset state.
+         *
+         * @return Returns the index of the atom in the action's table.
+         */
+        public int getAtom() {
+            return this.atom;
+        }
+
+        public int[] getPositiveConditionAtoms() {
+            return this.positiveConditionAtoms;
+        }
+
+        public int[] getNegativeConditionAtoms() {
+            return this.negativeConditionAtoms;
+        }
+
+        /**
+         * Method that checks whether the conditions of the effect hold in a state.
+         *
+         * @param state State represented as a bitset of atoms of the action's table.
+         * @return Returns true if the effect takes place and false otherwise.
+         */
+        public boolean isTriggered(BitSet state) {
+            return GroundAction.holds(state, this.positiveConditionAtoms, this.negativeConditionAtoms);
+        }
+
         @Override
         public String toString() {
             return "{ PDDLEffect predicate: " + this.effectPredicate + ", Conditions: " + this.conditions + " }";
@@ -101,10 +172,92 @@ public class PDDLAction {
      *                             action to a GVGAI action.
      */
     public PDDLAction(String actionInstance, String actionDescription, Map<String, Types.ACTIONS> actionCorrespondence) {
+        this(actionInstance, actionDescription, actionCorrespondence, new AtomTable());
+    }
+
+    /**
+     * Class constructor. The preconditions and effects of the action are interned
+     * in a given atom table.
+     *
+     * @param actionInstance       String that contains an instantiated PDDL action.
+     * @param actionDescription    String that contains the description of an action
+     *                             (action name, parameters, preconditions and effects).
+     * @param actionCorrespondence Map that contains the correspondence from a PDDL
+     *                             action to a GVGAI action.
+     * @param atomTable            Table in which the atoms are interned.
+     */
+    public PDDLAction(String actionInstance, String actionDescription, Map<String, Types.ACTIONS> actionCorrespondence,
+                      AtomTable atomTable) {
+        this(actionInstance, PDDLParser.parseAction(actionDescription), null, actionCorrespondence, atomTable);
+    }
+
+    /**
+     * Class constructor. The action is instantiated from an action schema of the
+     * domain by binding its parameters, so no description has to be parsed.
+     *
+     * @param actionInstance       String that contains an instantiated PDDL action.
+     * @param schema               Action schema of the domain.
+     * @param arguments            Objects bound to the parameters of the schema. If it
+     *                             is null, the schema is considered to be already
+     *                             instantiated (its parameters are objects).
+     * @param actionCorrespondence Map that contains the correspondence from a PDDL
+     *                             action to a GVGAI action.
+     * @param atomTable            Table in which the atoms are interned.
+     */
+    public PDDLAction(String actionInstance, PDDLActionSchema schema, List<String> arguments,
+                      Map<String, Types.ACTIONS> actionCorrespondence, AtomTable atomTable) {
         this.actionInstance = actionInstance;
+        this.atomTable = atomTable;
         this.GVGAIAction = this.translateActionInstanceToGVGAI(actionCorrespondence);
-        this.preconditions = this.processPreconditionsFromActionDescription(actionDescription);
-        this.effects = this.processEffectsFromActionDescription(actionDescription);
+        this.instantiateSchema(schema, schema.bind(arguments != null ? arguments : schema.getParameters()));
+
+        int[][] preconditionAtoms = this.internLiterals(this.preconditions);
+        this.positivePreconditionAtoms = preconditionAtoms[0];
+        this.negativePreconditionAtoms = preconditionAtoms[1];
+    }
+
+    /**
+     * Method that instantiates an action schema of the domain. If the schema is a
+     * macro operator, its steps are instantiated instead (recursively, since a step
+     * can be another macro operator).
+     *
+     * @param actionInstance       String that contains an instantiated PDDL action.
+     * @param schema               Action schema of the domain.
+     * @param arguments            Objects bound to the parameters of the schema.
+     * @param domain               Domain which contains the schemas of the steps.
+     * @param actionCorrespondence Map that contains the correspondence from a PDDL
+     *                             action to a GVGAI action.
+     * @param atomTable            Table in which the atoms are interned.
+     * @return Returns the list of primitive actions which correspond to the action instance.
+     * @throws PlannerException Thrown when a step isn't an action of the domain.
+     */
+    public static List<PDDLAction> instantiate(String actionInstance, PDDLActionSchema schema, List<String> arguments,
+                                               PDDLDomain domain, Map<String, Types.ACTIONS> actionCorrespondence,
+                                               AtomTable atomTable) throws PlannerException {
+        List<PDDLAction> actions = new ArrayList<>();
+
+        if (!schema.isMacro()) {
+            actions.add(new PDDLAction(actionInstance, schema, arguments, actionCorrespondence, atomTable));
+            return actions;
+        }
+
+        Map<String, String> binding = schema.bind(arguments);
+
+        for (PDDLFormula step : schema.getSteps()) {
+            String stepInstance = step.instantiateAtom(binding);
+            List<String> tokens = PDDLAction.splitActionInstance(stepInstance);
+            PDDLActionSchema stepSchema = domain.getActions().get(tokens.get(0));
+
+            if (stepSchema == null || stepSchema.getParameters().size() != tokens.size() - 1) {
+                throw new PlannerException(String.format("Step %s of the macro operator %s isn't an action of the domain",
+                        stepInstance, schema.getName()));
+            }
+
+            actions.addAll(PDDLAction.instantiate(stepInstance, stepSchema, tokens.subList(1, tokens.size()), domain,
+                    actionCorrespondence, atomTable));
+        }
+
+        return actions;
     }
 
     public String getActionInstance() {
@@ -123,6 +276,28 @@ public class PDDLAction {
         return this.effects;
     }
 
+    public AtomTable getAtomTable() {
+        return this.atomTable;
+    }
+
+    public int[] getPositivePreconditionAtoms() {
+        return this.positivePreconditionAtoms;
+    }
+
+    public int[] getNegativePreconditionAtoms() {
+        return this.negativePreconditionAtoms;
+    }
+
+    /**
+     * Method that checks whether the preconditions of the action hold in a state.
+     *
+     * @param state State represented as a bitset of atoms of the action's table.
+     * @return Returns true if all the preconditions hold and false otherwise.
+     */
+    public boolean isApplicable(BitSet state) {
+        return GroundAction.holds(state, this.positivePreconditionAtoms, this.negativePreconditionAtoms);
+    }
+
     @Override
     public String toString() {
         StringBuilder builder = new StringBuilder();
@@ -136,6 +311,30 @@ public class PDDLAction {
         return builder.toString();
     }
 
+    /**
+     * Method that interns a list of literals, separating positive literals from
+     * negative ones. Negative literals are written as "(not (predicate ...))".
+     *
+     * @param literals List of literals.
+     * @return Returns an array which contains the indices of the positive atoms
+     * and the indices of the negated atoms.
+     */
+    private int[][] internLiterals(List<String> literals) {
+        int[] positive = new int[literals.size()], negative = new int[literals.size()];
+        int numPositive = 0, numNegative = 0;
+
+        for (String literal : literals) {
+            if (literal.startsWith("(not ")) {
+                String atom = literal.substring("(not ".length(), literal.length() - 1).trim();
+                negative[numNegative++] = this.atomTable.intern(atom);
+            } else {
+                positive[numPositive++] = this.atomTable.intern(literal);
+            }
+        }
+
+        return new int[][]{Arrays.copyOf(positive, numPositive), Arrays.copyOf(negative, numNegative)};
+    }
+
     /**
      * Method that transforms the PDDL action instance into a GVGAI action.
      * It used a Map that is passed as parameter in which each PDDL action
@@ -146,184 +345,75 @@ public class PDDLAction {
      * @return Returns the corresponding GVGAI action.
      */
     private Types.ACTIONS translateActionInstanceToGVGAI(Map<String, Types.ACTIONS> actionCorrespondence) {
-        // Create pattern
-        Pattern actionPattern = Pattern.compile("[^( ]+");
-
-        // Find a match of the pattern
-        Matcher actionMatcher = actionPattern.matcher(this.actionInstance);
-        actionMatcher.find();
-
         // Get the action (the first element) and transform it to upper case
-        String action = actionMatcher.group(0).toUpperCase();
+        String action = PDDLAction.splitActionInstance(this.actionInstance).get(0).toUpperCase();
 
         return actionCorrespondence.get(action);
     }
 
     /**
-     * Method that reads an action's description and obtains all the preconditions
-     * associated to that action. All of the preconditions are instantiated.
+     * Method that instantiates the preconditions and effects of an action schema.
+     * Equalities are evaluated when the action is instantiated, so only the
+     * ones that don't hold are kept as preconditions.
      *
-     * @param actionDescription String that contains the description of an action
-     *                          (action name, parameters, preconditions and effects).
-     * @return Returns a list containing all the instantiated preconditions.
+     * @param schema  Action schema.
+     * @param binding Map from the parameters of the schema to objects.
      */
-    private List<String> processPreconditionsFromActionDescription(String actionDescription) {
-        // Get preconditions match
-        String preconditionsMatch = this.matchFormatPattern(Pattern.compile(":precondition[^:]+"),
-                actionDescription,
-                ":precondition");
+    private void instantiateSchema(PDDLActionSchema schema, Map<String, String> binding) {
+        this.preconditions = PDDLAction.instantiateLiterals(schema.getPrecondition(), binding);
+        this.effects = new ArrayList<>();
 
-        // Split preconditions in different lines
-        preconditionsMatch = preconditionsMatch.replaceAll("\\) \\(", "\\)\n\\(");
+        for (PDDLFormula effect : schema.getEffect().getConjuncts()) {
+            if (effect.getKind() == PDDLFormula.Kind.WHEN) {
+                List<String> conditions = PDDLAction.instantiateLiterals(effect.getChildren().get(0), binding);
 
-        // Get preconditions as a list
-        return new ArrayList<>(Arrays.asList(preconditionsMatch.split("\n")));
-    }
-
-    /**
-     * Method that reads an action's description and obtains all the effects
-     * associated to that action. All of the effects are instantiated.
-     *
-     * @param actionDescription String that contains the description of an action
-     *                          (action name, parameters, preconditions and effects).
-     * @return Returns a list containing the instantiated effects.
-     */
-    private List<PDDLEffect> processEffectsFromActionDescription(String actionDescription) {
-        // Get effects match
-        String effectsMatch = this.matchFormatPattern(Pattern.compile(":effect[^:]+"),
-                actionDescription,
-                ":effect");
-
-        // Split effects string into a list of effects
-        List<String> splitEffectsList = this.splitDescriptionIntoBlocks(effectsMatch);
-        List<PDDLEffect> actionEffects = new ArrayList<>();
-
-        // Process each effect
-        for (String effect : splitEffectsList) {
-            if (effect.contains("when")) {
-                // Split effect into a list of conditions and a list of effects
-                Pair<List<String>, List<String>> conditionsEffectsPair = this.splitConditionsFromEffects(effect);
-                List<String> conditionsList = conditionsEffectsPair.first;
-                List<String> effectsList = conditionsEffectsPair.second;
-
-                effectsList.stream().forEach(e -> actionEffects.add(new PDDLEffect(e, conditionsList)));
+                for (String conditionalEffect : PDDLAction.instantiateLiterals(effect.getChildren().get(1), binding)) {
+                    this.effects.add(new PDDLEffect(conditionalEffect, conditions));
+                }
             } else {
-                actionEffects.add(new PDDLEffect(effect));
+                this.effects.add(new PDDLEffect(effect.instantiate(binding)));
             }
         }
-
-        return actionEffects;
     }
 
     /**
-     * Method that matches a part of an action description, removing all extra
-     * spaces and parentheses. It can be used to retrieve the effects and the
-     * preconditions from an action description.
+     * Method that instantiates the literals of a conjunction.
      *
-     * @param pattern       Pattern to be found in the description.
-     * @param description   String containing the action's description.
-     * @param removeElement Element to be removed from the string.
-     * @return Returns a formatted string containing the match.
+     * @param formula Conjunction of literals (or a single literal).
+     * @param binding Map from variables to objects.
+     * @return Returns the list of instantiated literals, for example
+     * ["(at p c_1_1)", "(not (occupied c_1_2))"].
      */
-    private String matchFormatPattern(Pattern pattern, String description, String removeElement) {
-        // Get match of the pattern
-        Matcher matcher = pattern.matcher(description);
-        matcher.find();
-
-        String match = matcher.group(0);
-
-        // Remove all extra spaces, spaces between consequent parentheses and ":effect" at the beginning
-        match = match.replaceAll("\\s+", " ");
-        match = match.substring(0, match.length() - 1);
-        match = match.replaceAll(" \\)", ")");
-        match = match.replaceAll(String.format("%s\\s+", removeElement), "");
-
-        // Remove and statement, if there's any. Also removes last parenthesis
-        if (match.contains("and")) {
-            match = match.replaceFirst("\\(and ", "");
-            match = match.substring(0, match.length() - 1);
-        }
+    private static List<String> instantiateLiterals(PDDLFormula formula, Map<String, String> binding) {
+        List<String> literals = new ArrayList<>();
 
-        // Remove all extra parentheses
-        int numOpenParentheses = match.length() - match.replace("(", "").length();
-        int numCloseParentheses = match.length() - match.replace(")", "").length();
-        int diffParentheses = numOpenParentheses - numCloseParentheses;
+        for (PDDLFormula literal : formula.getConjuncts()) {
+            boolean negated = literal.getKind() == PDDLFormula.Kind.NOT;
+            PDDLFormula atom = negated ? literal.getChildren().get(0) : literal;
 
-        if (numOpenParentheses - numCloseParentheses != 0) {
-            match = match.substring(0, match.length() - Math.abs(diffParentheses));
-        }
-
-        return match;
-    }
+            if (atom.getKind() == PDDLFormula.Kind.EQUALS) {
+                String left = atom.getTerms().get(0), right = atom.getTerms().get(1);
+                boolean equal = binding.getOrDefault(left, left).equals(binding.getOrDefault(right, right));
 
-    /**
-     * Method that splits the conditions from the effects.
-     *
-     * @param description String which contains the conditions and the effects.
-     * @return Returns a pair containing a list of conditions and a list of
-     * effects which depend on those conditions.
-     */
-    private Pair<List<String>, List<String>> splitConditionsFromEffects(String description) {
-        // Process description removing (when and last parenthesis
-        String processedDescription = description.replace("(when ", "");
-        processedDescription = processedDescription.substring(0, processedDescription.length() - 1);
-
-        // Separate effects and conditions in two blocks
-        List<String> effectsConditionsBlocks = this.splitDescriptionIntoBlocks(processedDescription);
-        String conditions = effectsConditionsBlocks.get(0);
-        String effects = effectsConditionsBlocks.get(1);
-
-        // Remove "(and" and last parenthesis, if there's any
-        if (conditions.contains("(and")) {
-            conditions = conditions.replace("(and", "");
-            conditions = conditions.substring(0, conditions.length() - 1);
-        }
+                // Equalities that hold are always satisfied
+                if (equal != negated) {
+                    continue;
+                }
+            }
 
-        if (effects.contains("(and")) {
-            effects = effects.replace("(and", "");
-            effects = effects.substring(0, effects.length() - 1);
+            literals.add(literal.instantiate(binding));
         }
 
-        List<String> conditionsList = this.splitDescriptionIntoBlocks(conditions);
-        List<String> effectsList = this.splitDescriptionIntoBlocks(effects);
-
-        Pair<List<String>, List<String>> conditionsEffectsPair = new Pair(conditionsList, effectsList);
-
-        return conditionsEffectsPair;
+        return literals;
     }
 
     /**
-     * Method that allows to split a given description into parenthesized blocks
-     * according to the opened and closed parentheses found in the string.
+     * Method that splits an action instance into the action name and its arguments.
      *
-     * @param description String to be split into blocks.
-     * @return Returns a list of parenthesized blocks.
+     * @param actionInstance Action instance, for example "(move-up p c_1_2 c_1_1)".
+     * @return Returns the list of tokens of the instance.
      */
-    private List<String> splitDescriptionIntoBlocks(String description) {
-        List<String> descriptionList = new ArrayList<>();
-        StringBuilder builder = new StringBuilder();
-        int numParentheses = 0;
-
-        for (char c : description.toCharArray()) {
-            boolean changed = false;
-
-            if (c == '(') {
-                numParentheses++;
-                changed = true;
-            } else if (c == ')') {
-                numParentheses--;
-                changed = true;
-            }
-
-            builder.append(c);
-
-            // Convert builder to string if a final closing parenthesis is found
-            if (numParentheses == 0 && changed) {
-                descriptionList.add(builder.toString().trim());
-                builder.setLength(0);
-            }
-        }
-
-        return descriptionList;
+    static List<String> splitActionInstance(String actionInstance) {
+        return PDDLGrounder.splitAtom(actionInstance.trim());
     }
 }
@@ -0,0 +1,154 @@
+/*
+ * PDDLActionSchema.java
+ *
+ * Copyright (C) 2020 Vladislav Nikolov Vasilev
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see https://www.gnu.org/licenses/gpl-3.0.html.
+ */
+
+/**
+ * Package that contains the planning agent along with its data structures.
+ */
+package controller;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Class that represents a lifted PDDL action, as it is written in the domain
+ * file. A schema contains the action's name, its typed parameters, its
+ * precondition and its effect.
+ * <p>
+ * A schema can also be a macro operator (see {@link MacroMiner}), in which
+ * case it contains the sequence of actions it is made of. Each step is an atom
+ * whose predicate is the name of an action of the domain and whose terms are
+ * parameters of the macro, for example "(turn-down ?p)".
+ *
+ * @author Vladislav Nikolov Vasilev
+ */
+public class PDDLActionSchema {
+    private String name;
+    private List<String> parameters;
+    private List<String> parameterTypes;
+    private PDDLFormula precondition;
+    private PDDLFormula effect;
+    private List<PDDLFormula> steps;
+
+    /**
+     * Class constructor.
+     *
+     * @param name           Name of the action.
+     * @param parameters     List of parameters (variables) of the action.
+     * @param parameterTypes List of types of the parameters. The i-th type
+     *                       corresponds to the i-th parameter.
+     * @param precondition   Precondition of the action.
+     * @param effect         Effect of the action.
+     */
+    public PDDLActionSchema(String name, List<String> parameters, List<String> parameterTypes,
+                            PDDLFormula precondition, PDDLFormula effect) {
+        this.name = name;
+        this.parameters = parameters;
+        this.parameterTypes = parameterTypes;
+        this.precondition = precondition;
+        this.effect = effect;
+        this.steps = new ArrayList<>();
+    }
+
+    public String getName() {
+        return this.name;
+    }
+
+    public List<String> getParameters() {
+        return this.parameters;
+    }
+
+    public List<String> getParameterTypes() {
+        return this.parameterTypes;
+    }
+
+    public PDDLFormula getPrecondition() {
+        return this.precondition;
+    }
+
+    public PDDLFormula getEffect() {
+        return this.effect;
+    }
+
+    public List<PDDLFormula> getSteps() {
+        return this.steps;
+    }
+
+    public void setSteps(List<PDDLFormula> steps) {
+        this.steps = steps;
+    }
+
+    /**
+     * Method that checks whether the action is a macro operator.
+     *
+     * @return Returns true if the action is made of a sequence of steps and
+     * false otherwise.
+     */
+    public boolean isMacro() {
+        return !this.steps.isEmpty();
+    }
+
+    /**
+     * Method that creates a binding from the parameters of the action to a
+     * list of objects.
+     *
+     * @param arguments List of objects. The i-th object is bound to the i-th
+     *                  parameter.
+     * @return Returns a map from parameters to objects.
+     */
+    public Map<String, String> bind(List<String> arguments) {
+        Map<String, String> binding = new HashMap<>();
+
+        for (int i = 0; i < this.parameters.size(); i++) {
+            binding.put(this.parameters.get(i), arguments.get(i));
+        }
+
+        return binding;
+    }
+
+    /**
+     * Method that generates the instantiated description of the action given a list
+     * of arguments. The description follows the layout used by the planner's
+     * responses.
+     *
+     * @param arguments List of objects bound to the parameters of the action.
+     * @return Returns the instantiated description of the action.
+     */
+    public String describe(List<String> arguments) {
+        Map<String, String> binding = this.bind(arguments);
+        StringBuilder builder = new StringBuilder();
+
+        builder.append("  (:action ").append(this.name).append('\n');
+        builder.append("    :parameters (").append(String.join(" ", arguments)).append(")\n");
+        builder.append("    :precondition\n");
+        PDDLFormula.and(this.precondition.getConjuncts()).write(builder, binding, "      ");
+        builder.append("    :effect\n");
+        PDDLFormula.and(this.effect.getConjuncts()).write(builder, binding, "      ");
+        builder.append("  )");
+
+        return builder.toString();
+    }
+
+    @Override
+    public String toString() {
+        return String.format("{ PDDLActionSchema name: %s, Parameters: %s, Precondition: %s, Effect: %s }",
+                this.name, this.parameters, this.precondition, this.effect);
+    }
+}
@@ -0,0 +1,168 @@
+/*
+ * PDDLDomain.java
+ *
+ * Copyright (C) 2020 Vladislav Nikolov Vasilev
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see https://www.gnu.org/licenses/gpl-3.0.html.
+ */
+
+/**
+ * Package that contains the planning agent along with its data structures.
+ */
+package controller;
+
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Class that represents a parsed PDDL domain. It contains the type hierarchy,
+ * the predicates and the action schemas of the domain.
+ *
+ * @author Vladislav Nikolov Vasilev
+ */
+public class PDDLDomain {
+    private String name;
+    private Map<String, String> typeParents;
+    private Map<String, String> constants;
+    private Set<String> predicates;
+    private Map<String, PDDLActionSchema> actions;
+
+    /**
+     * Class constructor. Creates an empty domain with a given name.
+     *
+     * @param name Name of the domain.
+     */
+    public PDDLDomain(String name) {
+        this.name = name;
+        this.typeParents = new LinkedHashMap<>();
+        this.constants = new LinkedHashMap<>();
+        this.predicates = new HashSet<>();
+        this.actions = new LinkedHashMap<>();
+    }
+
+    public String getName() {
+        return this.name;
+    }
+
+    public Map<String, String> getTypeParents() {
+        return this.typeParents;
+    }
+
+    public Map<String, String> getConstants() {
+        return this.constants;
+    }
+
+    public Set<String> getPredicates() {
+        return this.predicates;
+    }
+
+    public Map<String, PDDLActionSchema> getActions() {
+        return this.actions;
+    }
+
+    /**
+     * Method that adds a new type to the type hierarchy.
+     *
+     * @param type   Name of the type.
+     * @param parent Name of its parent type.
+     */
+    public void addType(String type, String parent) {
+        this.typeParents.put(type, parent);
+    }
+
+    /**
+     * Method that adds a new typed constant to the domain.
+     *
+     * @param constant Name of the constant.
+     * @param type     Type of the constant.
+     */
+    public void addConstant(String constant, String type) {
+        this.constants.put(constant, type);
+    }
+
+    /**
+     * Method that adds a new action schema to the domain.
+     *
+     * @param action Action schema to be added.
+     */
+    public void addAction(PDDLActionSchema action) {
+        this.actions.put(action.getName(), action);
+    }
+
+    /**
+     * Method that checks whether a type is a subtype of another one (or the
+     * same type).
+     *
+     * @param type      Type to be checked.
+     * @param supertype Possible supertype.
+     * @return Returns true if type is equal to supertype or one of its
+     * descendants and false otherwise.
+     */
+    public boolean isSubtype(String type, String supertype) {
+        String current = type;
+        Set<String> visited = new HashSet<>();
+
+        while (current != null && visited.add(current)) {
+            if (current.equals(supertype)) {
+                return true;
+            }
+
+            current = this.typeParents.get(current);
+        }
+
+        return "object".equals(supertype);
+    }
+
+    /**
+     * Method that returns the set of predicates that appear in some effect of
+     * some action. The predicates that aren't contained in this set are static:
+     * their value can't change while the plan is executed.
+     *
+     * @return Returns the set of fluent predicates of the domain.
+     */
+    public Set<String> getFluentPredicates() {
+        Set<String> fluents = new HashSet<>();
+
+        for (PDDLActionSchema action : this.actions.values()) {
+            this.collectPredicates(action.getEffect(), fluents);
+        }
+
+        return fluents;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("{ PDDLDomain name: %s, Types: %s, Actions: %s }",
+                this.name, this.typeParents, this.actions.keySet());
+    }
+
+    /**
+     * Method that collects the predicates that appear in a formula.
+     *
+     * @param formula    Formula to be traversed.
+     * @param predicates Set in which the predicates are stored.
+     */
+    private void collectPredicates(PDDLFormula formula, Set<String> predicates) {
+        if (formula.getKind() == PDDLFormula.Kind.ATOM) {
+            predicates.add(formula.getPredicate());
+        } else if (formula.getKind() == PDDLFormula.Kind.WHEN) {
+            // Only the effect of a conditional effect modifies the state
+            this.collectPredicates(formula.getChildren().get(1), predicates);
+        } else {
+            formula.getChildren().forEach(child -> this.collectPredicates(child, predicates));
+        }
+    }
+}
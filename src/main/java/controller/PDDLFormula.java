@@ -0,0 +1,260 @@
+/*
+ * PDDLFormula.java
+ *
+ * Copyright (C) 2020 Vladislav Nikolov Vasilev
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see https://www.gnu.org/licenses/gpl-3.0.html.
+ */
+
+/**
+ * Package that contains the planning agent along with its data structures.
+ */
+package controller;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Class that represents a node of a PDDL formula. A formula can be an atom
+ * (a predicate applied to a list of terms), an equality between two terms,
+ * a negation, a conjunction or a conditional effect. Only the subset of PDDL
+ * used by the domains of this project is supported.
+ *
+ * @author Vladislav Nikolov Vasilev
+ */
+public class PDDLFormula {
+    /**
+     * Kinds of formula nodes.
+     */
+    public enum Kind {
+        ATOM,
+        EQUALS,
+        NOT,
+        AND,
+        WHEN
+    }
+
+    private Kind kind;
+    private String predicate;
+    private List<String> terms;
+    private List<PDDLFormula> children;
+
+    /**
+     * Class constructor. Creates a new formula node.
+     *
+     * @param kind      Kind of the node.
+     * @param predicate Predicate name. Only used by atoms.
+     * @param terms     List of terms (variables or objects). Only used by atoms
+     *                  and equalities.
+     * @param children  List of sub-formulas. Only used by negations, conjunctions
+     *                  and conditional effects.
+     */
+    private PDDLFormula(Kind kind, String predicate, List<String> terms, List<PDDLFormula> children) {
+        this.kind = kind;
+        this.predicate = predicate;
+        this.terms = terms;
+        this.children = children;
+    }
+
+    /**
+     * Method that creates a new atom.
+     *
+     * @param predicate Predicate name.
+     * @param terms     List of terms.
+     * @return Returns a new atom node.
+     */
+    public static PDDLFormula atom(String predicate, List<String> terms) {
+        return new PDDLFormula(Kind.ATOM, predicate, terms, Collections.emptyList());
+    }
+
+    /**
+     * Method that creates a new equality between two terms.
+     *
+     * @param left  Left term.
+     * @param right Right term.
+     * @return Returns a new equality node.
+     */
+    public static PDDLFormula equality(String left, String right) {
+        List<String> terms = new ArrayList<>();
+        terms.add(left);
+        terms.add(right);
+
+        return new PDDLFormula(Kind.EQUALS, "=", terms, Collections.emptyList());
+    }
+
+    /**
+     * Method that creates the negation of a formula.
+     *
+     * @param formula Formula to be negated.
+     * @return Returns a new negation node.
+     */
+    public static PDDLFormula not(PDDLFormula formula) {
+        return new PDDLFormula(Kind.NOT, null, Collections.emptyList(), Collections.singletonList(formula));
+    }
+
+    /**
+     * Method that creates a conjunction of formulas.
+     *
+     * @param formulas List of formulas.
+     * @return Returns a new conjunction node.
+     */
+    public static PDDLFormula and(List<PDDLFormula> formulas) {
+        return new PDDLFormula(Kind.AND, null, Collections.emptyList(), formulas);
+    }
+
+    /**
+     * Method that creates a conditional effect.
+     *
+     * @param condition Condition that must hold for the effect to take place.
+     * @param effect    Effect that takes place when the condition holds.
+     * @return Returns a new conditional effect node.
+     */
+    public static PDDLFormula when(PDDLFormula condition, PDDLFormula effect) {
+        List<PDDLFormula> children = new ArrayList<>();
+        children.add(condition);
+        children.add(effect);
+
+        return new PDDLFormula(Kind.WHEN, null, Collections.emptyList(), children);
+    }
+
+    public Kind getKind() {
+        return this.kind;
+    }
+
+    public String getPredicate() {
+        return this.predicate;
+    }
+
+    public List<String> getTerms() {
+        return this.terms;
+    }
+
+    public List<PDDLFormula> getChildren() {
+        return this.children;
+    }
+
+    /**
+     * Method that returns the list of conjuncts of the formula. If the formula
+     * is a conjunction, its children are returned (flattening nested conjunctions).
+     * Otherwise, a list containing only the formula is returned.
+     *
+     * @return Returns the list of conjuncts of the formula.
+     */
+    public List<PDDLFormula> getConjuncts() {
+        List<PDDLFormula> conjuncts = new ArrayList<>();
+
+        if (this.kind == Kind.AND) {
+            for (PDDLFormula child : this.children) {
+                conjuncts.addAll(child.getConjuncts());
+            }
+        } else {
+            conjuncts.add(this);
+        }
+
+        return conjuncts;
+    }
+
+    /**
+     * Method that instantiates the terms of an atom given a binding from
+     * variables to objects. Terms that aren't contained in the binding are
+     * left as they are.
+     *
+     * @param binding Map from variables to objects.
+     * @return Returns the instantiated atom as a string, for example
+     * "(at p c_1_1)".
+     */
+    public String instantiateAtom(Map<String, String> binding) {
+        StringBuilder builder = new StringBuilder();
+        builder.append('(').append(this.predicate);
+
+        for (String term : this.terms) {
+            builder.append(' ').append(binding.getOrDefault(term, term));
+        }
+
+        builder.append(')');
+
+        return builder.toString();
+    }
+
+    /**
+     * Method that instantiates the formula given a binding from variables to
+     * objects.
+     *
+     * @param binding Map from variables to objects.
+     * @return Returns the instantiated formula written in a single line, for
+     * example "(not (at p c_1_1))".
+     */
+    public String instantiate(Map<String, String> binding) {
+        if (this.kind == Kind.ATOM || this.kind == Kind.EQUALS) {
+            return this.instantiateAtom(binding);
+        }
+
+        StringBuilder builder = new StringBuilder();
+        builder.append('(').append(this.kind.name().toLowerCase());
+        this.children.forEach(child -> builder.append(' ').append(child.instantiate(binding)));
+        builder.append(')');
+
+        return builder.toString();
+    }
+
+    /**
+     * Method that writes the formula instantiated with a given binding. The
+     * output follows the layout used by the planner's responses, so that it can
+     * be read back by {@link PDDLAction}.
+     *
+     * @param builder Builder in which the formula will be written.
+     * @param binding Map from variables to objects.
+     * @param indent  Current indentation.
+     */
+    public void write(StringBuilder builder, Map<String, String> binding, String indent) {
+        switch (this.kind) {
+            case ATOM:
+            case EQUALS:
+                builder.append(indent).append(this.instantiateAtom(binding)).append('\n');
+                break;
+            default:
+                builder.append(indent).append('(').append(this.kind.name().toLowerCase()).append('\n');
+
+                for (PDDLFormula child : this.children) {
+                    child.write(builder, binding, indent + "  ");
+                }
+
+                builder.append(indent).append(")\n");
+                break;
+        }
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder builder = new StringBuilder();
+
+        switch (this.kind) {
+            case ATOM:
+            case EQUALS:
+                builder.append('(').append(this.predicate);
+                this.terms.forEach(term -> builder.append(' ').append(term));
+                builder.append(')');
+                break;
+            default:
+                builder.append('(').append(this.kind.name().toLowerCase());
+                this.children.forEach(child -> builder.append(' ').append(child));
+                builder.append(')');
+                break;
+        }
+
+        return builder.toString();
+    }
+}
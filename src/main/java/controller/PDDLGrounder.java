@@ -0,0 +1,737 @@
+/*
+ * PDDLGrounder.java
+ *
+ * Copyright (C) 2020 Vladislav Nikolov Vasilev
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see https://www.gnu.org/licenses/gpl-3.0.html.
+ */
+
+/**
+ * Package that contains the planning agent along with its data structures.
+ */
+package controller;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Class that grounds a PDDL problem, generating a {@link GroundTask}. The
+ * parameters of each action schema are bound by backtracking. Atoms that can't
+ * become true during the execution of a plan (static atoms) are used to generate
+ * the candidate bindings, so that only a small fraction of all the possible
+ * combinations of objects is explored. Once all the actions have been grounded,
+ * those that aren't reachable in the delete relaxation are removed. Grounding
+ * large problems can take longer than a turn, so it stops when its deadline
+ * expires.
+ *
+ * @author Vladislav Nikolov Vasilev
+ */
+public class PDDLGrounder {
+    /**
+     * Number of partial bindings explored between two consecutive deadline checks.
+     */
+    private static final int DEADLINE_CHECK_INTERVAL = 256;
+
+    private PDDLDomain domain;
+    private Map<String, String> objects;
+    private Set<String> init;
+    private Set<String> fluentPredicates;
+    private Map<String, List<List<String>>> addPatterns;
+    private Map<String, List<List<String>>> initTuples;
+    private Map<String, List<List<String>>> initTuplesByArgument;
+    private Map<PDDLFormula, Boolean> staticLiterals;
+    private Map<String, List<String>> objectsByType;
+    private GroundTask task;
+    private PlanningDeadline deadline;
+    private long exploredBindings;
+
+    /**
+     * Class constructor.
+     *
+     * @param domain  Parsed domain.
+     * @param problem Parsed problem.
+     */
+    public PDDLGrounder(PDDLDomain domain, PDDLProblem problem) {
+        this.domain = domain;
+        this.objects = new LinkedHashMap<>(domain.getConstants());
+        this.objects.putAll(problem.getObjects());
+        this.init = problem.getInit();
+        this.fluentPredicates = domain.getFluentPredicates();
+        this.addPatterns = this.computeAddPatterns();
+        this.initTuples = new HashMap<>();
+        this.initTuplesByArgument = new HashMap<>();
+        this.staticLiterals = new IdentityHashMap<>();
+        this.objectsByType = new HashMap<>();
+        this.task = new GroundTask();
+
+        // Index the initial state by predicate and register the fluent atoms
+        for (String atom : this.init) {
+            List<String> tuple = PDDLGrounder.splitAtom(atom);
+            String predicate = tuple.remove(0);
+
+            this.initTuples.computeIfAbsent(predicate, key -> new ArrayList<>()).add(tuple);
+
+            for (int i = 0; i < tuple.size(); i++) {
+                this.initTuplesByArgument.computeIfAbsent(PDDLGrounder.argumentKey(predicate, i, tuple.get(i)),
+                        key -> new ArrayList<>()).add(tuple);
+            }
+
+            if (this.fluentPredicates.contains(predicate)) {
+                this.task.getInitialState().set(this.task.intern(atom));
+            }
+        }
+
+        this.groundGoal(problem.getGoal());
+    }
+
+    /**
+     * Method that grounds a problem.
+     *
+     * @param domain  Parsed domain.
+     * @param problem Parsed problem.
+     * @return Returns the grounded task.
+     * @throws PlannerException Thrown when the domain uses unsupported PDDL constructs.
+     */
+    public static GroundTask ground(PDDLDomain domain, PDDLProblem problem) throws PlannerException {
+        return PDDLGrounder.ground(domain, problem, PlanningDeadline.none());
+    }
+
+    /**
+     * Method that grounds a problem before a deadline expires.
+     *
+     * @param domain   Parsed domain.
+     * @param problem  Parsed problem.
+     * @param deadline Deadline of the grounding.
+     * @return Returns the grounded task.
+     * @throws PlannerTimeoutException Thrown when the deadline expires before
+     *                                 the problem has been grounded.
+     * @throws PlannerException        Thrown when the domain uses unsupported PDDL constructs.
+     */
+    public static GroundTask ground(PDDLDomain domain, PDDLProblem problem, PlanningDeadline deadline)
+            throws PlannerException {
+        deadline.check();
+        return new PDDLGrounder(domain, problem).ground(deadline);
+    }
+
+    /**
+     * Method that grounds every action schema of the domain and removes the
+     * actions which aren't relaxed reachable from the initial state.
+     *
+     * @return Returns the grounded task.
+     */
+    public GroundTask ground() {
+        return this.ground(PlanningDeadline.none());
+    }
+
+    /**
+     * Method that grounds every action schema of the domain and removes the
+     * actions which aren't relaxed reachable from the initial state, checking
+     * the deadline while doing so.
+     *
+     * @param deadline Deadline of the grounding.
+     * @return Returns the grounded task.
+     * @throws PlannerTimeoutException Thrown when the deadline expires before
+     *                                 the problem has been grounded.
+     */
+    public GroundTask ground(PlanningDeadline deadline) throws PlannerTimeoutException {
+        this.deadline = deadline;
+        this.exploredBindings = 0;
+
+        List<GroundAction> actions = new ArrayList<>();
+
+        for (PDDLActionSchema schema : this.domain.getActions().values()) {
+            List<PDDLFormula> literals = this.getLiterals(schema.getPrecondition(), schema);
+            this.bindParameters(schema, literals, new HashMap<>(), actions);
+        }
+
+        this.task.setActions(this.removeUnreachableActions(actions));
+
+        return this.task;
+    }
+
+    /**
+     * Method that splits a ground atom into its predicate and its arguments.
+     *
+     * @param atom Ground atom, for example "(at p c_1_1)".
+     * @return Returns a list whose first element is the predicate, followed by
+     * the arguments.
+     */
+    static List<String> splitAtom(String atom) {
+        return new ArrayList<>(Arrays.asList(atom.substring(1, atom.length() - 1).trim().split("\\s+")));
+    }
+
+    /**
+     * Method that binds the parameters of an action schema by backtracking,
+     * generating a ground action for each consistent binding.
+     *
+     * @param schema   Action schema.
+     * @param literals Literals of the schema's precondition.
+     * @param binding  Current (partial) binding.
+     * @param actions  List in which the ground actions are stored.
+     * @throws PlannerTimeoutException Thrown when the deadline expires.
+     */
+    private void bindParameters(PDDLActionSchema schema, List<PDDLFormula> literals,
+                                Map<String, String> binding, List<GroundAction> actions) {
+        if (++this.exploredBindings % PDDLGrounder.DEADLINE_CHECK_INTERVAL == 0) {
+            this.deadline.check();
+        }
+
+        if (!this.isConsistent(schema, literals, binding)) {
+            return;
+        }
+
+        List<String> parameters = schema.getParameters();
+
+        if (binding.size() == parameters.size()) {
+            actions.add(this.instantiate(schema, literals, binding));
+            return;
+        }
+
+        PDDLFormula generator = this.selectGenerator(schema, literals, binding);
+
+        if (generator != null) {
+            // Bind all the free parameters of the generator at once using the initial state
+            for (List<String> tuple : this.getCandidateTuples(generator, binding)) {
+                List<String> newlyBound = this.unify(schema, generator.getTerms(), tuple, binding);
+
+                if (newlyBound != null) {
+                    this.bindParameters(schema, literals, binding, actions);
+                    newlyBound.forEach(binding::remove);
+                }
+            }
+        } else {
+            // Bind the first free parameter to every object of its type
+            int index = 0;
+
+            while (binding.containsKey(parameters.get(index))) {
+                index++;
+            }
+
+            String parameter = parameters.get(index);
+
+            for (String object : this.getObjectsOfType(schema.getParameterTypes().get(index))) {
+                binding.put(parameter, object);
+                this.bindParameters(schema, literals, binding, actions);
+                binding.remove(parameter);
+            }
+        }
+    }
+
+    /**
+     * Method that selects the positive static literal that will be used to bind
+     * some free parameters. Literals that have more bound terms are preferred,
+     * and then those whose predicate has fewer facts in the initial state.
+     *
+     * @param schema   Action schema.
+     * @param literals Literals of the precondition.
+     * @param binding  Current binding.
+     * @return Returns the selected literal or null if there are none.
+     */
+    private PDDLFormula selectGenerator(PDDLActionSchema schema, List<PDDLFormula> literals,
+                                        Map<String, String> binding) {
+        PDDLFormula best = null;
+        int bestBound = -1, bestSize = Integer.MAX_VALUE;
+
+        for (PDDLFormula literal : literals) {
+            if (literal.getKind() != PDDLFormula.Kind.ATOM || !this.isStaticFor(literal, schema)) {
+                continue;
+            }
+
+            int bound = 0, free = 0;
+
+            for (String term : literal.getTerms()) {
+                if (schema.getParameters().contains(term) && !binding.containsKey(term)) {
+                    free++;
+                } else {
+                    bound++;
+                }
+            }
+
+            int size = this.initTuples.getOrDefault(literal.getPredicate(), new ArrayList<>()).size();
+
+            if (free > 0 && (bound > bestBound || (bound == bestBound && size < bestSize))) {
+                best = literal;
+                bestBound = bound;
+                bestSize = size;
+            }
+        }
+
+        return best;
+    }
+
+    /**
+     * Method that returns the facts of the initial state that may unify with a
+     * literal. If some term of the literal is bound, only the facts that contain
+     * that object in the same position are returned.
+     *
+     * @param literal Positive literal.
+     * @param binding Current binding.
+     * @return Returns the list of candidate tuples.
+     */
+    private List<List<String>> getCandidateTuples(PDDLFormula literal, Map<String, String> binding) {
+        List<String> terms = literal.getTerms();
+
+        for (int i = 0; i < terms.size(); i++) {
+            String value = terms.get(i).startsWith("?") ? binding.get(terms.get(i)) : terms.get(i);
+
+            if (value != null) {
+                return this.initTuplesByArgument.getOrDefault(
+                        PDDLGrounder.argumentKey(literal.getPredicate(), i, value), new ArrayList<>());
+            }
+        }
+
+        return this.initTuples.getOrDefault(literal.getPredicate(), new ArrayList<>());
+    }
+
+    /**
+     * Method that unifies the terms of a literal with a tuple of objects, binding
+     * the free parameters. If the unification fails, the binding is left unchanged.
+     *
+     * @param schema  Action schema.
+     * @param terms   Terms of the literal.
+     * @param tuple   Tuple of objects.
+     * @param binding Current binding, which is extended.
+     * @return Returns the list of parameters that have been bound or null if
+     * the terms can't be unified with the tuple.
+     */
+    private List<String> unify(PDDLActionSchema schema, List<String> terms, List<String> tuple,
+                               Map<String, String> binding) {
+        if (terms.size() != tuple.size()) {
+            return null;
+        }
+
+        List<String> newlyBound = new ArrayList<>();
+
+        for (int i = 0; i < terms.size(); i++) {
+            String term = terms.get(i), object = tuple.get(i);
+            int parameterIndex = schema.getParameters().indexOf(term);
+            String value = parameterIndex >= 0 ? binding.get(term) : term;
+
+            if (value == null) {
+                String objectType = this.objects.get(object);
+
+                if (objectType == null || !this.domain.isSubtype(objectType,
+                        schema.getParameterTypes().get(parameterIndex))) {
+                    newlyBound.forEach(binding::remove);
+                    return null;
+                }
+
+                binding.put(term, object);
+                newlyBound.add(term);
+            } else if (!value.equals(object)) {
+                newlyBound.forEach(binding::remove);
+                return null;
+            }
+        }
+
+        return newlyBound;
+    }
+
+    /**
+     * Method that checks the literals whose terms are all bound and that can be
+     * evaluated while grounding: equalities and static atoms.
+     *
+     * @param schema   Action schema.
+     * @param literals Literals of the precondition.
+     * @param binding  Current binding.
+     * @return Returns true if no literal is violated and false otherwise.
+     */
+    private boolean isConsistent(PDDLActionSchema schema, List<PDDLFormula> literals, Map<String, String> binding) {
+        for (PDDLFormula literal : literals) {
+            boolean positive = literal.getKind() != PDDLFormula.Kind.NOT;
+            PDDLFormula atom = positive ? literal : literal.getChildren().get(0);
+
+            if (!this.isBound(atom, binding)) {
+                continue;
+            }
+
+            if (atom.getKind() == PDDLFormula.Kind.EQUALS) {
+                String left = binding.getOrDefault(atom.getTerms().get(0), atom.getTerms().get(0));
+                String right = binding.getOrDefault(atom.getTerms().get(1), atom.getTerms().get(1));
+
+                if (left.equals(right) != positive) {
+                    return false;
+                }
+            } else if (positive && this.isStaticFor(atom, schema)) {
+                if (!this.init.contains(atom.instantiateAtom(binding))) {
+                    return false;
+                }
+            } else if (!positive && !this.fluentPredicates.contains(atom.getPredicate())) {
+                if (this.init.contains(atom.instantiateAtom(binding))) {
+                    return false;
+                }
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * Method that instantiates an action schema with a complete binding.
+     *
+     * @param schema   Action schema.
+     * @param literals Literals of the precondition.
+     * @param binding  Complete binding.
+     * @return Returns the ground action.
+     */
+    private GroundAction instantiate(PDDLActionSchema schema, List<PDDLFormula> literals, Map<String, String> binding) {
+        List<Integer> positive = new ArrayList<>(), negative = new ArrayList<>();
+        this.groundLiterals(literals, binding, positive, negative);
+
+        List<Integer> adds = new ArrayList<>(), deletes = new ArrayList<>();
+        List<GroundAction.ConditionalEffect> conditionalEffects = new ArrayList<>();
+
+        for (PDDLFormula effect : schema.getEffect().getConjuncts()) {
+            if (effect.getKind() == PDDLFormula.Kind.WHEN) {
+                List<Integer> conditionsPositive = new ArrayList<>(), conditionsNegative = new ArrayList<>();
+                List<PDDLFormula> conditions = this.getLiterals(effect.getChildren().get(0), schema);
+
+                // Conditions that are false while grounding make the effect useless
+                if (!this.isConsistent(schema, conditions, binding)) {
+                    continue;
+                }
+
+                this.groundLiterals(conditions, binding, conditionsPositive, conditionsNegative);
+
+                List<Integer> conditionalAdds = new ArrayList<>(), conditionalDeletes = new ArrayList<>();
+                this.groundEffects(effect.getChildren().get(1), binding, conditionalAdds, conditionalDeletes);
+
+                conditionalEffects.add(new GroundAction.ConditionalEffect(
+                        PDDLGrounder.toArray(conditionsPositive), PDDLGrounder.toArray(conditionsNegative),
+                        PDDLGrounder.toArray(conditionalAdds), PDDLGrounder.toArray(conditionalDeletes)));
+            } else {
+                this.groundEffects(effect, binding, adds, deletes);
+            }
+        }
+
+        List<String> arguments = new ArrayList<>();
+        schema.getParameters().forEach(parameter -> arguments.add(binding.get(parameter)));
+
+        return new GroundAction(schema, arguments, PDDLGrounder.toArray(positive), PDDLGrounder.toArray(negative),
+                PDDLGrounder.toArray(adds), PDDLGrounder.toArray(deletes), conditionalEffects);
+    }
+
+    /**
+     * Method that grounds a list of literals, registering the fluent atoms. Static
+     * atoms and equalities are left out, since they have already been checked.
+     *
+     * @param literals List of literals.
+     * @param binding  Complete binding.
+     * @param positive List in which the positive atoms are stored.
+     * @param negative List in which the negative atoms are stored.
+     */
+    private void groundLiterals(List<PDDLFormula> literals, Map<String, String> binding,
+                                   List<Integer> positive, List<Integer> negative) {
+        for (PDDLFormula literal : literals) {
+            boolean isPositive = literal.getKind() != PDDLFormula.Kind.NOT;
+            PDDLFormula atom = isPositive ? literal : literal.getChildren().get(0);
+
+            if (atom.getKind() == PDDLFormula.Kind.EQUALS || !this.fluentPredicates.contains(atom.getPredicate())) {
+                continue;
+            }
+
+            String instance = atom.instantiateAtom(binding);
+
+            if (isPositive) {
+                positive.add(this.task.intern(instance));
+            } else {
+                negative.add(this.task.intern(instance));
+            }
+        }
+    }
+
+    /**
+     * Method that grounds an effect made up of a conjunction of literals.
+     *
+     * @param effect  Effect to be grounded.
+     * @param binding Complete binding.
+     * @param adds    List in which the add effects are stored.
+     * @param deletes List in which the delete effects are stored.
+     */
+    private void groundEffects(PDDLFormula effect, Map<String, String> binding,
+                               List<Integer> adds, List<Integer> deletes) {
+        for (PDDLFormula literal : effect.getConjuncts()) {
+            if (literal.getKind() == PDDLFormula.Kind.ATOM) {
+                adds.add(this.task.intern(literal.instantiateAtom(binding)));
+            } else if (literal.getKind() == PDDLFormula.Kind.NOT &&
+                    literal.getChildren().get(0).getKind() == PDDLFormula.Kind.ATOM) {
+                deletes.add(this.task.intern(literal.getChildren().get(0).instantiateAtom(binding)));
+            } else {
+                throw new PlannerException(String.format("Unsupported effect: %s", literal));
+            }
+        }
+    }
+
+    /**
+     * Method that grounds the goal of the problem.
+     *
+     * @param goal Goal formula.
+     */
+    private void groundGoal(PDDLFormula goal) {
+        List<Integer> positive = new ArrayList<>(), negative = new ArrayList<>();
+
+        for (PDDLFormula literal : goal.getConjuncts()) {
+            boolean isPositive = literal.getKind() != PDDLFormula.Kind.NOT;
+            PDDLFormula atom = isPositive ? literal : literal.getChildren().get(0);
+
+            if (atom.getKind() == PDDLFormula.Kind.AND || atom.getKind() == PDDLFormula.Kind.WHEN) {
+                throw new PlannerException(String.format("Unsupported goal: %s", literal));
+            }
+
+            String instance = atom.toString();
+
+            // Static atoms that already hold don't need to be reached
+            if (!this.fluentPredicates.contains(atom.getPredicate()) && this.init.contains(instance) == isPositive) {
+                continue;
+            }
+
+            if (isPositive) {
+                positive.add(this.task.intern(instance));
+            } else {
+                negative.add(this.task.intern(instance));
+            }
+        }
+
+        this.task.setGoal(PDDLGrounder.toArray(positive), PDDLGrounder.toArray(negative));
+    }
+
+    /**
+     * Method that removes the actions whose positive preconditions can't be
+     * reached from the initial state when delete effects are ignored.
+     *
+     * @param actions List of ground actions.
+     * @return Returns the list of reachable actions.
+     * @throws PlannerTimeoutException Thrown when the deadline expires.
+     */
+    private List<GroundAction> removeUnreachableActions(List<GroundAction> actions) {
+        BitSet reached = (BitSet) this.task.getInitialState().clone();
+        boolean[] applied = new boolean[actions.size()];
+        boolean changed = true;
+
+        while (changed) {
+            this.deadline.check();
+            changed = false;
+
+            for (int i = 0; i < actions.size(); i++) {
+                GroundAction action = actions.get(i);
+
+                if (!applied[i] && GroundAction.holds(reached, action.getPositivePreconditions(), new int[0])) {
+                    applied[i] = true;
+                    changed = true;
+
+                    for (int atom : action.getAddEffects()) {
+                        reached.set(atom);
+                    }
+
+                    for (GroundAction.ConditionalEffect effect : action.getConditionalEffects()) {
+                        for (int atom : effect.getAddEffects()) {
+                            reached.set(atom);
+                        }
+                    }
+                }
+            }
+        }
+
+        List<GroundAction> reachable = new ArrayList<>();
+
+        for (int i = 0; i < actions.size(); i++) {
+            if (applied[i]) {
+                reachable.add(actions.get(i));
+            }
+        }
+
+        return reachable;
+    }
+
+    /**
+     * Method that computes, for each fluent predicate, the types of the
+     * arguments of the atoms that can be added by some action.
+     *
+     * @return Returns a map from predicates to lists of argument types.
+     */
+    private Map<String, List<List<String>>> computeAddPatterns() {
+        Map<String, List<List<String>>> patterns = new HashMap<>();
+
+        for (PDDLActionSchema schema : this.domain.getActions().values()) {
+            List<PDDLFormula> effects = new ArrayList<>();
+
+            for (PDDLFormula effect : schema.getEffect().getConjuncts()) {
+                if (effect.getKind() == PDDLFormula.Kind.WHEN) {
+                    effects.addAll(effect.getChildren().get(1).getConjuncts());
+                } else {
+                    effects.add(effect);
+                }
+            }
+
+            for (PDDLFormula effect : effects) {
+                if (effect.getKind() == PDDLFormula.Kind.ATOM) {
+                    List<String> types = new ArrayList<>();
+
+                    for (String term : effect.getTerms()) {
+                        int index = schema.getParameters().indexOf(term);
+                        types.add(index >= 0 ? schema.getParameterTypes().get(index) :
+                                this.objects.getOrDefault(term, "object"));
+                    }
+
+                    patterns.computeIfAbsent(effect.getPredicate(), key -> new ArrayList<>()).add(types);
+                }
+            }
+        }
+
+        return patterns;
+    }
+
+    /**
+     * Method that checks whether an atom of an action schema is static, which
+     * means that no action can add an atom with compatible argument types.
+     *
+     * @param atom   Atom of the schema.
+     * @param schema Action schema.
+     * @return Returns true if the atom can't become true and false otherwise.
+     */
+    private boolean isStaticFor(PDDLFormula atom, PDDLActionSchema schema) {
+        return this.staticLiterals.computeIfAbsent(atom, key -> {
+            List<String> types = new ArrayList<>();
+
+            for (String term : atom.getTerms()) {
+                int index = schema.getParameters().indexOf(term);
+                types.add(index >= 0 ? schema.getParameterTypes().get(index) :
+                        this.objects.getOrDefault(term, "object"));
+            }
+
+            return this.isStaticForTypes(atom.getPredicate(), types);
+        });
+    }
+
+    /**
+     * Method that checks whether an atom whose arguments have some given types
+     * can be added by some action.
+     *
+     * @param predicate Predicate of the atom.
+     * @param types     Types of the arguments.
+     * @return Returns true if no action can add the atom and false otherwise.
+     */
+    private boolean isStaticForTypes(String predicate, List<String> types) {
+        if (!this.fluentPredicates.contains(predicate)) {
+            return true;
+        }
+
+        for (List<String> pattern : this.addPatterns.getOrDefault(predicate, new ArrayList<>())) {
+            boolean compatible = pattern.size() == types.size();
+
+            for (int i = 0; compatible && i < types.size(); i++) {
+                compatible = this.domain.isSubtype(types.get(i), pattern.get(i)) ||
+                        this.domain.isSubtype(pattern.get(i), types.get(i));
+            }
+
+            if (compatible) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * Method that returns the literals of a formula, which must be a conjunction
+     * of (possibly negated) atoms and equalities.
+     *
+     * @param formula Formula.
+     * @param schema  Action schema the formula belongs to.
+     * @return Returns the list of literals.
+     * @throws PlannerException Thrown when the formula isn't a conjunction of literals.
+     */
+    private List<PDDLFormula> getLiterals(PDDLFormula formula, PDDLActionSchema schema) throws PlannerException {
+        List<PDDLFormula> literals = formula.getConjuncts();
+
+        for (PDDLFormula literal : literals) {
+            PDDLFormula atom = literal.getKind() == PDDLFormula.Kind.NOT ? literal.getChildren().get(0) : literal;
+
+            if (atom.getKind() != PDDLFormula.Kind.ATOM && atom.getKind() != PDDLFormula.Kind.EQUALS) {
+                throw new PlannerException(String.format("Unsupported condition in action %s: %s",
+                        schema.getName(), literal));
+            }
+        }
+
+        return literals;
+    }
+
+    /**
+     * Method that checks whether all the terms of an atom are bound.
+     *
+     * @param atom    Atom or equality.
+     * @param binding Current binding.
+     * @return Returns true if every variable of the atom is bound.
+     */
+    private boolean isBound(PDDLFormula atom, Map<String, String> binding) {
+        for (String term : atom.getTerms()) {
+            if (term.startsWith("?") && !binding.containsKey(term)) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * Method that returns the objects (and constants) of a given type, including
+     * those that belong to its subtypes.
+     *
+     * @param type Type.
+     * @return Returns the list of objects of the type.
+     */
+    private List<String> getObjectsOfType(String type) {
+        return this.objectsByType.computeIfAbsent(type, key -> {
+            List<String> result = new ArrayList<>();
+
+            this.objects.forEach((object, objectType) -> {
+                if (this.domain.isSubtype(objectType, key)) {
+                    result.add(object);
+                }
+            });
+
+            return result;
+        });
+    }
+
+    /**
+     * Method that creates the key used to index the facts of the initial state
+     * by their arguments.
+     *
+     * @param predicate Predicate of the fact.
+     * @param position  Position of the argument.
+     * @param object    Object in that position.
+     * @return Returns the key.
+     */
+    private static String argumentKey(String predicate, int position, String object) {
+        return predicate + ' ' + position + ' ' + object;
+    }
+
+    /**
+     * Method that converts a list of integers into an array.
+     *
+     * @param list List of integers.
+     * @return Returns an array with the same elements.
+     */
+    private static int[] toArray(List<Integer> list) {
+        return list.stream().mapToInt(Integer::intValue).toArray();
+    }
+}
@@ -0,0 +1,477 @@
+/*
+ * PDDLParser.java
+ *
+ * Copyright (C) 2020 Vladislav Nikolov Vasilev
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see https://www.gnu.org/licenses/gpl-3.0.html.
+ */
+
+/**
+ * Package that contains the planning agent along with its data structures.
+ */
+package controller;
+
+import tools.Pair;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Class that parses PDDL domains, problems and action descriptions. The text is
+ * split into tokens in a single pass and then read by a recursive descent parser
+ * which builds {@link PDDLDomain}, {@link PDDLProblem}, {@link PDDLActionSchema}
+ * and {@link PDDLFormula} instances.
+ * PDDL is case insensitive, so every token is converted to lower case.
+ * <p>
+ * The supported subset of PDDL is the one used by the domains of this project:
+ * typing, negative preconditions, equality and conditional effects. Comments
+ * are ignored, except the ones which describe the steps of a macro operator
+ * (see {@link MacroMiner#MACRO_DIRECTIVE}), which are attached to the action
+ * that follows them.
+ *
+ * @author Vladislav Nikolov Vasilev
+ */
+public class PDDLParser {
+    private List<String> tokens;
+    private int position;
+
+    /**
+     * Class constructor. Splits a given text into tokens.
+     *
+     * @param text Text to be parsed.
+     */
+    public PDDLParser(String text) {
+        this.tokens = this.tokenize(text);
+        this.position = 0;
+    }
+
+    /**
+     * Method that parses a PDDL domain.
+     *
+     * @param text Text which contains the domain.
+     * @return Returns the parsed domain.
+     * @throws PlannerException Thrown when the domain can't be parsed.
+     */
+    public static PDDLDomain parseDomain(String text) throws PlannerException {
+        return new PDDLParser(text).readDomain();
+    }
+
+    /**
+     * Method that parses a PDDL problem.
+     *
+     * @param text Text which contains the problem.
+     * @return Returns the parsed problem.
+     * @throws PlannerException Thrown when the problem can't be parsed.
+     */
+    public static PDDLProblem parseProblem(String text) throws PlannerException {
+        return new PDDLParser(text).readProblem();
+    }
+
+    /**
+     * Method that parses the description of an action, as it is written in the
+     * planner's responses. Instantiated actions are parsed as schemas whose
+     * parameters are objects instead of variables.
+     *
+     * @param text Text which contains the action, for example
+     *             "(:action turn-up :parameters (p) :precondition ... :effect ...)".
+     * @return Returns the parsed action.
+     * @throws PlannerException Thrown when the action can't be parsed.
+     */
+    public static PDDLActionSchema parseAction(String text) throws PlannerException {
+        PDDLParser parser = new PDDLParser(text);
+        parser.expect("(");
+        parser.expect(":action");
+
+        return parser.readAction();
+    }
+
+    /**
+     * Method that reads a domain from the tokens.
+     *
+     * @return Returns the parsed domain.
+     */
+    private PDDLDomain readDomain() {
+        this.expect("(");
+        this.expect("define");
+        this.expect("(");
+        this.expect("domain");
+        PDDLDomain domain = new PDDLDomain(this.next());
+        this.expect(")");
+        List<PDDLFormula> macroSteps = new ArrayList<>();
+
+        while (this.peekIs("(") || this.peekIs(MacroMiner.MACRO_DIRECTIVE)) {
+            // Steps of the macro operator defined by the next action
+            if (this.peekIs(MacroMiner.MACRO_DIRECTIVE)) {
+                this.next();
+                macroSteps = new ArrayList<>();
+
+                while (this.peekIs("(") && !this.peekIs(1, ":action")) {
+                    macroSteps.add(this.readFormula());
+                }
+
+                continue;
+            }
+
+            this.expect("(");
+            String section = this.next();
+
+            switch (section) {
+                case ":requirements":
+                    this.skipUntilClose();
+                    break;
+                case ":types":
+                    for (Pair<String, String> type : this.readTypedList()) {
+                        domain.addType(type.first, type.second);
+                    }
+                    break;
+                case ":constants":
+                    for (Pair<String, String> constant : this.readTypedList()) {
+                        domain.addConstant(constant.first, constant.second);
+                    }
+                    break;
+                case ":predicates":
+                    while (this.peekIs("(")) {
+                        this.expect("(");
+                        domain.getPredicates().add(this.next());
+                        this.readTypedList();
+                    }
+                    this.expect(")");
+                    break;
+                case ":action":
+                    PDDLActionSchema action = this.readAction();
+                    action.setSteps(macroSteps);
+                    domain.addAction(action);
+                    macroSteps = new ArrayList<>();
+                    break;
+                default:
+                    throw new PlannerException(String.format("Unsupported domain section: %s", section));
+            }
+        }
+
+        this.expect(")");
+
+        return domain;
+    }
+
+    /**
+     * Method that reads a problem from the tokens.
+     *
+     * @return Returns the parsed problem.
+     */
+    private PDDLProblem readProblem() {
+        this.expect("(");
+        this.expect("define");
+        this.expect("(");
+        this.expect("problem");
+        String name = this.next();
+        this.expect(")");
+
+        this.expect("(");
+        this.expect(":domain");
+        PDDLProblem problem = new PDDLProblem(name, this.next());
+        this.expect(")");
+
+        while (this.peekIs("(")) {
+            this.expect("(");
+            String section = this.next();
+
+            switch (section) {
+                case ":objects":
+                    for (Pair<String, String> object : this.readTypedList()) {
+                        problem.addObject(object.first, object.second);
+                    }
+                    break;
+                case ":init":
+                    while (this.peekIs("(")) {
+                        PDDLFormula atom = this.readFormula();
+
+                        if (atom.getKind() != PDDLFormula.Kind.ATOM) {
+                            throw new PlannerException(String.format("Unsupported initial state fact: %s", atom));
+                        }
+
+                        problem.getInit().add(atom.toString());
+                    }
+                    this.expect(")");
+                    break;
+                case ":goal":
+                    problem.setGoal(this.readFormula());
+                    this.expect(")");
+                    break;
+                default:
+                    throw new PlannerException(String.format("Unsupported problem section: %s", section));
+            }
+        }
+
+        this.expect(")");
+
+        return problem;
+    }
+
+    /**
+     * Method that reads an action schema. The opening parenthesis and the
+     * ":action" keyword must have been read already.
+     *
+     * @return Returns the parsed action schema.
+     */
+    private PDDLActionSchema readAction() {
+        String name = this.next();
+        List<String> parameters = new ArrayList<>();
+        List<String> parameterTypes = new ArrayList<>();
+        PDDLFormula precondition = PDDLFormula.and(new ArrayList<>());
+        PDDLFormula effect = PDDLFormula.and(new ArrayList<>());
+
+        while (!this.peekIs(")")) {
+            String keyword = this.next();
+
+            switch (keyword) {
+                case ":parameters":
+                    this.expect("(");
+                    for (Pair<String, String> parameter : this.readTypedList()) {
+                        parameters.add(parameter.first);
+                        parameterTypes.add(parameter.second);
+                    }
+                    break;
+                case ":precondition":
+                    precondition = this.readFormula();
+                    break;
+                case ":effect":
+                    effect = this.readFormula();
+                    break;
+                default:
+                    throw new PlannerException(String.format("Unsupported action keyword: %s", keyword));
+            }
+        }
+
+        this.expect(")");
+
+        return new PDDLActionSchema(name, parameters, parameterTypes, precondition, effect);
+    }
+
+    /**
+     * Method that reads a formula (including its parentheses).
+     *
+     * @return Returns the parsed formula.
+     */
+    private PDDLFormula readFormula() {
+        this.expect("(");
+
+        // Empty formula, which is equivalent to an empty conjunction
+        if (this.peekIs(")")) {
+            this.next();
+            return PDDLFormula.and(new ArrayList<>());
+        }
+
+        String head = this.next();
+        PDDLFormula formula;
+
+        switch (head) {
+            case "and":
+                List<PDDLFormula> conjuncts = new ArrayList<>();
+
+                while (this.peekIs("(")) {
+                    conjuncts.add(this.readFormula());
+                }
+
+                formula = PDDLFormula.and(conjuncts);
+                break;
+            case "not":
+                formula = PDDLFormula.not(this.readFormula());
+                break;
+            case "when":
+                PDDLFormula condition = this.readFormula();
+                formula = PDDLFormula.when(condition, this.readFormula());
+                break;
+            case "=":
+                String left = this.next();
+                formula = PDDLFormula.equality(left, this.next());
+                break;
+            case "or":
+            case "imply":
+            case "forall":
+            case "exists":
+                throw new PlannerException(String.format("Unsupported PDDL construct: %s", head));
+            default:
+                List<String> terms = new ArrayList<>();
+
+                while (!this.peekIs(")")) {
+                    terms.add(this.next());
+                }
+
+                formula = PDDLFormula.atom(head, terms);
+                break;
+        }
+
+        this.expect(")");
+
+        return formula;
+    }
+
+    /**
+     * Method that reads a typed list of names (for example "?c1 ?c2 - Cell ?p - Player")
+     * until a closing parenthesis is found. The closing parenthesis is consumed.
+     * Names without a type are given the type "object".
+     *
+     * @return Returns a list of pairs (name, type).
+     */
+    private List<Pair<String, String>> readTypedList() {
+        List<Pair<String, String>> typedList = new ArrayList<>();
+        List<String> pendingNames = new ArrayList<>();
+
+        while (!this.peekIs(")")) {
+            String token = this.next();
+
+            if (token.equals("-")) {
+                String type = this.next();
+                pendingNames.forEach(name -> typedList.add(new Pair<>(name, type)));
+                pendingNames.clear();
+            } else {
+                pendingNames.add(token);
+            }
+        }
+
+        pendingNames.forEach(name -> typedList.add(new Pair<>(name, "object")));
+        this.expect(")");
+
+        return typedList;
+    }
+
+    /**
+     * Method that skips all the tokens until the parenthesis that closes the
+     * current block is found. That parenthesis is consumed.
+     */
+    private void skipUntilClose() {
+        int depth = 1;
+
+        while (depth > 0) {
+            String token = this.next();
+
+            if (token.equals("(")) {
+                depth++;
+            } else if (token.equals(")")) {
+                depth--;
+            }
+        }
+    }
+
+    /**
+     * Method that returns the next token and moves forward.
+     *
+     * @return Returns the next token.
+     * @throws PlannerException Thrown when there are no tokens left.
+     */
+    private String next() throws PlannerException {
+        if (this.position >= this.tokens.size()) {
+            throw new PlannerException("Unexpected end of PDDL input");
+        }
+
+        return this.tokens.get(this.position++);
+    }
+
+    /**
+     * Method that checks whether the next token is a given one without consuming it.
+     *
+     * @param token Expected token.
+     * @return Returns true if the next token is equal to the given one.
+     */
+    private boolean peekIs(String token) {
+        return this.peekIs(0, token);
+    }
+
+    /**
+     * Method that checks whether the token found a given number of positions after
+     * the next one is a given one without consuming any token.
+     *
+     * @param offset Number of tokens skipped after the next one.
+     * @param token  Expected token.
+     * @return Returns true if the token is equal to the given one.
+     */
+    private boolean peekIs(int offset, String token) {
+        int index = this.position + offset;
+
+        return index < this.tokens.size() && this.tokens.get(index).equals(token);
+    }
+
+    /**
+     * Method that consumes the next token, checking that it is the expected one.
+     *
+     * @param token Expected token.
+     * @throws PlannerException Thrown when the next token isn't the expected one.
+     */
+    private void expect(String token) throws PlannerException {
+        String found = this.next();
+
+        if (!found.equals(token)) {
+            throw new PlannerException(String.format("Expected '%s' but found '%s' while parsing PDDL",
+                    token, found));
+        }
+    }
+
+    /**
+     * Method that splits a text into tokens. Parentheses are tokens on their own
+     * and comments (which start with ';') are ignored. Comments with the steps of
+     * a macro operator are split into the directive followed by the steps.
+     *
+     * @param text Text to be split.
+     * @return Returns the list of tokens.
+     */
+    private List<String> tokenize(String text) {
+        List<String> tokenList = new ArrayList<>();
+        StringBuilder builder = new StringBuilder();
+        int length = text.length();
+
+        for (int i = 0; i < length; i++) {
+            char c = text.charAt(i);
+
+            if (c == ';') {
+                // Skip comment until the end of the line
+                int start = i;
+
+                while (i < length && text.charAt(i) != '\n') {
+                    i++;
+                }
+
+                String comment = text.substring(start, i).trim();
+
+                if (comment.startsWith(MacroMiner.MACRO_DIRECTIVE + " ")) {
+                    if (builder.length() > 0) {
+                        tokenList.add(builder.toString());
+                        builder.setLength(0);
+                    }
+
+                    tokenList.add(MacroMiner.MACRO_DIRECTIVE);
+                    tokenList.addAll(this.tokenize(comment.substring(MacroMiner.MACRO_DIRECTIVE.length())));
+                }
+            }
+
+            if (i >= length || c == ';' || c == '(' || c == ')' || Character.isWhitespace(c)) {
+                if (builder.length() > 0) {
+                    tokenList.add(builder.toString());
+                    builder.setLength(0);
+                }
+
+                if (i < length && (c == '(' || c == ')')) {
+                    tokenList.add(String.valueOf(c));
+                }
+            } else {
+                builder.append(Character.toLowerCase(c));
+            }
+        }
+
+        if (builder.length() > 0) {
+            tokenList.add(builder.toString());
+        }
+
+        return tokenList;
+    }
+}
@@ -36,17 +36,55 @@ import java.util.stream.Collectors;
  * Class that represents a PDDL plan. A PDDLPlan object is made up of a list of
  * PDDL actions. It also contains an iterator which allows to iterate over each
  * one of the actions of the plan.
+ * <p>
+ * Only the actions which have a corresponding GVGAI action are executed, but
+ * every step of the plan is kept (for example, picking the boots, which happens
+ * when the avatar moves to their cell), since its effects are needed to simulate
+ * the rest of the plan (see {@link PlanValidator}).
  *
  * @author Vladislav Nikolov Vasilev
  */
 public class PDDLPlan implements Iterable<PDDLAction> {
     private List<PDDLAction> PDDLActions;
+    private List<PDDLAction> steps;
+    private List<Integer> stepIndices;
+
+    /**
+     * Class that represents an iterator over the actions of the plan which knows
+     * the position of the next action.
+     */
+    public class PlanIterator implements Iterator<PDDLAction> {
+        private int currentIdx = 0;
+
+        @Override
+        public boolean hasNext() {
+            return this.currentIdx < PDDLPlan.this.PDDLActions.size()
+                    && PDDLPlan.this.PDDLActions.get(this.currentIdx) != null;
+        }
+
+        @Override
+        public PDDLAction next() {
+            return PDDLPlan.this.PDDLActions.get(this.currentIdx++);
+        }
+
+        /**
+         * Method that returns the position of the action returned by the next call
+         * to {@link #next()}.
+         *
+         * @return Returns the index of the next action.
+         */
+        public int nextIndex() {
+            return this.currentIdx;
+        }
+    }
 
     /**
      * Default class constructor. Creates an object with an empty plan.
      */
     public PDDLPlan() {
         this.PDDLActions = new ArrayList<>();
+        this.steps = new ArrayList<>();
+        this.stepIndices = new ArrayList<>();
     }
 
     /**
@@ -58,6 +96,39 @@ public class PDDLPlan implements Iterable<PDDLAction> {
      *                             GVGAI actions.
      */
     public PDDLPlan(JSONObject plannerResponse, Map<String, Types.ACTIONS> actionCorrespondence) {
+        this(plannerResponse, actionCorrespondence, new AtomTable());
+    }
+
+    /**
+     * Class constructor. Creates an object with a valid plan whose actions intern
+     * their preconditions and effects in a given atom table.
+     *
+     * @param plannerResponse      JSONObject that represents the planner's response. It must
+     *                             be a valid response (a response that contains a valid plan).
+     * @param actionCorrespondence Map that represents the correspondence between PDDL and
+     *                             GVGAI actions.
+     * @param atomTable            Table in which the atoms of the actions are interned.
+     */
+    public PDDLPlan(JSONObject plannerResponse, Map<String, Types.ACTIONS> actionCorrespondence, AtomTable atomTable) {
+        this(plannerResponse, actionCorrespondence, atomTable, null);
+    }
+
+    /**
+     * Class constructor. Creates an object with a valid plan whose actions are
+     * instantiated from the action schemas of a domain. Actions which don't
+     * belong to the domain are instantiated from their descriptions, and macro
+     * operators are replaced by their steps.
+     *
+     * @param plannerResponse      JSONObject that represents the planner's response. It must
+     *                             be a valid response (a response that contains a valid plan).
+     * @param actionCorrespondence Map that represents the correspondence between PDDL and
+     *                             GVGAI actions.
+     * @param atomTable            Table in which the atoms of the actions are interned.
+     * @param domain               Parsed domain. If it is null, every action is instantiated
+     *                             from its description.
+     */
+    public PDDLPlan(JSONObject plannerResponse, Map<String, Types.ACTIONS> actionCorrespondence, AtomTable atomTable,
+                    PDDLDomain domain) {
         // Get the plan from the JSON object
         JSONArray plan = plannerResponse.getJSONObject("result").getJSONArray("plan");
 
@@ -65,38 +136,83 @@ public class PDDLPlan implements Iterable<PDDLAction> {
         ArrayList<PDDLAction> PDDLActionList = new ArrayList<>();
 
         this.PDDLActions = new ArrayList<>();
+        this.steps = new ArrayList<>();
+        this.stepIndices = new ArrayList<>();
 
         // Transform each action to a PDDLAction instance
         for (int i = 0; i < plan.length(); i++) {
             // Get the JSON object that represents an action
             JSONObject action = plan.getJSONObject(i);
 
-            // Get Strings that represent the action instance and its preconditions
+            // Get the String that represents the action instance and find its schema
             String actionInstance = action.getString("name");
-            String actionDescription = action.getString("action");
-
-            // Add the new action to the list
-            PDDLActionList.add(new PDDLAction(actionInstance, actionDescription, actionCorrespondence));
+            List<String> tokens = PDDLAction.splitActionInstance(actionInstance.toLowerCase());
+            PDDLActionSchema schema = domain != null ? domain.getActions().get(tokens.get(0)) : null;
+
+            // Add the new action to the list (or its steps, if it is a macro operator)
+            if (schema != null && schema.getParameters().size() == tokens.size() - 1) {
+                PDDLActionList.addAll(PDDLAction.instantiate(actionInstance, schema, tokens.subList(1, tokens.size()),
+                        domain, actionCorrespondence, atomTable));
+            } else {
+                PDDLActionList.add(new PDDLAction(actionInstance, action.getString("action"), actionCorrespondence,
+                        atomTable));
+            }
         }
 
         // Process resulting list of actions removing all null actions. These actions are the ones
-        // that don't have a correspondence
-        this.PDDLActions = PDDLActionList
-                .stream()
-                .filter(PDDLAction -> PDDLAction.getGVGAIAction() != null)
-                .collect(Collectors.toList());
+        // that don't have a correspondence, so they are only kept as steps of the plan
+        for (PDDLAction PDDLAction : PDDLActionList) {
+            if (PDDLAction.getGVGAIAction() != null) {
+                this.stepIndices.add(this.steps.size());
+                this.PDDLActions.add(PDDLAction);
+            }
+
+            this.steps.add(PDDLAction);
+        }
     }
 
     public List<PDDLAction> getPDDLActions() {
         return this.PDDLActions;
     }
 
+    public List<PDDLAction> getSteps() {
+        return this.steps;
+    }
+
+    /**
+     * Method that returns the position of an action among the steps of the plan.
+     *
+     * @param actionIndex Index of the action in the list of actions with a GVGAI action.
+     * @return Returns the index of the action in the list of steps.
+     */
+    public int getStepIndex(int actionIndex) {
+        return this.stepIndices.get(actionIndex);
+    }
+
+    /**
+     * Method that returns the steps of the plan from an action until the end,
+     * including the steps without a GVGAI action (for example, exiting the
+     * level), which are needed to reach the goal.
+     *
+     * @param actionIndex Index of the first action in the list of actions with a
+     *                    GVGAI action.
+     * @return Returns the instances of the remaining steps.
+     */
+    public List<String> getRemainingSteps(int actionIndex) {
+        return this.steps.subList(this.getStepIndex(actionIndex), this.steps.size())
+                .stream()
+                .map(PDDLAction::getActionInstance)
+                .collect(Collectors.toList());
+    }
+
     /**
      * Method used to clear the plan. It removes all the actions from the plan, leaving an
      * empty plan.
      */
     public void clearPlan() {
         this.PDDLActions.clear();
+        this.steps.clear();
+        this.stepIndices.clear();
     }
 
     @Override
@@ -121,21 +237,7 @@ public class PDDLPlan implements Iterable<PDDLAction> {
      * @return Returns a new PDDLAction iterator.
      */
     @Override
-    public Iterator<PDDLAction> iterator() {
-        Iterator<PDDLAction> iterator = new Iterator<PDDLAction>() {
-            private int currentIdx = 0;
-
-            @Override
-            public boolean hasNext() {
-                return currentIdx < PDDLActions.size() && PDDLActions.get(currentIdx) != null;
-            }
-
-            @Override
-            public PDDLAction next() {
-                return PDDLActions.get(currentIdx++);
-            }
-        };
-
-        return iterator;
+    public PlanIterator iterator() {
+        return new PlanIterator();
     }
 }
@@ -0,0 +1,97 @@
+/*
+ * PDDLProblem.java
+ *
+ * Copyright (C) 2020 Vladislav Nikolov Vasilev
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see https://www.gnu.org/licenses/gpl-3.0.html.
+ */
+
+/**
+ * Package that contains the planning agent along with its data structures.
+ */
+package controller;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Class that represents a parsed PDDL problem. It contains the typed objects,
+ * the initial state (as a set of ground atoms) and the goal.
+ *
+ * @author Vladislav Nikolov Vasilev
+ */
+public class PDDLProblem {
+    private String name;
+    private String domainName;
+    private Map<String, String> objects;
+    private Set<String> init;
+    private PDDLFormula goal;
+
+    /**
+     * Class constructor. Creates an empty problem.
+     *
+     * @param name       Name of the problem.
+     * @param domainName Name of the domain the problem belongs to.
+     */
+    public PDDLProblem(String name, String domainName) {
+        this.name = name;
+        this.domainName = domainName;
+        this.objects = new LinkedHashMap<>();
+        this.init = new LinkedHashSet<>();
+        this.goal = PDDLFormula.and(new ArrayList<>());
+    }
+
+    public String getName() {
+        return this.name;
+    }
+
+    public String getDomainName() {
+        return this.domainName;
+    }
+
+    public Map<String, String> getObjects() {
+        return this.objects;
+    }
+
+    public Set<String> getInit() {
+        return this.init;
+    }
+
+    public PDDLFormula getGoal() {
+        return this.goal;
+    }
+
+    public void setGoal(PDDLFormula goal) {
+        this.goal = goal;
+    }
+
+    /**
+     * Method that adds a new typed object to the problem.
+     *
+     * @param object Name of the object.
+     * @param type   Type of the object.
+     */
+    public void addObject(String object, String type) {
+        this.objects.put(object, type);
+    }
+
+    @Override
+    public String toString() {
+        return String.format("{ PDDLProblem name: %s, Domain: %s, Objects: %d, Init: %d, Goal: %s }",
+                this.name, this.domainName, this.objects.size(), this.init.size(), this.goal);
+    }
+}
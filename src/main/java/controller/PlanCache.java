@@ -0,0 +1,383 @@
+/*
+ * PlanCache.java
+ *
+ * Copyright (C) 2020 Vladislav Nikolov Vasilev
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see https://www.gnu.org/licenses/gpl-3.0.html.
+ */
+
+/**
+ * Package that contains the planning agent along with its data structures.
+ */
+package controller;
+
+import kong.unirest.json.JSONArray;
+import kong.unirest.json.JSONException;
+import kong.unirest.json.JSONObject;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Class that implements a content-addressed cache of plans. Plans are indexed
+ * by a canonical hash of the domain, the sorted initial state and the goal of
+ * the problem, so identical problems found in different turns, levels or runs
+ * are only solved once.
+ * <p>
+ * The cache has an in-memory tier, which keeps the most recently used plans,
+ * and an optional on-disk tier, which stores every plan as a JSON file. Before
+ * returning a cached plan, it is validated against the initial state of the
+ * problem: every action must be applicable and the goal must hold after
+ * executing the whole plan.
+ *
+ * @author Vladislav Nikolov Vasilev
+ */
+public class PlanCache {
+    /**
+     * Default number of plans kept in memory.
+     */
+    public static final int DEFAULT_CAPACITY = 256;
+
+    /**
+     * Default directory of the on-disk tier.
+     */
+    public static final String DEFAULT_DIRECTORY = "output/cache";
+
+    private final Map<String, JSONObject> entries;
+    private final Path directory;
+
+    // Last parsed domain, which is reused while the domain doesn't change
+    private String domainText;
+    private PDDLDomain domain;
+
+    // Runtime information
+    private int hits;
+    private int misses;
+    private int invalidPlans;
+
+    /**
+     * Class constructor.
+     *
+     * @param capacity  Maximum number of plans kept in memory.
+     * @param directory Directory of the on-disk tier. If it is null, plans are only
+     *                  kept in memory.
+     */
+    public PlanCache(int capacity, Path directory) {
+        this.entries = new LinkedHashMap<String, JSONObject>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, JSONObject> eldest) {
+                return this.size() > capacity;
+            }
+        };
+        this.directory = directory;
+        this.hits = 0;
+        this.misses = 0;
+        this.invalidPlans = 0;
+    }
+
+    public Path getDirectory() {
+        return this.directory;
+    }
+
+    public int getHits() {
+        return this.hits;
+    }
+
+    public int getMisses() {
+        return this.misses;
+    }
+
+    public int getInvalidPlans() {
+        return this.invalidPlans;
+    }
+
+    /**
+     * Method that computes the key of a problem. The key is the SHA-256 hash of
+     * the domain (with normalized whitespace), the sorted initial state and the
+     * goal, so it doesn't depend on the order in which the facts are written.
+     *
+     * @param domain  Content of the domain file.
+     * @param problem Parsed problem.
+     * @return Returns the key as a hexadecimal string.
+     */
+    public static String computeKey(String domain, PDDLProblem problem) {
+        List<String> init = new ArrayList<>(problem.getInit());
+        init.sort(null);
+
+        StringBuilder builder = new StringBuilder();
+        builder.append(domain.trim().replaceAll("\\s+", " ").toLowerCase()).append('\n');
+        init.forEach(atom -> builder.append(atom).append('\n'));
+        builder.append(problem.getGoal());
+
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            StringBuilder key = new StringBuilder();
+
+            for (byte b : digest.digest(builder.toString().getBytes(StandardCharsets.UTF_8))) {
+                key.append(String.format("%02x", b));
+            }
+
+            return key.toString();
+        } catch (NoSuchAlgorithmException e) {
+            // Every Java platform must support SHA-256
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Method that returns the cached plan of a problem. The in-memory tier is
+     * checked first and then the on-disk tier. The plan is only returned if it
+     * is still valid for the problem.
+     *
+     * @param domain  Content of the domain file.
+     * @param problem Parsed problem.
+     * @return Returns the cached response of the planner or null if there's no
+     * valid plan for the problem.
+     */
+    public synchronized JSONObject get(String domain, PDDLProblem problem) {
+        String key = PlanCache.computeKey(domain, problem);
+        JSONObject response = this.entries.get(key);
+
+        if (response == null) {
+            response = this.readFromDisk(key);
+        }
+
+        if (response == null) {
+            this.misses++;
+            return null;
+        }
+
+        if (!this.isValid(domain, problem, response)) {
+            this.entries.remove(key);
+            this.invalidPlans++;
+            this.misses++;
+            return null;
+        }
+
+        this.entries.put(key, response);
+        this.hits++;
+
+        return response;
+    }
+
+    /**
+     * Method that stores the plan of a problem. Only responses that contain a
+     * plan are stored.
+     *
+     * @param domain   Content of the domain file.
+     * @param problem  Parsed problem.
+     * @param response Planner's response.
+     */
+    public synchronized void put(String domain, PDDLProblem problem, JSONObject response) {
+        if (!response.optString("status").equals("ok")) {
+            return;
+        }
+
+        String key = PlanCache.computeKey(domain, problem);
+        this.entries.put(key, response);
+        this.writeToDisk(key, response);
+    }
+
+    /**
+     * Method that checks whether a plan is valid for a problem. The plan is
+     * executed from the initial state of the problem.
+     *
+     * @param domain   Content of the domain file.
+     * @param problem  Parsed problem.
+     * @param response Planner's response which contains the plan.
+     * @return Returns true if every action is applicable and the plan reaches the
+     * goal, and false otherwise.
+     */
+    public synchronized boolean isValid(String domain, PDDLProblem problem, JSONObject response) {
+        Set<String> state = this.simulate(domain, problem.getInit(), response);
+
+        try {
+            return state != null && PlanCache.holds(problem.getGoal(), new LinkedHashMap<>(), state);
+        } catch (PlannerException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Method that executes a plan from a given state.
+     *
+     * @param domain   Content of the domain file.
+     * @param init     Atoms that hold before executing the plan.
+     * @param response Planner's response which contains the plan.
+     * @return Returns the atoms that hold after executing the plan or null if
+     * some action isn't applicable or the plan can't be read.
+     */
+    public synchronized Set<String> simulate(String domain, Collection<String> init, JSONObject response) {
+        try {
+            PDDLDomain parsedDomain = this.parseDomain(domain);
+            JSONArray plan = response.getJSONObject("result").getJSONArray("plan");
+            Set<String> state = new HashSet<>(init);
+
+            for (int i = 0; i < plan.length(); i++) {
+                List<String> tokens = PDDLGrounder.splitAtom(plan.getJSONObject(i).getString("name").toLowerCase());
+                PDDLActionSchema schema = parsedDomain.getActions().get(tokens.get(0));
+
+                if (schema == null || schema.getParameters().size() != tokens.size() - 1) {
+                    return null;
+                }
+
+                Map<String, String> binding = schema.bind(tokens.subList(1, tokens.size()));
+
+                if (!PlanCache.holds(schema.getPrecondition(), binding, state)) {
+                    return null;
+                }
+
+                state = PlanCache.apply(schema.getEffect(), binding, state);
+            }
+
+            return state;
+        } catch (PlannerException | JSONException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Method that returns the parsed domain, parsing it only if it has changed
+     * since the last call.
+     *
+     * @param domain Content of the domain file.
+     * @return Returns the parsed domain.
+     */
+    private PDDLDomain parseDomain(String domain) {
+        if (!domain.equals(this.domainText)) {
+            this.domain = PDDLParser.parseDomain(domain);
+            this.domainText = domain;
+        }
+
+        return this.domain;
+    }
+
+    /**
+     * Method that checks whether a formula holds in a state.
+     *
+     * @param formula Formula to be checked.
+     * @param binding Map from variables to objects.
+     * @param state   Set of atoms that hold.
+     * @return Returns true if the formula holds and false otherwise.
+     */
+    private static boolean holds(PDDLFormula formula, Map<String, String> binding, Set<String> state) {
+        switch (formula.getKind()) {
+            case ATOM:
+                return state.contains(formula.instantiateAtom(binding));
+            case EQUALS:
+                List<String> terms = formula.getTerms();
+                return binding.getOrDefault(terms.get(0), terms.get(0))
+                        .equals(binding.getOrDefault(terms.get(1), terms.get(1)));
+            case NOT:
+                return !PlanCache.holds(formula.getChildren().get(0), binding, state);
+            case AND:
+                return formula.getChildren().stream().allMatch(child -> PlanCache.holds(child, binding, state));
+            default:
+                throw new PlannerException(String.format("Unexpected formula in a condition: %s", formula));
+        }
+    }
+
+    /**
+     * Method that applies an effect to a state. Conditional effects are evaluated
+     * in the original state and delete effects are applied before add effects.
+     *
+     * @param effect  Effect to be applied.
+     * @param binding Map from variables to objects.
+     * @param state   Set of atoms that hold.
+     * @return Returns the resulting state.
+     */
+    private static Set<String> apply(PDDLFormula effect, Map<String, String> binding, Set<String> state) {
+        List<String> adds = new ArrayList<>(), deletes = new ArrayList<>();
+
+        for (PDDLFormula conjunct : effect.getConjuncts()) {
+            List<PDDLFormula> literals = conjunct.getConjuncts();
+
+            if (conjunct.getKind() == PDDLFormula.Kind.WHEN) {
+                if (!PlanCache.holds(conjunct.getChildren().get(0), binding, state)) {
+                    continue;
+                }
+
+                literals = conjunct.getChildren().get(1).getConjuncts();
+            }
+
+            for (PDDLFormula literal : literals) {
+                if (literal.getKind() == PDDLFormula.Kind.NOT) {
+                    deletes.add(literal.getChildren().get(0).instantiateAtom(binding));
+                } else {
+                    adds.add(literal.instantiateAtom(binding));
+                }
+            }
+        }
+
+        Set<String> successor = new HashSet<>(state);
+        successor.removeAll(deletes);
+        successor.addAll(adds);
+
+        return successor;
+    }
+
+    /**
+     * Method that reads a plan from the on-disk tier.
+     *
+     * @param key Key of the problem.
+     * @return Returns the stored response or null if it isn't stored or can't be read.
+     */
+    private JSONObject readFromDisk(String key) {
+        if (this.directory == null) {
+            return null;
+        }
+
+        Path file = this.directory.resolve(key + ".json");
+
+        if (!Files.exists(file)) {
+            return null;
+        }
+
+        try {
+            return new JSONObject(new String(Files.readAllBytes(file), StandardCharsets.UTF_8));
+        } catch (IOException | JSONException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Method that writes a plan into the on-disk tier.
+     *
+     * @param key      Key of the problem.
+     * @param response Planner's response.
+     */
+    private void writeToDisk(String key, JSONObject response) {
+        if (this.directory == null) {
+            return;
+        }
+
+        try {
+            Files.createDirectories(this.directory);
+            Files.write(this.directory.resolve(key + ".json"), response.toString().getBytes(StandardCharsets.UTF_8));
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+}
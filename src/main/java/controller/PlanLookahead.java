@@ -0,0 +1,194 @@
+/*
+ * PlanLookahead.java
+ *
+ * Copyright (C) 2020 Vladislav Nikolov Vasilev
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see https://www.gnu.org/licenses/gpl-3.0.html.
+ */
+
+/**
+ * Package that contains the planning agent along with its data structures.
+ */
+package controller;
+
+import core.game.StateObservation;
+import ontology.Types;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Class that predicts whether the next actions of a plan will fail because of
+ * the elements of the game that the plan doesn't take into account, such as
+ * the NPCs. The actions are executed on copies of the state with the forward
+ * model, each of them with a different random seed, and the preconditions of
+ * each action are checked in the state reached by the previous ones.
+ * <p>
+ * Since the NPCs may behave differently in each simulation, a failure is only
+ * predicted when at least half of the simulations fail. An action fails if its
+ * preconditions don't hold or if the avatar loses the game when executing it.
+ *
+ * @author Vladislav Nikolov Vasilev
+ */
+public class PlanLookahead {
+    public static final int DEFAULT_SAMPLES = 3;
+    private static final int NO_FAILURE = Integer.MAX_VALUE;
+
+    private int horizon;
+    private int samples;
+
+    // Failed action of each simulation and whether the avatar lost the game in it
+    private int[] failedActions;
+    private boolean[] deaths;
+
+    // Translator of the simulated states, which shares the atom table of the plans
+    private GameStateTranslator translator;
+    private Set<String> connections;
+    private List<String> predicates;
+    private Map<String, Set<String>> objects;
+
+    // Whether the avatar loses the game in some simulation of the last predicted failure
+    private boolean predictedDeath;
+
+    /**
+     * Class constructor.
+     *
+     * @param gameInformation Game information.
+     * @param gameElementVars Map from game elements to the variables that appear
+     *                        in their predicates.
+     * @param atomTable       Table in which the actions of the plans are interned.
+     * @param connections     Connection predicates of the game.
+     * @param horizon         Maximum number of actions executed in each simulation.
+     * @param samples         Number of simulations, each of them with a different seed.
+     */
+    public PlanLookahead(GameInformation gameInformation, Map<String, Set<String>> gameElementVars,
+                         AtomTable atomTable, Set<String> connections, int horizon, int samples) {
+        this.horizon = horizon;
+        this.samples = samples;
+        this.failedActions = new int[samples];
+        this.deaths = new boolean[samples];
+        this.translator = new GameStateTranslator(gameInformation, gameElementVars, atomTable);
+        this.connections = connections;
+        this.predicates = new ArrayList<>();
+        this.objects = new HashMap<>();
+        gameInformation.variablesTypes.keySet().forEach(key -> this.objects.put(key, new LinkedHashSet<>()));
+    }
+
+    public int getHorizon() {
+        return this.horizon;
+    }
+
+    public int getSamples() {
+        return this.samples;
+    }
+
+    public boolean isPredictedDeath() {
+        return this.predictedDeath;
+    }
+
+    /**
+     * Method that predicts the first action of a plan that will fail. The
+     * simulations that can't be started before the deadline expires are skipped.
+     *
+     * @param stateObservation Current state observation of the game.
+     * @param actions          Actions of the plan that haven't been executed, starting
+     *                         with the next one. All of them must have a GVGAI action.
+     * @param savedGoals       Reached goals which are part of the game state.
+     * @param deadline         Deadline before which the prediction must be made.
+     * @return Returns the index (in the list of actions) of the first action that
+     * fails in at least half of the simulations or -1 if no failure is predicted.
+     */
+    public int findFailedAction(StateObservation stateObservation, List<PDDLAction> actions,
+                                List<String> savedGoals, PlanningDeadline deadline) {
+        int maxActions = Math.min(this.horizon, actions.size());
+        int completedSamples = 0;
+
+        while (completedSamples < this.samples && !deadline.isExpired()) {
+            // The seeds only depend on the tick, so the predictions can be reproduced
+            int seed = stateObservation.getGameTick() * this.samples + completedSamples;
+            this.simulate(stateObservation, actions, maxActions, savedGoals, seed, completedSamples);
+            completedSamples++;
+        }
+
+        for (int action = 0; action <= maxActions && completedSamples > 0; action++) {
+            int failures = 0;
+            boolean death = false;
+
+            for (int i = 0; i < completedSamples; i++) {
+                if (this.failedActions[i] <= action) {
+                    failures++;
+                    death |= this.deaths[i];
+                }
+            }
+
+            if (failures * 2 >= completedSamples) {
+                this.predictedDeath = death;
+                return action;
+            }
+        }
+
+        this.predictedDeath = false;
+
+        return -1;
+    }
+
+    /**
+     * Method that executes the actions of a plan on a copy of the state. The
+     * result is stored in the position of the simulation in the arrays of failed
+     * actions and deaths.
+     *
+     * @param stateObservation State observation from which the simulation starts.
+     * @param actions          Actions of the plan, starting with the next one.
+     * @param maxActions       Number of actions to execute.
+     * @param savedGoals       Reached goals which are part of the game state.
+     * @param seed             Random seed of the forward model.
+     * @param sample           Index of the simulation.
+     */
+    private void simulate(StateObservation stateObservation, List<PDDLAction> actions, int maxActions,
+                          List<String> savedGoals, int seed, int sample) {
+        StateObservation simulatedState = stateObservation.copy();
+        simulatedState.setNewSeed(seed);
+
+        this.failedActions[sample] = PlanLookahead.NO_FAILURE;
+        this.deaths[sample] = false;
+
+        for (int i = 0; i < maxActions; i++) {
+            simulatedState.advance(actions.get(i).getGVGAIAction());
+
+            if (simulatedState.isGameOver()) {
+                if (simulatedState.getGameWinner() == Types.WINNER.PLAYER_LOSES) {
+                    this.failedActions[sample] = i;
+                    this.deaths[sample] = true;
+                }
+
+                return;
+            }
+
+            // The preconditions of the first action are checked in the current state by the agent
+            if (i + 1 < actions.size()) {
+                this.translator.translate(simulatedState, this.predicates, this.objects, this.connections,
+                        savedGoals);
+
+                if (!actions.get(i + 1).isApplicable(this.translator.getState())) {
+                    this.failedActions[sample] = i + 1;
+                    return;
+                }
+            }
+        }
+    }
+}
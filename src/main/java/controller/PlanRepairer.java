@@ -0,0 +1,213 @@
+/*
+ * PlanRepairer.java
+ *
+ * Copyright (C) 2020 Vladislav Nikolov Vasilev
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see https://www.gnu.org/licenses/gpl-3.0.html.
+ */
+
+/**
+ * Package that contains the planning agent along with its data structures.
+ */
+package controller;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+
+/**
+ * Class that repairs a plan whose next action can't be executed. Instead of
+ * searching for a new plan from scratch, it looks for a short sequence of
+ * actions that leads from the current state to a state from which some suffix
+ * of the old plan can be executed and still reaches the goal.
+ * <p>
+ * The search is a breadth-first search bounded both in depth and in the number
+ * of expanded nodes, so it either finds a repair quickly or gives up and lets
+ * the agent call the planner.
+ *
+ * @author Vladislav Nikolov Vasilev
+ */
+public class PlanRepairer {
+    /**
+     * Default maximum length of the sequence of actions that reconnects the
+     * current state to the plan.
+     */
+    public static final int DEFAULT_MAX_DEPTH = 3;
+
+    /**
+     * Default maximum number of nodes expanded by the search.
+     */
+    public static final int DEFAULT_MAX_NODES = 2000;
+
+    private final int maxDepth;
+    private final int maxNodes;
+
+    /**
+     * Class that represents a node of the search space.
+     */
+    private static class SearchNode {
+        private BitSet state;
+        private SearchNode parent;
+        private GroundAction action;
+        private int depth;
+
+        private SearchNode(BitSet state, SearchNode parent, GroundAction action, int depth) {
+            this.state = state;
+            this.parent = parent;
+            this.action = action;
+            this.depth = depth;
+        }
+    }
+
+    /**
+     * Class constructor.
+     *
+     * @param maxDepth Maximum length of the sequence of actions that reconnects
+     *                 the current state to the plan.
+     * @param maxNodes Maximum number of nodes expanded by the search.
+     */
+    public PlanRepairer(int maxDepth, int maxNodes) {
+        this.maxDepth = maxDepth;
+        this.maxNodes = maxNodes;
+    }
+
+    /**
+     * Method that repairs a plan.
+     *
+     * @param task     Ground task whose initial state is the current state and whose
+     *                 goal is the goal of the plan.
+     * @param plan     Instances of the actions of the plan that haven't been executed,
+     *                 starting with the one that can't be executed.
+     * @param deadline Deadline of the repair.
+     * @return Returns the repaired plan or null if no repair has been found.
+     * @throws PlannerTimeoutException Thrown when the deadline expires before
+     *                                 finding a repair.
+     */
+    public List<GroundAction> repair(GroundTask task, List<String> plan, PlanningDeadline deadline)
+            throws PlannerTimeoutException {
+        // Actions of the old plan which are unreachable from the current state are represented by null
+        Map<String, GroundAction> actionsByInstance = new HashMap<>();
+        task.getActions().forEach(action -> actionsByInstance.put(action.getInstance(), action));
+
+        List<GroundAction> suffix = new ArrayList<>();
+        plan.forEach(instance -> suffix.add(actionsByInstance.get(PlanRepairer.normalizeInstance(instance))));
+
+        Queue<SearchNode> open = new ArrayDeque<>();
+        Set<BitSet> closed = new HashSet<>();
+        open.add(new SearchNode(task.getInitialState(), null, null, 0));
+        closed.add(task.getInitialState());
+        int expanded = 0;
+
+        while (!open.isEmpty() && expanded < this.maxNodes) {
+            deadline.check();
+
+            SearchNode node = open.poll();
+            int resumeIndex = PlanRepairer.findResumeIndex(task, node.state, suffix, node.depth == 0);
+
+            if (resumeIndex >= 0) {
+                List<GroundAction> repairedPlan = PlanRepairer.extractPath(node);
+                repairedPlan.addAll(suffix.subList(resumeIndex, suffix.size()));
+
+                return Collections.unmodifiableList(repairedPlan);
+            }
+
+            if (node.depth == this.maxDepth) {
+                continue;
+            }
+
+            expanded++;
+
+            for (GroundAction action : task.getActions()) {
+                if (action.isApplicable(node.state)) {
+                    BitSet successor = action.apply(node.state);
+
+                    if (closed.add(successor)) {
+                        open.add(new SearchNode(successor, node, action, node.depth + 1));
+                    }
+                }
+            }
+        }
+
+        return null;
+    }
+
+    /**
+     * Method that finds the suffix of the plan that reaches the goal from a state.
+     * Shorter suffixes are preferred, so actions that are no longer needed are skipped.
+     *
+     * @param task         Ground task.
+     * @param state        State from which the suffix is executed.
+     * @param suffix       Actions of the old plan.
+     * @param nonEmptyOnly Boolean telling whether the empty suffix is excluded.
+     * @return Returns the index in which the suffix starts or -1 if no suffix
+     * reaches the goal.
+     */
+    private static int findResumeIndex(GroundTask task, BitSet state, List<GroundAction> suffix,
+                                       boolean nonEmptyOnly) {
+        for (int start = nonEmptyOnly ? suffix.size() - 1 : suffix.size(); start >= 0; start--) {
+            BitSet current = state;
+            boolean applicable = true;
+
+            for (int i = start; i < suffix.size() && applicable; i++) {
+                GroundAction action = suffix.get(i);
+                applicable = action != null && action.isApplicable(current);
+
+                if (applicable) {
+                    current = action.apply(current);
+                }
+            }
+
+            if (applicable && task.isGoal(current)) {
+                return start;
+            }
+        }
+
+        return -1;
+    }
+
+    /**
+     * Method that extracts the actions that lead from the initial state to a node.
+     *
+     * @param node Search node.
+     * @return Returns the list of actions.
+     */
+    private static List<GroundAction> extractPath(SearchNode node) {
+        LinkedList<GroundAction> path = new LinkedList<>();
+
+        for (SearchNode current = node; current.parent != null; current = current.parent) {
+            path.addFirst(current.action);
+        }
+
+        return path;
+    }
+
+    /**
+     * Method that normalizes an action instance, so it can be compared with the
+     * instances of the ground actions.
+     *
+     * @param instance Action instance, for example "(MOVE-UP P C_1_2 C_1_1)".
+     * @return Returns the normalized instance.
+     */
+    private static String normalizeInstance(String instance) {
+        return String.format("(%s)", String.join(" ", PDDLGrounder.splitAtom(instance.trim().toLowerCase())));
+    }
+}
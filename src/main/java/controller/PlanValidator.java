@@ -0,0 +1,123 @@
+/*
+ * PlanValidator.java
+ *
+ * Copyright (C) 2020 Vladislav Nikolov Vasilev
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see https://www.gnu.org/licenses/gpl-3.0.html.
+ */
+
+/**
+ * Package that contains the planning agent along with its data structures.
+ */
+package controller;
+
+import java.util.BitSet;
+import java.util.List;
+
+/**
+ * Class that validates a plan by simulating it from a state. The state is
+ * represented as a bitset of atoms of the plan's {@link AtomTable}, so the
+ * rest of the plan can be simulated every turn without spending much of the
+ * turn's time.
+ * <p>
+ * Each step is applied as a ground action: its preconditions must hold, the
+ * conditions of its effects are evaluated in the state before the step, and
+ * delete effects are applied before add effects. The steps which don't have a
+ * GVGAI action are also simulated, since they take place as a side effect of
+ * the previous action.
+ *
+ * @author Vladislav Nikolov Vasilev
+ */
+public class PlanValidator {
+    private BitSet current;
+    private BitSet successor;
+
+    /**
+     * Class constructor.
+     */
+    public PlanValidator() {
+        this.current = new BitSet();
+        this.successor = new BitSet();
+    }
+
+    /**
+     * Method that finds the first action of a plan that can't be executed if the
+     * plan is followed from a given state.
+     *
+     * @param plan        Plan to be validated.
+     * @param actionIndex Index of the next action of the plan that will be executed.
+     * @param state       Current state, represented as a bitset of atoms of the
+     *                    table in which the plan's actions are interned.
+     * @return Returns the index of the first action which can't be executed or -1
+     * if the rest of the plan can be executed. If a step without GVGAI action fails,
+     * the index of the action that follows it is returned.
+     */
+    public int findFailedAction(PDDLPlan plan, int actionIndex, BitSet state) {
+        if (actionIndex >= plan.getPDDLActions().size()) {
+            return -1;
+        }
+
+        List<PDDLAction> steps = plan.getSteps();
+        int currentAction = actionIndex;
+
+        this.current.clear();
+        this.current.or(state);
+
+        // The steps before the first action haven't taken place yet, while the ones after
+        // an executed action took place along with it
+        int firstStep = actionIndex == 0 ? 0 : plan.getStepIndex(actionIndex);
+
+        for (int i = firstStep; i < steps.size(); i++) {
+            PDDLAction step = steps.get(i);
+
+            if (!step.isApplicable(this.current)) {
+                return currentAction;
+            }
+
+            this.apply(step);
+
+            if (step.getGVGAIAction() != null) {
+                currentAction++;
+            }
+        }
+
+        return -1;
+    }
+
+    /**
+     * Method that applies the effects of a step to the current state.
+     *
+     * @param step Step of the plan, whose preconditions hold in the current state.
+     */
+    private void apply(PDDLAction step) {
+        this.successor.clear();
+        this.successor.or(this.current);
+
+        for (PDDLAction.PDDLEffect effect : step.getEffects()) {
+            if (effect.isDelete() && effect.isTriggered(this.current)) {
+                this.successor.clear(effect.getAtom());
+            }
+        }
+
+        for (PDDLAction.PDDLEffect effect : step.getEffects()) {
+            if (!effect.isDelete() && effect.isTriggered(this.current)) {
+                this.successor.set(effect.getAtom());
+            }
+        }
+
+        BitSet previous = this.current;
+        this.current = this.successor;
+        this.successor = previous;
+    }
+}
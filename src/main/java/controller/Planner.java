@@ -0,0 +1,59 @@
+/*
+ * Planner.java
+ *
+ * Copyright (C) 2020 Vladislav Nikolov Vasilev
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see https://www.gnu.org/licenses/gpl-3.0.html.
+ */
+
+/**
+ * Package that contains the planning agent along with its data structures.
+ */
+package controller;
+
+import kong.unirest.json.JSONObject;
+
+/**
+ * Interface implemented by every planner backend that can be used by the
+ * {@link PlanningAgent}. A planner receives the contents of the domain and
+ * problem files and returns a JSONObject with the same structure as the
+ * responses of the online solver (see {@link PDDLPlan}).
+ * <p>
+ * Every call receives a {@link PlanningDeadline}. Implementations must give
+ * up (throwing a {@link PlannerTimeoutException}) once the deadline expires
+ * or the call is cancelled.
+ *
+ * @author Vladislav Nikolov Vasilev
+ */
+public interface Planner {
+    /**
+     * Method that solves a problem.
+     *
+     * @param domain   Content of the domain file.
+     * @param problem  Content of the problem file.
+     * @param deadline Deadline of the call, which can also be used to cancel it.
+     * @return Returns the planner's response.
+     * @throws PlannerException Thrown when the planner can't be called or its
+     *                          response can't be read.
+     */
+    JSONObject solve(String domain, String problem, PlanningDeadline deadline) throws PlannerException;
+
+    /**
+     * Method that returns the name of the planner, which is used in logs and
+     * statistics.
+     *
+     * @return Returns the name of the planner.
+     */
+    String getName();
+}
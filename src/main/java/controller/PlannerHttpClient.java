@@ -0,0 +1,489 @@
+/*
+ * PlannerHttpClient.java
+ *
+ * Copyright (C) 2020 Vladislav Nikolov Vasilev
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see https://www.gnu.org/licenses/gpl-3.0.html.
+ */
+
+/**
+ * Package that contains the planning agent along with its data structures.
+ */
+package controller;
+
+import kong.unirest.Config;
+import kong.unirest.HttpRequestWithBody;
+import kong.unirest.HttpResponse;
+import kong.unirest.RawResponse;
+import kong.unirest.UnirestInstance;
+import kong.unirest.json.JSONException;
+import kong.unirest.json.JSONObject;
+import org.apache.http.impl.nio.client.CloseableHttpAsyncClient;
+import org.apache.http.impl.nio.client.HttpAsyncClients;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Class that sends the problems to the HTTP planners. Unlike the global Unirest
+ * instance, it keeps a pool of persistent connections, so consecutive calls to
+ * the same planner don't have to open a new connection. Responses compressed
+ * with gzip are accepted and decoded while they are read, and request bodies
+ * can be compressed as well if the planner supports it.
+ * <p>
+ * Calls that fail because the planner can't be reached or is overloaded (5xx
+ * and 429 responses) are retried a bounded number of times, waiting a random
+ * time that grows exponentially between attempts. If several calls fail in a
+ * row, a circuit breaker rejects the next calls without sending them for some
+ * time, so that the callers can fall back to a local planner right away.
+ *
+ * @author Vladislav Nikolov Vasilev
+ */
+public class PlannerHttpClient implements AutoCloseable {
+    public static final int DEFAULT_CONNECT_TIMEOUT = 5000;
+    public static final int DEFAULT_READ_TIMEOUT = 0;
+    public static final int DEFAULT_MAX_RETRIES = 2;
+    public static final int DEFAULT_FAILURE_THRESHOLD = 3;
+    public static final long DEFAULT_OPEN_MILLIS = 30000;
+
+    // Size of the connection pool and base of the exponential backoff
+    private static final int MAX_CONNECTIONS = 8;
+    private static final int MAX_CONNECTIONS_PER_ROUTE = 4;
+    private static final long BACKOFF_MILLIS = 100;
+
+    private final UnirestInstance unirest;
+    private final int connectTimeout;
+    private final int readTimeout;
+    private final int maxRetries;
+    private final boolean compressRequests;
+    private final CircuitBreaker circuitBreaker;
+    private final Random random;
+
+    private int calls;
+    private int retries;
+    private int rejectedCalls;
+
+    /**
+     * Enum that represents the states of the circuit breaker.
+     */
+    public enum CircuitState {
+        CLOSED, OPEN, HALF_OPEN
+    }
+
+    /**
+     * Class that stops sending calls after several consecutive failures. When it
+     * is open, calls are rejected until some time has passed. Then, a single call
+     * is let through: if it succeeds the breaker is closed again and otherwise it
+     * is opened for the same amount of time.
+     */
+    private static class CircuitBreaker {
+        private final int failureThreshold;
+        private final long openNanos;
+        private CircuitState state;
+        private int consecutiveFailures;
+        private long openedAt;
+
+        private CircuitBreaker(int failureThreshold, long openMillis) {
+            this.failureThreshold = failureThreshold;
+            this.openNanos = openMillis * 1000000L;
+            this.state = CircuitState.CLOSED;
+        }
+
+        private synchronized CircuitState getState() {
+            return this.state;
+        }
+
+        private synchronized boolean allowCall() {
+            if (this.state == CircuitState.OPEN && System.nanoTime() - this.openedAt >= this.openNanos) {
+                this.state = CircuitState.HALF_OPEN;
+                return true;
+            }
+
+            return this.state == CircuitState.CLOSED;
+        }
+
+        private synchronized void recordSuccess() {
+            this.state = CircuitState.CLOSED;
+            this.consecutiveFailures = 0;
+        }
+
+        private synchronized void recordFailure() {
+            this.consecutiveFailures++;
+
+            if (this.state == CircuitState.HALF_OPEN || this.consecutiveFailures >= this.failureThreshold) {
+                this.state = CircuitState.OPEN;
+                this.openedAt = System.nanoTime();
+            }
+        }
+
+        private synchronized void recordAbandonedCall() {
+            // A call abandoned while the breaker was half open lets the next one through
+            if (this.state == CircuitState.HALF_OPEN) {
+                this.state = CircuitState.OPEN;
+                this.openedAt = System.nanoTime() - this.openNanos;
+            }
+        }
+    }
+
+    /**
+     * Exception thrown when a call fails in a way that may not happen again.
+     */
+    private static class RetryableException extends PlannerException {
+        private static final long serialVersionUID = 1L;
+
+        private RetryableException(String message) {
+            super(message);
+        }
+    }
+
+    /**
+     * Class constructor. The circuit breaker uses the default parameters.
+     *
+     * @param connectTimeout   Maximum time to open a connection in milliseconds.
+     * @param readTimeout      Maximum time without receiving data in milliseconds.
+     *                         If it is 0, only the deadline of each call is used.
+     * @param maxRetries       Maximum number of times a failed call is retried.
+     * @param compressRequests Boolean telling whether the request bodies have to be
+     *                         compressed with gzip.
+     */
+    public PlannerHttpClient(int connectTimeout, int readTimeout, int maxRetries, boolean compressRequests) {
+        this(connectTimeout, readTimeout, maxRetries, compressRequests, PlannerHttpClient.DEFAULT_FAILURE_THRESHOLD,
+                PlannerHttpClient.DEFAULT_OPEN_MILLIS);
+    }
+
+    /**
+     * Class constructor.
+     *
+     * @param connectTimeout   Maximum time to open a connection in milliseconds.
+     * @param readTimeout      Maximum time without receiving data in milliseconds.
+     *                         If it is 0, only the deadline of each call is used.
+     * @param maxRetries       Maximum number of times a failed call is retried.
+     * @param compressRequests Boolean telling whether the request bodies have to be
+     *                         compressed with gzip.
+     * @param failureThreshold Number of consecutive failed calls that open the
+     *                         circuit breaker.
+     * @param openMillis       Time during which calls are rejected once the circuit
+     *                         breaker is opened.
+     */
+    public PlannerHttpClient(int connectTimeout, int readTimeout, int maxRetries, boolean compressRequests,
+                             int failureThreshold, long openMillis) {
+        this.connectTimeout = connectTimeout;
+        this.readTimeout = readTimeout;
+        this.maxRetries = maxRetries;
+        this.compressRequests = compressRequests;
+        this.circuitBreaker = new CircuitBreaker(failureThreshold, openMillis);
+        this.random = new Random();
+
+        // The threads of the connection pool don't keep the JVM alive once the games have finished
+        CloseableHttpAsyncClient asyncClient = HttpAsyncClients.custom()
+                .setMaxConnTotal(PlannerHttpClient.MAX_CONNECTIONS)
+                .setMaxConnPerRoute(PlannerHttpClient.MAX_CONNECTIONS_PER_ROUTE)
+                .setThreadFactory(runnable -> {
+                    Thread thread = new Thread(runnable, "planner-http-client");
+                    thread.setDaemon(true);
+                    return thread;
+                })
+                .build();
+        asyncClient.start();
+
+        // Retries are handled by the client, so that they respect the deadline of the calls
+        Config config = new Config()
+                .connectTimeout(connectTimeout)
+                .socketTimeout(readTimeout)
+                .automaticRetries(false)
+                .requestCompression(true)
+                .asyncClient(asyncClient);
+        this.unirest = new UnirestInstance(config);
+    }
+
+    public CircuitState getCircuitState() {
+        return this.circuitBreaker.getState();
+    }
+
+    public synchronized int getCalls() {
+        return this.calls;
+    }
+
+    public synchronized int getRetries() {
+        return this.retries;
+    }
+
+    public synchronized int getRejectedCalls() {
+        return this.rejectedCalls;
+    }
+
+    /**
+     * Method that sends a JSON object to a URL through a POST request and returns
+     * the JSON object of the response.
+     *
+     * @param url      URL to which the request is sent.
+     * @param body     Body of the request.
+     * @param deadline Deadline of the call, retries included.
+     * @return Returns the body of the response.
+     * @throws PlannerException Thrown when the call fails after every retry, when the
+     *                          circuit breaker is open or when the response isn't valid.
+     *                          A {@link PlannerTimeoutException} is thrown if the
+     *                          deadline expires and a {@link PlannerStatusException}
+     *                          if the planner rejects the request.
+     */
+    public JSONObject post(String url, JSONObject body, PlanningDeadline deadline) throws PlannerException {
+        return this.post(url, body, deadline, null);
+    }
+
+    /**
+     * Method that sends a JSON object to a URL through a POST request and returns
+     * the JSON object of the response, recording the latency of each request
+     * and the time spent parsing the responses.
+     *
+     * @param url      URL to which the request is sent.
+     * @param body     Body of the request.
+     * @param deadline Deadline of the call, retries included.
+     * @param metrics  Metrics in which the latencies are recorded. If it is null,
+     *                 nothing is recorded.
+     * @return Returns the body of the response.
+     * @throws PlannerException Thrown when the call fails (see
+     *                          {@link #post(String, JSONObject, PlanningDeadline)}).
+     */
+    public JSONObject post(String url, JSONObject body, PlanningDeadline deadline, AgentMetrics metrics)
+            throws PlannerException {
+        deadline.check();
+
+        if (!this.circuitBreaker.allowCall()) {
+            synchronized (this) {
+                this.rejectedCalls++;
+            }
+
+            throw new PlannerException(String.format("The calls to %s are suspended after %d consecutive failures",
+                    url, this.circuitBreaker.failureThreshold));
+        }
+
+        synchronized (this) {
+            this.calls++;
+        }
+
+        byte[] content = this.encode(body);
+
+        for (int attempt = 0; ; attempt++) {
+            try {
+                JSONObject response = this.send(url, content, deadline, metrics);
+                this.circuitBreaker.recordSuccess();
+
+                return response;
+            } catch (RetryableException e) {
+                // Wait a random time between 0 and the exponential backoff (full jitter)
+                long backoff = (long) (this.random.nextDouble() * (PlannerHttpClient.BACKOFF_MILLIS << attempt));
+
+                if (attempt >= this.maxRetries || backoff >= deadline.remainingMillis()) {
+                    this.circuitBreaker.recordFailure();
+                    throw new PlannerException(String.format("%s (%d attempts)", e.getMessage(), attempt + 1));
+                }
+
+                synchronized (this) {
+                    this.retries++;
+                }
+
+                try {
+                    Thread.sleep(backoff);
+                } catch (InterruptedException interruptedException) {
+                    this.circuitBreaker.recordAbandonedCall();
+                    Thread.currentThread().interrupt();
+                    throw new PlannerTimeoutException("The call to the planner has been interrupted");
+                }
+            } catch (PlannerTimeoutException e) {
+                this.circuitBreaker.recordAbandonedCall();
+                throw e;
+            } catch (PlannerException e) {
+                // The planner answered, so it can still be called
+                this.circuitBreaker.recordSuccess();
+                throw e;
+            }
+        }
+    }
+
+    @Override
+    public void close() {
+        this.unirest.close();
+    }
+
+    /**
+     * Method that encodes the body of a request, compressing it if needed.
+     *
+     * @param body Body of the request.
+     * @return Returns the encoded body.
+     */
+    private byte[] encode(JSONObject body) {
+        byte[] content = body.toString().getBytes(StandardCharsets.UTF_8);
+
+        if (!this.compressRequests) {
+            return content;
+        }
+
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream(content.length / 4);
+
+        try (GZIPOutputStream output = new GZIPOutputStream(buffer)) {
+            output.write(content);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+
+        return buffer.toByteArray();
+    }
+
+    /**
+     * Method that sends a single request. The request is abandoned when the
+     * deadline expires or when it is cancelled.
+     *
+     * @param url      URL to which the request is sent.
+     * @param content  Encoded body of the request.
+     * @param deadline Deadline of the call.
+     * @param metrics  Metrics in which the latencies are recorded (it can be null).
+     * @return Returns the body of the response.
+     * @throws RetryableException Thrown when the planner can't be reached or it
+     *                            can't answer right now.
+     */
+    private JSONObject send(String url, byte[] content, PlanningDeadline deadline, AgentMetrics metrics)
+            throws PlannerException {
+        deadline.check();
+
+        // A timeout of 0 means that the request never expires
+        long remaining = deadline.remainingMillis();
+        int timeout = remaining == Long.MAX_VALUE ? 0 : (int) Math.min(Integer.MAX_VALUE - 1, Math.max(1, remaining));
+        HttpRequestWithBody request = this.unirest.post(url)
+                .header("Content-Type", "application/json")
+                .connectTimeout(PlannerHttpClient.limit(this.connectTimeout, timeout))
+                .socketTimeout(PlannerHttpClient.limit(this.readTimeout, timeout));
+
+        if (this.compressRequests) {
+            request.header("Content-Encoding", "gzip");
+        }
+
+        long start = System.nanoTime();
+        CompletableFuture<HttpResponse<String>> future = request.body(content)
+                .asObjectAsync(PlannerHttpClient::readResponse);
+        deadline.onCancel(() -> future.cancel(true));
+
+        HttpResponse<String> response;
+
+        try {
+            if (deadline.remainingMillis() == Long.MAX_VALUE) {
+                response = future.get();
+            } else {
+                response = future.get(deadline.remainingMillis(), TimeUnit.MILLISECONDS);
+            }
+        } catch (TimeoutException | InterruptedException | CancellationException e) {
+            future.cancel(true);
+            deadline.check();
+            throw new PlannerTimeoutException("The call to the planner has been interrupted");
+        } catch (ExecutionException e) {
+            // Timeouts of the underlying connection are reported as execution errors
+            deadline.check();
+            throw new RetryableException(String.format("Couldn't call the planner at %s: %s", url, e.getCause()));
+        }
+
+        if (metrics != null) {
+            metrics.recordTime(AgentMetrics.HTTP_REQUEST, start);
+        }
+
+        int status = response.getStatus();
+
+        if (status >= 500 || status == 429) {
+            throw new RetryableException(String.format("The planner at %s is unavailable (status %d)", url, status));
+        } else if (status >= 400) {
+            throw new PlannerStatusException(String.format("The planner at %s rejected the request (status %d)",
+                    url, status), status);
+        } else if (response.getBody() == null) {
+            throw new PlannerException(String.format("The planner at %s returned an invalid response (status %d)",
+                    url, status));
+        }
+
+        // The response is parsed here, so the parsing isn't counted as part of the request
+        long parsingStart = System.nanoTime();
+        JSONObject responseBody;
+
+        try {
+            responseBody = new JSONObject(response.getBody());
+        } catch (JSONException e) {
+            throw new PlannerException(String.format("The planner at %s returned an invalid response (%s)",
+                    url, e.getMessage()));
+        }
+
+        if (metrics != null) {
+            metrics.recordTime(AgentMetrics.JSON_PARSING, parsingStart);
+        }
+
+        return responseBody;
+    }
+
+    /**
+     * Method that reads the body of a successful response. Compressed responses
+     * are decoded while they are read.
+     *
+     * @param rawResponse Response of the planner.
+     * @return Returns the body or null if the response isn't successful.
+     */
+    private static String readResponse(RawResponse rawResponse) {
+        if (rawResponse.getStatus() < 200 || rawResponse.getStatus() >= 300 || !rawResponse.hasContent()) {
+            return null;
+        }
+
+        StringBuilder builder = new StringBuilder();
+        char[] buffer = new char[8192];
+
+        try {
+            InputStream content = rawResponse.getContent();
+
+            if ("gzip".equalsIgnoreCase(rawResponse.getEncoding())) {
+                content = new GZIPInputStream(content);
+            }
+
+            try (Reader reader = new InputStreamReader(content, StandardCharsets.UTF_8)) {
+                for (int read = reader.read(buffer); read != -1; read = reader.read(buffer)) {
+                    builder.append(buffer, 0, read);
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+
+        return builder.toString();
+    }
+
+    /**
+     * Method that limits a timeout of the client by the timeout of a call.
+     *
+     * @param timeout     Timeout of the client (0 if there's none).
+     * @param callTimeout Timeout of the call (0 if there's none).
+     * @return Returns the shortest timeout.
+     */
+    private static int limit(int timeout, int callTimeout) {
+        if (timeout == 0 || callTimeout == 0) {
+            return Math.max(timeout, callTimeout);
+        }
+
+        return Math.min(timeout, callTimeout);
+    }
+}
@@ -0,0 +1,371 @@
+/*
+ * PlannerServer.java
+ *
+ * Copyright (C) 2020 Vladislav Nikolov Vasilev
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see https://www.gnu.org/licenses/gpl-3.0.html.
+ */
+
+/**
+ * Package that contains the planning agent along with its data structures.
+ */
+package controller;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import kong.unirest.json.JSONArray;
+import kong.unirest.json.JSONException;
+import kong.unirest.json.JSONObject;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Reference implementation of a planner server, which can be run on localhost
+ * instead of the online solver. Besides the usual POST /solve requests, it
+ * implements the session protocol of {@link SessionHttpPlanner}: the domain and
+ * the problem of a session are kept in memory and updated with the facts and
+ * objects received in each request, so the problem is rebuilt without having
+ * to send it again. The problems are solved by the embedded planner by default.
+ * <p>
+ * Only the last sessions are kept. Requests and responses can be compressed
+ * with gzip.
+ *
+ * @author Vladislav Nikolov Vasilev
+ */
+public class PlannerServer implements AutoCloseable {
+    public static final int DEFAULT_PORT = 5000;
+    public static final int MAX_SESSIONS = 64;
+
+    private static final int THREADS = 4;
+
+    private final HttpServer server;
+    private final ExecutorService executor;
+    private final Planner planner;
+    private final Map<String, Session> sessions;
+
+    /**
+     * Class that represents the problem stored in a session.
+     */
+    private static class Session {
+        private final String domain;
+        private final String name;
+        private final String domainName;
+        private final Map<String, String> objects;
+        private final Set<String> init;
+        private String goal;
+
+        private Session(String domain, PDDLProblem problem) {
+            this.domain = domain;
+            this.name = problem.getName();
+            this.domainName = problem.getDomainName();
+            this.objects = new LinkedHashMap<>(problem.getObjects());
+            this.init = new LinkedHashSet<>(problem.getInit());
+            this.goal = problem.getGoal().toString();
+        }
+
+        /**
+         * Method that writes the problem of the session in PDDL.
+         *
+         * @return Returns the content of the problem file.
+         */
+        private String writeProblem() {
+            StringBuilder builder = new StringBuilder();
+            builder.append("(define (problem ").append(this.name).append(")\n");
+            builder.append("  (:domain ").append(this.domainName).append(")\n");
+            builder.append("  (:objects\n");
+            this.objects.forEach((object, type) -> builder.append("    ").append(object).append(" - ").append(type)
+                    .append('\n'));
+            builder.append("  )\n");
+            builder.append("  (:init\n");
+            this.init.forEach(fact -> builder.append("    ").append(fact).append('\n'));
+            builder.append("  )\n");
+            builder.append("  (:goal ").append(this.goal).append(")\n");
+            builder.append(")\n");
+
+            return builder.toString();
+        }
+    }
+
+    /**
+     * Interface that represents the handler of a request.
+     */
+    private interface RequestHandler {
+        JSONObject handle(String path, JSONObject body) throws PlannerException;
+    }
+
+    /**
+     * Class constructor.
+     *
+     * @param port    Port in which the server listens. If it is 0, a free port is
+     *                chosen.
+     * @param planner Planner that solves the problems.
+     * @throws IOException Thrown when the server can't be created.
+     */
+    public PlannerServer(int port, Planner planner) throws IOException {
+        this.planner = planner;
+
+        // The least recently used session is forgotten when there are too many of them
+        this.sessions = new LinkedHashMap<String, Session>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Session> eldest) {
+                return this.size() > PlannerServer.MAX_SESSIONS;
+            }
+        };
+
+        this.executor = Executors.newFixedThreadPool(PlannerServer.THREADS);
+        this.server = HttpServer.create(new InetSocketAddress(port), 0);
+        this.server.setExecutor(this.executor);
+        this.server.createContext("/solve", exchange -> this.handle(exchange, this::solve));
+        this.server.createContext("/session", exchange -> this.handle(exchange, this::solveInSession));
+    }
+
+    public int getPort() {
+        return this.server.getAddress().getPort();
+    }
+
+    public synchronized int getSessions() {
+        return this.sessions.size();
+    }
+
+    /**
+     * Method that starts listening to requests.
+     */
+    public void start() {
+        this.server.start();
+    }
+
+    @Override
+    public void close() {
+        this.server.stop(0);
+        this.executor.shutdownNow();
+    }
+
+    /**
+     * Method that solves a problem sent in full.
+     *
+     * @param path Path of the request.
+     * @param body Body of the request, which contains the domain and the problem.
+     * @return Returns the response of the planner.
+     * @throws PlannerException Thrown when the problem can't be solved.
+     */
+    private JSONObject solve(String path, JSONObject body) throws PlannerException {
+        return this.planner.solve(body.getString("domain"), body.getString("problem"), PlanningDeadline.none());
+    }
+
+    /**
+     * Method that opens a session or updates the problem of an existing one, and
+     * then solves the problem of the session.
+     *
+     * @param path Path of the request, which contains the identifier of the session
+     *             if it already exists.
+     * @param body Body of the request.
+     * @return Returns the response of the planner, or null if the session is unknown.
+     * @throws PlannerException Thrown when the problem can't be solved.
+     */
+    private JSONObject solveInSession(String path, JSONObject body) throws PlannerException {
+        String[] parts = path.split("/");
+
+        // The path is either /session or /session/{id}
+        if (parts.length <= 2) {
+            String domain = body.getString("domain");
+            Session session = new Session(domain, PDDLParser.parseProblem(body.getString("problem")));
+            String id = UUID.randomUUID().toString();
+
+            synchronized (this) {
+                this.sessions.put(id, session);
+            }
+
+            JSONObject response = this.planner.solve(domain, body.getString("problem"), PlanningDeadline.none());
+            response.put("session", id);
+
+            return response;
+        }
+
+        Session session;
+
+        synchronized (this) {
+            session = this.sessions.get(parts[2]);
+        }
+
+        if (session == null) {
+            return null;
+        }
+
+        String problem;
+
+        synchronized (session) {
+            JSONArray deletedFacts = body.getJSONArray("delete");
+            JSONArray addedFacts = body.getJSONArray("add");
+            JSONArray deletedObjects = body.getJSONArray("delete-objects");
+            JSONObject addedObjects = body.getJSONObject("add-objects");
+
+            for (int i = 0; i < deletedFacts.length(); i++) {
+                session.init.remove(deletedFacts.getString(i));
+            }
+
+            for (int i = 0; i < addedFacts.length(); i++) {
+                session.init.add(addedFacts.getString(i));
+            }
+
+            for (int i = 0; i < deletedObjects.length(); i++) {
+                session.objects.remove(deletedObjects.getString(i));
+            }
+
+            for (String object : addedObjects.keySet()) {
+                session.objects.put(object, addedObjects.getString(object));
+            }
+
+            session.goal = body.getString("goal");
+            problem = session.writeProblem();
+        }
+
+        return this.planner.solve(session.domain, problem, PlanningDeadline.none());
+    }
+
+    /**
+     * Method that reads a request, passes it to its handler and writes the response.
+     * Malformed requests are answered with a 400 status and requests to unknown
+     * sessions with a 404 status. Requests that make the planner fail unexpectedly
+     * are also answered with a 400 status, as the client would get the same error
+     * if it retried them.
+     *
+     * @param exchange Exchange of the request.
+     * @param handler  Handler of the request.
+     * @throws IOException Thrown when the request can't be read or answered.
+     */
+    private void handle(HttpExchange exchange, RequestHandler handler) throws IOException {
+        int status = 200;
+        JSONObject response;
+
+        try {
+            if (!exchange.getRequestMethod().equals("POST")) {
+                status = 405;
+                response = PlannerServer.createError("Only POST requests are supported");
+            } else {
+                response = handler.handle(exchange.getRequestURI().getPath(), PlannerServer.readRequest(exchange));
+
+                if (response == null) {
+                    status = 404;
+                    response = PlannerServer.createError("Unknown session");
+                }
+            }
+        } catch (PlannerException | JSONException e) {
+            status = 400;
+            response = PlannerServer.createError(e.getMessage());
+        } catch (RuntimeException e) {
+            status = 400;
+            response = PlannerServer.createError(String.format("The request couldn't be processed: %s", e));
+        }
+
+        byte[] content = response.toString().getBytes(StandardCharsets.UTF_8);
+        String acceptedEncoding = exchange.getRequestHeaders().getFirst("Accept-Encoding");
+
+        if (acceptedEncoding != null && acceptedEncoding.contains("gzip")) {
+            ByteArrayOutputStream buffer = new ByteArrayOutputStream(content.length / 4);
+
+            try (GZIPOutputStream output = new GZIPOutputStream(buffer)) {
+                output.write(content);
+            }
+
+            content = buffer.toByteArray();
+            exchange.getResponseHeaders().set("Content-Encoding", "gzip");
+        }
+
+        exchange.getResponseHeaders().set("Content-Type", "application/json");
+        exchange.sendResponseHeaders(status, content.length);
+
+        try (OutputStream output = exchange.getResponseBody()) {
+            output.write(content);
+        }
+    }
+
+    /**
+     * Method that reads the JSON object of a request, decoding it if it's
+     * compressed.
+     *
+     * @param exchange Exchange of the request.
+     * @return Returns the body of the request.
+     * @throws IOException Thrown when the request can't be read.
+     */
+    private static JSONObject readRequest(HttpExchange exchange) throws IOException {
+        InputStream input = exchange.getRequestBody();
+
+        if ("gzip".equalsIgnoreCase(exchange.getRequestHeaders().getFirst("Content-Encoding"))) {
+            input = new GZIPInputStream(input);
+        }
+
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        byte[] chunk = new byte[8192];
+
+        try (InputStream content = input) {
+            for (int read = content.read(chunk); read != -1; read = content.read(chunk)) {
+                buffer.write(chunk, 0, read);
+            }
+        }
+
+        return new JSONObject(new String(buffer.toByteArray(), StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Method that creates the response of a failed request.
+     *
+     * @param message Message of the error.
+     * @return Returns the response.
+     */
+    private static JSONObject createError(String message) {
+        JSONObject result = new JSONObject();
+        result.put("output", message);
+
+        JSONObject response = new JSONObject();
+        response.put("status", "error");
+        response.put("result", result);
+
+        return response;
+    }
+
+    /**
+     * Method that runs the server until the process is stopped.
+     *
+     * @param args Port in which the server listens (5000 by default), optionally
+     *             followed by the command of a planner which is run as a
+     *             subprocess instead of the embedded planner.
+     * @throws IOException Thrown when the server can't be created.
+     */
+    public static void main(String[] args) throws IOException {
+        int port = args.length > 0 ? Integer.parseInt(args[0]) : PlannerServer.DEFAULT_PORT;
+        List<String> command = args.length > 1 ? Arrays.asList(args).subList(1, args.length) : null;
+        Planner planner = command != null ? new SubprocessPlanner(command) : new EmbeddedPlanner();
+
+        PlannerServer server = new PlannerServer(port, planner);
+        server.start();
+        System.out.println(String.format("Planner server listening on port %d (%s planner)", server.getPort(),
+                planner.getName()));
+    }
+}
@@ -0,0 +1,44 @@
+/*
+ * PlannerStatusException.java
+ *
+ * Copyright (C) 2020 Vladislav Nikolov Vasilev
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see https://www.gnu.org/licenses/gpl-3.0.html.
+ */
+
+/**
+ * Package that contains the planning agent along with its data structures.
+ */
+package controller;
+
+/**
+ * Exception thrown when an HTTP planner rejects a request with an error status,
+ * for example because it doesn't support the requested operation.
+ *
+ * @author Vladislav Nikolov Vasilev
+ */
+public class PlannerStatusException extends PlannerException {
+    private static final long serialVersionUID = 1L;
+
+    private int status;
+
+    public PlannerStatusException(String message, int status) {
+        super(message);
+        this.status = status;
+    }
+
+    public int getStatus() {
+        return this.status;
+    }
+}
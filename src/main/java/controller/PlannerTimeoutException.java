@@ -0,0 +1,37 @@
+/*
+ * PlannerTimeoutException.java
+ *
+ * Copyright (C) 2020 Vladislav Nikolov Vasilev
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see https://www.gnu.org/licenses/gpl-3.0.html.
+ */
+
+/**
+ * Package that contains the planning agent along with its data structures.
+ */
+package controller;
+
+/**
+ * Exception thrown when a call to the planner is interrupted because its
+ * deadline has expired or because it has been cancelled.
+ *
+ * @author Vladislav Nikolov Vasilev
+ */
+public class PlannerTimeoutException extends PlannerException {
+    private static final long serialVersionUID = 1L;
+
+    public PlannerTimeoutException(String message) {
+        super(message);
+    }
+}
@@ -25,10 +25,6 @@ package controller;
 import core.game.Observation;
 import core.game.StateObservation;
 import core.player.AbstractPlayer;
-import core.vgdl.VGDLRegistry;
-import kong.unirest.HttpResponse;
-import kong.unirest.JsonNode;
-import kong.unirest.Unirest;
 import kong.unirest.json.JSONArray;
 import kong.unirest.json.JSONException;
 import kong.unirest.json.JSONObject;
@@ -36,16 +32,21 @@ import ontology.Types;
 import org.yaml.snakeyaml.Yaml;
 import org.yaml.snakeyaml.constructor.Constructor;
 import tools.ElapsedCpuTimer;
-import tools.Vector2d;
+import tracks.ArcadeMachine;
 
 import java.io.*;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.*;
-import java.util.logging.FileHandler;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.logging.Handler;
 import java.util.logging.Logger;
-import java.util.logging.SimpleFormatter;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 import java.util.stream.Collectors;
@@ -58,11 +59,11 @@ import java.util.stream.Stream;
  * @author Vladislav Nikolov Vasilev
  */
 public class PlanningAgent extends AbstractPlayer {
-    // The following attributes can be modified
-    protected static String gameConfigFile;
-    protected static boolean debugMode;
-    protected static boolean saveInformation;
-    protected static boolean localHost;
+    // Fraction of the turn's remaining time that can be spent by the planner
+    protected static final double PLANNER_TIME_FRACTION = 0.9;
+
+    // Fraction of the turn's time that can be used to simulate the plan with the forward model
+    protected static final double LOOKAHEAD_TIME_FRACTION = 0.5;
 
     // Agenda that contains preempted, current and reached goals
     protected Agenda agenda;
@@ -71,9 +72,53 @@ public class PlanningAgent extends AbstractPlayer {
     protected List<String> PDDLGameStatePredicates;
     protected Map<String, Set<String>> PDDLGameStateObjects;
 
+    // Planner used to find plans
+    protected Planner planner;
+
+    // Configuration of the agent and statistics of the game
+    protected AgentConfiguration configuration;
+    protected AgentStatistics statistics;
+
+    // Configuration and statistics of the games run by the current thread (see runGame)
+    private static final ThreadLocal<AgentConfiguration> THREAD_CONFIGURATION = new ThreadLocal<>();
+    private static final ThreadLocal<AgentStatistics> THREAD_STATISTICS = new ThreadLocal<>();
+
+    // Planner of the upcoming goals (null if speculative planning is disabled)
+    protected SpeculativePlanner speculativePlanner;
+
+    // Worker thread and call to the planner that is being waited for in anytime mode
+    protected ExecutorService plannerWorker;
+    protected CompletableFuture<JSONObject> pendingResponse;
+    protected PlanningDeadline pendingDeadline;
+    protected String pendingDomain;
+    protected PDDLProblem pendingProblem;
+
+    // Selector of the goal with the shortest plan (null if parallel goal selection is disabled)
+    protected GoalSelector goalSelector;
+
+    // Orderer of the goals with the same priority by distance (null if goal ordering is disabled)
+    protected GoalOrderer goalOrderer;
+
+    // Repairer of the plans whose next action can't be executed (null if plan repair is disabled)
+    protected PlanRepairer planRepairer;
+
+    // Validator which simulates the rest of the plan every turn (null if plan validation is disabled)
+    protected PlanValidator planValidator;
+
+    // Simulator of the next actions with the forward model (null if the lookahead is disabled) and last failure it predicted
+    protected PlanLookahead planLookahead;
+    protected String lastPredictedFailure;
+
+    // Pruner of the cells that can't be used by any plan (null if pruning is disabled or the domain can't be parsed)
+    protected ProblemPruner problemPruner;
+
+    // Policy that chooses the actions executed while the agent waits for the planner
+    protected FallbackPolicy fallbackPolicy;
+    protected int turnsWaiting;
+
     // Plan to the current goal and iterator to iterate over it
     protected PDDLPlan PDDLPlan;
-    protected Iterator<PDDLAction> iterPlan;
+    protected PDDLPlan.PlanIterator iterPlan;
 
     // Game information data structure (loaded from a .yaml file) and file path
     protected GameInformation gameInformation;
@@ -84,6 +129,25 @@ public class PlanningAgent extends AbstractPlayer {
     // Variable that indicates whether the agent has to find a new plan or not
     protected boolean mustPlan;
 
+    // Translator from game states to PDDL predicates and objects
+    protected GameStateTranslator translator;
+
+    // Domain file, its content and the parsed domain, whose action schemas are used to instantiate the plans
+    protected String domainFile;
+    protected String domainText;
+    protected PDDLDomain domain;
+
+    // Last generated problem and buffer used to generate problems
+    protected String problem;
+    protected StringBuilder problemBuilder;
+
+    // Writer of the runtime information
+    protected TraceSink traceSink;
+
+    // Table of interned atoms and atoms of the goals of the agenda
+    protected AtomTable atomTable;
+    protected BitSet goalAtoms;
+
     // Set of connections between cells
     protected Set<String> connectionSet;
     protected Map<String, Set<String>> gameElementVars;
@@ -91,27 +155,46 @@ public class PlanningAgent extends AbstractPlayer {
     // Variable that indicates the game's turn
     protected int turn;
 
-    // Runtime information
-    protected static long executionTime = 0;
-    protected static int callsPlanner = 0;
-    protected static int numDiscrepancies = 0;
-    protected static int numGoals;
 
-    // Logger
-    private final static Logger LOGGER = Logger.getLogger(PlanningAgent.class.getName());
+    // Logger of the agent and handler which writes it to the output directory
+    protected Logger logger;
+    private Handler logHandler;
 
     /**
-     * Class constructor. Creates a new planning agent.
+     * Class constructor. Creates a new planning agent with the configuration given
+     * to {@link #runGame}. This is the constructor used by the GVGAI framework.
      *
      * @param stateObservation State observation of the game.
      * @param elapsedCpuTimer  Elapsed CPU time.
      */
     public PlanningAgent(StateObservation stateObservation, ElapsedCpuTimer elapsedCpuTimer) {
+        this(stateObservation, elapsedCpuTimer, PlanningAgent.THREAD_CONFIGURATION.get(),
+                PlanningAgent.THREAD_STATISTICS.get());
+    }
+
+    /**
+     * Class constructor. Creates a new planning agent.
+     *
+     * @param stateObservation State observation of the game.
+     * @param elapsedCpuTimer  Elapsed CPU time.
+     * @param configuration    Configuration of the agent.
+     * @param statistics       Statistics in which the agent records the game.
+     */
+    public PlanningAgent(StateObservation stateObservation, ElapsedCpuTimer elapsedCpuTimer,
+                         AgentConfiguration configuration, AgentStatistics statistics) {
+        if (configuration == null || statistics == null) {
+            throw new IllegalStateException("The planning agent must be created with a configuration");
+        }
+
+        this.configuration = configuration;
+        this.statistics = statistics;
+        this.logger = Logger.getAnonymousLogger();
+
         // Load game information
         Yaml yaml = new Yaml(new Constructor(GameInformation.class));
 
         try {
-            InputStream inputStream = new FileInputStream(new File(PlanningAgent.gameConfigFile));
+            InputStream inputStream = new FileInputStream(new File(this.configuration.getGameConfigFile()));
             this.gameInformation = yaml.load(inputStream);
         } catch (FileNotFoundException e) {
             System.out.println(e.getStackTrace());
@@ -126,45 +209,68 @@ public class PlanningAgent extends AbstractPlayer {
                 .stream()
                 .forEach(key -> this.PDDLGameStateObjects.put(key, new LinkedHashSet<>()));
         this.gameElementVars = this.extractVariablesFromPredicates();
+        this.atomTable = new AtomTable();
+        this.translator = new GameStateTranslator(this.gameInformation, this.gameElementVars, this.atomTable);
         this.connectionSet = this.generateConnectionPredicates(stateObservation);
 
-        // Initialize plan and iterator
+        // Initialize planner, problem buffer, plan and iterator
+        this.planner = this.createPlanner();
+        this.speculativePlanner = this.configuration.getSpeculativeGoals() > 0
+                ? new SpeculativePlanner(this.planner, this.configuration.getPlanCache()) : null;
+        this.fallbackPolicy = this.createFallbackPolicy();
+        this.goalSelector = this.configuration.getParallelGoals() > 0
+                ? new GoalSelector(this.planner, this.configuration.getPlanCache(), this.configuration.getParallelGoals()) : null;
+        this.planRepairer = this.configuration.isPlanRepair()
+                ? new PlanRepairer(PlanRepairer.DEFAULT_MAX_DEPTH, PlanRepairer.DEFAULT_MAX_NODES) : null;
+        this.planValidator = this.configuration.isPlanValidation() ? new PlanValidator() : null;
+        this.planLookahead = this.configuration.getLookaheadHorizon() > 0
+                ? new PlanLookahead(this.gameInformation, this.gameElementVars, this.atomTable, this.connectionSet,
+                this.configuration.getLookaheadHorizon(), this.configuration.getLookaheadSamples()) : null;
+        this.problemBuilder = new StringBuilder();
         this.PDDLPlan = new PDDLPlan();
         this.iterPlan = PDDLPlan.iterator();
 
-        // Initialize agenda
+        // Initialize agenda and intern the goals' atoms
         this.agenda = new Agenda(this.gameInformation.goals);
+        this.goalAtoms = new BitSet();
+        this.agenda.getPendingGoals().forEach(goal -> this.goalAtoms.set(this.atomTable.intern(goal.getGoalPredicate())));
 
         // Set plan variable and turn
         this.mustPlan = true;
         this.turn = -1;
 
-        // If the agent must save the information, create directories and initialize logger
-        if (PlanningAgent.saveInformation) {
-            this.createOutputDirectories();
-
+        // If the agent must save the information, create the trace archive and initialize logger
+        if (this.configuration.isSaveInformation()) {
             // Ignore handlers used by parent loggers
-            LOGGER.setUseParentHandlers(false);
+            this.logger.setUseParentHandlers(false);
 
             // Set locale language to english (logs should be in English :) )
             Locale.setDefault(Locale.ENGLISH);
 
             try {
-                // Add a file handler to the logger
-                FileHandler fh = new FileHandler("output/game_execution.log");
-                PlanningAgent.LOGGER.addHandler(fh);
+                // The log records are written into the archive along with the problems and plans
+                this.traceSink = new TraceSink(Paths.get(this.configuration.getOutputDirectory()));
+                this.logHandler = this.traceSink.createLogHandler();
+                this.logger.addHandler(this.logHandler);
 
-                // Set logger's formatter
-                SimpleFormatter formatter = new SimpleFormatter();
-                fh.setFormatter(formatter);
-
-                PlanningAgent.LOGGER.info("Created agent successfully!");
+                this.logger.info("Created agent successfully!");
             } catch (IOException e) {
                 e.printStackTrace();
             }
         }
 
-        PlanningAgent.numGoals = this.agenda.getPendingGoals().size();
+        // Order the goals from the initial state, which requires the domain to find out which cells are passable
+        if (this.configuration.getGoalOrderingName() != null) {
+            this.getDomainText();
+
+            if (this.domain != null) {
+                this.goalOrderer = new GoalOrderer(this.domain, this.configuration.getGoalOrderingName());
+                this.translateGameStateToPDDL(stateObservation);
+                this.orderGoals();
+            }
+        }
+
+        this.statistics.addGoals(this.agenda.getPendingGoals().size());
     }
 
     /**
@@ -178,11 +284,12 @@ public class PlanningAgent extends AbstractPlayer {
      */
     @Override
     public Types.ACTIONS act(StateObservation stateObservation, ElapsedCpuTimer elapsedCpuTimer) {
+        long turnStart = System.nanoTime();
         Types.ACTIONS action = Types.ACTIONS.ACTION_NIL;
         this.turn++;
 
         // SHOW DEBUG INFORMATION
-        if (PlanningAgent.debugMode) {
+        if (this.configuration.isDebugMode()) {
             System.out.println(String.format("\n ---------- Turn %d ----------\n", this.turn));
             try {
                 Thread.sleep(500);
@@ -196,53 +303,67 @@ public class PlanningAgent extends AbstractPlayer {
 
         // If there's no plan, spend one turn searching for one
         if (this.mustPlan) {
-            // Set current goal
-            this.agenda.setCurrentGoal();
-
-            // SHOW DEBUG INFORMATION
-            if (PlanningAgent.debugMode) {
-                this.displayDebugInformation("I don't have a plan to the current goal or I must replan!");
+            // In anytime mode, the agent may still be waiting for the plan requested in a previous turn
+            if (this.pendingResponse == null) {
+                this.prepareCallToPlanner(elapsedCpuTimer);
             }
 
-            // Write PDDL predicates into the problem file
             try {
-                this.createProblemFile();
-            } catch (NullPointerException e) {
-                if (PlanningAgent.debugMode) {
-                    this.printMessages("The agent has reached all goals but can't exit the level!", "Exiting...");
+                if (this.configuration.isAnytime()) {
+                    PlanningDeadline deadline = PlanningDeadline.fromTimer(elapsedCpuTimer,
+                            this.configuration.getActTimeFraction());
+                    action = this.fallbackPolicy.act(stateObservation, deadline);
+                    this.PDDLPlan = this.findPlanAnytime(deadline);
+
+                    if (this.PDDLPlan == null) {
+                        this.reportTurnWaiting(action);
+                        this.statistics.addExecutionTime(elapsedCpuTimer.elapsedMillis());
+                        this.statistics.getMetrics().recordTime(AgentMetrics.TURN, turnStart);
+
+                        return action;
+                    }
+
+                    this.reportPlanFound();
+                } else {
+                    this.PDDLPlan = this.findPlan(
+                            PlanningDeadline.fromTimer(elapsedCpuTimer, PlanningAgent.PLANNER_TIME_FRACTION));
                 }
+            } catch (PlannerTimeoutException e) {
+                // Keep the current goal and try again in the next turn
+                this.statistics.recordPlannerTimeout();
 
-                if (PlanningAgent.saveInformation) {
-                    PlanningAgent.LOGGER.warning(
-                            String.format("TURN %d All goals reached but agent can't completed the level.",
-                                    this.turn));
+                if (this.configuration.isDebugMode()) {
+                    this.printMessages(String.format("The planner %s timed out: %s", this.planner.getName(),
+                            e.getMessage()), "I am going to try again in the next turn!");
                 }
 
-                System.exit(1);
-            }
+                if (this.configuration.isSaveInformation()) {
+                    this.logger.warning(String.format("TURN %d The planner %s timed out: %s",
+                            this.turn, this.planner.getName(), e.getMessage()));
+                }
 
-            // Save logging information
-            if (PlanningAgent.saveInformation) {
-                PlanningAgent.LOGGER.info(String.format(
-                        "TURN %d The following goal has been set as the current goal: %s",
-                        this.turn, this.agenda.getCurrentGoal().getGoalPredicate()));
+                this.statistics.addExecutionTime(elapsedCpuTimer.elapsedMillis());
+                this.statistics.getMetrics().recordTime(AgentMetrics.TURN, turnStart);
+
+                return action;
             }
 
-            this.PDDLPlan = this.findPlan();
             this.iterPlan = PDDLPlan.iterator();
             this.mustPlan = false;
-            PlanningAgent.callsPlanner++;
 
             // SHOW DEBUG INFORMATION
-            if (PlanningAgent.debugMode) {
+            if (this.configuration.isDebugMode()) {
                 this.displayDebugInformation("Translated output plan");
             }
         } else {
+            // Simulate the rest of the plan, so that a discrepancy in an upcoming action is found right now
+            boolean upcomingDiscrepancy = this.findUpcomingDiscrepancy();
+
             // Check preconditions for next action
             PDDLAction nextPDDLAction = this.iterPlan.next();
 
             // SHOW DEBUG INFORMATION
-            if (PlanningAgent.debugMode) {
+            if (this.configuration.isDebugMode()) {
                 this.printMessages("The agent will try to execute the following action:" + nextPDDLAction.toString(),
                         "\nChecking preconditions...");
 
@@ -253,11 +374,30 @@ public class PlanningAgent extends AbstractPlayer {
                 }
             }
 
-            boolean satisfiedPreconditions = this.checkPreconditions(nextPDDLAction.getPreconditions(), PlanningAgent.debugMode);
+            boolean satisfiedPreconditions = !upcomingDiscrepancy
+                    && this.checkPreconditions(nextPDDLAction, this.configuration.isDebugMode());
+
+            // Execute the next actions with the forward model, since the plan doesn't know how the NPCs behave.
+            // A predicted failure isn't repaired, as the repaired plan wouldn't know it either
+            boolean predictedFailure = satisfiedPreconditions && this.predictFailure(stateObservation, elapsedCpuTimer);
+            satisfiedPreconditions = satisfiedPreconditions && !predictedFailure;
+
+            // Try to repair the plan before giving it up. If the repaired plan has no action with a GVGAI action
+            // left (for example, only exiting the level remains) or its next action can't be executed, the agent
+            // replans as if the plan couldn't be repaired
+            if (!satisfiedPreconditions && !predictedFailure && this.repairPlan(elapsedCpuTimer)
+                    && this.iterPlan.hasNext()) {
+                nextPDDLAction = this.iterPlan.next();
+                satisfiedPreconditions = this.checkPreconditions(nextPDDLAction, this.configuration.isDebugMode());
+
+                if (satisfiedPreconditions) {
+                    this.statistics.recordDiscrepancy(true);
+                }
+            }
 
             if (satisfiedPreconditions) {
                 // SHOW DEBUG INFORMATION
-                if (PlanningAgent.debugMode) {
+                if (this.configuration.isDebugMode()) {
                     System.out.println("All preconditions satisfied!");
 
                     try {
@@ -268,7 +408,7 @@ public class PlanningAgent extends AbstractPlayer {
                 }
 
                 // SHOW DEBUG INFORMATION
-                if (PlanningAgent.debugMode) {
+                if (this.configuration.isDebugMode()) {
                     System.out.println("\nChecking effects...");
 
                     try {
@@ -282,15 +422,15 @@ public class PlanningAgent extends AbstractPlayer {
                 boolean modifiedAgenda = this.checkEarlyReachedGoals(nextPDDLAction.getEffects());
 
                 // SHOW DEBUG INFORMATION
-                if (PlanningAgent.debugMode && modifiedAgenda) {
+                if (this.configuration.isDebugMode() && modifiedAgenda) {
                     this.displayDebugInformation("\nThe agenda has been updated!");
-                } else if (PlanningAgent.debugMode && !modifiedAgenda) {
+                } else if (this.configuration.isDebugMode() && !modifiedAgenda) {
                     System.out.println("No goal has been reached beforehand!\n");
                 }
 
                 // Save logging information
-                if (PlanningAgent.saveInformation && modifiedAgenda) {
-                    PlanningAgent.LOGGER.info(String.format("TURN %d One or more goals have been reached beforehand",
+                if (this.configuration.isSaveInformation() && modifiedAgenda) {
+                    this.logger.info(String.format("TURN %d One or more goals have been reached beforehand",
                             this.turn));
                 }
 
@@ -299,7 +439,7 @@ public class PlanningAgent extends AbstractPlayer {
                 // If no actions are left, that means that the current goal has been reached
                 if (!this.iterPlan.hasNext()) {
                     // SHOW DEBUG INFORMATION
-                    if (PlanningAgent.debugMode) {
+                    if (this.configuration.isDebugMode()) {
                         this.showMessagesWait(String.format(
                                 "The following goal is going the be reached after executing the next action: %s",
                                 this.agenda.getCurrentGoal()),
@@ -318,8 +458,8 @@ public class PlanningAgent extends AbstractPlayer {
                     }
 
                     // Save logging information
-                    if (PlanningAgent.saveInformation) {
-                        PlanningAgent.LOGGER.info(String.format(
+                    if (this.configuration.isSaveInformation()) {
+                        this.logger.info(String.format(
                                 "TURN %d The following goal is going to be reached in this turn: %s",
                                 this.turn, this.agenda.getCurrentGoal().getGoalPredicate()));
                     }
@@ -330,23 +470,23 @@ public class PlanningAgent extends AbstractPlayer {
                     this.PDDLPlan.clearPlan();
 
                     // SHOW DEBUG INFORMATION
-                    if (PlanningAgent.debugMode) {
+                    if (this.configuration.isDebugMode()) {
                         this.displayDebugInformation("\nThe agenda has been updated!");
                     }
                 }
             } else {
-                PlanningAgent.numDiscrepancies++;
+                this.statistics.recordDiscrepancy(false);
 
                 // SHOW DEBUG INFORMATION
-                if (PlanningAgent.debugMode) {
+                if (this.configuration.isDebugMode()) {
                     this.showMessagesWait("One or more preconditions couldn't be satisfied",
                             "The following goal is going to be halted:" + this.agenda.getCurrentGoal(),
                             "\nI am going to select a new goal and find a plan to it in the following turn!");
                 }
 
                 // Save logging information
-                if (PlanningAgent.saveInformation) {
-                    PlanningAgent.LOGGER.warning(String.format(
+                if (this.configuration.isSaveInformation()) {
+                    this.logger.warning(String.format(
                             "TURN %d Due to a discrepancy, the following goal is going to be halted: %s",
                             this.turn, this.agenda.getCurrentGoal().getGoalPredicate()));
                 }
@@ -355,15 +495,25 @@ public class PlanningAgent extends AbstractPlayer {
                 this.mustPlan = true;
                 this.PDDLPlan.clearPlan();
 
+                // The avatar may be far from where the goals were ordered
+                if (this.goalOrderer != null) {
+                    this.orderGoals();
+                }
+
+                // The upcoming goals were planned from a state that won't be reached
+                if (this.speculativePlanner != null) {
+                    this.speculativePlanner.cancel();
+                }
+
                 // SHOW DEBUG INFORMATION
-                if (PlanningAgent.debugMode) {
+                if (this.configuration.isDebugMode()) {
                     this.displayDebugInformation("\nThe agenda has been updated!");
                 }
             }
         }
 
         // SHOW DEBUG INFORMATION
-        if (PlanningAgent.debugMode) {
+        if (this.configuration.isDebugMode()) {
             System.out.println("The following action is going to be executed in this turn: " + action);
 
             try {
@@ -373,11 +523,64 @@ public class PlanningAgent extends AbstractPlayer {
             }
         }
 
-        PlanningAgent.executionTime += elapsedCpuTimer.elapsedMillis();
+        this.statistics.addExecutionTime(elapsedCpuTimer.elapsedMillis());
+        this.statistics.getMetrics().recordTime(AgentMetrics.TURN, turnStart);
 
         return action;
     }
 
+    /**
+     * Method called when the game is over. It stops the background planners and
+     * waits until all the runtime information has been written to disk.
+     *
+     * @param stateObservation State observation of the game at the end of the game.
+     * @param elapsedCpuTimer  Elapsed CPU time.
+     */
+    @Override
+    public void result(StateObservation stateObservation, ElapsedCpuTimer elapsedCpuTimer) {
+        if (this.speculativePlanner != null) {
+            this.speculativePlanner.close();
+        }
+
+        if (this.goalSelector != null) {
+            this.goalSelector.close();
+        }
+
+        Planner backend = this.planner;
+
+        if (backend instanceof HierarchicalPlanner) {
+            HierarchicalPlanner hierarchicalPlanner = (HierarchicalPlanner) backend;
+            this.statistics.addHierarchicalStats(hierarchicalPlanner);
+            backend = hierarchicalPlanner.getPlanner();
+        }
+
+        if (backend instanceof PortfolioPlanner) {
+            ((PortfolioPlanner) backend).close();
+        } else if (backend instanceof HttpPlanner) {
+            this.statistics.addHttpFallbackCalls(((HttpPlanner) backend).getFallbackCalls());
+        }
+
+        if (backend instanceof SessionHttpPlanner) {
+            this.statistics.addSessionStats((SessionHttpPlanner) backend);
+        }
+
+        if (this.plannerWorker != null) {
+            if (this.pendingDeadline != null) {
+                this.pendingDeadline.cancel();
+            }
+
+            this.plannerWorker.shutdownNow();
+        }
+
+        if (this.logHandler != null) {
+            this.logger.removeHandler(this.logHandler);
+        }
+
+        if (this.traceSink != null) {
+            this.traceSink.close();
+        }
+    }
+
     /**
      * Method that checks whether the preconditions of an action are satisfied or
      * not. In this case, the preconditions are going to be satisfied if all the
@@ -389,6 +592,7 @@ public class PlanningAgent extends AbstractPlayer {
      * @return Returns true if all preconditions are satisfied and false otherwise.
      */
     public boolean checkPreconditions(List<String> preconditions, boolean showInformation) {
+        BitSet state = this.translator.getState();
         boolean satisfiedPreconditions = true;
         List<String> falsePreconditions = new ArrayList<>();
 
@@ -399,12 +603,12 @@ public class PlanningAgent extends AbstractPlayer {
                 String positivePred = precondition.replace("(not ", "");
                 positivePred = positivePred.substring(0, positivePred.length() - 1);
 
-                if (this.PDDLGameStatePredicates.contains(positivePred)) {
+                if (this.atomTable.holds(state, positivePred)) {
                     falsePreconditions.add(precondition);
                     satisfiedPreconditions = false;
                 }
             } else {
-                if (!this.PDDLGameStatePredicates.contains(precondition)) {
+                if (!this.atomTable.holds(state, precondition)) {
                     falsePreconditions.add(precondition);
                     satisfiedPreconditions = false;
                 }
@@ -421,6 +625,31 @@ public class PlanningAgent extends AbstractPlayer {
         return satisfiedPreconditions;
     }
 
+    /**
+     * Method that checks whether the preconditions of an action are satisfied or
+     * not. The interned preconditions of the action are checked against the bitset
+     * which represents the game state.
+     *
+     * @param action          Action whose preconditions are checked.
+     * @param showInformation Boolean telling whether to show or not debug information.
+     * @return Returns true if all preconditions are satisfied and false otherwise.
+     */
+    public boolean checkPreconditions(PDDLAction action, boolean showInformation) {
+        // Actions interned in another table are checked using their predicates
+        if (action.getAtomTable() != this.atomTable) {
+            return this.checkPreconditions(action.getPreconditions(), showInformation);
+        }
+
+        boolean satisfiedPreconditions = action.isApplicable(this.translator.getState());
+
+        // SHOW DEBUG INFORMATION
+        if (!satisfiedPreconditions && showInformation) {
+            this.checkPreconditions(action.getPreconditions(), true);
+        }
+
+        return satisfiedPreconditions;
+    }
+
     /**
      * Method that checks whether a goal is reached beforehand by checking
      * the effects of an action. In case some goal is reached beforehand, the
@@ -437,6 +666,13 @@ public class PlanningAgent extends AbstractPlayer {
 
         // Check not planned goals
         for (PDDLAction.PDDLEffect effect : effects) {
+            boolean internedEffect = effect.getAtomTable() == this.atomTable;
+
+            // Skip effects that can't be a goal of the agenda
+            if (internedEffect && !this.goalAtoms.get(effect.getEffectAtom())) {
+                continue;
+            }
+
             if (effect.getConditions().isEmpty()) {
                 // Check both lists and update them accordingly
                 PDDLSingleGoal modifiedGoal = this.checkSingleEffect(effect.getEffectPredicate());
@@ -445,7 +681,9 @@ public class PlanningAgent extends AbstractPlayer {
                     modifiedGoals.add(modifiedGoal);
                 }
             } else {
-                boolean conditionsSatisfied = this.checkPreconditions(effect.getConditions(), false);
+                boolean conditionsSatisfied = internedEffect
+                        ? effect.isTriggered(this.translator.getState())
+                        : this.checkPreconditions(effect.getConditions(), false);
 
                 if (conditionsSatisfied) {
                     PDDLSingleGoal modifiedGoal = this.checkSingleEffect(effect.getEffectPredicate());
@@ -460,7 +698,7 @@ public class PlanningAgent extends AbstractPlayer {
         boolean modifiedAgenda = !modifiedGoals.isEmpty();
 
         // SHOW DEBUG INFORMATION
-        if (PlanningAgent.debugMode && modifiedAgenda) {
+        if (this.configuration.isDebugMode() && modifiedAgenda) {
             StringBuilder builder = new StringBuilder();
             modifiedGoals.stream().forEach(goal -> builder.append(goal.toString()));
             builder.append("\n");
@@ -475,147 +713,142 @@ public class PlanningAgent extends AbstractPlayer {
     /**
      * Method that allows the agent to find a plan to the current given goal. It calls
      * the planner and translates its output, generating in the process a new PDDLPlan
-     * instance.
+     * instance. The call never expires.
      *
      * @return Returns a new PDDLPlan instance.
      * @throws PlannerException Thrown when the planner's response status is not OK.
      */
     public PDDLPlan findPlan() throws PlannerException {
-        // Read domain and problem files
-        String domain = readFile(this.gameInformation.domainFile);
-        String problem = readFile(this.gameInformation.problemFile);
-
-        // Create JSON object which will be sent in the request's body
-        JSONObject jsonObject = new JSONObject();
-        jsonObject.put("domain", domain);
-        jsonObject.put("problem", problem);
-
-        String url;
+        return this.findPlan(PlanningDeadline.none());
+    }
 
-        if (PlanningAgent.localHost) {
-            url = "http://localhost:5000/solve";
-        } else {
-            url = "http://solver.planning.domains/solve";
+    /**
+     * Method that allows the agent to find a plan to the current given goal before
+     * a deadline. It calls the planner and translates its output, generating in the
+     * process a new PDDLPlan instance.
+     *
+     * @param deadline Deadline of the call to the planner.
+     * @return Returns a new PDDLPlan instance.
+     * @throws PlannerTimeoutException Thrown when the planner doesn't answer before
+     *                                 the deadline.
+     * @throws PlannerException        Thrown when the planner's response status is not OK.
+     */
+    public PDDLPlan findPlan(PlanningDeadline deadline) throws PlannerException {
+        // Get the domain and the problem. If no problem has been generated yet, it is read from the problem file
+        String domain = this.getDomainText();
+        String problem = this.problem != null ? this.problem : this.readFile(this.gameInformation.problemFile);
+        String goal = this.agenda.getCurrentGoal() != null ? this.agenda.getCurrentGoal().getGoalPredicate() : null;
+
+        // Look for a valid plan in the cache and among the speculative plans before calling the planner
+        PDDLProblem parsedProblem = PDDLParser.parseProblem(problem);
+        JSONObject responseBody = this.retrieveCachedPlan(domain, parsedProblem);
+
+        if (responseBody == null) {
+            responseBody = this.retrieveSpeculativePlan(goal, domain, parsedProblem, deadline);
         }
 
-        // Call planner and get its response as a JSON
-        HttpResponse<JsonNode> response = Unirest.post(url)
-                .header("Content-Type", "application/json")
-                .body(jsonObject)
-                .asJson();
-
-        // Get the JSON from the body of the HTTP response
-        JSONObject responseBody = response.getBody().getObject();
-
-        // SHOW DEBUG INFORMATION
-        if (!responseBody.getString("status").equals("ok")) {
-            String exceptionMessage = "";
+        if (responseBody == null) {
+            // Call planner. Every planner answers with the same format as the online solver
+            long start = System.nanoTime();
 
             try {
-                exceptionMessage = responseBody.getJSONObject("result").getString("output");
-            } catch (JSONException jsonException) {
-                exceptionMessage = responseBody.getString("result");
+                responseBody = this.planner.solve(domain, problem, deadline);
             } finally {
-                throw new PlannerException(exceptionMessage);
+                this.recordPlanningTime(System.nanoTime() - start);
             }
-        }
-
-        // Create a new PDDLPlan instance if a valid plan has been found
-        PDDLPlan PDDLPlan = new PDDLPlan(responseBody, this.gameInformation.actionsCorrespondence);
 
-        if (PlanningAgent.saveInformation) {
-            this.savePlan(responseBody);
+            this.configuration.getPlanCache().put(domain, parsedProblem, responseBody);
         }
 
-        return PDDLPlan;
+        return this.createPlan(domain, parsedProblem, responseBody);
     }
 
     /**
-     * Method that translates a game state observation to PDDL predicates.
+     * Method that allows the agent to find a plan to the current goal without
+     * blocking it. The planner is called in a worker thread and the agent waits
+     * for its response until the deadline expires. If the planner hasn't answered
+     * by then, the agent can call this method again in the following turns to
+     * keep waiting for the same plan.
      *
-     * @param stateObservation State observation of the game.
+     * @param deadline Deadline until which the agent waits in the current turn.
+     * @return Returns a new PDDLPlan instance or null if the planner is still
+     * searching for the plan.
+     * @throws PlannerException Thrown when the planner's response status is not OK.
      */
-    public void translateGameStateToPDDL(StateObservation stateObservation) {
-        // Get the observations of the game state as elements of the VGDDLRegistry
-        HashSet<String>[][] gameMap = this.getGameElementsMatrix(stateObservation);
+    public PDDLPlan findPlanAnytime(PlanningDeadline deadline) throws PlannerException {
+        if (this.pendingResponse == null) {
+            String domain = this.getDomainText();
+            String problem = this.problem;
+            String goal = this.agenda.getCurrentGoal().getGoalPredicate();
+            PDDLProblem parsedProblem = PDDLParser.parseProblem(problem);
+            JSONObject responseBody = this.retrieveCachedPlan(domain, parsedProblem);
+
+            if (responseBody != null) {
+                return this.createPlan(domain, parsedProblem, responseBody);
+            }
 
-        // Clear the list of predicates and objects
-        this.PDDLGameStatePredicates.clear();
-        this.PDDLGameStateObjects.values().stream().forEach(val -> val.clear());
+            // Only the speculative plan and the planner are waited for in the worker thread, as the
+            // rest of the agent isn't thread safe
+            PlanningDeadline workerDeadline = PlanningDeadline.none();
+            this.pendingDeadline = workerDeadline;
+            this.pendingDomain = domain;
+            this.pendingProblem = parsedProblem;
+            this.pendingResponse = CompletableFuture.supplyAsync(() -> {
+                JSONObject speculativeResponse = this.retrieveSpeculativePlan(goal, domain, parsedProblem,
+                        workerDeadline);
+
+                if (speculativeResponse != null) {
+                    return speculativeResponse;
+                }
 
-        final int X_MAX = gameMap.length, Y_MAX = gameMap[0].length;
+                long start = System.nanoTime();
 
-        // Process game elements
-        for (int y = 0; y < Y_MAX; y++) {
-            for (int x = 0; x < X_MAX; x++) {
-                for (String cellObservation : gameMap[x][y]) {
-                    // If the observation is in the domain, instantiate its predicates
-                    if (this.gameInformation.gameElementsCorrespondence.containsKey(cellObservation)) {
-                        List<String> predicateList = this.gameInformation.gameElementsCorrespondence.get(cellObservation);
-
-                        // Instantiate each predicate
-                        for (String predicate : predicateList) {
-                            String predicateInstance = predicate;
-
-                            // Iterate over all the variables associated to the game element and
-                            // instantiate those who appear in the predicate
-                            for (String variable : this.gameElementVars.get(cellObservation)) {
-                                if (predicate.contains(variable)) {
-                                    String variableInstance;
-
-                                    if (variable.equals(this.gameInformation.avatarVariable)) {
-                                        variableInstance = variable.replace("?", "");
-
-                                        // If orientations are being used, add predicate associated
-                                        // to the player's orientation
-                                        if (this.gameInformation.orientationCorrespondence != null) {
-                                            Vector2d avatarOrientation = stateObservation.getAvatarOrientation();
-                                            Position orientation = null;
-
-                                            if (avatarOrientation.x == 1.0) {
-                                                orientation = Position.RIGHT;
-                                            } else if (avatarOrientation.x == -1.0) {
-                                                orientation = Position.LEFT;
-                                            } else if (avatarOrientation.y == 1.0) {
-                                                orientation = Position.DOWN;
-                                            } else if (avatarOrientation.y == -1.0) {
-                                                orientation = Position.UP;
-                                            }
-
-                                            this.PDDLGameStatePredicates.add(this.gameInformation.orientationCorrespondence
-                                                    .get(orientation)
-                                                    .replace(variable, variableInstance));
-                                        }
-                                    } else {
-                                        variableInstance = String.format("%s_%d_%d", variable, x, y).replace("?", "");
-                                    }
-
-                                    // Add instantiated variables to the predicate
-                                    predicateInstance = predicateInstance.replace(variable, variableInstance);
-
-                                    // Save instantiated variable
-                                    this.PDDLGameStateObjects.get(variable).add(variableInstance);
-                                }
-                            }
-
-                            // Save instantiated predicate
-                            this.PDDLGameStatePredicates.add(predicateInstance);
-                        }
-                    }
+                try {
+                    return this.planner.solve(domain, problem, workerDeadline);
+                } finally {
+                    this.recordPlanningTime(System.nanoTime() - start);
                 }
+            }, this.getPlannerWorker());
+        }
+
+        JSONObject responseBody;
 
-                this.PDDLGameStateObjects.get(this.gameInformation.cellVariable).add(
-                    String.format("%s_%d_%d", this.gameInformation.cellVariable, x, y)
-                      .replace("?", "")
-                );
+        try {
+            responseBody = this.pendingResponse.get(deadline.remainingMillis(), TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            return null;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return null;
+        } catch (ExecutionException e) {
+            this.pendingResponse = null;
+
+            if (e.getCause() instanceof PlannerException) {
+                throw (PlannerException) e.getCause();
             }
+
+            throw new PlannerException(e.getCause().getMessage());
         }
 
-        // Add connections to predicates
-        this.connectionSet.stream().forEach(connection -> this.PDDLGameStatePredicates.add(connection));
+        this.pendingResponse = null;
+        this.configuration.getPlanCache().put(this.pendingDomain, this.pendingProblem, responseBody);
 
-        // Add saved goals
-        this.reachedSavedGoalPredicates.stream().forEach(goal -> this.PDDLGameStatePredicates.add(goal));
+        return this.createPlan(this.pendingDomain, this.pendingProblem, responseBody);
+    }
+
+    /**
+     * Method that translates a game state observation to PDDL predicates.
+     *
+     * @param stateObservation State observation of the game.
+     */
+    public void translateGameStateToPDDL(StateObservation stateObservation) {
+        long start = System.nanoTime();
+
+        // Only the cells that have changed since the last turn are translated again
+        this.translator.translate(stateObservation, this.PDDLGameStatePredicates, this.PDDLGameStateObjects,
+                this.connectionSet, this.reachedSavedGoalPredicates);
+
+        this.statistics.getMetrics().recordTime(AgentMetrics.TRANSLATION, start);
     }
 
     /**
@@ -638,8 +871,8 @@ public class PlanningAgent extends AbstractPlayer {
 
         // Iterate over the map and transform the observations in a [x, y] cell
         // to a HashSet of Strings. In case there's no observation, add a
-        // "background" string. The VGDLRegistry contains the needed information
-        // to transform the StateObservation to a matrix of sets of Strings.
+        // "background" string. The translator's table of sprite names contains the
+        // needed information to transform the StateObservation to a matrix of sets of Strings.
         for (int y = 0; y < Y_MAX; y++) {
             for (int x = 0; x < X_MAX; x++) {
                 gameStringMap[x][y] = new HashSet<>();
@@ -647,7 +880,7 @@ public class PlanningAgent extends AbstractPlayer {
                 if (gameState[x][y].size() > 0) {
                     for (int i = 0; i < gameState[x][y].size(); i++) {
                         int itype = gameState[x][y].get(i).itype;
-                        gameStringMap[x][y].add(VGDLRegistry.GetInstance().getRegisteredSpriteKey(itype));
+                        gameStringMap[x][y].add(this.translator.getSpriteName(itype));
                     }
                 } else {
                     gameStringMap[x][y].add("background");
@@ -659,115 +892,854 @@ public class PlanningAgent extends AbstractPlayer {
     }
 
     /**
-     * Method that creates a PDDL problem file. It writes the PDDL predicates, variables
-     * and the current goal to the problem file.
+     * Method that creates a PDDL problem. It writes the PDDL predicates, variables
+     * and the current goal into a reusable buffer, so no file has to be written
+     * before calling the planner.
+     *
+     * @return Returns the content of the problem.
+     */
+    public String createProblem() {
+        // The domain is read first, as the pruner is created from it
+        this.getDomainText();
+
+        long start = System.nanoTime();
+        String goal = this.agenda.getCurrentGoal().getGoalPredicate();
+        ProblemPruner.Result pruned = this.pruneProblem(this.PDDLGameStateObjects, this.PDDLGameStatePredicates, goal);
+
+        this.statistics.addFacts(this.PDDLGameStatePredicates.size(),
+                this.PDDLGameStatePredicates.size() - pruned.getInit().size());
+
+        this.problem = this.writeProblem(this.problemBuilder,
+                this.writeObjects(this.PDDLGameStateObjects, pruned.getRemovedObjects()), pruned.getInit(), goal);
+
+        AgentMetrics metrics = this.statistics.getMetrics();
+        metrics.recordTime(AgentMetrics.PROBLEM_WRITING, start);
+        metrics.record(AgentMetrics.PROBLEM_OBJECTS, this.PDDLGameStateObjects.values()
+                .stream()
+                .flatMap(Set::stream)
+                .filter(object -> !pruned.getRemovedObjects().contains(object.toLowerCase()))
+                .count());
+        metrics.record(AgentMetrics.PROBLEM_FACTS, pruned.getInit().size());
+
+        if (this.configuration.isSaveInformation()) {
+            this.saveProblemFile();
+        }
+
+        return this.problem;
+    }
+
+    /**
+     * Method used to display game stats after the execution has finished. It displays
+     * the execution time, the number of goals that were reached, the number of times
+     * the planner was called and the number of discrepancies that were found, along
+     * with the stats of the resources shared by the agents and a summary of the
+     * metrics of each phase of the agent.
+     *
+     * @param statistics    Statistics of the games.
+     * @param configuration Configuration used to play the games.
+     */
+    public static void displayStats(AgentStatistics statistics, AgentConfiguration configuration) {
+        System.out.println("\n----STATS----\n");
+        System.out.println("Execution time: " + statistics.getExecutionTime() + " ms");
+        System.out.println("Time spent waiting for the planner: " + statistics.getPlanningTime() + " ms");
+        System.out.println("Number of goals: " + statistics.getGoals());
+        System.out.println("Number of time the planner was called: " + statistics.getPlannerCalls());
+        System.out.println("Number of discrepancies: " + statistics.getDiscrepancies());
+        System.out.println("Number of discrepancies solved by repairing the plan / by replanning: "
+                + statistics.getPlanRepairs() + " / " + (statistics.getDiscrepancies() - statistics.getPlanRepairs()));
+        System.out.println("Number of discrepancies found in upcoming actions: " + statistics.getUpcomingDiscrepancies()
+                + " (" + statistics.getValidationTime() / 1000000 + " ms spent validating plans)");
+        System.out.println("Number of failures predicted with the forward model (avatar deaths): "
+                + statistics.getPredictedFailures() + " (" + statistics.getPredictedDeaths() + ") ("
+                + statistics.getLookaheadTime() / 1000000 + " ms spent simulating plans)");
+        System.out.println("Number of planner timeouts: " + statistics.getPlannerTimeouts());
+        System.out.println("Number of facts removed from the problems by pruning: " + statistics.getPrunedFacts()
+                + " of " + statistics.getTotalFacts());
+        System.out.println("Number of abstract plans / of calls with the full problem in hierarchical mode: "
+                + statistics.getAbstractPlans() + " / " + statistics.getHierarchicalFallbacks());
+        System.out.println("Number of facts sent to the planner in abstract problems: " + statistics.getAbstractFacts()
+                + " of " + statistics.getHierarchicalFacts());
+        System.out.println("Number of goals selected by the length of their plans: "
+                + statistics.getParallelGoalSelections());
+        System.out.println("Number of plans retrieved from the cache: " + configuration.getPlanCache().getHits());
+        System.out.println("Number of speculative plans used: " + statistics.getSpeculativePlansUsed()
+                + " of " + statistics.getSpeculativePlans());
+        PlannerHttpClient client = configuration.hasHttpClient() ? configuration.getHttpClient() : null;
+        System.out.println("Number of calls to the HTTP planner: " + (client != null ? client.getCalls() : 0)
+                + " (" + (client != null ? client.getRetries() : 0) + " retries, "
+                + (client != null ? client.getRejectedCalls() : 0) + " rejected by the circuit breaker, "
+                + statistics.getHttpFallbackCalls() + " solved by the embedded planner)");
+        System.out.println("Number of problems sent as changes to a session: " + statistics.getDeltaProblems()
+                + " (" + statistics.getProblemSessions() + " sessions opened, "
+                + statistics.getSentProblemCharacters() + " of " + statistics.getTotalProblemCharacters()
+                + " characters sent)");
+        System.out.println("Number of turns spent waiting for the planner: " + statistics.getTurnsWaitingPlanner()
+                + " (max. " + statistics.getMaxTurnsWaitingPlanner() + " for a single plan)");
+
+        synchronized (statistics.getPortfolioStats()) {
+            statistics.getPortfolioStats().forEach((name, stats) ->
+                    System.out.println("Portfolio backend " + name + ": " + stats));
+        }
+
+        AgentMetrics metrics = statistics.getMetrics();
+
+        for (String name : metrics.getNames()) {
+            Histogram histogram = metrics.getHistogram(name);
+            System.out.println(String.format(Locale.ROOT, "Metric %s (%s): %d values, mean %.1f, p50 %d, p99 %d, max %d",
+                    name, metrics.getUnit(name), histogram.getCount(), histogram.getMean(),
+                    histogram.getValueAtPercentile(50), histogram.getValueAtPercentile(99), histogram.getMax()));
+        }
+    }
+
+    /**
+     * Method that plays a game with a planning agent created with the given
+     * configuration. Each game gets its own configuration and statistics, but
+     * the GVGAI framework keeps the registry of sprites in static fields, so
+     * games that have to be played at the same time must be run in different
+     * JVMs (see {@link ExperimentRunner}).
+     *
+     * @param game          Path of the game's description file.
+     * @param level         Path of the level's file.
+     * @param visuals       Boolean telling whether the game has to be shown.
+     * @param seed          Random seed of the game.
+     * @param configuration Configuration of the agent.
+     * @return Returns the statistics of the game.
      */
-    public void createProblemFile() {
-        String outGoal = this.agenda.getCurrentGoal().getGoalPredicate();
+    public static AgentStatistics runGame(String game, String level, boolean visuals, int seed,
+                                          AgentConfiguration configuration) {
+        AgentStatistics statistics = new AgentStatistics();
 
-        File outputProblemFile = new File(this.gameInformation.problemFile);
+        // The agent is created by the framework in this thread, so it takes its configuration from it
+        PlanningAgent.THREAD_CONFIGURATION.set(configuration);
+        PlanningAgent.THREAD_STATISTICS.set(statistics);
 
-        if (outputProblemFile.getParentFile() != null) {
-            outputProblemFile.getParentFile().mkdirs();
+        try {
+            double[] result = ArcadeMachine.runOneGame(game, level, visuals, PlanningAgent.class.getName(), null,
+                    seed, 0);
+            statistics.recordGame(result[0] == Types.WINNER.PLAYER_WINS.key(), result[1], (long) result[2]);
+        } finally {
+            PlanningAgent.THREAD_CONFIGURATION.remove();
+            PlanningAgent.THREAD_STATISTICS.remove();
         }
 
-        try (BufferedWriter bf = new BufferedWriter(new FileWriter(outputProblemFile))) {
-            // Write problem name
-            bf.write(String.format("(define (problem %sProblem)", this.gameInformation.domainName));
-            bf.newLine();
+        return statistics;
+    }
 
-            // Write domain that is used
-            bf.write(String.format("    (:domain %s)", this.gameInformation.domainName));
-            bf.newLine();
+    /**
+     * Method that returns the content of the domain file. The file is only read
+     * (and parsed) again if the path of the domain file has changed. If the domain
+     * can't be parsed, plans are instantiated from the descriptions returned by
+     * the planner.
+     *
+     * @return Returns the content of the domain file.
+     */
+    private String getDomainText() {
+        if (!this.gameInformation.domainFile.equals(this.domainFile)) {
+            this.domainText = this.readFile(this.gameInformation.domainFile);
+            this.domainFile = this.gameInformation.domainFile;
+
+            try {
+                this.domain = PDDLParser.parseDomain(this.domainText);
+            } catch (PlannerException e) {
+                this.domain = null;
+            }
+
+            this.problemPruner = this.configuration.isProblemPruning() && this.domain != null
+                    ? new ProblemPruner(this.domain) : null;
+        }
+
+        return this.domainText;
+    }
 
-            // Write the objects
-            // Each variable will be written
-            bf.write("    (:objects");
-            bf.newLine();
+    /**
+     * Method that prepares a new call to the planner. It sets the current goal
+     * (unless the last call to the planner timed out before reaching it) and
+     * creates the problem. If the agent has reached all its goals but the game
+     * hasn't finished, the execution ends.
+     *
+     * @param elapsedCpuTimer Timer of the current turn.
+     */
+    private void prepareCallToPlanner(ElapsedCpuTimer elapsedCpuTimer) {
+        // Set current goal unless the last call to the planner timed out before reaching it
+        if (this.agenda.getCurrentGoal() == null) {
+            this.selectCurrentGoal(elapsedCpuTimer);
+        }
+
+        // SHOW DEBUG INFORMATION
+        if (this.configuration.isDebugMode()) {
+            this.displayDebugInformation("I don't have a plan to the current goal or I must replan!");
+        }
+
+        // Write PDDL predicates into the problem file
+        try {
+            this.createProblem();
+        } catch (NullPointerException e) {
+            if (this.configuration.isDebugMode()) {
+                this.printMessages("The agent has reached all goals but can't exit the level!", "Exiting...");
+            }
+
+            if (this.configuration.isSaveInformation()) {
+                this.logger.warning(
+                        String.format("TURN %d All goals reached but agent can't completed the level.",
+                                this.turn));
+            }
+
+            if (this.traceSink != null) {
+                this.traceSink.close();
+            }
 
-            // Write each object
-            for (String key : this.PDDLGameStateObjects.keySet()) {
-                if (!this.PDDLGameStateObjects.get(key).isEmpty()) {
-                    String objectsStr = String.join(" ", this.PDDLGameStateObjects.get(key));
-                    objectsStr += String.format(" - %s", this.gameInformation.variablesTypes.get(key));
-                    bf.write(String.format("        %s", objectsStr));
-                    bf.newLine();
+            System.exit(1);
+        }
+
+        // Save logging information
+        if (this.configuration.isSaveInformation()) {
+            this.logger.info(String.format(
+                    "TURN %d The following goal has been set as the current goal: %s",
+                    this.turn, this.agenda.getCurrentGoal().getGoalPredicate()));
+        }
+
+        this.statistics.recordPlannerCall();
+    }
+
+    /**
+     * Method that sets the current goal. If parallel goal selection is enabled and
+     * there are several goals with the best priority, the one with the shortest
+     * plan is chosen (see {@link GoalSelector}). Otherwise, the agenda chooses the
+     * goal.
+     *
+     * @param elapsedCpuTimer Timer of the current turn.
+     */
+    private void selectCurrentGoal(ElapsedCpuTimer elapsedCpuTimer) {
+        List<PDDLSingleGoal> upcomingGoals = this.agenda.getUpcomingGoals(Integer.MAX_VALUE);
+
+        if (this.goalSelector != null && upcomingGoals.size() > 1) {
+            int bestPriority = upcomingGoals.get(0).getPriority();
+            String domain = this.getDomainText();
+            Map<String, PDDLSingleGoal> candidates = new LinkedHashMap<>();
+            Map<String, String> problems = new LinkedHashMap<>();
+
+            for (PDDLSingleGoal goal : upcomingGoals) {
+                if (goal.getPriority() == bestPriority) {
+                    candidates.put(goal.getGoalPredicate(), goal);
+                    problems.put(goal.getGoalPredicate(), this.writePrunedProblem(new StringBuilder(),
+                            this.PDDLGameStateObjects, this.PDDLGameStatePredicates, goal.getGoalPredicate()));
                 }
             }
 
-            // Finish object writing
-            bf.write("    )");
-            bf.newLine();
+            if (candidates.size() > 1) {
+                PlanningDeadline deadline = PlanningDeadline.fromTimer(elapsedCpuTimer,
+                        this.configuration.isAnytime() ? this.configuration.getActTimeFraction() : PlanningAgent.PLANNER_TIME_FRACTION);
+                String selectedGoal = this.goalSelector.select(domain, problems, deadline);
 
-            // Start init writing
-            bf.write("    (:init");
-            bf.newLine();
+                if (selectedGoal != null) {
+                    this.agenda.setCurrentGoal(candidates.get(selectedGoal));
+                    this.statistics.recordParallelGoalSelection();
+
+                    if (this.configuration.isSaveInformation()) {
+                        this.logger.info(String.format(
+                                "TURN %d The goal with the shortest plan among %d goals has been selected",
+                                this.turn, candidates.size()));
+                    }
 
-            // Write the predicates list into the file
-            for (String predicate : this.PDDLGameStatePredicates) {
-                bf.write(String.format("        %s", predicate));
-                bf.newLine();
+                    return;
+                }
             }
+        }
+
+        this.agenda.setCurrentGoal();
+    }
 
-            // Finish init writing
-            bf.write("    )");
-            bf.newLine();
+    /**
+     * Method that orders the pending goals with the same priority so the avatar
+     * walks as little as possible from its current cell (see {@link GoalOrderer}).
+     */
+    private void orderGoals() {
+        String avatar = this.gameInformation.avatarVariable.replace("?", "");
+        this.agenda.reorderPendingGoals(this.goalOrderer.order(this.agenda.getPendingGoals(), avatar,
+                this.PDDLGameStatePredicates));
+
+        if (this.configuration.isSaveInformation()) {
+            this.logger.info(String.format("TURN %d The pending goals have been ordered: %s", this.turn,
+                    this.agenda.getPendingGoals().stream().map(PDDLSingleGoal::getGoalPredicate)
+                            .collect(Collectors.joining(" "))));
+        }
+    }
 
-            // Write goal
-            // THIS HAS TO CHANGE
-            bf.write("    (:goal");
-            bf.newLine();
+    /**
+     * Method that simulates the rest of the plan from the current state to find out
+     * whether some upcoming action can't be executed. The next action isn't taken
+     * into account, since its preconditions are checked anyway.
+     *
+     * @return Returns true if an action after the next one can't be executed and
+     * false otherwise.
+     */
+    private boolean findUpcomingDiscrepancy() {
+        int nextIndex = this.iterPlan.nextIndex();
 
-            bf.write("        (AND");
-            bf.newLine();
+        if (this.planValidator == null || !this.iterPlan.hasNext()
+                || this.PDDLPlan.getPDDLActions().get(nextIndex).getAtomTable() != this.atomTable) {
+            return false;
+        }
 
-            bf.write(String.format("            %s", outGoal));
-            bf.newLine();
+        long start = System.nanoTime();
+        int failedIndex = this.planValidator.findFailedAction(this.PDDLPlan, nextIndex, this.translator.getState());
+        this.statistics.recordValidation(System.nanoTime() - start, failedIndex > nextIndex);
 
-            bf.write("        )");
-            bf.newLine();
+        if (failedIndex <= nextIndex) {
+            return false;
+        }
 
-            bf.write("    )");
-            bf.newLine();
+        String failedAction = failedIndex < this.PDDLPlan.getPDDLActions().size()
+                ? this.PDDLPlan.getPDDLActions().get(failedIndex).getActionInstance() : "last step";
+        String message = String.format("The plan can't be followed: it fails %d actions ahead (%s)",
+                failedIndex - nextIndex, failedAction);
 
-            // Finish problem writing
-            bf.write(")");
-        } catch (IOException e) {
-            e.printStackTrace();
+        // SHOW DEBUG INFORMATION
+        if (this.configuration.isDebugMode()) {
+            this.showMessagesWait(message);
         }
 
-        if (PlanningAgent.saveInformation) {
-            this.saveProblemFile();
+        // Save logging information
+        if (this.configuration.isSaveInformation()) {
+            this.logger.warning(String.format("TURN %d %s", this.turn, message));
         }
+
+        return true;
     }
 
-    public static void setGameConfigFile(String path) {
-        PlanningAgent.gameConfigFile = path;
+    /**
+     * Method that executes the next actions of the plan with the forward model to
+     * predict whether they will fail, which makes the agent replan before the
+     * failure takes place. A failure isn't predicted twice in a row, since the
+     * planner doesn't know how the NPCs behave and may return the same plan. The
+     * next action must have been taken from the iterator.
+     *
+     * @param stateObservation State observation of the game.
+     * @param elapsedCpuTimer  Timer of the current turn.
+     * @return Returns true if a failure is predicted and false otherwise.
+     */
+    private boolean predictFailure(StateObservation stateObservation, ElapsedCpuTimer elapsedCpuTimer) {
+        int nextIndex = this.iterPlan.nextIndex() - 1;
+        List<PDDLAction> actions = this.PDDLPlan.getPDDLActions();
+
+        if (this.planLookahead == null || actions.get(nextIndex).getAtomTable() != this.atomTable) {
+            return false;
+        }
+
+        long start = System.nanoTime();
+        int failedIndex = this.planLookahead.findFailedAction(stateObservation,
+                actions.subList(nextIndex, actions.size()), this.reachedSavedGoalPredicates,
+                PlanningDeadline.fromTimer(elapsedCpuTimer, PlanningAgent.LOOKAHEAD_TIME_FRACTION));
+        this.statistics.addLookaheadTime(System.nanoTime() - start);
+
+        if (failedIndex < 0) {
+            return false;
+        }
+
+        // If the failure was already predicted, replanning led to the same action, so the plan is followed
+        // and the failure is handled when it takes place
+        String predictedFailure = this.agenda.getCurrentGoal().getGoalPredicate() + " "
+                + actions.get(nextIndex + failedIndex).getActionInstance();
+
+        if (predictedFailure.equals(this.lastPredictedFailure)) {
+            return false;
+        }
+
+        this.lastPredictedFailure = predictedFailure;
+        this.statistics.recordPredictedFailure(this.planLookahead.isPredictedDeath());
+
+        String message = String.format("The forward model predicts that the action %s %s (%d actions ahead)",
+                actions.get(nextIndex + failedIndex).getActionInstance(),
+                this.planLookahead.isPredictedDeath() ? "kills the avatar" : "can't be executed", failedIndex);
+
+        // SHOW DEBUG INFORMATION
+        if (this.configuration.isDebugMode()) {
+            this.showMessagesWait(message);
+        }
+
+        // Save logging information
+        if (this.configuration.isSaveInformation()) {
+            this.logger.warning(String.format("TURN %d %s", this.turn, message));
+        }
+
+        return true;
+    }
+
+    /**
+     * Method that tries to repair the current plan after a discrepancy. The plan is
+     * repaired locally from the current state (see {@link PlanRepairer}), without
+     * calling the planner. If the repair succeeds, the repaired plan replaces the
+     * current one. The failed action is the last one returned by the iterator of
+     * the plan.
+     *
+     * @param elapsedCpuTimer Timer of the current turn.
+     * @return Returns true if the plan has been repaired and false otherwise.
+     */
+    private boolean repairPlan(ElapsedCpuTimer elapsedCpuTimer) {
+        if (this.planRepairer == null || this.domain == null) {
+            return false;
+        }
+
+        // The remaining plan starts at the failed action and keeps the steps without a GVGAI action. The actions
+        // that haven't been executed are consumed, as the plan is discarded if it can't be repaired
+        List<String> remainingPlan = this.PDDLPlan.getRemainingSteps(this.iterPlan.nextIndex() - 1);
+        while (this.iterPlan.hasNext()) {
+            this.iterPlan.next();
+        }
+
+        // Grounding the whole problem is the most expensive part of the repair, so it also stops at the deadline
+        PlanningDeadline deadline = PlanningDeadline.fromTimer(elapsedCpuTimer,
+                this.configuration.isAnytime() ? this.configuration.getActTimeFraction() : PlanningAgent.PLANNER_TIME_FRACTION);
+
+        if (deadline.isExpired()) {
+            return false;
+        }
+
+        String goal = this.agenda.getCurrentGoal().getGoalPredicate();
+        String problem = this.writePrunedProblem(new StringBuilder(), this.PDDLGameStateObjects,
+                this.PDDLGameStatePredicates, goal);
+        List<GroundAction> repairedPlan;
+
+        try {
+            GroundTask task = PDDLGrounder.ground(this.domain, PDDLParser.parseProblem(problem), deadline);
+            repairedPlan = this.planRepairer.repair(task, remainingPlan, deadline);
+        } catch (PlannerException e) {
+            repairedPlan = null;
+        }
+
+        if (repairedPlan == null) {
+            return false;
+        }
+
+        JSONObject responseBody = EmbeddedPlanner.createResponse(repairedPlan);
+        this.PDDLPlan = new PDDLPlan(responseBody, this.gameInformation.actionsCorrespondence,
+                this.atomTable, this.domain);
+        this.iterPlan = this.PDDLPlan.iterator();
+
+        // SHOW DEBUG INFORMATION
+        if (this.configuration.isDebugMode()) {
+            this.showMessagesWait("One or more preconditions couldn't be satisfied",
+                    String.format("The plan has been repaired (%d actions left)", repairedPlan.size()));
+        }
+
+        // Save logging information
+        if (this.configuration.isSaveInformation()) {
+            this.logger.warning(String.format(
+                    "TURN %d Due to a discrepancy, the plan has been repaired: %d actions left (%d before)",
+                    this.turn, repairedPlan.size(), remainingPlan.size()));
+            this.savePlan(responseBody);
+        }
+
+        return true;
+    }
+
+    /**
+     * Method that looks for a valid plan to a problem in the cache.
+     *
+     * @param domain  Content of the domain file.
+     * @param problem Parsed problem.
+     * @return Returns the response which contains the plan or null if there's
+     * no valid plan for the problem in the cache.
+     */
+    private JSONObject retrieveCachedPlan(String domain, PDDLProblem problem) {
+        JSONObject responseBody = this.configuration.getPlanCache().get(domain, problem);
+
+        if (responseBody != null && this.configuration.isSaveInformation()) {
+            this.logger.info(String.format("TURN %d Plan retrieved from the cache", this.turn));
+        }
+
+        return responseBody;
+    }
+
+    /**
+     * Method that looks for a valid plan to a problem among the speculative plans.
+     * It can be called from the worker thread used in anytime mode.
+     *
+     * @param goal     Goal predicate of the problem.
+     * @param domain   Content of the domain file.
+     * @param problem  Parsed problem.
+     * @param deadline Deadline until which a speculative plan can be waited for.
+     * @return Returns the response which contains the plan or null if there's
+     * no valid speculative plan for the problem.
+     */
+    private JSONObject retrieveSpeculativePlan(String goal, String domain, PDDLProblem problem,
+                                               PlanningDeadline deadline) {
+        if (this.speculativePlanner == null || goal == null) {
+            return null;
+        }
+
+        JSONObject responseBody = this.speculativePlanner.take(goal, domain, problem, deadline);
+
+        if (responseBody != null) {
+            this.statistics.recordSpeculativePlanUsed();
+            this.configuration.getPlanCache().put(domain, problem, responseBody);
+
+            if (this.configuration.isSaveInformation()) {
+                this.logger.info(String.format("TURN %d Plan computed speculatively", this.turn));
+            }
+        }
+
+        return responseBody;
     }
 
-    public static void setDebugMode(boolean debugMode) {
-        PlanningAgent.debugMode = debugMode;
+    /**
+     * Method that translates the planner's response into a PDDLPlan instance.
+     * Once the plan has been created, the upcoming goals are planned in the
+     * background if speculative planning is enabled.
+     *
+     * @param domain       Content of the domain file.
+     * @param problem      Parsed problem.
+     * @param responseBody Planner's response.
+     * @return Returns a new PDDLPlan instance.
+     * @throws PlannerException Thrown when the planner's response status is not OK.
+     */
+    private PDDLPlan createPlan(String domain, PDDLProblem problem, JSONObject responseBody) throws PlannerException {
+        // SHOW DEBUG INFORMATION
+        if (!responseBody.getString("status").equals("ok")) {
+            String exceptionMessage = "";
+
+            try {
+                exceptionMessage = responseBody.getJSONObject("result").getString("output");
+            } catch (JSONException jsonException) {
+                exceptionMessage = responseBody.getString("result");
+            } finally {
+                throw new PlannerException(exceptionMessage);
+            }
+        }
+
+        // Create a new PDDLPlan instance if a valid plan has been found
+        long start = System.nanoTime();
+        PDDLPlan PDDLPlan = new PDDLPlan(responseBody, this.gameInformation.actionsCorrespondence,
+                this.atomTable, this.domain);
+
+        this.statistics.getMetrics().recordTime(AgentMetrics.PLAN_PARSING, start);
+        this.statistics.getMetrics().record(AgentMetrics.PLAN_LENGTH, PDDLPlan.getPDDLActions().size());
+
+        if (this.configuration.isSaveInformation()) {
+            this.savePlan(responseBody);
+        }
+
+        // Plan the following goals while this plan is being executed
+        if (this.speculativePlanner != null) {
+            this.speculateUpcomingGoals(domain, problem, responseBody);
+        }
+
+        return PDDLPlan;
     }
 
-    public static void setSaveInformation(boolean saveInformation) {
-        PlanningAgent.saveInformation = saveInformation;
+    /**
+     * Method that records the time spent waiting for a call to the planner,
+     * both in the total planning time and in the latencies of the calls. It can
+     * be called from the worker thread of the anytime mode.
+     *
+     * @param nanos Time spent waiting for the planner in nanoseconds.
+     */
+    private void recordPlanningTime(long nanos) {
+        this.statistics.addPlanningTime(TimeUnit.NANOSECONDS.toMillis(nanos));
+        this.statistics.getMetrics().recordLatency(AgentMetrics.PLANNER_CALL, nanos);
     }
 
-    public static void setLocalHost(boolean localHost) {
-        PlanningAgent.localHost = localHost;
+    /**
+     * Method that returns the worker thread in which the planner is called in
+     * anytime mode, creating it the first time it is needed.
+     *
+     * @return Returns the executor of the worker thread.
+     */
+    private ExecutorService getPlannerWorker() {
+        if (this.plannerWorker == null) {
+            this.plannerWorker = Executors.newSingleThreadExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "planner-worker");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+
+        return this.plannerWorker;
     }
 
     /**
-     * Method used to display game stats after the execution has finished. It displays
-     * the execution time, the number of goals that were reached, the number of times
-     * the planner was called and the number of discrepancies that were found.
+     * Method that writes the objects of a game state, grouped by type, as they
+     * appear in the problem.
+     *
+     * @param objects        Map from each variable to the objects of its type.
+     * @param removedObjects Objects that aren't written.
+     * @return Returns the objects section of the problem.
      */
-    public static void displayStats() {
-        System.out.println("\n----STATS----\n");
-        System.out.println("Execution time: " + PlanningAgent.executionTime + " ms");
-        System.out.println("Number of goals: " + PlanningAgent.numGoals);
-        System.out.println("Number of time the planner was called: " + PlanningAgent.callsPlanner);
-        System.out.println("Number of discrepancies: " + PlanningAgent.numDiscrepancies);
+    private String writeObjects(Map<String, Set<String>> objects, Set<String> removedObjects) {
+        StringBuilder builder = new StringBuilder();
+
+        for (String key : objects.keySet()) {
+            List<String> keptObjects = objects.get(key)
+                    .stream()
+                    .filter(object -> !removedObjects.contains(object.toLowerCase()))
+                    .collect(Collectors.toList());
+
+            if (!keptObjects.isEmpty()) {
+                builder.append("        ");
+
+                for (String object : keptObjects) {
+                    builder.append(object).append(' ');
+                }
+
+                builder.append("- ").append(this.gameInformation.variablesTypes.get(key)).append('\n');
+            }
+        }
+
+        return builder.toString();
+    }
+
+    /**
+     * Method that prunes a problem (see {@link ProblemPruner}). It doesn't modify
+     * the agent, so it can be called from other threads.
+     *
+     * @param objects Map from each variable to the objects of its type.
+     * @param init    Predicates of the initial state.
+     * @param goal    Goal predicate.
+     * @return Returns the pruned problem, which is the given one if pruning is disabled.
+     */
+    private ProblemPruner.Result pruneProblem(Map<String, Set<String>> objects, Collection<String> init,
+                                              String goal) {
+        if (this.problemPruner == null) {
+            return new ProblemPruner.Result(new ArrayList<>(init), Collections.emptySet());
+        }
+
+        Map<String, String> objectTypes = new HashMap<>();
+        objects.forEach((variable, names) ->
+                names.forEach(object -> objectTypes.put(object, this.gameInformation.variablesTypes.get(variable))));
+
+        return this.problemPruner.prune(objectTypes, init, goal);
+    }
+
+    /**
+     * Method that prunes and writes a PDDL problem.
+     *
+     * @param builder Buffer in which the problem is written.
+     * @param objects Map from each variable to the objects of its type.
+     * @param init    Predicates of the initial state.
+     * @param goal    Goal predicate.
+     * @return Returns the content of the problem.
+     */
+    private String writePrunedProblem(StringBuilder builder, Map<String, Set<String>> objects,
+                                      Collection<String> init, String goal) {
+        ProblemPruner.Result pruned = this.pruneProblem(objects, init, goal);
+
+        return this.writeProblem(builder, this.writeObjects(objects, pruned.getRemovedObjects()),
+                pruned.getInit(), goal);
+    }
+
+    /**
+     * Method that writes a PDDL problem. It doesn't depend on the current game
+     * state, so it can be called from the speculative planner's thread as long
+     * as each thread uses its own buffer.
+     *
+     * @param builder Buffer in which the problem is written.
+     * @param objects Objects section of the problem.
+     * @param init    Predicates of the initial state.
+     * @param goal    Goal predicate.
+     * @return Returns the content of the problem.
+     */
+    private String writeProblem(StringBuilder builder, String objects, Collection<String> init, String goal) {
+        builder.setLength(0);
+
+        // Write problem name
+        builder.append(String.format("(define (problem %sProblem)", this.gameInformation.domainName)).append('\n');
+
+        // Write domain that is used
+        builder.append(String.format("    (:domain %s)", this.gameInformation.domainName)).append('\n');
+
+        // Write the objects
+        builder.append("    (:objects\n");
+        builder.append(objects);
+        builder.append("    )\n");
+
+        // Write the initial state
+        builder.append("    (:init\n");
+
+        for (String predicate : init) {
+            builder.append("        ").append(predicate).append('\n');
+        }
+
+        builder.append("    )\n");
+
+        // Write goal
+        builder.append("    (:goal\n");
+        builder.append("        (AND\n");
+        builder.append("            ").append(goal).append('\n');
+        builder.append("        )\n");
+        builder.append("    )\n");
+
+        // Finish problem writing
+        builder.append(")");
+
+        return builder.toString();
+    }
+
+    /**
+     * Method that starts planning the upcoming goals of the agenda in the
+     * background. The first of them is planned from the state reached at the
+     * end of the plan that has just been found.
+     *
+     * @param domain   Content of the domain file.
+     * @param problem  Problem of the current goal.
+     * @param response Planner's response which contains the plan to the current goal.
+     */
+    private void speculateUpcomingGoals(String domain, PDDLProblem problem, JSONObject response) {
+        List<String> goals = this.agenda.getUpcomingGoals(this.configuration.getSpeculativeGoals())
+                .stream()
+                .map(PDDLSingleGoal::getGoalPredicate)
+                .collect(Collectors.toList());
+        Set<String> predictedInit = this.configuration.getPlanCache().simulate(domain, problem.getInit(), response);
+
+        if (goals.isEmpty() || predictedInit == null) {
+            return;
+        }
+
+        // The objects are copied, as the problems are written in the speculative planner's thread
+        Map<String, Set<String>> objects = new LinkedHashMap<>();
+        this.PDDLGameStateObjects.forEach((variable, names) -> objects.put(variable, new LinkedHashSet<>(names)));
+
+        // The plans that are still pending are kept if they were computed from the predicted state
+        int newPlans = this.speculativePlanner.speculate(domain, predictedInit, goals,
+                (init, goal) -> this.writePrunedProblem(new StringBuilder(), objects, init, goal));
+        this.statistics.addSpeculativePlans(newPlans);
+    }
+
+    /**
+     * Method that creates the policy that chooses the actions executed while the
+     * agent waits for the planner in anytime mode. By default, the agent stays still.
+     *
+     * @return Returns the fallback policy.
+     * @throws PlannerException Thrown when the policy is unknown.
+     */
+    private FallbackPolicy createFallbackPolicy() throws PlannerException {
+        String name = this.configuration.getFallbackPolicyName();
+
+        if (name == null || name.equals("nil")) {
+            return new FallbackPolicy() {
+                @Override
+                public Types.ACTIONS act(StateObservation stateObservation, PlanningDeadline deadline) {
+                    return Types.ACTIONS.ACTION_NIL;
+                }
+
+                @Override
+                public String getName() {
+                    return "nil";
+                }
+            };
+        } else if (name.equals("safe")) {
+            return new SafeFallbackPolicy();
+        }
+
+        throw new PlannerException(String.format("Unknown fallback policy: %s", name));
+    }
+
+    /**
+     * Method that reports a turn spent waiting for the planner in anytime mode.
+     *
+     * @param action Action chosen by the fallback policy.
+     */
+    private void reportTurnWaiting(Types.ACTIONS action) {
+        this.turnsWaiting++;
+        this.statistics.recordTurnWaitingPlanner(this.turnsWaiting);
+
+        // SHOW DEBUG INFORMATION
+        if (this.configuration.isDebugMode()) {
+            this.printMessages(String.format("The planner is still searching for a plan (%d turns waiting)",
+                    this.turnsWaiting), String.format("The %s fallback policy has chosen the following action: %s",
+                    this.fallbackPolicy.getName(), action));
+        }
+
+        if (this.configuration.isSaveInformation()) {
+            this.logger.info(String.format("TURN %d Waiting for the planner (%d turns). Fallback action: %s",
+                    this.turn, this.turnsWaiting, action));
+        }
+    }
+
+    /**
+     * Method that reports how many turns the agent has waited for a plan that
+     * has just been found in anytime mode.
+     */
+    private void reportPlanFound() {
+        if (this.configuration.isSaveInformation()) {
+            this.logger.info(String.format("TURN %d Plan found after waiting %d turns",
+                    this.turn, this.turnsWaiting));
+        }
+
+        this.turnsWaiting = 0;
+    }
+
+    /**
+     * Method that creates the planner used by the agent. The planner given through
+     * the command line takes precedence over the one specified in the game's
+     * configuration file. If none of them is given, the HTTP planner is used. In
+     * hierarchical mode, the planner is wrapped by a {@link HierarchicalPlanner}.
+     *
+     * @return Returns the planner.
+     * @throws PlannerException Thrown when the planner is unknown.
+     */
+    private Planner createPlanner() throws PlannerException {
+        String name = this.configuration.getPlannerName() != null ? this.configuration.getPlannerName() : this.gameInformation.planner;
+
+        if (name != null && name.equals("portfolio")) {
+            List<String> backends = this.gameInformation.portfolio;
+
+            // By default, every backend that can be used is raced
+            if (backends == null || backends.isEmpty()) {
+                backends = new ArrayList<>(Arrays.asList("http", "embedded"));
+
+                if (this.gameInformation.plannerCommand != null && !this.gameInformation.plannerCommand.isEmpty()) {
+                    backends.add("subprocess");
+                }
+            }
+
+            List<Planner> planners = new ArrayList<>();
+
+            for (String backend : backends) {
+                planners.add(this.createPlanner(backend, false));
+            }
+
+            Planner portfolio = new PortfolioPlanner(planners, this.configuration.getPlanCache(), this.statistics.getPortfolioStats());
+
+            return this.configuration.isHierarchical() ? new HierarchicalPlanner(portfolio) : portfolio;
+        }
+
+        Planner planner = this.createPlanner(name, this.configuration.isHttpFallback());
+
+        return this.configuration.isHierarchical() ? new HierarchicalPlanner(planner) : planner;
+    }
+
+    /**
+     * Method that creates a single planner given its name.
+     *
+     * @param name     Name of the planner (http, subprocess or embedded). If it is null,
+     *                 the HTTP planner is used.
+     * @param fallback Boolean telling whether the HTTP planner falls back to the
+     *                 embedded planner. Backends of a portfolio don't need it, since
+     *                 they're raced against the embedded planner anyway.
+     * @return Returns the planner.
+     * @throws PlannerException Thrown when the planner is unknown.
+     */
+    private Planner createPlanner(String name, boolean fallback) throws PlannerException {
+        HttpPlanner httpPlanner = null;
+
+        if ((name == null || name.equals("http")) && this.configuration.isLocalHost() && this.configuration.isProblemSessions()) {
+            httpPlanner = new SessionHttpPlanner(HttpPlanner.LOCALHOST_URL, SessionHttpPlanner.LOCALHOST_URL,
+                    this.configuration.getHttpClient(), fallback ? new EmbeddedPlanner() : null);
+        } else if (name == null || name.equals("http")) {
+            httpPlanner = new HttpPlanner(this.configuration.isLocalHost() ? HttpPlanner.LOCALHOST_URL
+                    : HttpPlanner.REMOTE_URL, this.configuration.getHttpClient(), fallback ? new EmbeddedPlanner() : null);
+        }
+
+        if (httpPlanner != null) {
+            httpPlanner.setMetrics(this.statistics.getMetrics());
+            return httpPlanner;
+        } else if (name.equals("subprocess")) {
+            return new SubprocessPlanner(this.gameInformation.plannerCommand);
+        } else if (name.equals("embedded")) {
+            return new EmbeddedPlanner();
+        }
+
+        throw new PlannerException(String.format("Unknown planner: %s", name));
     }
 
     /**
@@ -993,64 +1965,25 @@ public class PlanningAgent extends AbstractPlayer {
     }
 
     /**
-     * Method that creates the output directories in which the generated files
-     * will be stored. If the root output directory already exists, it is
-     * deleted recursively.
-     */
-    private void createOutputDirectories() {
-        // List of directories
-        List<String> directories = Stream.of("output", "output/problems", "output/plans")
-                .collect(Collectors.toList());
-
-        // Delete top-level directory recursively if it exists
-        if (Files.exists(Paths.get(directories.get(0)))) {
-            try {
-                Files.walk(Paths.get(directories.get(0)))
-                        .map(Path::toFile)
-                        .sorted(Comparator.reverseOrder())
-                        .forEach(File::delete);
-            } catch (IOException e) {
-                e.printStackTrace();
-            }
-        }
-
-        // Create output directories
-        for (String dir : directories) {
-            new File(dir).mkdir();
-        }
-    }
-
-    /**
-     * Method that saves the generated problem file by copying it into a file
-     * within the output directories structure. It is saved in the directory
-     * 'output/problems'.
+     * Method that saves the generated problem into the trace archive, in the
+     * 'problems' directory. The problem is written in the background.
      */
     private void saveProblemFile() {
-        String copyFileName = String.format("output/problems/problem_turn_%d.pddl", this.turn);
-
-        Path problemFile = Paths.get(this.gameInformation.problemFile);
-        Path saveProblemFile = Paths.get(copyFileName);
+        String copyFileName = String.format("problems/problem_turn_%d.pddl", this.turn);
 
-        try {
-            Files.copy(problemFile, saveProblemFile);
-
-            // Save logging information
-            PlanningAgent.LOGGER.info(String.format("TURN %d Problem saved to file %s",
-                    this.turn, copyFileName));
-        } catch (IOException e) {
-            e.printStackTrace();
+        if (this.traceSink.write(copyFileName, this.problem)) {
+            this.logger.info(String.format("TURN %d Problem saved as %s", this.turn, copyFileName));
         }
     }
 
     /**
-     * Method that saves the plan generated by the planner into a file within
-     * the output directories structure. It is saved in the directory
-     * 'output/plans'.
+     * Method that saves the plan generated by the planner into the trace
+     * archive, in the 'plans' directory. The plan is written in the background.
      *
-     * @param plannerResponse
+     * @param plannerResponse Planner's response which contains the plan.
      */
     private void savePlan(JSONObject plannerResponse) {
-        String planFileName = String.format("output/plans/plan_turn_%d.txt", this.turn);
+        String planFileName = String.format("plans/plan_turn_%d.txt", this.turn);
         StringBuilder sb = new StringBuilder();
 
         // Get the plan from the JSON object
@@ -1062,15 +1995,8 @@ public class PlanningAgent extends AbstractPlayer {
             sb.append(String.format("\n%s\n", actionDescription));
         }
 
-        try (BufferedWriter bf = new BufferedWriter(
-                new FileWriter(planFileName))) {
-            bf.write(sb.toString());
-
-            // Save logging information
-            PlanningAgent.LOGGER.info(String.format("TURN %d Plan saved to file %s",
-                    this.turn, planFileName));
-        } catch (IOException e) {
-            e.printStackTrace();
+        if (this.traceSink.write(planFileName, sb.toString())) {
+            this.logger.info(String.format("TURN %d Plan saved as %s", this.turn, planFileName));
         }
     }
 }
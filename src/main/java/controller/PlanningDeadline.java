@@ -0,0 +1,151 @@
+/*
+ * PlanningDeadline.java
+ *
+ * Copyright (C) 2020 Vladislav Nikolov Vasilev
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see https://www.gnu.org/licenses/gpl-3.0.html.
+ */
+
+/**
+ * Package that contains the planning agent along with its data structures.
+ */
+package controller;
+
+import tools.ElapsedCpuTimer;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Class that represents the deadline of a call to the planner. Besides
+ * expiring after some time, a deadline can be cancelled explicitly from
+ * another thread. Planners can register listeners that are notified when the
+ * call is cancelled, so that they can abort blocking operations (HTTP requests,
+ * subprocesses...).
+ *
+ * @author Vladislav Nikolov Vasilev
+ */
+public class PlanningDeadline {
+    private final long deadlineNanos;
+    private volatile boolean cancelled;
+    private final List<Runnable> cancellationListeners;
+
+    /**
+     * Class constructor.
+     *
+     * @param deadlineNanos Instant (as returned by System.nanoTime()) in which
+     *                      the deadline expires.
+     */
+    private PlanningDeadline(long deadlineNanos) {
+        this.deadlineNanos = deadlineNanos;
+        this.cancelled = false;
+        this.cancellationListeners = new CopyOnWriteArrayList<>();
+    }
+
+    /**
+     * Method that creates a deadline that never expires. It can still be cancelled.
+     *
+     * @return Returns a new deadline.
+     */
+    public static PlanningDeadline none() {
+        return new PlanningDeadline(Long.MAX_VALUE);
+    }
+
+    /**
+     * Method that creates a deadline that expires after a given amount of time.
+     *
+     * @param millis Milliseconds until the deadline expires.
+     * @return Returns a new deadline.
+     */
+    public static PlanningDeadline after(long millis) {
+        return new PlanningDeadline(System.nanoTime() + Math.max(0, millis) * 1000000L);
+    }
+
+    /**
+     * Method that creates a deadline from the time that remains in a turn.
+     *
+     * @param elapsedCpuTimer Timer of the current turn.
+     * @param fraction        Fraction of the remaining time that can be spent
+     *                        by the planner.
+     * @return Returns a new deadline.
+     */
+    public static PlanningDeadline fromTimer(ElapsedCpuTimer elapsedCpuTimer, double fraction) {
+        return PlanningDeadline.after((long) (elapsedCpuTimer.remainingTimeMillis() * fraction));
+    }
+
+    /**
+     * Method that returns the time that remains until the deadline expires.
+     *
+     * @return Returns the remaining milliseconds (0 if the deadline has expired
+     * or has been cancelled, Long.MAX_VALUE if it never expires).
+     */
+    public long remainingMillis() {
+        if (this.cancelled) {
+            return 0;
+        } else if (this.deadlineNanos == Long.MAX_VALUE) {
+            return Long.MAX_VALUE;
+        }
+
+        return Math.max(0, (this.deadlineNanos - System.nanoTime()) / 1000000L);
+    }
+
+    /**
+     * Method that checks whether the deadline has expired or has been cancelled.
+     *
+     * @return Returns true if the planner must stop and false otherwise.
+     */
+    public boolean isExpired() {
+        return this.cancelled || (this.deadlineNanos != Long.MAX_VALUE && System.nanoTime() >= this.deadlineNanos);
+    }
+
+    public boolean isCancelled() {
+        return this.cancelled;
+    }
+
+    /**
+     * Method that cancels the call. The registered listeners are notified.
+     */
+    public void cancel() {
+        this.cancelled = true;
+        this.cancellationListeners.forEach(Runnable::run);
+    }
+
+    /**
+     * Method that registers a listener which is run when the call is cancelled.
+     * If the call has already been cancelled, the listener is run immediately.
+     *
+     * @param listener Listener to be registered.
+     */
+    public void onCancel(Runnable listener) {
+        this.cancellationListeners.add(listener);
+
+        if (this.cancelled) {
+            listener.run();
+        }
+    }
+
+    /**
+     * Method that checks the deadline, throwing an exception if it has expired.
+     *
+     * @throws PlannerTimeoutException Thrown when the deadline has expired or has
+     *                                 been cancelled.
+     */
+    public void check() throws PlannerTimeoutException {
+        if (this.cancelled) {
+            throw new PlannerTimeoutException("The call to the planner has been cancelled");
+        } else if (this.isExpired()) {
+            throw new PlannerTimeoutException("The planner couldn't find a plan before the deadline");
+        }
+    }
+}
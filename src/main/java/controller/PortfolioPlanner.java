@@ -0,0 +1,372 @@
+/*
+ * PortfolioPlanner.java
+ *
+ * Copyright (C) 2020 Vladislav Nikolov Vasilev
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see https://www.gnu.org/licenses/gpl-3.0.html.
+ */
+
+/**
+ * Package that contains the planning agent along with its data structures.
+ */
+package controller;
+
+import kong.unirest.json.JSONObject;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+/**
+ * Planner that races several backends on the same problem. Every backend is
+ * called in a thread of its own and the first plan that is valid for the
+ * problem (see {@link PlanCache#isValid(String, PDDLProblem, JSONObject)}) is
+ * returned, cancelling the calls to the rest of the backends.
+ * <p>
+ * The number of calls, wins and the latencies of each backend are recorded in
+ * a map of {@link BackendStats}, which can be shared between several
+ * portfolios in order to tune them.
+ *
+ * @author Vladislav Nikolov Vasilev
+ */
+public class PortfolioPlanner implements Planner {
+    private final List<Planner> planners;
+    private final PlanCache validator;
+    private final Map<String, BackendStats> stats;
+    private final ExecutorService executor;
+
+    /**
+     * Class that contains the statistics of a backend of the portfolio.
+     */
+    public static class BackendStats {
+        private int calls;
+        private int wins;
+        private int answers;
+        private int invalidPlans;
+        private int failures;
+        private long totalLatency;
+        private long winLatency;
+
+        public synchronized int getCalls() {
+            return this.calls;
+        }
+
+        public synchronized int getWins() {
+            return this.wins;
+        }
+
+        public synchronized int getAnswers() {
+            return this.answers;
+        }
+
+        public synchronized int getInvalidPlans() {
+            return this.invalidPlans;
+        }
+
+        public synchronized int getFailures() {
+            return this.failures;
+        }
+
+        /**
+         * Method that returns the fraction of calls in which the backend found the
+         * plan that was used.
+         *
+         * @return Returns the win rate of the backend.
+         */
+        public synchronized double getWinRate() {
+            return this.calls == 0 ? 0 : (double) this.wins / this.calls;
+        }
+
+        /**
+         * Method that returns the mean time the backend took to answer, only
+         * taking into account the calls that weren't cancelled.
+         *
+         * @return Returns the mean latency in milliseconds.
+         */
+        public synchronized double getMeanLatency() {
+            return this.answers == 0 ? 0 : (double) this.totalLatency / this.answers;
+        }
+
+        /**
+         * Method that returns the mean time the backend took to find the plans that
+         * were used.
+         *
+         * @return Returns the mean latency of the wins in milliseconds.
+         */
+        public synchronized double getMeanWinLatency() {
+            return this.wins == 0 ? 0 : (double) this.winLatency / this.wins;
+        }
+
+        private synchronized void recordCall() {
+            this.calls++;
+        }
+
+        private synchronized void recordAnswer(long latency, boolean validPlan) {
+            this.answers++;
+            this.totalLatency += latency;
+
+            if (!validPlan) {
+                this.invalidPlans++;
+            }
+        }
+
+        private synchronized void recordFailure() {
+            this.failures++;
+        }
+
+        private synchronized void recordWin(long latency) {
+            this.wins++;
+            this.winLatency += latency;
+        }
+
+        /**
+         * Method that adds the stats of the same backend in other games.
+         *
+         * @param other Stats of the backend in the other games.
+         */
+        public void add(BackendStats other) {
+            long[] counters;
+
+            synchronized (other) {
+                counters = new long[]{other.calls, other.wins, other.answers, other.invalidPlans, other.failures,
+                        other.totalLatency, other.winLatency};
+            }
+
+            synchronized (this) {
+                this.calls += counters[0];
+                this.wins += counters[1];
+                this.answers += counters[2];
+                this.invalidPlans += counters[3];
+                this.failures += counters[4];
+                this.totalLatency += counters[5];
+                this.winLatency += counters[6];
+            }
+        }
+
+        @Override
+        public synchronized String toString() {
+            return String.format("%d wins of %d calls (%.1f%%), mean latency %.1f ms (%.1f ms when winning), "
+                            + "%d invalid plans, %d failed calls", this.wins, this.calls, 100 * this.getWinRate(),
+                    this.getMeanLatency(), this.getMeanWinLatency(), this.invalidPlans, this.failures);
+        }
+    }
+
+    /**
+     * Class that represents the answer of a backend.
+     */
+    private static class Answer {
+        private final int index;
+        private final JSONObject response;
+        private final PlannerException exception;
+        private final long latency;
+
+        private Answer(int index, JSONObject response, PlannerException exception, long latency) {
+            this.index = index;
+            this.response = response;
+            this.exception = exception;
+            this.latency = latency;
+        }
+    }
+
+    /**
+     * Class constructor.
+     *
+     * @param planners  Backends of the portfolio.
+     * @param validator Plan cache used to check whether the plans are valid.
+     * @param stats     Map in which the statistics of each backend are stored,
+     *                  using the name of the backend as key.
+     */
+    public PortfolioPlanner(List<Planner> planners, PlanCache validator, Map<String, BackendStats> stats) {
+        if (planners == null || planners.isEmpty()) {
+            throw new PlannerException("The portfolio planner needs at least one backend");
+        }
+
+        AtomicInteger threadCount = new AtomicInteger();
+
+        this.planners = planners;
+        this.validator = validator;
+        this.stats = stats;
+        this.executor = Executors.newCachedThreadPool(runnable -> {
+            Thread thread = new Thread(runnable, "portfolio-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        synchronized (this.stats) {
+            this.planners.forEach(planner -> this.stats.putIfAbsent(planner.getName(), new BackendStats()));
+        }
+    }
+
+    public List<Planner> getPlanners() {
+        return Collections.unmodifiableList(this.planners);
+    }
+
+    public Map<String, BackendStats> getStats() {
+        return this.stats;
+    }
+
+    @Override
+    public String getName() {
+        return String.format("portfolio(%s)",
+                this.planners.stream().map(Planner::getName).collect(Collectors.joining(", ")));
+    }
+
+    /**
+     * Method that solves a problem calling every backend in parallel. The calls
+     * that are still running when a valid plan is found are cancelled.
+     *
+     * @param domain   Content of the domain file.
+     * @param problem  Content of the problem file.
+     * @param deadline Deadline of the call, which can also be used to cancel it.
+     * @return Returns the first valid plan. If no backend finds one, the last
+     * response with an error status is returned.
+     * @throws PlannerTimeoutException Thrown when the deadline expires before a
+     *                                 valid plan is found.
+     * @throws PlannerException        Thrown when no backend answers.
+     */
+    @Override
+    public JSONObject solve(String domain, String problem, PlanningDeadline deadline) throws PlannerException {
+        deadline.check();
+
+        PDDLProblem parsedProblem = PDDLParser.parseProblem(problem);
+        CompletionService<Answer> completionService = new ExecutorCompletionService<>(this.executor);
+        List<PlanningDeadline> callDeadlines = new ArrayList<>();
+
+        for (int i = 0; i < this.planners.size(); i++) {
+            int index = i;
+            Planner planner = this.planners.get(i);
+            PlanningDeadline callDeadline = deadline.remainingMillis() == Long.MAX_VALUE
+                    ? PlanningDeadline.none() : PlanningDeadline.after(deadline.remainingMillis());
+
+            callDeadlines.add(callDeadline);
+            this.stats.get(planner.getName()).recordCall();
+
+            completionService.submit(() -> {
+                long start = System.nanoTime();
+
+                try {
+                    JSONObject response = planner.solve(domain, problem, callDeadline);
+                    return new Answer(index, response, null, (System.nanoTime() - start) / 1000000L);
+                } catch (PlannerException e) {
+                    return new Answer(index, null, e, (System.nanoTime() - start) / 1000000L);
+                } catch (RuntimeException e) {
+                    // A broken backend counts as a failed call instead of aborting the portfolio
+                    PlannerException exception = new PlannerException(String.format("Unexpected error: %s", e));
+                    return new Answer(index, null, exception, (System.nanoTime() - start) / 1000000L);
+                }
+            });
+        }
+
+        // Cancelling the portfolio cancels every call
+        deadline.onCancel(() -> callDeadlines.forEach(PlanningDeadline::cancel));
+
+        JSONObject errorResponse = null;
+        List<String> errors = new ArrayList<>();
+
+        try {
+            for (int i = 0; i < this.planners.size(); i++) {
+                Future<Answer> future = completionService.poll(deadline.remainingMillis(), TimeUnit.MILLISECONDS);
+
+                if (future == null) {
+                    break;
+                }
+
+                Answer answer = future.get();
+                Planner planner = this.planners.get(answer.index);
+                BackendStats backendStats = this.stats.get(planner.getName());
+
+                if (answer.response == null) {
+                    // Cancelled calls don't count as answers
+                    if (!(answer.exception instanceof PlannerTimeoutException)) {
+                        backendStats.recordFailure();
+                        errors.add(String.format("%s: %s", planner.getName(), answer.exception.getMessage()));
+                    }
+
+                    continue;
+                }
+
+                boolean validPlan = answer.response.optString("status").equals("ok")
+                        && this.isValid(domain, parsedProblem, answer.response);
+                backendStats.recordAnswer(answer.latency, validPlan);
+
+                if (validPlan) {
+                    backendStats.recordWin(answer.latency);
+                    return answer.response;
+                }
+
+                errorResponse = answer.response;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new PlannerException("The portfolio planner was interrupted");
+        } catch (Exception e) {
+            throw new PlannerException(String.format("The portfolio planner failed: %s", e.getMessage()));
+        } finally {
+            callDeadlines.forEach(PlanningDeadline::cancel);
+        }
+
+        deadline.check();
+
+        if (errorResponse != null) {
+            return errorResponse;
+        }
+
+        throw new PlannerException(String.format("No backend of the portfolio answered: %s", String.join("; ", errors)));
+    }
+
+    /**
+     * Method that checks whether the plan of a response is valid. Malformed
+     * responses are considered invalid plans.
+     *
+     * @param domain   PDDL domain of the problem.
+     * @param problem  Parsed PDDL problem.
+     * @param response Response of a backend.
+     * @return Returns true if the plan of the response solves the problem and
+     * false otherwise.
+     */
+    private boolean isValid(String domain, PDDLProblem problem, JSONObject response) {
+        try {
+            return this.validator.isValid(domain, problem, response);
+        } catch (RuntimeException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Method that stops the threads used to call the backends.
+     */
+    public void close() {
+        this.executor.shutdownNow();
+    }
+
+    /**
+     * Method that creates an empty map of statistics which keeps the order in
+     * which the backends are added and can be shared between threads.
+     *
+     * @return Returns the new map.
+     */
+    public static Map<String, BackendStats> createStats() {
+        return Collections.synchronizedMap(new LinkedHashMap<>());
+    }
+}
@@ -0,0 +1,754 @@
+/*
+ * ProblemPruner.java
+ *
+ * Copyright (C) 2020 Vladislav Nikolov Vasilev
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see https://www.gnu.org/licenses/gpl-3.0.html.
+ */
+
+/**
+ * Package that contains the planning agent along with its data structures.
+ */
+package controller;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Class that removes from a problem the cells that can't be used by any plan,
+ * along with their facts and the objects that are only located in them.
+ * <p>
+ * Everything is extracted from the domain, so no game has to be described.
+ * An action moves an object if it deletes an atom which locates the object in
+ * a cell and adds the same atom with another cell. The static preconditions
+ * of these movements (those whose predicates can't change) tell which cells
+ * can be entered, so the cells that can be reached from the initial positions
+ * of the objects are found by following the connections between cells.
+ * <p>
+ * A cell that can't be reached is kept only if some parameter of some action
+ * can be bound to it: the unary static preconditions of the parameter must
+ * hold in the cell, the objects the parameter is located by must be able to
+ * be there and the cells the parameter is statically linked to (for example
+ * connected) must satisfy these constraints as well. Every other cell can't
+ * appear in any applicable action, so removing it doesn't change the plans.
+ *
+ * @author Vladislav Nikolov Vasilev
+ */
+public class ProblemPruner {
+    private final PDDLDomain domain;
+    private final List<MoveRule> moveRules;
+    private final List<ParameterConstraint> constraints;
+    private final Set<String> cellTypes;
+
+    /**
+     * Class that represents an action schema which moves an object from a cell
+     * to another one.
+     */
+    private static class MoveRule {
+        private String locationPredicate;
+        private int cellPosition;
+        private String movedType;
+        private String fromCell;
+        private String toCell;
+        private List<PDDLFormula> links;
+        private List<PDDLFormula> staticLiterals;
+    }
+
+    /**
+     * Class that represents the constraints that a cell must satisfy to be bound
+     * to a parameter of an action schema.
+     */
+    private static class ParameterConstraint {
+        private String parameter;
+        private List<PDDLFormula> staticLiterals = new ArrayList<>();
+        private List<String> locatedBy = new ArrayList<>();
+        private List<PDDLFormula> links = new ArrayList<>();
+        private List<String> linkedParameters = new ArrayList<>();
+        private List<String> linkedLocatedBy = new ArrayList<>();
+    }
+
+    /**
+     * Class that contains a pruned problem.
+     */
+    public static class Result {
+        private final List<String> init;
+        private final Set<String> removedObjects;
+
+        /**
+         * Class constructor.
+         *
+         * @param init           Predicates of the initial state that are kept.
+         * @param removedObjects Objects that have been removed.
+         */
+        public Result(List<String> init, Set<String> removedObjects) {
+            this.init = init;
+            this.removedObjects = removedObjects;
+        }
+
+        public List<String> getInit() {
+            return this.init;
+        }
+
+        public Set<String> getRemovedObjects() {
+            return this.removedObjects;
+        }
+    }
+
+    /**
+     * Class constructor. Extracts the movements of the domain and the constraints
+     * of the parameters of its actions.
+     *
+     * @param domain Domain of the problems that will be pruned.
+     */
+    public ProblemPruner(PDDLDomain domain) {
+        this.domain = domain;
+        this.moveRules = new ArrayList<>();
+        this.constraints = new ArrayList<>();
+        this.cellTypes = new HashSet<>();
+
+        Set<String> fluents = domain.getFluentPredicates();
+
+        for (PDDLActionSchema schema : domain.getActions().values()) {
+            List<PDDLFormula> effects = schema.getEffect().getConjuncts();
+
+            for (PDDLFormula added : effects) {
+                for (PDDLFormula deleted : effects) {
+                    MoveRule rule = this.createMoveRule(schema, added, deleted, fluents);
+
+                    if (rule != null) {
+                        this.moveRules.add(rule);
+                    }
+                }
+            }
+        }
+
+        // Atoms that locate objects can only be used to restrict the cells if they are only added by movements
+        Set<String> locationPredicates = new HashSet<>();
+        this.moveRules.forEach(rule -> locationPredicates.add(rule.locationPredicate));
+
+        for (PDDLActionSchema schema : domain.getActions().values()) {
+            List<PDDLFormula> addedAtoms = new ArrayList<>();
+            this.collectAddedAtoms(schema.getEffect(), addedAtoms);
+
+            for (PDDLFormula atom : addedAtoms) {
+                if (locationPredicates.contains(atom.getPredicate()) && this.moveRules.stream().noneMatch(
+                        rule -> rule.locationPredicate.equals(atom.getPredicate())
+                                && atom.getTerms().get(rule.cellPosition).equals(rule.toCell))) {
+                    locationPredicates.remove(atom.getPredicate());
+                }
+            }
+        }
+
+        this.moveRules.removeIf(rule -> !locationPredicates.contains(rule.locationPredicate));
+
+        for (PDDLActionSchema schema : domain.getActions().values()) {
+            for (int i = 0; i < schema.getParameters().size(); i++) {
+                if (this.isCell(schema.getParameterTypes().get(i))) {
+                    this.constraints.add(this.createConstraint(schema, schema.getParameters().get(i), fluents));
+                }
+            }
+        }
+    }
+
+    /**
+     * Method that prunes the initial state of a problem. If the domain doesn't
+     * contain any movement or there's nothing to remove, the problem is left
+     * as it is.
+     *
+     * @param objectTypes Map from each object of the problem to its type.
+     * @param init        Predicates of the initial state.
+     * @param goal        Goal of the problem.
+     * @return Returns the predicates that are kept and the objects that have been removed.
+     */
+    public Result prune(Map<String, String> objectTypes, Collection<String> init, String goal) {
+        Result unchanged = new Result(new ArrayList<>(init), Collections.emptySet());
+
+        if (this.moveRules.isEmpty()) {
+            return unchanged;
+        }
+
+        Map<String, String> types = new HashMap<>();
+        objectTypes.forEach((object, type) -> types.put(object.toLowerCase(), type.toLowerCase()));
+
+        // Normalize the atoms so they can be compared with the instantiated literals of the domain
+        Set<String> atoms = new HashSet<>();
+        List<List<String>> initParts = new ArrayList<>(init.size());
+        Map<String, List<List<String>>> atomsByPredicate = new HashMap<>();
+
+        for (String atom : init) {
+            List<String> parts = PDDLGrounder.splitAtom(atom.trim().toLowerCase());
+            initParts.add(parts);
+            atoms.add(String.format("(%s)", String.join(" ", parts)));
+            atomsByPredicate.computeIfAbsent(parts.get(0), predicate -> new ArrayList<>()).add(parts);
+        }
+
+        Set<String> goalObjects = new HashSet<>(Arrays.asList(
+                goal.toLowerCase().replace("(", " ").replace(")", " ").trim().split("\\s+")));
+        Set<String> reachedCells = this.findReachableCells(types, atoms, atomsByPredicate);
+
+        if (reachedCells.isEmpty()) {
+            return unchanged;
+        }
+
+        Map<String, Set<String>> candidates = new HashMap<>();
+        Map<String, Map<String, List<String>>> links = new HashMap<>();
+        Set<String> removedObjects = new HashSet<>();
+
+        for (Map.Entry<String, String> object : types.entrySet()) {
+            String cell = object.getKey();
+
+            if (this.isCell(object.getValue()) && !reachedCells.contains(cell) && !goalObjects.contains(cell)
+                    && this.constraints.stream().noneMatch(constraint -> this.canBeBound(constraint, cell,
+                    reachedCells, candidates, links, types, atoms, atomsByPredicate))) {
+                removedObjects.add(cell);
+            }
+        }
+
+        if (removedObjects.isEmpty()) {
+            return unchanged;
+        }
+
+        // Remove the facts of the removed cells and the objects that are only located in them
+        List<String> keptInit = new ArrayList<>();
+        Set<String> mentionedObjects = new HashSet<>(), keptObjects = new HashSet<>();
+
+        Iterator<String> iterInit = init.iterator();
+
+        for (List<String> parts : initParts) {
+            String atom = iterInit.next();
+            List<String> arguments = parts.subList(1, parts.size());
+            mentionedObjects.addAll(arguments);
+
+            if (Collections.disjoint(arguments, removedObjects)) {
+                keptInit.add(atom);
+                keptObjects.addAll(arguments);
+            }
+        }
+
+        for (String object : types.keySet()) {
+            if (mentionedObjects.contains(object) && !keptObjects.contains(object) && !goalObjects.contains(object)) {
+                removedObjects.add(object);
+            }
+        }
+
+        return new Result(keptInit, removedObjects);
+    }
+
+    /**
+     * Method that finds the cells that can be entered from each cell by the
+     * movements of the domain, only taking into account their static
+     * preconditions. The objects in the cells are ignored, so the graph tells
+     * which cells are passable rather than which ones are free at the moment.
+     *
+     * @param init Predicates of the initial state.
+     * @return Returns a map from each cell to the cells that can be entered from it.
+     */
+    public Map<String, Set<String>> findMovementGraph(Collection<String> init) {
+        Set<String> atoms = new HashSet<>();
+        Map<String, List<List<String>>> atomsByPredicate = new HashMap<>();
+        Map<String, Set<String>> graph = new HashMap<>();
+        this.indexAtoms(init, atoms, atomsByPredicate);
+
+        for (MoveRule rule : this.moveRules) {
+            for (PDDLFormula link : rule.links) {
+                for (List<String> parts : atomsByPredicate.getOrDefault(link.getPredicate(), Collections.emptyList())) {
+                    Map<String, String> linkBinding = this.match(link, parts);
+
+                    if (linkBinding == null || !linkBinding.containsKey(rule.fromCell)
+                            || !linkBinding.containsKey(rule.toCell)) {
+                        continue;
+                    }
+
+                    Map<String, String> binding = new HashMap<>();
+                    binding.put(rule.fromCell, linkBinding.get(rule.fromCell));
+                    binding.put(rule.toCell, linkBinding.get(rule.toCell));
+
+                    if (this.holds(rule.staticLiterals, binding, atoms)) {
+                        graph.computeIfAbsent(binding.get(rule.fromCell), cell -> new HashSet<>())
+                                .add(binding.get(rule.toCell));
+                    }
+                }
+            }
+        }
+
+        return graph;
+    }
+
+    /**
+     * Method that finds the cell in which each object is located, according to
+     * the atoms that locate the objects moved by the movements of the domain.
+     * Objects that aren't moved by any movement, like the collectibles, are
+     * usually located by the same atoms.
+     *
+     * @param init Predicates of the initial state.
+     * @return Returns a map from each located object to its cell.
+     */
+    public Map<String, String> findLocations(Collection<String> init) {
+        Set<String> atoms = new HashSet<>();
+        Map<String, List<List<String>>> atomsByPredicate = new HashMap<>();
+        Map<String, String> locations = new HashMap<>();
+        this.indexAtoms(init, atoms, atomsByPredicate);
+
+        for (MoveRule rule : this.moveRules) {
+            for (List<String> parts : atomsByPredicate.getOrDefault(rule.locationPredicate, Collections.emptyList())) {
+                if (parts.size() == 3) {
+                    locations.put(parts.get(2 - rule.cellPosition), parts.get(rule.cellPosition + 1));
+                }
+            }
+        }
+
+        return locations;
+    }
+
+    /**
+     * Method that normalizes the atoms of an initial state and indexes them by
+     * their predicates.
+     *
+     * @param init             Predicates of the initial state.
+     * @param atoms            Set in which the normalized atoms are stored.
+     * @param atomsByPredicate Map in which the predicate and arguments of the atoms
+     *                         are stored, indexed by predicate.
+     */
+    private void indexAtoms(Collection<String> init, Set<String> atoms,
+                            Map<String, List<List<String>>> atomsByPredicate) {
+        for (String atom : init) {
+            List<String> parts = PDDLGrounder.splitAtom(atom.trim().toLowerCase());
+            atoms.add(String.format("(%s)", String.join(" ", parts)));
+            atomsByPredicate.computeIfAbsent(parts.get(0), predicate -> new ArrayList<>()).add(parts);
+        }
+    }
+
+    /**
+     * Method that creates a movement given an add effect and a delete effect of an
+     * action schema.
+     *
+     * @param schema  Action schema.
+     * @param added   Effect that adds an atom.
+     * @param deleted Effect that deletes an atom.
+     * @param fluents Fluent predicates of the domain.
+     * @return Returns the movement or null if the effects don't move an object.
+     */
+    private MoveRule createMoveRule(PDDLActionSchema schema, PDDLFormula added, PDDLFormula deleted,
+                                    Set<String> fluents) {
+        if (added.getKind() != PDDLFormula.Kind.ATOM || deleted.getKind() != PDDLFormula.Kind.NOT
+                || deleted.getChildren().get(0).getKind() != PDDLFormula.Kind.ATOM) {
+            return null;
+        }
+
+        PDDLFormula deletedAtom = deleted.getChildren().get(0);
+
+        if (!added.getPredicate().equals(deletedAtom.getPredicate())
+                || added.getTerms().size() != 2 || deletedAtom.getTerms().size() != 2) {
+            return null;
+        }
+
+        // Both atoms must only differ in the cell
+        int cellPosition = added.getTerms().get(0).equals(deletedAtom.getTerms().get(0)) ? 1 : 0;
+        String moved = added.getTerms().get(1 - cellPosition);
+
+        if (!moved.equals(deletedAtom.getTerms().get(1 - cellPosition))
+                || added.getTerms().get(cellPosition).equals(deletedAtom.getTerms().get(cellPosition))
+                || !schema.getParameters().contains(moved)
+                || !schema.getParameters().contains(added.getTerms().get(cellPosition))
+                || !schema.getParameters().contains(deletedAtom.getTerms().get(cellPosition))) {
+            return null;
+        }
+
+        MoveRule rule = new MoveRule();
+        rule.locationPredicate = added.getPredicate();
+        rule.cellPosition = cellPosition;
+        rule.movedType = this.getParameterType(schema, moved);
+        rule.fromCell = deletedAtom.getTerms().get(cellPosition);
+        rule.toCell = added.getTerms().get(cellPosition);
+        rule.links = new ArrayList<>();
+        rule.staticLiterals = new ArrayList<>();
+
+        // Only the static literals which depend on the cells are taken into account
+        for (PDDLFormula literal : schema.getPrecondition().getConjuncts()) {
+            PDDLFormula atom = literal.getKind() == PDDLFormula.Kind.NOT ? literal.getChildren().get(0) : literal;
+
+            if (atom.getKind() != PDDLFormula.Kind.ATOM || fluents.contains(atom.getPredicate())
+                    || !atom.getTerms().stream().allMatch(term -> term.equals(rule.fromCell)
+                    || term.equals(rule.toCell) || !term.startsWith("?"))) {
+                continue;
+            }
+
+            rule.staticLiterals.add(literal);
+
+            if (literal == atom && atom.getTerms().contains(rule.fromCell) && atom.getTerms().contains(rule.toCell)) {
+                rule.links.add(atom);
+            }
+        }
+
+        // Movements that aren't restricted to connected cells can't be used to prune the problem
+        if (rule.links.isEmpty()) {
+            return null;
+        }
+
+        this.cellTypes.add(this.getParameterType(schema, rule.toCell));
+
+        return rule;
+    }
+
+    /**
+     * Method that creates the constraints of a cell parameter of an action schema.
+     *
+     * @param schema    Action schema.
+     * @param parameter Cell parameter.
+     * @param fluents   Fluent predicates of the domain.
+     * @return Returns the constraints of the parameter.
+     */
+    private ParameterConstraint createConstraint(PDDLActionSchema schema, String parameter, Set<String> fluents) {
+        ParameterConstraint constraint = new ParameterConstraint();
+        constraint.parameter = parameter;
+        List<PDDLFormula> literals = schema.getPrecondition().getConjuncts();
+
+        for (PDDLFormula literal : literals) {
+            PDDLFormula atom = literal.getKind() == PDDLFormula.Kind.NOT ? literal.getChildren().get(0) : literal;
+
+            if (atom.getKind() != PDDLFormula.Kind.ATOM || !atom.getTerms().contains(parameter)) {
+                continue;
+            }
+
+            List<String> variables = new ArrayList<>();
+            atom.getTerms().stream().filter(term -> term.startsWith("?")).distinct().forEach(variables::add);
+
+            if (!fluents.contains(atom.getPredicate()) && variables.size() == 1) {
+                constraint.staticLiterals.add(literal);
+            } else if (literal == atom) {
+                String locatedBy = this.getLocatedType(schema, atom, parameter);
+
+                if (locatedBy != null) {
+                    constraint.locatedBy.add(locatedBy);
+                } else if (!fluents.contains(atom.getPredicate()) && variables.size() == 2) {
+                    // Static link to another cell, which is only used if that cell is located by some object
+                    String other = variables.get(0).equals(parameter) ? variables.get(1) : variables.get(0);
+
+                    for (PDDLFormula otherAtom : literals) {
+                        String otherLocatedBy = otherAtom.getKind() == PDDLFormula.Kind.ATOM
+                                ? this.getLocatedType(schema, otherAtom, other) : null;
+
+                        if (otherLocatedBy != null) {
+                            constraint.links.add(atom);
+                            constraint.linkedParameters.add(other);
+                            constraint.linkedLocatedBy.add(otherLocatedBy);
+                            break;
+                        }
+                    }
+                }
+            }
+        }
+
+        return constraint;
+    }
+
+    /**
+     * Method that checks whether an atom of an action schema locates an object in
+     * a cell parameter.
+     *
+     * @param schema    Action schema.
+     * @param atom      Atom of the precondition.
+     * @param parameter Cell parameter.
+     * @return Returns the type of the located object or null if the atom doesn't
+     * locate an object in the parameter.
+     */
+    private String getLocatedType(PDDLActionSchema schema, PDDLFormula atom, String parameter) {
+        for (MoveRule rule : this.moveRules) {
+            if (atom.getPredicate().equals(rule.locationPredicate) && atom.getTerms().size() == 2
+                    && atom.getTerms().get(rule.cellPosition).equals(parameter)) {
+                return this.getParameterType(schema, atom.getTerms().get(1 - rule.cellPosition));
+            }
+        }
+
+        return null;
+    }
+
+    /**
+     * Method that finds the cells that can be reached from the initial positions
+     * of the objects that can be moved, only taking into account the static
+     * preconditions of the movements.
+     *
+     * @param types            Map from each object to its type.
+     * @param atoms            Normalized atoms of the initial state.
+     * @param atomsByPredicate Predicate and arguments of the atoms of the initial
+     *                         state, indexed by predicate.
+     * @return Returns the set of reachable cells.
+     */
+    private Set<String> findReachableCells(Map<String, String> types, Set<String> atoms,
+                                           Map<String, List<List<String>>> atomsByPredicate) {
+        Set<String> reachedCells = new HashSet<>();
+        Deque<String> open = new ArrayDeque<>();
+        Map<MoveRule, Map<String, List<String>>> successors = new HashMap<>();
+
+        for (MoveRule rule : this.moveRules) {
+            // Initial positions of the objects moved by the rule
+            for (List<String> parts : atomsByPredicate.getOrDefault(rule.locationPredicate, Collections.emptyList())) {
+                if (parts.size() == 3 && this.isOfType(types.get(parts.get(2 - rule.cellPosition)), rule.movedType)
+                        && reachedCells.add(parts.get(rule.cellPosition + 1))) {
+                    open.add(parts.get(rule.cellPosition + 1));
+                }
+            }
+
+            Map<String, List<String>> ruleSuccessors = new HashMap<>();
+
+            for (PDDLFormula link : rule.links) {
+                for (List<String> parts : atomsByPredicate.getOrDefault(link.getPredicate(), Collections.emptyList())) {
+                    Map<String, String> binding = this.match(link, parts);
+
+                    if (binding != null && binding.containsKey(rule.fromCell) && binding.containsKey(rule.toCell)) {
+                        ruleSuccessors.computeIfAbsent(binding.get(rule.fromCell), cell -> new ArrayList<>())
+                                .add(binding.get(rule.toCell));
+                    }
+                }
+            }
+
+            successors.put(rule, ruleSuccessors);
+        }
+
+        while (!open.isEmpty()) {
+            String cell = open.poll();
+
+            for (MoveRule rule : this.moveRules) {
+                for (String next : successors.get(rule).getOrDefault(cell, Collections.emptyList())) {
+                    Map<String, String> binding = new HashMap<>();
+                    binding.put(rule.fromCell, cell);
+                    binding.put(rule.toCell, next);
+
+                    if (!reachedCells.contains(next) && this.holds(rule.staticLiterals, binding, atoms)) {
+                        reachedCells.add(next);
+                        open.add(next);
+                    }
+                }
+            }
+        }
+
+        return reachedCells;
+    }
+
+    /**
+     * Method that checks whether a cell can be bound to a parameter of an action
+     * schema.
+     *
+     * @param constraint       Constraints of the parameter.
+     * @param cell             Cell to be checked.
+     * @param reachedCells     Cells that can be reached by the objects that are moved.
+     * @param candidates       Cells in which the objects of each type can be located.
+     * @param links            Cells linked to each cell by each link.
+     * @param types            Map from each object to its type.
+     * @param atoms            Normalized atoms of the initial state.
+     * @param atomsByPredicate Predicate and arguments of the atoms of the initial
+     *                         state, indexed by predicate.
+     * @return Returns true if the cell can be bound to the parameter and false otherwise.
+     */
+    private boolean canBeBound(ParameterConstraint constraint, String cell, Set<String> reachedCells,
+                               Map<String, Set<String>> candidates, Map<String, Map<String, List<String>>> links,
+                               Map<String, String> types, Set<String> atoms,
+                               Map<String, List<List<String>>> atomsByPredicate) {
+        if (!this.holds(constraint.staticLiterals, Collections.singletonMap(constraint.parameter, cell), atoms)) {
+            return false;
+        }
+
+        for (String type : constraint.locatedBy) {
+            if (!this.getCandidates(type, reachedCells, candidates, types, atomsByPredicate).contains(cell)) {
+                return false;
+            }
+        }
+
+        for (int i = 0; i < constraint.links.size(); i++) {
+            PDDLFormula link = constraint.links.get(i);
+            String other = constraint.linkedParameters.get(i);
+            Set<String> otherCandidates = this.getCandidates(constraint.linkedLocatedBy.get(i), reachedCells,
+                    candidates, types, atomsByPredicate);
+            boolean linked = false;
+
+            for (String linkedCell : this.getLinkedCells(link, constraint.parameter, other, links, atomsByPredicate)
+                    .getOrDefault(cell, Collections.emptyList())) {
+                if (otherCandidates.contains(linkedCell)) {
+                    linked = true;
+                    break;
+                }
+            }
+
+            if (!linked) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * Method that returns the cells in which the objects of a type can be located.
+     * Objects that can be moved can be located in any reachable cell, while the
+     * rest of the objects can only be located in their initial cells.
+     *
+     * @param type             Type of the objects.
+     * @param reachedCells     Cells that can be reached by the objects that are moved.
+     * @param candidates       Cells already computed for each type.
+     * @param types            Map from each object to its type.
+     * @param atomsByPredicate Predicate and arguments of the atoms of the initial
+     *                         state, indexed by predicate.
+     * @return Returns the set of cells.
+     */
+    private Set<String> getCandidates(String type, Set<String> reachedCells, Map<String, Set<String>> candidates,
+                                      Map<String, String> types, Map<String, List<List<String>>> atomsByPredicate) {
+        return candidates.computeIfAbsent(type, key -> {
+            Set<String> cells = new HashSet<>();
+
+            for (MoveRule rule : this.moveRules) {
+                if (this.isOfType(type, rule.movedType) || this.isOfType(rule.movedType, type)) {
+                    cells.addAll(reachedCells);
+                }
+
+                for (List<String> parts : atomsByPredicate.getOrDefault(rule.locationPredicate,
+                        Collections.emptyList())) {
+                    if (parts.size() == 3 && this.isOfType(types.get(parts.get(2 - rule.cellPosition)), type)) {
+                        cells.add(parts.get(rule.cellPosition + 1));
+                    }
+                }
+            }
+
+            return cells;
+        });
+    }
+
+    /**
+     * Method that returns the cells linked to each cell by a link of an action schema.
+     *
+     * @param link             Link of the action schema.
+     * @param parameter        Parameter whose cells are the keys of the map.
+     * @param other            Parameter whose cells are the values of the map.
+     * @param links            Cells already computed for each link.
+     * @param atomsByPredicate Predicate and arguments of the atoms of the initial
+     *                         state, indexed by predicate.
+     * @return Returns a map from each cell to the cells linked to it.
+     */
+    private Map<String, List<String>> getLinkedCells(PDDLFormula link, String parameter, String other,
+                                                     Map<String, Map<String, List<String>>> links,
+                                                     Map<String, List<List<String>>> atomsByPredicate) {
+        return links.computeIfAbsent(String.format("%s %s %s", link, parameter, other), key -> {
+            Map<String, List<String>> linkedCells = new HashMap<>();
+
+            for (List<String> parts : atomsByPredicate.getOrDefault(link.getPredicate(), Collections.emptyList())) {
+                Map<String, String> binding = this.match(link, parts);
+
+                if (binding != null) {
+                    linkedCells.computeIfAbsent(binding.get(parameter), cell -> new ArrayList<>())
+                            .add(binding.get(other));
+                }
+            }
+
+            return linkedCells;
+        });
+    }
+
+    /**
+     * Method that checks whether a list of static literals holds given a binding.
+     *
+     * @param literals List of literals.
+     * @param binding  Map from variables to objects.
+     * @param atoms    Normalized atoms of the initial state.
+     * @return Returns true if every literal holds and false otherwise.
+     */
+    private boolean holds(List<PDDLFormula> literals, Map<String, String> binding, Set<String> atoms) {
+        for (PDDLFormula literal : literals) {
+            boolean positive = literal.getKind() != PDDLFormula.Kind.NOT;
+            PDDLFormula atom = positive ? literal : literal.getChildren().get(0);
+
+            if (atoms.contains(atom.instantiateAtom(binding)) != positive) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * Method that matches an atom of the initial state with an atom of an action
+     * schema.
+     *
+     * @param atom  Atom of the action schema.
+     * @param parts Predicate and arguments of the atom of the initial state.
+     * @return Returns the binding of the variables of the atom or null if the atoms
+     * don't match.
+     */
+    private Map<String, String> match(PDDLFormula atom, List<String> parts) {
+        if (parts.size() != atom.getTerms().size() + 1) {
+            return null;
+        }
+
+        Map<String, String> binding = new HashMap<>();
+
+        for (int i = 0; i < atom.getTerms().size(); i++) {
+            String term = atom.getTerms().get(i), argument = parts.get(i + 1);
+
+            if (term.startsWith("?")) {
+                if (!argument.equals(binding.getOrDefault(term, argument))) {
+                    return null;
+                }
+
+                binding.put(term, argument);
+            } else if (!term.equals(argument)) {
+                return null;
+            }
+        }
+
+        return binding;
+    }
+
+    /**
+     * Method that collects the atoms added by an effect, including the conditional ones.
+     *
+     * @param effect Effect of an action schema.
+     * @param atoms  List in which the atoms are stored.
+     */
+    private void collectAddedAtoms(PDDLFormula effect, List<PDDLFormula> atoms) {
+        if (effect.getKind() == PDDLFormula.Kind.ATOM) {
+            atoms.add(effect);
+        } else if (effect.getKind() == PDDLFormula.Kind.AND) {
+            effect.getChildren().forEach(child -> this.collectAddedAtoms(child, atoms));
+        } else if (effect.getKind() == PDDLFormula.Kind.WHEN) {
+            this.collectAddedAtoms(effect.getChildren().get(1), atoms);
+        }
+    }
+
+    private String getParameterType(PDDLActionSchema schema, String parameter) {
+        int index = schema.getParameters().indexOf(parameter);
+
+        return index >= 0 ? schema.getParameterTypes().get(index) : "object";
+    }
+
+    private boolean isOfType(String type, String supertype) {
+        return type != null && this.domain.isSubtype(type, supertype);
+    }
+
+    /**
+     * Method that checks whether a type is the type of the cells of some movement.
+     *
+     * @param type Type to be checked.
+     * @return Returns true if the objects of the type are cells and false otherwise.
+     */
+    private boolean isCell(String type) {
+        return this.cellTypes.stream().anyMatch(cellType -> this.isOfType(type.toLowerCase(), cellType));
+    }
+}
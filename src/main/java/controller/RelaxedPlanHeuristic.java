@@ -0,0 +1,256 @@
+/*
+ * RelaxedPlanHeuristic.java
+ *
+ * Copyright (C) 2020 Vladislav Nikolov Vasilev
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see https://www.gnu.org/licenses/gpl-3.0.html.
+ */
+
+/**
+ * Package that contains the planning agent along with its data structures.
+ */
+package controller;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+
+/**
+ * Class that implements the relaxed plan heuristic (also known as the FF
+ * heuristic). The delete effects and negative conditions of the actions are
+ * ignored, a relaxed planning graph is built from a state and a relaxed plan
+ * is extracted from it. The length of the relaxed plan is the estimate of the
+ * distance to the goal.
+ * <p>
+ * Each conditional effect is compiled into a relaxed operator of its own,
+ * whose preconditions are the preconditions of the action plus the conditions
+ * of the effect.
+ *
+ * @author Vladislav Nikolov Vasilev
+ */
+public class RelaxedPlanHeuristic {
+    /**
+     * Value returned for states from which the goal can't be reached.
+     */
+    public static final int DEAD_END = Integer.MAX_VALUE;
+
+    private int numAtoms;
+    private int[] goals;
+    private int[][] operatorPreconditions;
+    private int[][] operatorAdds;
+    private int[][] preconditionOf;
+
+    // Buffers reused between evaluations
+    private int[] atomLevel;
+    private int[] atomSupporter;
+    private int[] unsatisfied;
+    private boolean[] inRelaxedPlan;
+    private boolean[] marked;
+
+    /**
+     * Class constructor. Builds the relaxed operators of a ground task.
+     *
+     * @param task Ground task.
+     */
+    public RelaxedPlanHeuristic(GroundTask task) {
+        this.numAtoms = task.getAtoms().size();
+        this.goals = task.getPositiveGoals();
+
+        List<int[]> preconditions = new ArrayList<>(), adds = new ArrayList<>();
+
+        for (GroundAction action : task.getActions()) {
+            preconditions.add(action.getPositivePreconditions());
+            adds.add(action.getAddEffects());
+
+            for (GroundAction.ConditionalEffect effect : action.getConditionalEffects()) {
+                int[] merged = Arrays.copyOf(action.getPositivePreconditions(),
+                        action.getPositivePreconditions().length + effect.getPositiveConditions().length);
+                System.arraycopy(effect.getPositiveConditions(), 0, merged,
+                        action.getPositivePreconditions().length, effect.getPositiveConditions().length);
+
+                preconditions.add(merged);
+                adds.add(effect.getAddEffects());
+            }
+        }
+
+        this.operatorPreconditions = preconditions.toArray(new int[0][]);
+        this.operatorAdds = adds.toArray(new int[0][]);
+
+        // Index the operators by their preconditions
+        int[] counts = new int[this.numAtoms];
+
+        for (int[] operator : this.operatorPreconditions) {
+            for (int atom : operator) {
+                counts[atom]++;
+            }
+        }
+
+        this.preconditionOf = new int[this.numAtoms][];
+
+        for (int atom = 0; atom < this.numAtoms; atom++) {
+            this.preconditionOf[atom] = new int[counts[atom]];
+        }
+
+        Arrays.fill(counts, 0);
+
+        for (int op = 0; op < this.operatorPreconditions.length; op++) {
+            for (int atom : this.operatorPreconditions[op]) {
+                this.preconditionOf[atom][counts[atom]++] = op;
+            }
+        }
+
+        this.atomLevel = new int[this.numAtoms];
+        this.atomSupporter = new int[this.numAtoms];
+        this.unsatisfied = new int[this.operatorPreconditions.length];
+        this.inRelaxedPlan = new boolean[this.operatorPreconditions.length];
+        this.marked = new boolean[this.numAtoms];
+    }
+
+    /**
+     * Method that evaluates a state.
+     *
+     * @param state State to be evaluated.
+     * @return Returns the length of the relaxed plan from the state to the goal or
+     * {@link #DEAD_END} if the goal isn't reachable in the relaxation.
+     */
+    public int evaluate(BitSet state) {
+        Arrays.fill(this.atomLevel, -1);
+        Arrays.fill(this.atomSupporter, -1);
+
+        int[] frontier = new int[this.numAtoms];
+        int frontierSize = 0;
+
+        for (int atom = state.nextSetBit(0); atom >= 0 && atom < this.numAtoms; atom = state.nextSetBit(atom + 1)) {
+            this.atomLevel[atom] = 0;
+            frontier[frontierSize++] = atom;
+        }
+
+        int[] next = new int[this.numAtoms];
+        int nextSize = 0, level = 0;
+
+        for (int op = 0; op < this.operatorPreconditions.length; op++) {
+            this.unsatisfied[op] = this.operatorPreconditions[op].length;
+
+            // Operators without preconditions are applicable in the first layer
+            if (this.unsatisfied[op] == 0) {
+                nextSize = this.applyOperator(op, level, next, nextSize);
+            }
+        }
+
+        // Expand the relaxed planning graph layer by layer
+        while (!this.goalsReached()) {
+            for (int i = 0; i < frontierSize; i++) {
+                for (int op : this.preconditionOf[frontier[i]]) {
+                    if (--this.unsatisfied[op] == 0) {
+                        nextSize = this.applyOperator(op, level, next, nextSize);
+                    }
+                }
+            }
+
+            if (nextSize == 0) {
+                return RelaxedPlanHeuristic.DEAD_END;
+            }
+
+            int[] swap = frontier;
+            frontier = next;
+            next = swap;
+            frontierSize = nextSize;
+            nextSize = 0;
+            level++;
+        }
+
+        return this.extractRelaxedPlan();
+    }
+
+    /**
+     * Method that applies a relaxed operator in a layer, adding the atoms that
+     * haven't been reached yet to the next layer.
+     *
+     * @param op       Operator index.
+     * @param level    Layer in which the operator is applied.
+     * @param next     Atoms of the next layer.
+     * @param nextSize Number of atoms of the next layer.
+     * @return Returns the new number of atoms of the next layer.
+     */
+    private int applyOperator(int op, int level, int[] next, int nextSize) {
+        for (int atom : this.operatorAdds[op]) {
+            if (this.atomLevel[atom] < 0) {
+                this.atomLevel[atom] = level + 1;
+                this.atomSupporter[atom] = op;
+                next[nextSize++] = atom;
+            }
+        }
+
+        return nextSize;
+    }
+
+    /**
+     * Method that checks whether all the goals have been reached in the relaxed
+     * planning graph.
+     *
+     * @return Returns true if every goal has a level and false otherwise.
+     */
+    private boolean goalsReached() {
+        for (int goal : this.goals) {
+            if (this.atomLevel[goal] < 0) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * Method that extracts a relaxed plan from the relaxed planning graph by
+     * following the supporters of the goals backwards.
+     *
+     * @return Returns the number of operators of the relaxed plan.
+     */
+    private int extractRelaxedPlan() {
+        Arrays.fill(this.inRelaxedPlan, false);
+        Arrays.fill(this.marked, false);
+
+        int[] stack = new int[this.numAtoms];
+        int stackSize = 0, planLength = 0;
+
+        for (int goal : this.goals) {
+            if (!this.marked[goal]) {
+                this.marked[goal] = true;
+                stack[stackSize++] = goal;
+            }
+        }
+
+        while (stackSize > 0) {
+            int atom = stack[--stackSize];
+            int op = this.atomSupporter[atom];
+
+            if (this.atomLevel[atom] == 0 || this.inRelaxedPlan[op]) {
+                continue;
+            }
+
+            this.inRelaxedPlan[op] = true;
+            planLength++;
+
+            for (int precondition : this.operatorPreconditions[op]) {
+                if (!this.marked[precondition]) {
+                    this.marked[precondition] = true;
+                    stack[stackSize++] = precondition;
+                }
+            }
+        }
+
+        return planLength;
+    }
+}
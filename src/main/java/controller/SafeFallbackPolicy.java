@@ -0,0 +1,81 @@
+/*
+ * SafeFallbackPolicy.java
+ *
+ * Copyright (C) 2020 Vladislav Nikolov Vasilev
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see https://www.gnu.org/licenses/gpl-3.0.html.
+ */
+
+/**
+ * Package that contains the planning agent along with its data structures.
+ */
+package controller;
+
+import core.game.StateObservation;
+import ontology.Types;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Class that implements a reactive fallback policy. The agent stays still
+ * unless doing so makes it lose the game in the next turn, in which case it
+ * executes the first action that doesn't. Actions are checked by advancing a
+ * copy of the state with the forward model.
+ * <p>
+ * Staying still is preferred because the plan that is being computed starts
+ * from the state in which the planner was called, so every movement of the
+ * avatar makes it less likely to be applicable.
+ *
+ * @author Vladislav Nikolov Vasilev
+ */
+public class SafeFallbackPolicy implements FallbackPolicy {
+    /**
+     * Class constructor.
+     */
+    public SafeFallbackPolicy() {
+    }
+
+    @Override
+    public Types.ACTIONS act(StateObservation stateObservation, PlanningDeadline deadline) {
+        List<Types.ACTIONS> actions = new ArrayList<>();
+        actions.add(Types.ACTIONS.ACTION_NIL);
+
+        for (Types.ACTIONS action : stateObservation.getAvailableActions()) {
+            if (action != Types.ACTIONS.ACTION_NIL) {
+                actions.add(action);
+            }
+        }
+
+        for (Types.ACTIONS action : actions) {
+            if (deadline.isExpired()) {
+                break;
+            }
+
+            StateObservation nextState = stateObservation.copy();
+            nextState.advance(action);
+
+            if (!nextState.isGameOver() || nextState.getGameWinner() != Types.WINNER.PLAYER_LOSES) {
+                return action;
+            }
+        }
+
+        return Types.ACTIONS.ACTION_NIL;
+    }
+
+    @Override
+    public String getName() {
+        return "safe";
+    }
+}
@@ -0,0 +1,291 @@
+/*
+ * SessionHttpPlanner.java
+ *
+ * Copyright (C) 2020 Vladislav Nikolov Vasilev
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see https://www.gnu.org/licenses/gpl-3.0.html.
+ */
+
+/**
+ * Package that contains the planning agent along with its data structures.
+ */
+package controller;
+
+import kong.unirest.json.JSONArray;
+import kong.unirest.json.JSONObject;
+
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * HTTP planner that keeps a session open in the solver, so that the problems
+ * don't have to be sent in full every time. Consecutive problems of the same
+ * level only differ in a few facts of their initial state, so the first call
+ * uploads the domain and the problem (static facts included) and the next ones
+ * only send the facts and objects that have been added or removed since the
+ * previous call, along with the goal. The protocol is implemented by
+ * {@link PlannerServer}:
+ * <ul>
+ * <li>POST /session with the domain and the problem opens a new session and
+ * solves the problem. The response contains the identifier of the session.</li>
+ * <li>POST /session/{id} with the fields "add", "delete", "add-objects",
+ * "delete-objects" and "goal" updates the problem of the session and solves
+ * it. If the session is unknown, the status of the response is 404.</li>
+ * </ul>
+ * If the solver doesn't support sessions, the problems are sent in full to the
+ * URL of the {@link HttpPlanner}. The same happens with the calls made while
+ * another one is using the session, so that they don't have to wait for it.
+ *
+ * @author Vladislav Nikolov Vasilev
+ */
+public class SessionHttpPlanner extends HttpPlanner {
+    /**
+     * URL of the sessions of the solver running on localhost.
+     */
+    public static final String LOCALHOST_URL = "http://localhost:5000/session";
+
+    private static final int NOT_FOUND = 404;
+    private static final int METHOD_NOT_ALLOWED = 405;
+
+    private String sessionUrl;
+    private boolean sessionsSupported;
+    private boolean busy;
+
+    // State of the problem stored in the session
+    private String session;
+    private String domain;
+    private Map<String, String> objects;
+    private Set<String> init;
+
+    private int sessions;
+    private int deltaCalls;
+    private long sentCharacters;
+    private long problemCharacters;
+
+    /**
+     * Class constructor.
+     *
+     * @param url        URL to which the problems are sent when sessions can't
+     *                   be used.
+     * @param sessionUrl URL of the sessions of the solver.
+     * @param client     Client used to send the problems.
+     * @param fallback   Planner used when the solver can't be called. If it is null,
+     *                   the error is thrown instead.
+     */
+    public SessionHttpPlanner(String url, String sessionUrl, PlannerHttpClient client, Planner fallback) {
+        super(url, client, fallback);
+        this.sessionUrl = sessionUrl;
+        this.sessionsSupported = true;
+    }
+
+    public String getSessionUrl() {
+        return this.sessionUrl;
+    }
+
+    public synchronized boolean isSessionsSupported() {
+        return this.sessionsSupported;
+    }
+
+    public synchronized int getSessions() {
+        return this.sessions;
+    }
+
+    public synchronized int getDeltaCalls() {
+        return this.deltaCalls;
+    }
+
+    public synchronized long getSentCharacters() {
+        return this.sentCharacters;
+    }
+
+    public synchronized long getProblemCharacters() {
+        return this.problemCharacters;
+    }
+
+    @Override
+    public String getName() {
+        return String.format("session(%s)", this.sessionUrl);
+    }
+
+    @Override
+    public JSONObject solve(String domain, String problem, PlanningDeadline deadline) throws PlannerException {
+        boolean useSession;
+
+        synchronized (this) {
+            this.problemCharacters += domain.length() + problem.length();
+            useSession = this.sessionsSupported && !this.busy;
+
+            if (useSession) {
+                this.busy = true;
+            } else {
+                this.sentCharacters += domain.length() + problem.length();
+            }
+        }
+
+        if (!useSession) {
+            return super.solve(domain, problem, deadline);
+        }
+
+        try {
+            return this.solveInSession(domain, problem, deadline);
+        } finally {
+            synchronized (this) {
+                this.busy = false;
+            }
+        }
+    }
+
+    /**
+     * Method that solves a problem using the session, opening a new one if needed.
+     *
+     * @param domain   Content of the domain file.
+     * @param problem  Content of the problem file.
+     * @param deadline Deadline of the call.
+     * @return Returns the response of the solver.
+     * @throws PlannerException Thrown when the problem can't be parsed or when the
+     *                          solver can't be called and there's no fallback planner.
+     */
+    private JSONObject solveInSession(String domain, String problem, PlanningDeadline deadline)
+            throws PlannerException {
+        PDDLProblem parsedProblem = PDDLParser.parseProblem(problem);
+
+        try {
+            if (this.session != null && domain.equals(this.domain)) {
+                try {
+                    return this.sendDelta(parsedProblem, deadline);
+                } catch (PlannerStatusException e) {
+                    // The solver has forgotten the session (for example, it has been restarted)
+                    if (e.getStatus() != SessionHttpPlanner.NOT_FOUND) {
+                        throw e;
+                    }
+                }
+            }
+
+            return this.openSession(domain, problem, parsedProblem, deadline);
+        } catch (PlannerTimeoutException e) {
+            // It isn't known whether the solver has updated the session or not
+            this.session = null;
+            throw e;
+        } catch (PlannerStatusException e) {
+            this.session = null;
+
+            // The solver doesn't support sessions, so the problems are sent in full from now on
+            if (e.getStatus() == SessionHttpPlanner.NOT_FOUND
+                    || e.getStatus() == SessionHttpPlanner.METHOD_NOT_ALLOWED) {
+                synchronized (this) {
+                    this.sessionsSupported = false;
+                    this.sentCharacters += domain.length() + problem.length();
+                }
+
+                return super.solve(domain, problem, deadline);
+            }
+
+            return this.fallback(domain, problem, deadline, e);
+        } catch (PlannerException e) {
+            this.session = null;
+            return this.fallback(domain, problem, deadline, e);
+        }
+    }
+
+    /**
+     * Method that opens a new session, uploading the whole domain and problem.
+     *
+     * @param domain        Content of the domain file.
+     * @param problem       Content of the problem file.
+     * @param parsedProblem Parsed problem.
+     * @param deadline      Deadline of the call.
+     * @return Returns the response of the solver.
+     * @throws PlannerException Thrown when the session can't be opened.
+     */
+    private JSONObject openSession(String domain, String problem, PDDLProblem parsedProblem,
+                                   PlanningDeadline deadline) throws PlannerException {
+        JSONObject body = new JSONObject();
+        body.put("domain", domain);
+        body.put("problem", problem);
+
+        synchronized (this) {
+            this.sentCharacters += domain.length() + problem.length();
+        }
+
+        JSONObject response = this.getClient().post(this.sessionUrl, body, deadline, this.getMetrics());
+
+        if (!response.has("session")) {
+            throw new PlannerException(String.format("The solver at %s didn't open a session", this.sessionUrl));
+        }
+
+        this.session = response.getString("session");
+        this.domain = domain;
+        this.objects = new LinkedHashMap<>(parsedProblem.getObjects());
+        this.init = new LinkedHashSet<>(parsedProblem.getInit());
+
+        synchronized (this) {
+            this.sessions++;
+        }
+
+        return response;
+    }
+
+    /**
+     * Method that sends the differences between a problem and the one stored in
+     * the session.
+     *
+     * @param parsedProblem Parsed problem.
+     * @param deadline      Deadline of the call.
+     * @return Returns the response of the solver.
+     * @throws PlannerException Thrown when the solver can't be called. If the session
+     *                          is unknown, a {@link PlannerStatusException} is thrown.
+     */
+    private JSONObject sendDelta(PDDLProblem parsedProblem, PlanningDeadline deadline) throws PlannerException {
+        JSONArray addedFacts = new JSONArray();
+        JSONArray deletedFacts = new JSONArray();
+        JSONObject addedObjects = new JSONObject();
+        JSONArray deletedObjects = new JSONArray();
+
+        parsedProblem.getInit().stream().filter(fact -> !this.init.contains(fact)).forEach(addedFacts::put);
+        this.init.stream().filter(fact -> !parsedProblem.getInit().contains(fact)).forEach(deletedFacts::put);
+
+        // Objects whose type has changed are replaced
+        parsedProblem.getObjects().forEach((object, type) -> {
+            if (!type.equals(this.objects.get(object))) {
+                addedObjects.put(object, type);
+            }
+        });
+        this.objects.keySet().stream().filter(object -> !parsedProblem.getObjects().containsKey(object))
+                .forEach(deletedObjects::put);
+
+        JSONObject body = new JSONObject();
+        body.put("add", addedFacts);
+        body.put("delete", deletedFacts);
+        body.put("add-objects", addedObjects);
+        body.put("delete-objects", deletedObjects);
+        body.put("goal", parsedProblem.getGoal().toString());
+
+        synchronized (this) {
+            this.sentCharacters += body.toString().length();
+        }
+
+        JSONObject response = this.getClient().post(this.sessionUrl + "/" + this.session, body, deadline,
+                this.getMetrics());
+        this.objects = new LinkedHashMap<>(parsedProblem.getObjects());
+        this.init = new LinkedHashSet<>(parsedProblem.getInit());
+
+        synchronized (this) {
+            this.deltaCalls++;
+        }
+
+        return response;
+    }
+}
@@ -0,0 +1,285 @@
+/*
+ * SpeculativePlanner.java
+ *
+ * Copyright (C) 2020 Vladislav Nikolov Vasilev
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see https://www.gnu.org/licenses/gpl-3.0.html.
+ */
+
+/**
+ * Package that contains the planning agent along with its data structures.
+ */
+package controller;
+
+import kong.unirest.json.JSONObject;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.BiFunction;
+
+/**
+ * Class that plans the upcoming goals of the agenda in a background thread
+ * while the agent executes the plan to the current goal. The goals are solved
+ * one after another: the first one from the state predicted at the end of the
+ * current plan and every following one from the state predicted at the end of
+ * the previous speculative plan.
+ * <p>
+ * Speculative plans are only used if they are still valid in the real state
+ * of the game when the agent switches to their goal, so a wrong prediction
+ * only means that the planner is called as usual. If the agent switches to a
+ * goal whose plan is still being computed, it waits for it instead of calling
+ * the planner again. When a speculative plan is used and the state predicted
+ * at its end is the one the following goals were planned from, their plans are
+ * kept and the speculation is extended with new goals.
+ *
+ * @author Vladislav Nikolov Vasilev
+ */
+public class SpeculativePlanner {
+    private final Planner planner;
+    private final PlanCache planCache;
+    private final ExecutorService executor;
+
+    // Speculative plans indexed by goal
+    private final Map<String, CompletableFuture<JSONObject>> speculations;
+    private PlanningDeadline deadline;
+
+    // Goals whose plans haven't been taken yet, in order, and the state predicted at the start of the first one
+    private final List<String> pendingGoals;
+    private Set<String> pendingInit;
+
+    // Whether the last plan taken was valid, so the agent is following the speculation
+    private boolean followed;
+
+    // States predicted at the end of the plans of the current speculation, indexed by goal
+    private Map<String, Set<String>> finalStates;
+
+    /**
+     * Class constructor.
+     *
+     * @param planner   Planner used to solve the upcoming goals.
+     * @param planCache Plan cache used to simulate and validate the plans.
+     */
+    public SpeculativePlanner(Planner planner, PlanCache planCache) {
+        this.planner = planner;
+        this.planCache = planCache;
+        this.speculations = new ConcurrentHashMap<>();
+        this.pendingGoals = new ArrayList<>();
+        this.finalStates = new ConcurrentHashMap<>();
+        this.executor = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "speculative-planner");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Method that starts planning a list of goals in the background. If the
+     * goals continue the current speculation, that is, if the agent is executing
+     * the last speculative plan taken and the goals start from the state in which
+     * the remaining plans start, those plans are kept and only the new goals are
+     * planned after them. Otherwise, the plans that are still being computed are
+     * cancelled, as they were planned from a state that won't be reached.
+     *
+     * @param domain        Content of the domain file.
+     * @param predictedInit Atoms predicted to hold when the first goal is set
+     *                      as the current goal.
+     * @param goals         Goal predicates, in the order in which they will be set.
+     * @param problemWriter Function that writes a problem given its initial
+     *                      state and its goal. It is called from the background thread.
+     * @return Returns the number of goals that have started being planned.
+     */
+    public synchronized int speculate(String domain, Collection<String> predictedInit, List<String> goals,
+                                      BiFunction<Collection<String>, String, String> problemWriter) {
+        Set<String> init = new HashSet<>(predictedInit);
+        List<String> newGoals;
+        String previousGoal = null;
+
+        if (this.isContinuedBy(init, goals)) {
+            newGoals = new ArrayList<>(goals.subList(this.pendingGoals.size(), goals.size()));
+            previousGoal = this.pendingGoals.get(this.pendingGoals.size() - 1);
+            this.followed = false;
+        } else {
+            this.cancel();
+            newGoals = new ArrayList<>(goals);
+            this.deadline = PlanningDeadline.none();
+            this.finalStates = new ConcurrentHashMap<>();
+            this.pendingInit = init;
+        }
+
+        if (newGoals.isEmpty()) {
+            return 0;
+        }
+
+        List<CompletableFuture<JSONObject>> futures = new ArrayList<>();
+
+        for (String goal : newGoals) {
+            CompletableFuture<JSONObject> future = new CompletableFuture<>();
+            this.speculations.put(goal, future);
+            futures.add(future);
+        }
+
+        this.pendingGoals.addAll(newGoals);
+
+        PlanningDeadline deadline = this.deadline;
+        Map<String, Set<String>> finalStates = this.finalStates;
+        String startGoal = previousGoal;
+
+        this.executor.execute(() -> {
+            // Goals added to a speculation start where its last plan ends, which the thread has already computed
+            Set<String> state = startGoal == null ? init : finalStates.get(startGoal);
+
+            for (int i = 0; i < newGoals.size(); i++) {
+                JSONObject response = null;
+
+                // Once a goal can't be planned, the state in which the next one starts is unknown
+                if (state != null && !deadline.isCancelled()) {
+                    try {
+                        response = this.planner.solve(domain, problemWriter.apply(state, newGoals.get(i)), deadline);
+                    } catch (RuntimeException e) {
+                        response = null;
+                    }
+                }
+
+                if (response != null && response.optString("status").equals("ok")) {
+                    state = this.planCache.simulate(domain, state, response);
+                } else {
+                    response = null;
+                    state = null;
+                }
+
+                // The state is stored before the plan is available, so it is known once the plan is taken
+                if (state != null) {
+                    finalStates.put(newGoals.get(i), state);
+                }
+
+                futures.get(i).complete(response);
+            }
+        });
+
+        return newGoals.size();
+    }
+
+    /**
+     * Method that returns the speculative plan of a goal, removing it. If the plan
+     * is still being computed, it waits for it until the deadline expires. The plan
+     * is only returned if it is valid for the real problem.
+     *
+     * @param goal     Goal predicate.
+     * @param domain   Content of the domain file.
+     * @param problem  Real problem of the goal.
+     * @param deadline Deadline of the agent's call to the planner.
+     * @return Returns the planner's response or null if there's no valid
+     * speculative plan for the goal.
+     */
+    public JSONObject take(String goal, String domain, PDDLProblem problem, PlanningDeadline deadline) {
+        CompletableFuture<JSONObject> future;
+        Map<String, Set<String>> finalStates;
+
+        synchronized (this) {
+            future = this.speculations.remove(goal);
+            finalStates = this.finalStates;
+
+            // The goals before the taken one have been skipped, so their plans are discarded
+            int index = this.pendingGoals.indexOf(goal);
+
+            if (index >= 0) {
+                List<String> takenGoals = this.pendingGoals.subList(0, index + 1);
+                takenGoals.forEach(this.speculations::remove);
+                takenGoals.clear();
+            }
+        }
+
+        if (future == null) {
+            return null;
+        }
+
+        JSONObject response = null;
+
+        // A speculative plan that is still being computed was started before the call the
+        // agent would make now, so it is worth waiting for it until the deadline expires
+        try {
+            long remainingMillis = deadline.remainingMillis();
+            response = remainingMillis == Long.MAX_VALUE ? future.get()
+                    : future.get(remainingMillis, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException | TimeoutException e) {
+            response = null;
+        }
+
+        boolean valid = response != null && this.planCache.isValid(domain, problem, response);
+
+        // The remaining plans start from the state predicted at the end of this one
+        synchronized (this) {
+            if (finalStates == this.finalStates) {
+                this.pendingInit = response != null ? finalStates.get(goal) : null;
+                this.followed = valid;
+            }
+        }
+
+        return valid ? response : null;
+    }
+
+    /**
+     * Method that checks whether a list of goals continues the current
+     * speculation, that is, whether its remaining goals are the first ones
+     * of the list, the agent is executing the last speculative plan taken and
+     * it predicts the state from which they are being planned.
+     *
+     * @param init  Atoms predicted to hold when the first goal is set.
+     * @param goals Goal predicates, in the order in which they will be set.
+     * @return Returns true if the remaining speculative plans can be kept.
+     */
+    private boolean isContinuedBy(Set<String> init, List<String> goals) {
+        return this.deadline != null && !this.deadline.isCancelled() && !this.pendingGoals.isEmpty()
+                && goals.size() >= this.pendingGoals.size()
+                && goals.subList(0, this.pendingGoals.size()).equals(this.pendingGoals)
+                && this.followed && init.equals(this.pendingInit);
+    }
+
+    /**
+     * Method that cancels the plans that are still being computed and discards
+     * all the speculative plans.
+     */
+    public synchronized void cancel() {
+        if (this.deadline != null) {
+            this.deadline.cancel();
+        }
+
+        this.speculations.values().forEach(future -> future.complete(null));
+        this.speculations.clear();
+        this.pendingGoals.clear();
+        this.pendingInit = null;
+        this.followed = false;
+    }
+
+    /**
+     * Method that cancels every speculative plan and stops the background thread.
+     */
+    public void close() {
+        this.cancel();
+        this.executor.shutdownNow();
+    }
+}
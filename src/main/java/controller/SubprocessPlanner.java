@@ -0,0 +1,250 @@
+/*
+ * SubprocessPlanner.java
+ *
+ * Copyright (C) 2020 Vladislav Nikolov Vasilev
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see https://www.gnu.org/licenses/gpl-3.0.html.
+ */
+
+/**
+ * Package that contains the planning agent along with its data structures.
+ */
+package controller;
+
+import kong.unirest.json.JSONArray;
+import kong.unirest.json.JSONObject;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Planner that runs an external planner (for example Fast Downward) as a
+ * local subprocess. The domain and the problem are written to a temporary
+ * directory and the command is run replacing the following placeholders
+ * in its arguments:
+ * <ul>
+ *     <li>{domain}: path of the domain file.</li>
+ *     <li>{problem}: path of the problem file.</li>
+ *     <li>{plan}: path of the file in which the plan has to be written.</li>
+ * </ul>
+ * The plan is read from the plan file or, if it doesn't exist, from the
+ * standard output of the process. Each step must be written as an action
+ * instance between parentheses, for example "(move-up p c_1_2 c_1_1)". The
+ * process is killed if the deadline expires or the call is cancelled.
+ *
+ * @author Vladislav Nikolov Vasilev
+ */
+public class SubprocessPlanner implements Planner {
+    private List<String> command;
+
+    /**
+     * Class constructor.
+     *
+     * @param command Command (and its arguments) used to run the planner.
+     */
+    public SubprocessPlanner(List<String> command) {
+        if (command == null || command.isEmpty()) {
+            throw new PlannerException("The subprocess planner needs a command to run");
+        }
+
+        this.command = command;
+    }
+
+    public List<String> getCommand() {
+        return this.command;
+    }
+
+    @Override
+    public String getName() {
+        return String.format("subprocess(%s)", this.command.get(0));
+    }
+
+    @Override
+    public JSONObject solve(String domain, String problem, PlanningDeadline deadline) throws PlannerException {
+        deadline.check();
+
+        Path workingDirectory = null;
+
+        try {
+            workingDirectory = Files.createTempDirectory("gvgai-pddl-planner");
+            Path domainFile = workingDirectory.resolve("domain.pddl");
+            Path problemFile = workingDirectory.resolve("problem.pddl");
+            Path planFile = workingDirectory.resolve("plan.txt");
+            Path outputFile = workingDirectory.resolve("output.txt");
+
+            Files.write(domainFile, domain.getBytes(StandardCharsets.UTF_8));
+            Files.write(problemFile, problem.getBytes(StandardCharsets.UTF_8));
+
+            // Replace placeholders in the command
+            List<String> processCommand = new ArrayList<>();
+
+            for (String argument : this.command) {
+                processCommand.add(argument
+                        .replace("{domain}", domainFile.toString())
+                        .replace("{problem}", problemFile.toString())
+                        .replace("{plan}", planFile.toString()));
+            }
+
+            Process process = new ProcessBuilder(processCommand)
+                    .directory(workingDirectory.toFile())
+                    .redirectErrorStream(true)
+                    .redirectOutput(outputFile.toFile())
+                    .start();
+
+            deadline.onCancel(process::destroyForcibly);
+
+            boolean finished;
+
+            if (deadline.remainingMillis() == Long.MAX_VALUE) {
+                process.waitFor();
+                finished = true;
+            } else {
+                finished = process.waitFor(deadline.remainingMillis(), TimeUnit.MILLISECONDS);
+            }
+
+            if (!finished || deadline.isCancelled()) {
+                process.destroyForcibly();
+                deadline.check();
+                throw new PlannerTimeoutException("The planner couldn't find a plan before the deadline");
+            }
+
+            String output = new String(Files.readAllBytes(outputFile), StandardCharsets.UTF_8);
+            List<String> steps;
+
+            if (Files.exists(planFile)) {
+                steps = SubprocessPlanner.readSteps(new String(Files.readAllBytes(planFile), StandardCharsets.UTF_8));
+            } else {
+                steps = SubprocessPlanner.readSteps(output);
+
+                if (steps.isEmpty() && process.exitValue() != 0) {
+                    return SubprocessPlanner.createErrorResponse(output);
+                }
+            }
+
+            return SubprocessPlanner.createResponse(PDDLParser.parseDomain(domain), steps);
+        } catch (IOException e) {
+            throw new PlannerException(String.format("Couldn't run the planner %s: %s", this.command.get(0), e));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new PlannerTimeoutException("The call to the planner has been interrupted");
+        } finally {
+            SubprocessPlanner.deleteDirectory(workingDirectory);
+        }
+    }
+
+    /**
+     * Method that reads the steps of a plan from a text. Comments (which start
+     * with ';') are ignored, as well as any text outside the parentheses (for
+     * example timestamps or costs).
+     *
+     * @param text Text that contains the plan.
+     * @return Returns the list of action instances.
+     */
+    static List<String> readSteps(String text) {
+        List<String> steps = new ArrayList<>();
+
+        for (String line : text.split("\n")) {
+            int commentStart = line.indexOf(';');
+            String content = commentStart >= 0 ? line.substring(0, commentStart) : line;
+            int start = content.indexOf('('), end = content.lastIndexOf(')');
+
+            if (start >= 0 && end > start) {
+                steps.add(content.substring(start, end + 1).trim().replaceAll("\\s+", " ").toLowerCase());
+            }
+        }
+
+        return steps;
+    }
+
+    /**
+     * Method that creates a response in the format used by the online solver.
+     * The description of each step is obtained by instantiating the corresponding
+     * action schema of the domain.
+     *
+     * @param domain Parsed domain.
+     * @param steps  List of action instances.
+     * @return Returns the response.
+     * @throws PlannerException Thrown when some step doesn't belong to the domain.
+     */
+    private static JSONObject createResponse(PDDLDomain domain, List<String> steps) throws PlannerException {
+        JSONArray plan = new JSONArray();
+
+        for (String step : steps) {
+            List<String> tokens = PDDLGrounder.splitAtom(step);
+            PDDLActionSchema schema = domain.getActions().get(tokens.get(0));
+
+            if (schema == null || schema.getParameters().size() != tokens.size() - 1) {
+                throw new PlannerException(String.format("The plan contains an unknown action: %s", step));
+            }
+
+            JSONObject action = new JSONObject();
+            action.put("name", step);
+            action.put("action", schema.describe(tokens.subList(1, tokens.size())));
+            plan.put(action);
+        }
+
+        JSONObject result = new JSONObject();
+        result.put("plan", plan);
+
+        JSONObject response = new JSONObject();
+        response.put("status", "ok");
+        response.put("result", result);
+
+        return response;
+    }
+
+    /**
+     * Method that creates an error response containing the output of the planner.
+     *
+     * @param output Output of the planner.
+     * @return Returns the response.
+     */
+    private static JSONObject createErrorResponse(String output) {
+        JSONObject result = new JSONObject();
+        result.put("output", output);
+
+        JSONObject response = new JSONObject();
+        response.put("status", "error");
+        response.put("result", result);
+
+        return response;
+    }
+
+    /**
+     * Method that deletes a directory recursively.
+     *
+     * @param directory Directory to be deleted. If it is null, nothing is done.
+     */
+    private static void deleteDirectory(Path directory) {
+        if (directory == null) {
+            return;
+        }
+
+        try (Stream<Path> paths = Files.walk(directory)) {
+            paths.sorted(Comparator.reverseOrder())
+                    .map(Path::toFile)
+                    .forEach(File::delete);
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+}
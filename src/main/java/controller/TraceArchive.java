@@ -0,0 +1,268 @@
+/*
+ * TraceArchive.java
+ *
+ * Copyright (C) 2020 Vladislav Nikolov Vasilev
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see https://www.gnu.org/licenses/gpl-3.0.html.
+ */
+
+/**
+ * Package that contains the planning agent along with its data structures.
+ */
+package controller;
+
+import kong.unirest.json.JSONException;
+import kong.unirest.json.JSONObject;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Class that reads the archives written by a {@link TraceSink}. The archive is
+ * a sequence of gzip members, each of them with a batch of traces, and the
+ * index has a JSON object per line with the name of a trace, the position
+ * and compressed size of its member, and the position and length of the trace
+ * within the decompressed member. The log of the game is split into several
+ * traces with the same name.
+ *
+ * @author Vladislav Nikolov Vasilev
+ */
+public class TraceArchive {
+    /**
+     * Name of the archive within the output directory.
+     */
+    public static final String ARCHIVE_FILE = "trace.gz";
+
+    /**
+     * Name of the index within the output directory.
+     */
+    public static final String INDEX_FILE = "trace.index.jsonl";
+
+    /**
+     * Name of the traces with the log records.
+     */
+    public static final String LOG_NAME = "game_execution.log";
+
+    private final Path directory;
+    private final List<Entry> entries;
+
+    /**
+     * Trace stored in the archive.
+     */
+    public static class Entry {
+        private final String name;
+        private final long offset;
+        private final int size;
+        private final int start;
+        private final int length;
+
+        /**
+         * Class constructor.
+         *
+         * @param json Line of the index.
+         */
+        public Entry(JSONObject json) {
+            this.name = json.getString("name");
+            this.offset = json.getLong("offset");
+            this.size = json.getInt("size");
+            this.start = json.getInt("start");
+            this.length = json.getInt("length");
+        }
+
+        public String getName() {
+            return this.name;
+        }
+
+        public int getLength() {
+            return this.length;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%s (%d bytes)", this.name, this.length);
+        }
+    }
+
+    /**
+     * Class constructor. Reads the index of an archive. A line that hasn't
+     * been completely written, because the game was stopped, is ignored.
+     *
+     * @param directory Directory in which the archive has been written.
+     * @throws IOException Thrown when the index can't be read.
+     */
+    public TraceArchive(Path directory) throws IOException {
+        this.directory = directory;
+        this.entries = new ArrayList<>();
+
+        for (String line : Files.readAllLines(directory.resolve(TraceArchive.INDEX_FILE), StandardCharsets.UTF_8)) {
+            try {
+                this.entries.add(new Entry(new JSONObject(line)));
+            } catch (JSONException e) {
+                // Incomplete line
+            }
+        }
+    }
+
+    public List<Entry> getEntries() {
+        return this.entries;
+    }
+
+    /**
+     * Method that reads the content of a trace.
+     *
+     * @param entry Trace of the index.
+     * @return Returns the content of the trace.
+     * @throws IOException Thrown when the archive can't be read.
+     */
+    public String read(Entry entry) throws IOException {
+        return new String(this.readMember(entry), entry.start, entry.length, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Method that reads the content of every trace with the given name. The
+     * contents are concatenated in the order in which they were written.
+     *
+     * @param name Name of the traces.
+     * @return Returns the content or null if there isn't any trace with the name.
+     * @throws IOException Thrown when the archive can't be read.
+     */
+    public String read(String name) throws IOException {
+        StringBuilder builder = null;
+
+        for (Entry entry : this.entries) {
+            if (entry.name.equals(name)) {
+                builder = builder == null ? new StringBuilder() : builder;
+                builder.append(this.read(entry));
+            }
+        }
+
+        return builder != null ? builder.toString() : null;
+    }
+
+    /**
+     * Method that writes every trace of the archive as a file in a directory,
+     * with the same layout used by the agent before the traces were archived
+     * (the log, and the problems and plans directories).
+     *
+     * @param target Directory in which the files are written.
+     * @throws IOException Thrown when the archive can't be read or the files
+     *                     can't be written.
+     */
+    public void extract(Path target) throws IOException {
+        Set<Path> extractedFiles = new HashSet<>();
+        byte[] member = null;
+        long memberOffset = -1;
+
+        for (Entry entry : this.entries) {
+            Path path = target.resolve(entry.name).normalize();
+
+            if (!path.startsWith(target.normalize())) {
+                throw new IOException(String.format("Invalid trace name: %s", entry.name));
+            }
+
+            // Consecutive traces usually share their member, so it is only decompressed once
+            if (entry.offset != memberOffset) {
+                member = this.readMember(entry);
+                memberOffset = entry.offset;
+            }
+
+            if (path.getParent() != null) {
+                Files.createDirectories(path.getParent());
+            }
+
+            // The log is split into several traces, which are appended to the same file
+            StandardOpenOption mode = extractedFiles.add(path) ? StandardOpenOption.TRUNCATE_EXISTING
+                    : StandardOpenOption.APPEND;
+
+            try (OutputStream output = Files.newOutputStream(path, StandardOpenOption.CREATE,
+                    StandardOpenOption.WRITE, mode)) {
+                output.write(member, entry.start, entry.length);
+            }
+        }
+    }
+
+    /**
+     * Method that reads and decompresses the member that contains a trace.
+     *
+     * @param entry Trace of the index.
+     * @return Returns the decompressed member.
+     * @throws IOException Thrown when the archive can't be read.
+     */
+    private byte[] readMember(Entry entry) throws IOException {
+        byte[] compressed = new byte[entry.size];
+
+        try (RandomAccessFile file = new RandomAccessFile(this.directory.resolve(TraceArchive.ARCHIVE_FILE).toFile(),
+                "r")) {
+            file.seek(entry.offset);
+            file.readFully(compressed);
+        }
+
+        try (InputStream input = new GZIPInputStream(new ByteArrayInputStream(compressed))) {
+            return TraceArchive.readAll(input);
+        }
+    }
+
+    /**
+     * Method that reads an input stream until its end.
+     *
+     * @param input Input stream.
+     * @return Returns the bytes read.
+     * @throws IOException Thrown when the stream can't be read.
+     */
+    private static byte[] readAll(InputStream input) throws IOException {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        byte[] buffer = new byte[8192];
+
+        for (int read = input.read(buffer); read != -1; read = input.read(buffer)) {
+            output.write(buffer, 0, read);
+        }
+
+        return output.toByteArray();
+    }
+
+    /**
+     * Method that extracts the archive of an output directory.
+     *
+     * @param args Directory in which the archive has been written and directory
+     *             in which the files are extracted (by default, the first one).
+     * @throws IOException Thrown when the archive can't be extracted.
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length < 1) {
+            System.err.println("Usage: TraceArchive <output directory> [target directory]");
+            System.exit(1);
+        }
+
+        Path directory = Paths.get(args[0]);
+        Path target = args.length > 1 ? Paths.get(args[1]) : directory;
+        TraceArchive archive = new TraceArchive(directory);
+        archive.extract(target);
+
+        System.out.println(String.format("Extracted %d traces to %s", archive.getEntries().size(), target));
+    }
+}
@@ -0,0 +1,344 @@
+/*
+ * TraceSink.java
+ *
+ * Copyright (C) 2020 Vladislav Nikolov Vasilev
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see https://www.gnu.org/licenses/gpl-3.0.html.
+ */
+
+/**
+ * Package that contains the planning agent along with its data structures.
+ */
+package controller;
+
+import kong.unirest.json.JSONObject;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Formatter;
+import java.util.logging.Handler;
+import java.util.logging.Level;
+import java.util.logging.LogRecord;
+import java.util.logging.SimpleFormatter;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Class that writes runtime traces (problems, plans and log records) to disk
+ * in a background thread, so the agent doesn't have to wait for the file
+ * system while it is playing. The traces are put in a bounded queue, which
+ * never blocks the agent: if the queue is full, the trace is dropped and
+ * counted. The background thread takes the traces in batches and appends
+ * each batch as a gzip member to a single archive, along with a line per
+ * trace in an index (see {@link TraceArchive}). The archive can be read while
+ * it is being written and, as the members are complete gzip streams, it can
+ * also be decompressed with gzip. Traces are written in the same order in
+ * which they are submitted.
+ *
+ * @author Vladislav Nikolov Vasilev
+ */
+public class TraceSink {
+    /**
+     * Default number of traces that can be waiting to be written.
+     */
+    public static final int DEFAULT_CAPACITY = 4096;
+
+    // Trace that tells the background thread to stop
+    private static final Trace END = new Trace(null, null, null);
+
+    private final BlockingQueue<Trace> queue;
+    private final Thread thread;
+    private final Formatter formatter;
+    private final OutputStream archive;
+    private final Writer index;
+    private long archiveSize;
+    private int droppedTraces;
+    private boolean closed;
+
+    /**
+     * Trace waiting to be written. Log records are formatted by the
+     * background thread.
+     */
+    private static class Trace {
+        private final String name;
+        private final String content;
+        private final LogRecord record;
+
+        public Trace(String name, String content, LogRecord record) {
+            this.name = name;
+            this.content = content;
+            this.record = record;
+        }
+    }
+
+    /**
+     * Handler that sends the records of a logger to the trace sink.
+     */
+    private class LogHandler extends Handler {
+        @Override
+        public void publish(LogRecord record) {
+            if (this.isLoggable(record)) {
+                // The caller is found in the stack, so it can't be done by the background thread
+                record.getSourceClassName();
+                TraceSink.this.submit(new Trace(TraceArchive.LOG_NAME, null, record));
+            }
+        }
+
+        @Override
+        public void flush() {
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+
+    /**
+     * Class constructor. Creates the archive and the index in the given
+     * directory, replacing the ones of a previous game.
+     *
+     * @param directory Directory in which the archive is written.
+     * @throws IOException Thrown when the archive can't be created.
+     */
+    public TraceSink(Path directory) throws IOException {
+        this(directory, TraceSink.DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Class constructor. Creates the archive and the index in the given
+     * directory, replacing the ones of a previous game.
+     *
+     * @param directory Directory in which the archive is written.
+     * @param capacity  Number of traces that can be waiting to be written.
+     * @throws IOException Thrown when the archive can't be created.
+     */
+    public TraceSink(Path directory, int capacity) throws IOException {
+        Files.createDirectories(directory);
+
+        this.queue = new ArrayBlockingQueue<>(capacity);
+        this.formatter = new SimpleFormatter();
+        this.archive = new BufferedOutputStream(Files.newOutputStream(directory.resolve(TraceArchive.ARCHIVE_FILE)));
+        this.index = Files.newBufferedWriter(directory.resolve(TraceArchive.INDEX_FILE), StandardCharsets.UTF_8);
+        this.thread = new Thread(this::writeTraces, "trace-sink");
+        this.thread.setDaemon(true);
+        this.thread.start();
+    }
+
+    public synchronized int getDroppedTraces() {
+        return this.droppedTraces;
+    }
+
+    /**
+     * Method that returns a handler that writes the records of a logger into
+     * the archive, formatted with a {@link SimpleFormatter}.
+     *
+     * @return Returns a new handler.
+     */
+    public Handler createLogHandler() {
+        return new LogHandler();
+    }
+
+    /**
+     * Method that writes a file into the archive asynchronously.
+     *
+     * @param name    Name of the file within the archive.
+     * @param content Content of the file.
+     * @return Returns true if the file has been queued and false if it has been
+     * dropped because the queue is full or the sink is closed.
+     */
+    public boolean write(String name, String content) {
+        return this.submit(new Trace(name, content, null));
+    }
+
+    /**
+     * Method that waits until all the submitted traces have been written,
+     * stops the background thread and closes the archive. If some traces have
+     * been dropped, it is recorded in the log.
+     */
+    public void close() {
+        synchronized (this) {
+            if (this.closed) {
+                return;
+            }
+
+            this.closed = true;
+        }
+
+        try {
+            if (this.getDroppedTraces() > 0) {
+                LogRecord record = new LogRecord(Level.WARNING, String.format(
+                        "%d traces were dropped because the queue was full", this.getDroppedTraces()));
+                this.putWhileRunning(new Trace(TraceArchive.LOG_NAME, null, record));
+            }
+
+            this.putWhileRunning(TraceSink.END);
+            this.thread.join(TimeUnit.MINUTES.toMillis(1));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Method that puts a trace in the queue, waiting for free space as long as
+     * the background thread is running. If the thread has stopped because the
+     * archive can't be written, nothing would take the trace from the queue.
+     *
+     * @param trace Trace to be written.
+     * @throws InterruptedException Thrown when the current thread is interrupted.
+     */
+    private void putWhileRunning(Trace trace) throws InterruptedException {
+        while (this.thread.isAlive()) {
+            if (this.queue.offer(trace, 100, TimeUnit.MILLISECONDS)) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Method that puts a trace in the queue without blocking.
+     *
+     * @param trace Trace to be written.
+     * @return Returns true if the trace has been queued.
+     */
+    private boolean submit(Trace trace) {
+        synchronized (this) {
+            if (!this.closed && this.queue.offer(trace)) {
+                return true;
+            }
+
+            this.droppedTraces++;
+        }
+
+        return false;
+    }
+
+    /**
+     * Method run by the background thread, which writes the traces in batches
+     * until the sink is closed or the archive can't be written. If a batch
+     * fails for any other reason, it is lost, but the following ones are still
+     * written.
+     */
+    private void writeTraces() {
+        List<Trace> batch = new ArrayList<>();
+        boolean finished = false;
+
+        try {
+            while (!finished) {
+                batch.add(this.queue.take());
+                this.queue.drainTo(batch);
+
+                finished = batch.remove(TraceSink.END);
+
+                try {
+                    this.writeBatch(batch);
+                } catch (RuntimeException e) {
+                    e.printStackTrace();
+                }
+
+                batch.clear();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (IOException e) {
+            e.printStackTrace();
+        } finally {
+            try {
+                this.archive.close();
+                this.index.close();
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }
+    }
+
+    /**
+     * Method that appends a batch of traces to the archive as a single gzip
+     * member and adds them to the index. Consecutive log records are written
+     * as a single trace, and the traces that can't be formatted are skipped.
+     *
+     * @param batch Traces to be written.
+     * @throws IOException Thrown when the archive can't be written.
+     */
+    private void writeBatch(List<Trace> batch) throws IOException {
+        // The traces are encoded first, so a trace that can't be formatted doesn't stop the rest of the batch
+        List<String> names = new ArrayList<>();
+        List<ByteArrayOutputStream> contents = new ArrayList<>();
+        boolean previousLog = false;
+
+        for (Trace trace : batch) {
+            byte[] bytes;
+
+            try {
+                String content = trace.record != null ? this.formatter.format(trace.record) : trace.content;
+                bytes = content.getBytes(StandardCharsets.UTF_8);
+            } catch (RuntimeException e) {
+                e.printStackTrace();
+                continue;
+            }
+
+            if (trace.record == null || !previousLog) {
+                names.add(trace.name);
+                contents.add(new ByteArrayOutputStream());
+            }
+
+            contents.get(contents.size() - 1).write(bytes, 0, bytes.length);
+            previousLog = trace.record != null;
+        }
+
+        if (names.isEmpty()) {
+            return;
+        }
+
+        ByteArrayOutputStream member = new ByteArrayOutputStream();
+        List<JSONObject> entries = new ArrayList<>();
+        int uncompressedSize = 0;
+
+        try (GZIPOutputStream output = new GZIPOutputStream(member)) {
+            for (int i = 0; i < names.size(); i++) {
+                contents.get(i).writeTo(output);
+
+                JSONObject entry = new JSONObject();
+                entry.put("name", names.get(i));
+                entry.put("start", uncompressedSize);
+                entry.put("length", contents.get(i).size());
+                entries.add(entry);
+                uncompressedSize += contents.get(i).size();
+            }
+        }
+
+        this.archive.write(member.toByteArray());
+        this.archive.flush();
+
+        // The index is written after the archive, so every indexed trace can be read
+        for (JSONObject entry : entries) {
+            entry.put("offset", this.archiveSize);
+            entry.put("size", member.size());
+            this.index.write(entry.toString());
+            this.index.write('\n');
+        }
+
+        this.index.flush();
+        this.archiveSize += member.size();
+    }
+}
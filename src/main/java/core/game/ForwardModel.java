@@ -152,15 +152,7 @@ public class ForwardModel extends Game
 
                 spriteGroups[i].addSprite(spCopy.spriteID, spCopy);
 
-                String hidden = "False";
-                if (spCopy.hidden != null) {
-                    String[] split = spCopy.hidden.split(",");
-                    if (playerID > split.length - 1)
-                        hidden = split[split.length - 1];
-                    else
-                        hidden = split[playerID];
-                }
-                if(!Boolean.parseBoolean(hidden)) {
+                if(!isHidden(spCopy)) {
                     checkSpriteFeatures(spCopy, i);
                     updateObservation(spCopy);
                 }
@@ -651,11 +643,31 @@ public class ForwardModel extends Game
             if(spriteIt != null) while(spriteIt.hasNext())
             {
                 VGDLSprite sp = spriteIt.next();
-                updateObservation(sp);
+                //Hidden sprites are not observed, as in update().
+                if(!isHidden(sp))
+                    updateObservation(sp);
             }
         }
     }
 
+    /**
+     * Checks if a sprite is hidden for the player of this forward model.
+     * @param sprite sprite to check.
+     * @return true if the sprite is hidden.
+     */
+    private boolean isHidden(VGDLSprite sprite)
+    {
+        String hidden = "False";
+        if (sprite.hidden != null) {
+            String[] split = sprite.hidden.split(",");
+            if (playerID > split.length - 1)
+                hidden = split[split.length - 1];
+            else
+                hidden = split[playerID];
+        }
+        return Boolean.parseBoolean(hidden);
+    }
+
     /**
      * Creates a copy of this forward model.
      * @return the copy of this forward model.
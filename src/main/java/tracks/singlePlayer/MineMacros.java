@@ -0,0 +1,99 @@
+package tracks.singlePlayer;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import controller.MacroMiner;
+import controller.PDDLActionSchema;
+import controller.PDDLDomain;
+import controller.PDDLParser;
+
+import picocli.CommandLine;
+import picocli.CommandLine.Command;
+import picocli.CommandLine.Option;
+
+/**
+ * Mines macro operators from the plans saved by the planning agent (with --save)
+ * and appends them to a domain file.
+ */
+@Command(name = "GVGAI-PDDL-macros", description = "Mines macro operators from saved plans and appends them to a domain.",
+		 mixinStandardHelpOptions = true, version = "1.0")
+public class MineMacros {
+
+	@Option(names = {"-d", "--domain"}, description = "Domain file used to find the plans.", required = true)
+	private String domainFile;
+
+	@Option(names = {"-p", "--plans"}, description = "Directory which contains the saved plans (default: output/plans).")
+	private String plansDirectory = "output/plans";
+
+	@Option(names = {"-o", "--output"}, description = "File in which the domain with the macro operators is written (default: the domain file).")
+	private String outputFile;
+
+	@Option(names = {"-n", "--max-macros"}, description = "Maximum number of macro operators (default: 4).")
+	private int maxMacros = 4;
+
+	@Option(names = {"--max-length"}, description = "Maximum number of steps of a macro operator (default: 2).")
+	private int maxLength = MacroMiner.DEFAULT_MAX_LENGTH;
+
+	@Option(names = {"--min-support"}, description = "Minimum number of occurrences of a sequence of actions (default: 5).")
+	private int minSupport = MacroMiner.DEFAULT_MIN_SUPPORT;
+
+	@Option(names = {"--max-parameters"}, description = "Maximum number of parameters of a macro operator (default: 4).")
+	private int maxParameters = MacroMiner.DEFAULT_MAX_PARAMETERS;
+
+	public static void main(String[] args) throws IOException {
+		// Load commandline arguments
+		MineMacros mineMacros = new MineMacros();
+		CommandLine commandLine = new CommandLine(mineMacros);
+		commandLine.parseArgs(args);
+
+		// Display help or version information
+		if (commandLine.isUsageHelpRequested()) {
+			commandLine.usage(System.out);
+			return;
+		} else if (commandLine.isVersionHelpRequested()) {
+			commandLine.printVersionHelp(System.out);
+			return;
+		}
+
+		String domainText = new String(Files.readAllBytes(Paths.get(mineMacros.domainFile)));
+		PDDLDomain domain = PDDLParser.parseDomain(domainText);
+		MacroMiner miner = new MacroMiner(domain, mineMacros.maxLength, mineMacros.minSupport, mineMacros.maxParameters);
+
+		// Count the sequences of actions of every saved plan
+		List<Path> planFiles;
+
+		try (Stream<Path> paths = Files.list(Paths.get(mineMacros.plansDirectory))) {
+			planFiles = paths.filter(Files::isRegularFile).sorted().collect(Collectors.toList());
+		}
+
+		for (Path planFile : planFiles) {
+			miner.addPlan(MacroMiner.parsePlan(new String(Files.readAllBytes(planFile))));
+		}
+
+		List<PDDLActionSchema> macros = miner.mine(mineMacros.maxMacros);
+
+		if (macros.isEmpty()) {
+			System.out.println("No macro operators found in " + planFiles.size() + " plans");
+			return;
+		}
+
+		for (PDDLActionSchema macro : macros) {
+			System.out.println("Macro operator " + macro.getName() + " " + macro.getSteps() + " found "
+					+ miner.getSupport(macro.getName()) + " times");
+		}
+
+		// Check that the new domain can be read before writing it
+		String outputText = MacroMiner.appendMacros(domainText, macros);
+		PDDLParser.parseDomain(outputText);
+
+		String outputFile = mineMacros.outputFile != null ? mineMacros.outputFile : mineMacros.domainFile;
+		Files.write(Paths.get(outputFile), outputText.getBytes());
+		System.out.println(macros.size() + " macro operators written to " + outputFile);
+	}
+}
@@ -1,6 +1,13 @@
 package tracks.singlePlayer;
 
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Paths;
 import java.util.Random;
+import controller.AgentConfiguration;
+import controller.AgentStatistics;
+import controller.PlanLookahead;
+import controller.PlannerHttpClient;
 import controller.PlanningAgent;
 
 import picocli.CommandLine;
@@ -33,10 +40,85 @@ public class Test {
 	@Option(names = {"-s", "--save"}, description = "Save runtime information (problems, plans and log).")
 	private boolean saveOutput;
 
+	@Option(names = {"--output-dir"}, description = "Directory in which the runtime information is saved (default: output).")
+	private String outputDirectory = AgentConfiguration.DEFAULT_OUTPUT_DIRECTORY;
+
+	@Option(names = {"--seed"}, description = "Random seed of the game (default: a random one).")
+	private Integer seed;
+
+	@Option(names = {"--headless"}, description = "Play the game without showing it.")
+	private boolean headless;
+
+	@Option(names = {"--statistics"}, description = "JSON file in which the results of the game and the main statistics of the agent are written.")
+	private String statisticsFile;
+
+	@Option(names = {"--metrics"}, description = "File in which the latencies of each phase of the agent, the sizes of the problems and the lengths of the plans are written (CSV if it ends with .csv, JSON otherwise).")
+	private String metricsFile;
+
 	@Option(names = {"--localhost"}, description = "Call planner running on localhost.")
 	private boolean localHost;
 
-    public static void main(String[] args) {
+	@Option(names = {"--no-sessions"}, description = "Send the whole problems to the planner running on localhost instead of the changes since the previous call.")
+	private boolean noProblemSessions;
+
+	@Option(names = {"--connect-timeout"}, description = "Maximum time in milliseconds to connect to the HTTP planner (default: 5000).")
+	private int httpConnectTimeout = PlannerHttpClient.DEFAULT_CONNECT_TIMEOUT;
+
+	@Option(names = {"--read-timeout"}, description = "Maximum time in milliseconds without receiving data from the HTTP planner (0 only uses the turn's deadline).")
+	private int httpReadTimeout = PlannerHttpClient.DEFAULT_READ_TIMEOUT;
+
+	@Option(names = {"--http-retries"}, description = "Number of times a failed call to the HTTP planner is retried (default: 2).")
+	private int httpRetries = PlannerHttpClient.DEFAULT_MAX_RETRIES;
+
+	@Option(names = {"--compress-requests"}, description = "Compress the problems sent to the HTTP planner with gzip.")
+	private boolean compressRequests;
+
+	@Option(names = {"--no-http-fallback"}, description = "Don't solve the problems with the embedded planner when the HTTP planner can't be called.")
+	private boolean noHttpFallback;
+
+	@Option(names = {"-p", "--planner"}, description = "Planner used by the agent (http, subprocess, embedded or portfolio).")
+	private String planner;
+
+	@Option(names = {"--plan-cache"}, description = "Store plans on disk and reuse them between executions.")
+	private boolean persistentPlanCache;
+
+	@Option(names = {"--speculate"}, description = "Number of upcoming goals planned in the background (0 disables it).")
+	private int speculativeGoals;
+
+	@Option(names = {"--parallel-goals"}, description = "Number of goals with the same priority planned concurrently to choose the one with the shortest plan (0 disables it).")
+	private int parallelGoals;
+
+	@Option(names = {"--goal-order"}, description = "Order the goals with the same priority by the distance the avatar has to walk (nearest or 2-opt).")
+	private String goalOrdering;
+
+	@Option(names = {"--no-pruning"}, description = "Send the whole game state to the planner instead of removing the cells that can't be used.")
+	private boolean noProblemPruning;
+
+	@Option(names = {"--hierarchical"}, description = "Send only an abstract problem to the planner and find the movements between cells natively.")
+	private boolean hierarchical;
+
+	@Option(names = {"--no-repair"}, description = "Always replan after a discrepancy instead of repairing the plan.")
+	private boolean noPlanRepair;
+
+	@Option(names = {"--no-validation"}, description = "Only check the next action of the plan instead of simulating the rest of it every turn.")
+	private boolean noPlanValidation;
+
+	@Option(names = {"--lookahead"}, description = "Number of upcoming actions executed with the forward model every turn to predict failures caused by NPCs (0 disables it).")
+	private int lookaheadHorizon = 0;
+
+	@Option(names = {"--lookahead-samples"}, description = "Number of simulations of the upcoming actions, each with a different random seed (default: 3).")
+	private int lookaheadSamples = PlanLookahead.DEFAULT_SAMPLES;
+
+	@Option(names = {"--anytime"}, description = "Call the planner in the background, executing fallback actions until the plan is ready.")
+	private boolean anytime;
+
+	@Option(names = {"--act-fraction"}, description = "Fraction of the turn's time the agent can use in anytime mode (default: 0.5).")
+	private double actTimeFraction = 0.5;
+
+	@Option(names = {"--fallback"}, description = "Policy used while waiting for the planner in anytime mode (nil or safe).")
+	private String fallbackPolicy;
+
+    public static void main(String[] args) throws IOException {
     	// Load commandline arguments
     	Test test = new Test();
     	CommandLine commandLine = new CommandLine(test);
@@ -56,17 +138,14 @@ public class Test {
     	String[][] games = Utils.readGames(spGamesCollection);
 
     	// Game settings
-		boolean visuals = true;
-		int seed = new Random().nextInt();
+		boolean visuals = !test.headless;
+		int seed = test.seed != null ? test.seed : new Random().nextInt();
 
 		// Game and level to play
 		String gameName = games[test.gameIdx][1];
 		String game = games[test.gameIdx][0];
 		String level = game.replace(gameName, gameName + "_lvl" + test.levelIdx);
 
-		// Controller
-		String controller = "controller.PlanningAgent";
-
 		// Find out if the game has to be played by a human or by the agent
 		boolean humanPlayer = test.configurationFile == null;
 
@@ -74,12 +153,42 @@ public class Test {
 		if (humanPlayer) {
 			ArcadeMachine.playOneGame(game, level, null, seed);
 		} else {
-			PlanningAgent.setGameConfigFile(test.configurationFile);
-			PlanningAgent.setDebugMode(test.debugMode);
-			PlanningAgent.setSaveInformation(test.saveOutput);
-			PlanningAgent.setLocalHost(test.localHost);
-			ArcadeMachine.runOneGame(game, level, visuals, controller, null, seed, 0);
-			PlanningAgent.displayStats();
+			AgentConfiguration configuration = new AgentConfiguration();
+			configuration.setGameConfigFile(test.configurationFile);
+			configuration.setDebugMode(test.debugMode);
+			configuration.setSaveInformation(test.saveOutput);
+			configuration.setOutputDirectory(test.outputDirectory);
+			configuration.setLocalHost(test.localHost);
+			configuration.setPlanner(test.planner);
+			configuration.setHttpConnectTimeout(test.httpConnectTimeout);
+			configuration.setHttpReadTimeout(test.httpReadTimeout);
+			configuration.setHttpRetries(test.httpRetries);
+			configuration.setCompressRequests(test.compressRequests);
+			configuration.setHttpFallback(!test.noHttpFallback);
+			configuration.setProblemSessions(!test.noProblemSessions);
+			configuration.setPersistentPlanCache(test.persistentPlanCache);
+			configuration.setSpeculativeGoals(test.speculativeGoals);
+			configuration.setParallelGoals(test.parallelGoals);
+			configuration.setGoalOrdering(test.goalOrdering);
+			configuration.setPlanRepair(!test.noPlanRepair);
+			configuration.setPlanValidation(!test.noPlanValidation);
+			configuration.setLookaheadHorizon(test.lookaheadHorizon);
+			configuration.setLookaheadSamples(test.lookaheadSamples);
+			configuration.setProblemPruning(!test.noProblemPruning);
+			configuration.setHierarchical(test.hierarchical);
+			configuration.setAnytime(test.anytime);
+			configuration.setActTimeFraction(test.actTimeFraction);
+			configuration.setFallbackPolicy(test.fallbackPolicy);
+			AgentStatistics statistics = PlanningAgent.runGame(game, level, visuals, seed, configuration);
+			PlanningAgent.displayStats(statistics, configuration);
+
+			if (test.statisticsFile != null) {
+				Files.write(Paths.get(test.statisticsFile), statistics.toJSON().toString().getBytes());
+			}
+
+			if (test.metricsFile != null) {
+				statistics.getMetrics().write(Paths.get(test.metricsFile));
+			}
 		}
     }
 }
@@ -4,8 +4,11 @@ import org.junit.Before;
 import org.junit.Test;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
 
+import java.util.Arrays;
 import java.util.LinkedList;
 
 public class TestAgenda {
@@ -139,4 +142,66 @@ public class TestAgenda {
         assertEquals(this.agenda.getReachedGoals().size(), 1);
         assertEquals(this.agenda.getPreemptedGoals().size(), 0);
     }
-}
\ No newline at end of file
+
+    @Test
+    public void testGetUpcomingGoals() {
+        this.agenda.setCurrentGoal();
+        this.agenda.updateReachedGoals();
+
+        this.agenda.setCurrentGoal();
+        this.agenda.haltCurrentGoal();
+
+        assertEquals(this.agenda.getUpcomingGoals(3), Arrays.asList(this.goal3, this.goal2));
+        assertEquals(this.agenda.getUpcomingGoals(1), Arrays.asList(this.goal3));
+        assertEquals(this.agenda.getPendingGoals().size(), 1);
+        assertEquals(this.agenda.getPreemptedGoals().size(), 1);
+    }
+
+    @Test
+    public void testSetCurrentGoal() {
+        assertTrue(this.agenda.setCurrentGoal(this.goal3));
+        assertEquals(this.agenda.getCurrentGoal(), this.goal3);
+        assertEquals(this.agenda.getPendingGoals().size(), 2);
+
+        this.agenda.haltCurrentGoal();
+        assertTrue(this.agenda.setCurrentGoal(this.goal3));
+        assertTrue(this.agenda.getPreemptedGoals().isEmpty());
+        assertFalse(this.agenda.setCurrentGoal(this.goal3));
+    }
+
+    @Test
+    public void testPreemptedGoalsOrder() {
+        this.agenda.setCurrentGoal();
+        this.agenda.updateReachedGoals();
+
+        // Goals with the same priority keep the order in which they were halted
+        this.agenda.setCurrentGoal(this.goal3);
+        this.agenda.haltCurrentGoal();
+        this.agenda.setCurrentGoal(this.goal2);
+        this.agenda.haltCurrentGoal();
+
+        assertEquals(this.agenda.getPreemptedGoals(), Arrays.asList(this.goal3, this.goal2));
+
+        this.agenda.setReachedFromPreempted(this.goal3);
+
+        assertEquals(this.agenda.getPreemptedGoals(), Arrays.asList(this.goal2));
+        assertNull(this.agenda.containedPredicateInPreemptedGoals(this.goal3.getGoalPredicate()));
+        assertEquals(this.agenda.containedPredicateInPreemptedGoals(this.goal2.getGoalPredicate()), this.goal2);
+    }
+
+    @Test
+    public void testReorderPendingGoals() {
+        this.agenda.reorderPendingGoals(Arrays.asList(this.goal1, this.goal3, this.goal2));
+
+        assertEquals(this.agenda.getPendingGoals(), Arrays.asList(this.goal1, this.goal3, this.goal2));
+        assertTrue(this.agenda.setCurrentGoal());
+        assertEquals(this.agenda.getCurrentGoal(), this.goal1);
+        assertTrue(this.agenda.setCurrentGoal());
+        assertEquals(this.agenda.getCurrentGoal(), this.goal3);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testReorderOtherGoals() {
+        this.agenda.reorderPendingGoals(Arrays.asList(this.goal1, this.goal2));
+    }
+}
@@ -0,0 +1,69 @@
+package controller;
+
+import kong.unirest.json.JSONObject;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+public class TestAgentMetrics {
+    private static AgentMetrics createMetrics() {
+        AgentMetrics metrics = new AgentMetrics();
+        metrics.recordLatency(AgentMetrics.PLANNER_CALL, 2000000);
+        metrics.recordLatency(AgentMetrics.PLANNER_CALL, 4000000);
+        metrics.record(AgentMetrics.PLAN_LENGTH, 12);
+
+        return metrics;
+    }
+
+    @Test
+    public void testRecord() {
+        AgentMetrics metrics = createMetrics();
+
+        assertEquals(metrics.getNames(), Arrays.asList(AgentMetrics.PLAN_LENGTH, AgentMetrics.PLANNER_CALL));
+        assertEquals(metrics.getUnit(AgentMetrics.PLANNER_CALL), "us");
+        assertEquals(metrics.getUnit(AgentMetrics.PLAN_LENGTH), "count");
+        assertEquals(metrics.getHistogram(AgentMetrics.PLANNER_CALL).getCount(), 2);
+        assertEquals(metrics.getHistogram(AgentMetrics.PLANNER_CALL).getMean(), 3000, 1e-9);
+        assertNull(metrics.getHistogram(AgentMetrics.HTTP_REQUEST));
+    }
+
+    @Test
+    public void testAddAndJSON() {
+        AgentMetrics metrics = createMetrics();
+        metrics.add(createMetrics());
+
+        JSONObject json = metrics.toJSON();
+        assertEquals(json.getJSONObject(AgentMetrics.PLANNER_CALL).getString("unit"), "us");
+
+        AgentMetrics copy = AgentMetrics.fromJSON(json);
+        assertEquals(copy.getUnit(AgentMetrics.PLANNER_CALL), "us");
+        assertEquals(copy.getHistogram(AgentMetrics.PLANNER_CALL).getCount(), 4);
+        assertEquals(copy.getHistogram(AgentMetrics.PLAN_LENGTH).getSum(), 24);
+    }
+
+    @Test
+    public void testWrite() throws IOException {
+        Path directory = Files.createTempDirectory("metrics");
+        AgentMetrics metrics = createMetrics();
+        metrics.write(directory.resolve("metrics.csv"));
+        metrics.write(directory.resolve("metrics.json"));
+
+        List<String> lines = Files.readAllLines(directory.resolve("metrics.csv"));
+        assertEquals(lines.size(), 3);
+        assertEquals(lines.get(0), AgentMetrics.CSV_HEADER);
+        assertEquals(lines.get(1), "plan-length,count,1,12,12.00,12,12,12,12");
+        // The percentiles are the highest values of their buckets, so the median isn't exactly 2000
+        assertEquals(lines.get(2), "planner-call,us,2,2000,3000.00,2015,4000,4000,4000");
+
+        JSONObject json = new JSONObject(new String(Files.readAllBytes(directory.resolve("metrics.json"))));
+        assertEquals(AgentMetrics.fromJSON(json).getHistogram(AgentMetrics.PLAN_LENGTH).getMax(), 12);
+    }
+}
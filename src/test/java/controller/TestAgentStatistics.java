@@ -0,0 +1,77 @@
+package controller;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+public class TestAgentStatistics {
+    @Test
+    public void testRecordEvents() {
+        AgentStatistics statistics = new AgentStatistics();
+        statistics.recordDiscrepancy(false);
+        statistics.recordDiscrepancy(true);
+        statistics.recordValidation(1000, false);
+        statistics.recordValidation(500, true);
+        statistics.recordTurnWaitingPlanner(1);
+        statistics.recordTurnWaitingPlanner(2);
+        statistics.recordTurnWaitingPlanner(1);
+
+        assertEquals(statistics.getDiscrepancies(), 2);
+        assertEquals(statistics.getPlanRepairs(), 1);
+        assertEquals(statistics.getValidationTime(), 1500);
+        assertEquals(statistics.getUpcomingDiscrepancies(), 1);
+        assertEquals(statistics.getTurnsWaitingPlanner(), 3);
+        assertEquals(statistics.getMaxTurnsWaitingPlanner(), 2);
+    }
+
+    @Test
+    public void testAdd() {
+        AgentStatistics first = new AgentStatistics();
+        first.recordGame(true, 18, 41);
+        first.addGoals(4);
+        first.recordPlannerCall();
+        first.recordTurnWaitingPlanner(3);
+
+        AgentStatistics second = new AgentStatistics();
+        second.recordGame(false, 2, 8);
+        second.addGoals(5);
+        second.recordPlannerCall();
+        second.recordPlannerCall();
+        second.recordTurnWaitingPlanner(1);
+
+        AgentStatistics total = new AgentStatistics();
+        total.add(first);
+        total.add(second);
+
+        assertEquals(total.getGames(), 2);
+        assertEquals(total.getWins(), 1);
+        assertEquals(total.getScore(), 20, 1e-9);
+        assertEquals(total.getTicks(), 49);
+        assertEquals(total.getGoals(), 9);
+        assertEquals(total.getPlannerCalls(), 3);
+        assertEquals(total.getTurnsWaitingPlanner(), 2);
+        assertEquals(total.getMaxTurnsWaitingPlanner(), 3);
+    }
+
+    @Test
+    public void testJSON() {
+        AgentStatistics statistics = new AgentStatistics();
+        statistics.recordGame(true, 18, 41);
+        statistics.addPlanningTime(250);
+        statistics.recordPlannerCall();
+        statistics.recordDiscrepancy(true);
+        statistics.getMetrics().recordLatency(AgentMetrics.PLANNER_CALL, 250000000);
+
+        AgentStatistics copy = AgentStatistics.fromJSON(statistics.toJSON());
+
+        assertEquals(copy.getGames(), 1);
+        assertEquals(copy.getWins(), 1);
+        assertEquals(copy.getScore(), 18, 1e-9);
+        assertEquals(copy.getTicks(), 41);
+        assertEquals(copy.getPlanningTime(), 250);
+        assertEquals(copy.getPlannerCalls(), 1);
+        assertEquals(copy.getDiscrepancies(), 1);
+        assertEquals(copy.getPlanRepairs(), 1);
+        assertEquals(copy.getMetrics().getHistogram(AgentMetrics.PLANNER_CALL).getMax(), 250000);
+    }
+}
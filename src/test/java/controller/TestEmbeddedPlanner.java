@@ -0,0 +1,111 @@
+package controller;
+
+import kong.unirest.json.JSONObject;
+import ontology.Types;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class TestEmbeddedPlanner {
+    private static String domain;
+    private static String problem;
+
+    @BeforeClass
+    public static void readFiles() throws IOException {
+        domain = new String(Files.readAllBytes(Paths.get("src/test/resources/domain.pddl")));
+        problem = new String(Files.readAllBytes(Paths.get("src/test/resources/problem.pddl")));
+    }
+
+    @Test
+    public void testSearchReachesGoal() {
+        GroundTask task = PDDLGrounder.ground(PDDLParser.parseDomain(domain), PDDLParser.parseProblem(problem));
+        List<GroundAction> plan = new EmbeddedPlanner().search(task);
+
+        assertNotNull(plan);
+        assertFalse(plan.isEmpty());
+
+        BitSet state = task.getInitialState();
+
+        for (GroundAction action : plan) {
+            assertTrue(action.isApplicable(state));
+            state = action.apply(state);
+        }
+
+        assertTrue(task.isGoal(state));
+    }
+
+    @Test(expected = PlannerTimeoutException.class)
+    public void testGroundingExpiredDeadline() {
+        new PDDLGrounder(PDDLParser.parseDomain(domain), PDDLParser.parseProblem(problem))
+                .ground(PlanningDeadline.after(0));
+    }
+
+    @Test
+    public void testConditionalEffects() {
+        GroundTask task = PDDLGrounder.ground(PDDLParser.parseDomain(domain), PDDLParser.parseProblem(problem));
+        GroundAction turnUp = task.getActions().stream()
+                .filter(action -> action.getInstance().equals("(turn-up p)"))
+                .findFirst()
+                .get();
+
+        BitSet state = turnUp.apply(task.getInitialState());
+
+        assertTrue(state.get(task.indexOf("(oriented-up p)")));
+        assertFalse(state.get(task.indexOf("(oriented-left p)")));
+        assertFalse(state.get(task.indexOf("(oriented-right p)")));
+    }
+
+    @Test
+    public void testSolveCreatesPDDLPlan() {
+        JSONObject response = new EmbeddedPlanner().solve(domain, problem);
+
+        assertEquals(response.getString("status"), "ok");
+
+        HashMap<String, Types.ACTIONS> actionsCorrespondence = new HashMap<>();
+        actionsCorrespondence.put("TURN-UP", Types.ACTIONS.ACTION_UP);
+        actionsCorrespondence.put("TURN-DOWN", Types.ACTIONS.ACTION_DOWN);
+        actionsCorrespondence.put("TURN-LEFT", Types.ACTIONS.ACTION_LEFT);
+        actionsCorrespondence.put("TURN-RIGHT", Types.ACTIONS.ACTION_RIGHT);
+        actionsCorrespondence.put("MOVE-UP", Types.ACTIONS.ACTION_UP);
+        actionsCorrespondence.put("MOVE-DOWN", Types.ACTIONS.ACTION_DOWN);
+        actionsCorrespondence.put("MOVE-LEFT", Types.ACTIONS.ACTION_LEFT);
+        actionsCorrespondence.put("MOVE-RIGHT", Types.ACTIONS.ACTION_RIGHT);
+        actionsCorrespondence.put("MOVE-UP-GET-GEM", Types.ACTIONS.ACTION_UP);
+        actionsCorrespondence.put("MOVE-DOWN-GET-GEM", Types.ACTIONS.ACTION_DOWN);
+        actionsCorrespondence.put("MOVE-LEFT-GET-GEM", Types.ACTIONS.ACTION_LEFT);
+        actionsCorrespondence.put("MOVE-RIGHT-GET-GEM", Types.ACTIONS.ACTION_RIGHT);
+        actionsCorrespondence.put("DIG-UP", Types.ACTIONS.ACTION_USE);
+        actionsCorrespondence.put("DIG-DOWN", Types.ACTIONS.ACTION_USE);
+        actionsCorrespondence.put("DIG-LEFT", Types.ACTIONS.ACTION_USE);
+        actionsCorrespondence.put("DIG-RIGHT", Types.ACTIONS.ACTION_USE);
+
+        PDDLPlan plan = new PDDLPlan(response, actionsCorrespondence);
+        PDDLAction lastAction = plan.getPDDLActions().get(plan.getPDDLActions().size() - 1);
+
+        assertFalse(plan.getPDDLActions().isEmpty());
+        assertTrue(lastAction.getActionInstance().contains("get-gem"));
+        assertEquals(lastAction.getPreconditions().size(), 6);
+    }
+
+    @Test
+    public void testUnsolvableProblem() {
+        String unsolvable = problem.replace("(got g_5_3)", "(got g_5_3) (at p c_0_0)");
+
+        assertNull(new EmbeddedPlanner().search(
+                PDDLGrounder.ground(PDDLParser.parseDomain(domain), PDDLParser.parseProblem(unsolvable))));
+        assertEquals(new EmbeddedPlanner().solve(domain, unsolvable).getString("status"), "error");
+    }
+}
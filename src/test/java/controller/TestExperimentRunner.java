@@ -0,0 +1,111 @@
+package controller;
+
+import org.junit.Test;
+
+import tools.Utils;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class TestExperimentRunner {
+    /**
+     * Runner that returns made up statistics instead of playing the games: the
+     * games with even seeds are won.
+     */
+    private static class FakeRunner extends ExperimentRunner {
+        private final List<ExperimentRun> playedRuns = new ArrayList<>();
+
+        public FakeRunner(List<ExperimentRun> runs, String outputDirectory) {
+            super(runs, outputDirectory, 2, 0);
+        }
+
+        @Override
+        protected AgentStatistics playGame(ExperimentRun run) {
+            synchronized (this.playedRuns) {
+                this.playedRuns.add(run);
+            }
+
+            AgentStatistics statistics = new AgentStatistics();
+            statistics.recordGame(run.getSeed() % 2 == 0, run.getSeed(), 10 * run.getLevel());
+            statistics.recordPlannerCall();
+            statistics.addPlanningTime(100);
+            statistics.getMetrics().record(AgentMetrics.PLAN_LENGTH, run.getSeed());
+
+            return statistics;
+        }
+    }
+
+    private static List<ExperimentRun> loadRuns() throws IOException {
+        ExperimentManifest manifest = ExperimentManifest.load("src/test/resources/experiments.yaml");
+
+        return manifest.getRuns(Utils.readGames(ExperimentRunner.GAMES_FILE));
+    }
+
+    @Test
+    public void testManifest() throws IOException {
+        ExperimentManifest manifest = ExperimentManifest.load("src/test/resources/experiments.yaml");
+        List<ExperimentRun> runs = manifest.getRuns(Utils.readGames(ExperimentRunner.GAMES_FILE));
+
+        assertEquals(manifest.workers, 2);
+        assertEquals(runs.size(), 7);
+        assertEquals(runs.get(0).getGameName(), "boulderdash");
+        assertEquals(runs.get(0).getConfig(), "config/boulderdash/boulderdash_lvl1.yaml");
+        assertEquals(runs.get(3).getConfig(), "config/boulderdash/boulderdash_lvl2.yaml");
+        assertEquals(runs.get(3).getOptions().size(), 2);
+        assertEquals(runs.get(6).getExperiment(), "default");
+        assertEquals(runs.get(6).getSeed(), 7);
+    }
+
+    @Test
+    public void testAggregateResults() throws IOException, InterruptedException {
+        Path directory = Files.createTempDirectory("experiments");
+        FakeRunner runner = new FakeRunner(loadRuns(), directory.toString());
+        Map<ExperimentRun, AgentStatistics> summary = runner.run();
+
+        assertEquals(runner.playedRuns.size(), 7);
+        assertEquals(summary.size(), 3);
+
+        AgentStatistics first = summary.values().iterator().next();
+        assertEquals(first.getGames(), 3);
+        assertEquals(first.getWins(), 1);
+        assertEquals(first.getScore(), 6, 1e-9);
+        assertEquals(first.getTicks(), 30);
+        assertEquals(first.getPlanningTime(), 300);
+        assertEquals(first.getMetrics().getHistogram(AgentMetrics.PLAN_LENGTH).getCount(), 3);
+        assertEquals(first.getMetrics().getHistogram(AgentMetrics.PLAN_LENGTH).getMax(), 3);
+
+        assertEquals(Files.readAllLines(directory.resolve("runs.jsonl")).size(), 7);
+        assertEquals(Files.readAllLines(directory.resolve("summary.csv")).size(), 4);
+        assertTrue(Files.readAllLines(directory.resolve("summary.csv")).get(1)
+                .startsWith("embedded,boulderdash,1,config/boulderdash/boulderdash_lvl1.yaml,3,1,0.333,2.000"));
+        assertEquals(Files.readAllLines(directory.resolve("metrics.csv")).get(1),
+                "embedded,boulderdash,1,config/boulderdash/boulderdash_lvl1.yaml,plan-length,count,3,1,2.00,2,3,3,3");
+    }
+
+    @Test
+    public void testResume() throws IOException, InterruptedException {
+        Path directory = Files.createTempDirectory("experiments");
+        List<ExperimentRun> runs = loadRuns();
+        new FakeRunner(runs.subList(0, 4), directory.toString()).run();
+
+        // Simulate a runner stopped while it was saving a result
+        Files.write(directory.resolve("runs.jsonl"), "{\"experiment\": \"emb".getBytes(), StandardOpenOption.APPEND);
+
+        FakeRunner runner = new FakeRunner(runs, directory.toString());
+        Map<ExperimentRun, AgentStatistics> summary = runner.run();
+
+        assertEquals(runner.playedRuns.size(), 3);
+        assertEquals(runner.getSkippedRuns(), 4);
+        assertEquals(summary.size(), 3);
+        assertEquals(summary.values().stream().mapToInt(AgentStatistics::getGames).sum(), 7);
+        assertEquals(Files.readAllLines(directory.resolve("runs.jsonl")).size(), 8);
+    }
+}
@@ -0,0 +1,128 @@
+package controller;
+
+import core.game.Game;
+import core.game.StateObservation;
+import core.vgdl.VGDLFactory;
+import core.vgdl.VGDLParser;
+import core.vgdl.VGDLRegistry;
+import ontology.Types;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.yaml.snakeyaml.Yaml;
+import org.yaml.snakeyaml.constructor.Constructor;
+
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class TestGameStateTranslator {
+    private static StateObservation stateObservation;
+    private static GameInformation gameInformation;
+    private static Map<String, Set<String>> gameElementVars;
+
+    @BeforeClass
+    public static void createGame() throws IOException {
+        VGDLFactory.GetInstance().init();
+        VGDLRegistry.GetInstance().init();
+
+        Game toPlay = new VGDLParser().parseGame("examples/gridphysics/boulderdash.txt");
+        toPlay.buildLevel("examples/gridphysics/boulderdash_lvl0.txt", 0);
+        stateObservation = toPlay.getObservation();
+
+        Yaml yaml = new Yaml(new Constructor(GameInformation.class));
+
+        try (InputStream inputStream = new FileInputStream("src/test/resources/config.yaml")) {
+            gameInformation = yaml.load(inputStream);
+        }
+
+        gameElementVars = new HashMap<>();
+        gameElementVars.put("background", new HashSet<>());
+        gameInformation.gameElementsCorrespondence.forEach((element, predicates) -> {
+            Set<String> variables = new HashSet<>();
+            predicates.forEach(predicate -> {
+                for (String token : predicate.replaceAll("[()]", "").split(" ")) {
+                    if (token.startsWith("?")) {
+                        variables.add(token);
+                    }
+                }
+            });
+            gameElementVars.put(element, variables);
+        });
+    }
+
+    private static Map<String, Set<String>> createObjects() {
+        Map<String, Set<String>> objects = new HashMap<>();
+        gameInformation.variablesTypes.keySet().forEach(key -> objects.put(key, new LinkedHashSet<>()));
+
+        return objects;
+    }
+
+    @Test
+    public void testGetSpriteName() {
+        GameStateTranslator translator = new GameStateTranslator(gameInformation, gameElementVars, new AtomTable());
+        int itype = VGDLRegistry.GetInstance().getRegisteredSpriteValue("boulder");
+
+        assertEquals(translator.getSpriteName(itype), "boulder");
+    }
+
+    @Test
+    public void testIncrementalTranslation() {
+        GameStateTranslator translator = new GameStateTranslator(gameInformation, gameElementVars, new AtomTable());
+        List<String> predicates = new ArrayList<>();
+        Map<String, Set<String>> objects = createObjects();
+        Set<String> connections = new LinkedHashSet<>();
+        List<String> savedGoals = new ArrayList<>();
+        StateObservation state = stateObservation.copy();
+        Random random = new Random(0);
+
+        translator.translate(state, predicates, objects, connections, savedGoals);
+
+        assertTrue(predicates.contains("(at p c_11_7)"));
+
+        for (int i = 0; i < 30 && !state.isGameOver(); i++) {
+            state.advance(state.getAvailableActions().get(random.nextInt(state.getAvailableActions().size())));
+
+            List<String> expectedPredicates = new ArrayList<>();
+            Map<String, Set<String>> expectedObjects = createObjects();
+            new GameStateTranslator(gameInformation, gameElementVars, new AtomTable())
+                    .translate(state, expectedPredicates, expectedObjects, connections, savedGoals);
+
+            int changedCells = translator.translate(state, predicates, objects, connections, savedGoals);
+
+            assertTrue(changedCells < 26 * 13);
+            assertEquals(predicates, expectedPredicates);
+            assertEquals(objects, expectedObjects);
+
+            for (String predicate : expectedPredicates) {
+                assertTrue(translator.getAtomTable().holds(translator.getState(), predicate));
+            }
+
+            assertEquals(translator.getState().cardinality(), new HashSet<>(expectedPredicates).size());
+        }
+    }
+
+    @Test
+    public void testUnchangedState() {
+        GameStateTranslator translator = new GameStateTranslator(gameInformation, gameElementVars, new AtomTable());
+        List<String> predicates = new ArrayList<>();
+        List<String> savedGoals = new ArrayList<>();
+
+        translator.translate(stateObservation, predicates, createObjects(), new LinkedHashSet<>(), savedGoals);
+        savedGoals.add("(got g_1_4)");
+
+        assertEquals(translator.translate(stateObservation, predicates, createObjects(), new LinkedHashSet<>(),
+                savedGoals), 0);
+        assertEquals(predicates.get(predicates.size() - 1), "(got g_1_4)");
+    }
+}
@@ -0,0 +1,91 @@
+package controller;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class TestGoalOrderer {
+    private static PDDLDomain domain;
+    private static PDDLProblem problem;
+
+    @BeforeClass
+    public static void readFiles() throws IOException {
+        domain = PDDLParser.parseDomain(new String(Files.readAllBytes(Paths.get("src/test/resources/domain.pddl"))));
+        problem = PDDLParser.parseProblem(
+                new String(Files.readAllBytes(Paths.get("src/test/resources/problem.pddl"))));
+    }
+
+    private static PDDLSingleGoal createGoal(String predicate, int priority) {
+        PDDLSingleGoal goal = new PDDLSingleGoal();
+        goal.setGoalPredicate(predicate);
+        goal.setPriority(priority);
+
+        return goal;
+    }
+
+    private static List<String> order(String name, List<PDDLSingleGoal> goals) {
+        return new GoalOrderer(domain, name).order(goals, "p", problem.getInit()).stream()
+                .map(PDDLSingleGoal::getGoalPredicate)
+                .collect(Collectors.toList());
+    }
+
+    @Test
+    public void testMovementGraph() {
+        ProblemPruner pruner = new ProblemPruner(domain);
+        Map<String, Set<String>> graph = pruner.findMovementGraph(problem.getInit());
+        Map<String, String> locations = pruner.findLocations(problem.getInit());
+
+        // Walls can't be entered
+        assertTrue(graph.get("c_11_7").contains("c_11_6"));
+        assertFalse(graph.values().stream().anyMatch(cells -> cells.contains("c_0_0")));
+        assertEquals(locations.get("p"), "c_11_7");
+        assertEquals(locations.get("g_5_3"), "c_5_3");
+    }
+
+    @Test
+    public void testOrderGoals() {
+        List<PDDLSingleGoal> goals = Arrays.asList(
+                createGoal("(got g_22_1)", 1),
+                createGoal("(got g_5_3)", 1),
+                createGoal("(exited-level)", 1),
+                createGoal("(got g_21_1)", 1),
+                createGoal("(got g_6_1)", 1),
+                createGoal("(got g_1_4)", 2));
+
+        // The goals that can't be located keep their positions, as well as the priorities
+        assertEquals(order(GoalOrderer.NEAREST_NEIGHBOUR, goals), Arrays.asList("(got g_5_3)", "(got g_6_1)",
+                "(exited-level)", "(got g_21_1)", "(got g_22_1)", "(got g_1_4)"));
+    }
+
+    @Test
+    public void testImproveTour() {
+        List<PDDLSingleGoal> goals = Arrays.asList(
+                createGoal("(got g_24_5)", 1),
+                createGoal("(got g_7_1)", 1),
+                createGoal("(got g_15_10)", 1),
+                createGoal("(got g_14_10)", 1));
+
+        // The nearest goals first leave the farthest one behind, on the other side of the level
+        assertEquals(order(GoalOrderer.NEAREST_NEIGHBOUR, goals),
+                Arrays.asList("(got g_14_10)", "(got g_15_10)", "(got g_24_5)", "(got g_7_1)"));
+        assertEquals(order(GoalOrderer.TWO_OPT, goals),
+                Arrays.asList("(got g_7_1)", "(got g_14_10)", "(got g_15_10)", "(got g_24_5)"));
+    }
+
+    @Test(expected = PlannerException.class)
+    public void testUnknownOrdering() {
+        new GoalOrderer(domain, "random");
+    }
+}
@@ -0,0 +1,72 @@
+package controller;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class TestHistogram {
+    @Test
+    public void testSmallValues() {
+        Histogram histogram = new Histogram();
+
+        for (int value = 1; value <= 100; value++) {
+            histogram.record(value);
+        }
+
+        assertEquals(histogram.getCount(), 100);
+        assertEquals(histogram.getMin(), 1);
+        assertEquals(histogram.getMax(), 100);
+        assertEquals(histogram.getMean(), 50.5, 1e-9);
+        assertEquals(histogram.getValueAtPercentile(50), 50);
+        assertEquals(histogram.getValueAtPercentile(99), 99);
+        assertEquals(histogram.getValueAtPercentile(100), 100);
+    }
+
+    @Test
+    public void testLargeValues() {
+        Histogram histogram = new Histogram();
+
+        for (long value = 1000; value <= 1000000; value += 1000) {
+            histogram.record(value);
+        }
+
+        // The percentiles are approximated by the buckets, but the relative error is small
+        long median = histogram.getValueAtPercentile(50);
+        assertTrue(median >= 500000 && median <= 500000 * 1.016);
+        assertEquals(histogram.getValueAtPercentile(100), 1000000);
+        assertEquals(histogram.getMin(), 1000);
+
+        histogram.record(Long.MAX_VALUE);
+        assertEquals(histogram.getValueAtPercentile(100), Long.MAX_VALUE);
+    }
+
+    @Test
+    public void testEmpty() {
+        Histogram histogram = new Histogram();
+
+        assertEquals(histogram.getMin(), 0);
+        assertEquals(histogram.getMax(), 0);
+        assertEquals(histogram.getMean(), 0, 1e-9);
+        assertEquals(histogram.getValueAtPercentile(50), 0);
+    }
+
+    @Test
+    public void testAddAndJSON() {
+        Histogram first = new Histogram();
+        first.record(10);
+        first.record(5000);
+        Histogram second = new Histogram();
+        second.record(3);
+
+        first.add(second);
+        Histogram copy = Histogram.fromJSON(first.toJSON());
+
+        assertEquals(copy.getCount(), 3);
+        assertEquals(copy.getSum(), 5013);
+        assertEquals(copy.getMin(), 3);
+        assertEquals(copy.getMax(), 5000);
+        assertEquals(copy.getValueAtPercentile(50), 10);
+        assertEquals(copy.getValueAtPercentile(100), 5000);
+    }
+}
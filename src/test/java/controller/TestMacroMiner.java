@@ -0,0 +1,152 @@
+package controller;
+
+import kong.unirest.json.JSONArray;
+import kong.unirest.json.JSONObject;
+import ontology.Types;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class TestMacroMiner {
+    private static String domainText;
+    private static String problemText;
+    private static List<PDDLActionSchema> macros;
+
+    @BeforeClass
+    public static void mineMacros() throws IOException {
+        domainText = new String(Files.readAllBytes(Paths.get("src/test/resources/domain.pddl")));
+        problemText = new String(Files.readAllBytes(Paths.get("src/test/resources/problem.pddl")));
+
+        // Plan in which the avatar turns down and moves down five times, with a single
+        // pair of consecutive moves to the left
+        List<List<String>> plan = new ArrayList<>();
+
+        for (int i = 0; i < 5; i++) {
+            plan.add(Arrays.asList("turn-down", "p"));
+            plan.add(Arrays.asList("move-down", "p", "c_1_" + i, "c_1_" + (i + 1)));
+            plan.add(Arrays.asList("turn-left", "p"));
+        }
+
+        plan.add(Arrays.asList("move-left", "p", "c_3_1", "c_2_1"));
+        plan.add(Arrays.asList("move-left", "p", "c_2_1", "c_1_1"));
+
+        MacroMiner miner = new MacroMiner(PDDLParser.parseDomain(domainText), 2, 5, 4);
+        miner.addPlan(plan);
+        macros = miner.mine(4);
+    }
+
+    @Test
+    public void testMineMacros() {
+        // The pair of moves to the left doesn't occur often enough
+        List<String> names = macros.stream().map(PDDLActionSchema::getName).collect(Collectors.toList());
+
+        assertTrue(names.contains("macro-turn-down-move-down"));
+        assertFalse(names.contains("macro-move-left-move-left"));
+
+        PDDLActionSchema macro = macros.get(names.indexOf("macro-turn-down-move-down"));
+        List<String> precondition = macro.getPrecondition().getConjuncts().stream()
+                .map(PDDLFormula::toString)
+                .collect(Collectors.toList());
+
+        assertEquals(macro.getSteps().toString(), "[(turn-down ?p), (move-down ?p ?c1 ?c2)]");
+        assertEquals(macro.getParameterTypes(), Arrays.asList("player", "cell", "cell"));
+        assertTrue(precondition.contains("(not (oriented-down ?p))"));
+        assertFalse(precondition.contains("(oriented-down ?p)"));
+    }
+
+    @Test
+    public void testParseMacros() {
+        PDDLDomain domain = PDDLParser.parseDomain(MacroMiner.appendMacros(domainText, macros));
+
+        for (PDDLActionSchema macro : macros) {
+            PDDLActionSchema parsedMacro = domain.getActions().get(macro.getName());
+
+            assertTrue(parsedMacro.isMacro());
+            assertEquals(parsedMacro.getSteps().toString(), macro.getSteps().toString());
+            assertEquals(parsedMacro.getParameters(), macro.getParameters());
+        }
+
+        assertFalse(domain.getActions().get("turn-down").isMacro());
+    }
+
+    @Test
+    public void testMacrosMatchSteps() {
+        PDDLDomain domain = PDDLParser.parseDomain(MacroMiner.appendMacros(domainText, macros));
+        GroundTask task = PDDLGrounder.ground(domain, PDDLParser.parseProblem(problemText));
+        Map<String, GroundAction> actions = new HashMap<>();
+        task.getActions().forEach(action -> actions.put(action.getInstance(), action));
+
+        // Follow a plan found without macro operators and compare every applicable macro
+        // operator with the sequence of its steps
+        JSONArray plan = new EmbeddedPlanner().solve(domainText, problemText)
+                .getJSONObject("result").getJSONArray("plan");
+        BitSet state = task.getInitialState();
+        int comparedMacros = 0;
+
+        for (int i = 0; i <= plan.length(); i++) {
+            for (GroundAction action : task.getActions()) {
+                if (!action.getSchema().isMacro() || !action.isApplicable(state)) {
+                    continue;
+                }
+
+                BitSet expected = state;
+                Map<String, String> binding = action.getSchema().bind(action.getArguments());
+
+                for (PDDLFormula step : action.getSchema().getSteps()) {
+                    GroundAction stepAction = actions.get(step.instantiateAtom(binding));
+
+                    assertTrue(stepAction.isApplicable(expected));
+                    expected = stepAction.apply(expected);
+                }
+
+                assertEquals(action.apply(state), expected);
+                comparedMacros++;
+            }
+
+            if (i < plan.length()) {
+                state = actions.get(plan.getJSONObject(i).getString("name")).apply(state);
+            }
+        }
+
+        assertTrue(comparedMacros > 0);
+    }
+
+    @Test
+    public void testExpandMacros() {
+        PDDLDomain domain = PDDLParser.parseDomain(MacroMiner.appendMacros(domainText, macros));
+
+        HashMap<String, Types.ACTIONS> actionCorrespondence = new HashMap<>();
+        actionCorrespondence.put("TURN-DOWN", Types.ACTIONS.ACTION_DOWN);
+        actionCorrespondence.put("MOVE-DOWN", Types.ACTIONS.ACTION_DOWN);
+
+        JSONObject action = new JSONObject();
+        action.put("name", "(macro-turn-down-move-down p c_11_7 c_11_8)");
+        action.put("action", "");
+
+        JSONObject response = new JSONObject();
+        response.put("result", new JSONObject().put("plan", new JSONArray().put(action)));
+
+        PDDLPlan plan = new PDDLPlan(response, actionCorrespondence, new AtomTable(), domain);
+
+        assertEquals(plan.getPDDLActions().size(), 2);
+        assertEquals(plan.getPDDLActions().get(0).getActionInstance(), "(turn-down p)");
+        assertEquals(plan.getPDDLActions().get(1).getActionInstance(), "(move-down p c_11_7 c_11_8)");
+        assertEquals(plan.getPDDLActions().get(1).getGVGAIAction(), Types.ACTIONS.ACTION_DOWN);
+        assertTrue(plan.getPDDLActions().get(1).getPreconditions().contains("(oriented-down p)"));
+    }
+}
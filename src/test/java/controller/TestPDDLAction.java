@@ -4,7 +4,11 @@ import ontology.Types;
 
 import org.junit.Test;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
 
+import java.util.Arrays;
+import java.util.BitSet;
 import java.util.HashMap;
 
 public class TestPDDLAction {
@@ -31,4 +35,77 @@ public class TestPDDLAction {
         assertEquals(pddlAction.getEffects().get(0).getConditions().size(), 1);
         assertEquals(pddlAction.getEffects().get(1).getConditions().size(), 0);
     }
-}
\ No newline at end of file
+
+    @Test
+    public void testInternedAtoms() {
+        String actionInstance = "(move-left p c_10_3 c_9_3)";
+        String actionDescription = "  (:action move-left\n    :parameters (p c_10_3 c_9_3)\n    " +
+                ":precondition\n      (and\n        (at p c_10_3)\n        (oriented-left p)\n        " +
+                "(connected-left c_10_3 c_9_3)\n        (not\n          (occupied c_9_3)\n        )\n " +
+                "       (not\n          (terrain-wall c_9_3)\n        )\n      )\n    :effect\n      " +
+                "(and\n        (when\n          (not\n            (terrain-empty c_9_3)\n          )\n" +
+                "          (terrain-empty c_9_3)\n        )\n        (not\n          (at p c_10_3)\n" +
+                "        )\n        (at p c_9_3)\n      )\n  )";
+
+        HashMap<String, Types.ACTIONS> actionCorrespondence = new HashMap<>();
+        actionCorrespondence.put("MOVE-LEFT", Types.ACTIONS.ACTION_LEFT);
+
+        AtomTable atomTable = new AtomTable();
+        PDDLAction pddlAction = new PDDLAction(actionInstance, actionDescription, actionCorrespondence, atomTable);
+
+        assertEquals(pddlAction.getPositivePreconditionAtoms().length, 3);
+        assertEquals(pddlAction.getNegativePreconditionAtoms().length, 2);
+
+        BitSet state = new BitSet();
+        state.set(atomTable.intern("(at p c_10_3)"));
+        state.set(atomTable.intern("(oriented-left p)"));
+        state.set(atomTable.intern("(connected-left c_10_3 c_9_3)"));
+
+        assertTrue(pddlAction.isApplicable(state));
+        assertTrue(pddlAction.getEffects().get(0).isTriggered(state));
+
+        state.set(atomTable.intern("(occupied c_9_3)"));
+
+        assertFalse(pddlAction.isApplicable(state));
+    }
+
+    @Test
+    public void testNestedConditionalEffects() {
+        String actionInstance = "(dig-up p c_1_2 c_1_1)";
+        String actionDescription = "(:action dig-up :parameters (p c_1_2 c_1_1) " +
+                ":precondition (and (at p c_1_2) (and (oriented-up p) (terrain-ground c_1_1))) " +
+                ":effect (and (when (and (terrain-ground c_1_1) (not (occupied c_1_1))) " +
+                "(and (terrain-empty c_1_1) (not (terrain-ground c_1_1)))) (dug c_1_1)))";
+
+        HashMap<String, Types.ACTIONS> actionCorrespondence = new HashMap<>();
+        actionCorrespondence.put("DIG-UP", Types.ACTIONS.ACTION_USE);
+
+        PDDLAction pddlAction = new PDDLAction(actionInstance, actionDescription, actionCorrespondence);
+
+        assertEquals(pddlAction.getGVGAIAction(), Types.ACTIONS.ACTION_USE);
+        assertEquals(pddlAction.getPreconditions().size(), 3);
+        assertEquals(pddlAction.getEffects().size(), 3);
+        assertEquals(pddlAction.getEffects().get(0).getConditions().size(), 2);
+        assertEquals(pddlAction.getEffects().get(1).getEffectPredicate(), "(not (terrain-ground c_1_1))");
+        assertEquals(pddlAction.getEffects().get(2).getConditions().size(), 0);
+    }
+
+    @Test
+    public void testSchemaInstantiation() {
+        PDDLDomain domain = PDDLParser.parseDomain("(define (domain test) (:predicates (at ?x ?c) (free ?c)) " +
+                "(:action move :parameters (?x ?from ?to) " +
+                ":precondition (and (at ?x ?from) (free ?to) (not (= ?from ?to))) " +
+                ":effect (and (not (at ?x ?from)) (at ?x ?to))))");
+
+        HashMap<String, Types.ACTIONS> actionCorrespondence = new HashMap<>();
+        actionCorrespondence.put("MOVE", Types.ACTIONS.ACTION_RIGHT);
+
+        PDDLAction pddlAction = new PDDLAction("(move p c_1_1 c_2_1)", domain.getActions().get("move"),
+                Arrays.asList("p", "c_1_1", "c_2_1"), actionCorrespondence, new AtomTable());
+
+        assertEquals(pddlAction.getGVGAIAction(), Types.ACTIONS.ACTION_RIGHT);
+        assertEquals(pddlAction.getPreconditions(), Arrays.asList("(at p c_1_1)", "(free c_2_1)"));
+        assertEquals(pddlAction.getEffects().get(0).getEffectPredicate(), "(not (at p c_1_1))");
+        assertEquals(pddlAction.getEffects().get(1).getEffectPredicate(), "(at p c_2_1)");
+    }
+}
@@ -0,0 +1,60 @@
+package controller;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertThrows;
+import static org.junit.Assert.assertTrue;
+
+public class TestPDDLParser {
+    private static PDDLDomain domain;
+    private static PDDLProblem problem;
+
+    @BeforeClass
+    public static void parseFiles() throws IOException {
+        domain = PDDLParser.parseDomain(new String(Files.readAllBytes(Paths.get("src/test/resources/domain.pddl"))));
+        problem = PDDLParser.parseProblem(new String(Files.readAllBytes(Paths.get("src/test/resources/problem.pddl"))));
+    }
+
+    @Test
+    public void testParseDomain() {
+        assertEquals(domain.getName(), "boulderdash");
+        assertEquals(domain.getActions().size(), 17);
+        assertTrue(domain.isSubtype("bat", "locatable"));
+        assertFalse(domain.isSubtype("gem", "enemy"));
+
+        PDDLActionSchema moveUp = domain.getActions().get("move-up");
+
+        assertEquals(moveUp.getParameters().size(), 3);
+        assertEquals(moveUp.getParameterTypes().get(1), "cell");
+        assertEquals(moveUp.getPrecondition().getConjuncts().size(), 5);
+        assertEquals(moveUp.getEffect().getConjuncts().get(0).getKind(), PDDLFormula.Kind.WHEN);
+    }
+
+    @Test
+    public void testFluentPredicates() {
+        assertTrue(domain.getFluentPredicates().contains("at"));
+        assertFalse(domain.getFluentPredicates().contains("connected-up"));
+    }
+
+    @Test
+    public void testParseProblem() {
+        assertEquals(problem.getDomainName(), "boulderdash");
+        assertEquals(problem.getObjects().get("p"), "player");
+        assertTrue(problem.getInit().contains("(at p c_11_7)"));
+        assertEquals(problem.getGoal().getConjuncts().get(0).toString(), "(got g_5_3)");
+    }
+
+    @Test
+    public void testParseError() {
+        assertThrows(PlannerException.class, () -> PDDLParser.parseDomain("(define (domain d) (:action a"));
+        assertThrows(PlannerException.class, () -> PDDLParser.parseProblem("(define (problem p) (:domain d) " +
+                "(:goal (or (a) (b))))"));
+    }
+}
@@ -0,0 +1,79 @@
+package controller;
+
+import kong.unirest.json.JSONObject;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+public class TestPlanCache {
+    private static String domain;
+    private static String problem;
+    private static JSONObject response;
+
+    @BeforeClass
+    public static void solveProblem() throws IOException {
+        domain = new String(Files.readAllBytes(Paths.get("src/test/resources/domain.pddl")));
+        problem = new String(Files.readAllBytes(Paths.get("src/test/resources/problem.pddl")));
+        response = new EmbeddedPlanner().solve(domain, problem);
+    }
+
+    @Test
+    public void testComputeKey() {
+        String reordered = problem.replace("(at p c_11_7)", "").replace("(:init", "(:init (at p c_11_7)");
+        String moved = problem.replace("(at p c_11_7)", "(at p c_11_8)");
+
+        assertEquals(PlanCache.computeKey(domain, PDDLParser.parseProblem(reordered)),
+                PlanCache.computeKey(domain, PDDLParser.parseProblem(problem)));
+        assertNotEquals(PlanCache.computeKey(domain, PDDLParser.parseProblem(moved)),
+                PlanCache.computeKey(domain, PDDLParser.parseProblem(problem)));
+    }
+
+    @Test
+    public void testGetPut() {
+        PlanCache cache = new PlanCache(PlanCache.DEFAULT_CAPACITY, null);
+        PDDLProblem parsedProblem = PDDLParser.parseProblem(problem);
+
+        assertNull(cache.get(domain, parsedProblem));
+
+        cache.put(domain, parsedProblem, response);
+
+        assertEquals(cache.get(domain, parsedProblem), response);
+        assertEquals(cache.getHits(), 1);
+        assertEquals(cache.getMisses(), 1);
+    }
+
+    @Test
+    public void testInvalidPlan() {
+        PlanCache cache = new PlanCache(PlanCache.DEFAULT_CAPACITY, null);
+        PDDLProblem parsedProblem = PDDLParser.parseProblem(problem);
+        JSONObject invalidResponse = new JSONObject(response.toString());
+        invalidResponse.getJSONObject("result").getJSONArray("plan").remove(0);
+
+        cache.put(domain, parsedProblem, invalidResponse);
+
+        assertNull(cache.get(domain, parsedProblem));
+        assertEquals(cache.getInvalidPlans(), 1);
+    }
+
+    @Test
+    public void testDiskTier() throws IOException {
+        Path directory = Files.createTempDirectory("plan-cache");
+        PDDLProblem parsedProblem = PDDLParser.parseProblem(problem);
+
+        new PlanCache(PlanCache.DEFAULT_CAPACITY, directory).put(domain, parsedProblem, response);
+        JSONObject cachedResponse = new PlanCache(PlanCache.DEFAULT_CAPACITY, directory).get(domain, parsedProblem);
+
+        assertNotNull(cachedResponse);
+        assertEquals(cachedResponse.toString(), response.toString());
+    }
+}
@@ -0,0 +1,128 @@
+package controller;
+
+import core.game.Game;
+import core.game.StateObservation;
+import core.vgdl.VGDLFactory;
+import core.vgdl.VGDLParser;
+import core.vgdl.VGDLRegistry;
+import kong.unirest.json.JSONArray;
+import kong.unirest.json.JSONObject;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.yaml.snakeyaml.Yaml;
+import org.yaml.snakeyaml.constructor.Constructor;
+
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+public class TestPlanLookahead {
+    private static StateObservation stateObservation;
+    private static GameInformation gameInformation;
+    private static Map<String, Set<String>> gameElementVars;
+    private static PDDLDomain domain;
+
+    @BeforeClass
+    public static void createGame() throws IOException {
+        VGDLFactory.GetInstance().init();
+        VGDLRegistry.GetInstance().init();
+
+        Game toPlay = new VGDLParser().parseGame("examples/gridphysics/boulderdash.txt");
+        toPlay.buildLevel("examples/gridphysics/boulderdash_lvl0.txt", 0);
+        stateObservation = toPlay.getObservation();
+
+        Yaml yaml = new Yaml(new Constructor(GameInformation.class));
+
+        try (InputStream inputStream = new FileInputStream("src/test/resources/config.yaml")) {
+            gameInformation = yaml.load(inputStream);
+        }
+
+        gameElementVars = new HashMap<>();
+        gameElementVars.put("background", new HashSet<>());
+        gameInformation.gameElementsCorrespondence.forEach((element, predicates) -> {
+            Set<String> variables = new HashSet<>();
+            predicates.forEach(predicate -> {
+                for (String token : predicate.replaceAll("[()]", "").split(" ")) {
+                    if (token.startsWith("?")) {
+                        variables.add(token);
+                    }
+                }
+            });
+            gameElementVars.put(element, variables);
+        });
+
+        domain = PDDLParser.parseDomain(new String(Files.readAllBytes(Paths.get("src/test/resources/domain.pddl"))));
+    }
+
+    private static List<PDDLAction> createPlan(AtomTable atomTable, String... actions) {
+        JSONArray plan = new JSONArray();
+
+        for (String action : actions) {
+            plan.put(new JSONObject().put("name", action).put("action", ""));
+        }
+
+        JSONObject response = new JSONObject();
+        response.put("result", new JSONObject().put("plan", plan));
+
+        return new PDDLPlan(response, gameInformation.actionsCorrespondence, atomTable, domain).getPDDLActions();
+    }
+
+    private static PlanLookahead createLookahead(AtomTable atomTable, int horizon) {
+        // The avatar starts in c_11_7 and the two cells above it are empty
+        Set<String> connections = new LinkedHashSet<>();
+        connections.add("(connected-up c_11_7 c_11_6)");
+        connections.add("(connected-up c_11_6 c_11_5)");
+
+        return new PlanLookahead(gameInformation, gameElementVars, atomTable, connections, horizon,
+                PlanLookahead.DEFAULT_SAMPLES);
+    }
+
+    @Test
+    public void testExecutablePlan() {
+        AtomTable atomTable = new AtomTable();
+        List<PDDLAction> plan = createPlan(atomTable, "(turn-up p)", "(move-up p c_11_7 c_11_6)",
+                "(move-up p c_11_6 c_11_5)");
+
+        assertEquals(createLookahead(atomTable, 5).findFailedAction(stateObservation, plan, new ArrayList<>(),
+                PlanningDeadline.none()), -1);
+    }
+
+    @Test
+    public void testBrokenPrecondition() {
+        // The avatar isn't in c_11_7 anymore when the last action is executed
+        AtomTable atomTable = new AtomTable();
+        List<PDDLAction> plan = createPlan(atomTable, "(turn-up p)", "(move-up p c_11_7 c_11_6)",
+                "(move-up p c_11_7 c_11_6)");
+        PlanLookahead lookahead = createLookahead(atomTable, 5);
+
+        assertEquals(lookahead.findFailedAction(stateObservation, plan, new ArrayList<>(),
+                PlanningDeadline.none()), 2);
+        assertFalse(lookahead.isPredictedDeath());
+
+        // The failure is beyond the horizon
+        assertEquals(createLookahead(atomTable, 1).findFailedAction(stateObservation, plan, new ArrayList<>(),
+                PlanningDeadline.none()), -1);
+    }
+
+    @Test
+    public void testExpiredDeadline() {
+        AtomTable atomTable = new AtomTable();
+        List<PDDLAction> plan = createPlan(atomTable, "(turn-up p)", "(move-up p c_11_7 c_11_6)",
+                "(move-up p c_11_7 c_11_6)");
+
+        assertEquals(createLookahead(atomTable, 5).findFailedAction(stateObservation, plan, new ArrayList<>(),
+                PlanningDeadline.after(0)), -1);
+    }
+}
@@ -0,0 +1,119 @@
+package controller;
+
+import kong.unirest.json.JSONArray;
+import kong.unirest.json.JSONObject;
+import ontology.Types;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class TestPlanRepairer {
+    private static String domain;
+    private static String problem;
+    private static List<String> plan;
+
+    @BeforeClass
+    public static void solveProblem() throws IOException {
+        domain = new String(Files.readAllBytes(Paths.get("src/test/resources/domain.pddl")));
+        problem = new String(Files.readAllBytes(Paths.get("src/test/resources/problem.pddl")));
+
+        JSONArray steps = new EmbeddedPlanner().solve(domain, problem)
+                .getJSONObject("result").getJSONArray("plan");
+        plan = new ArrayList<>();
+
+        for (int i = 0; i < steps.length(); i++) {
+            plan.add(steps.getJSONObject(i).getString("name"));
+        }
+    }
+
+    private static boolean isValid(String problem, List<GroundAction> repairedPlan) {
+        return new PlanCache(1, null).isValid(domain, PDDLParser.parseProblem(problem),
+                EmbeddedPlanner.createResponse(repairedPlan));
+    }
+
+    @Test
+    public void testSkipExecutedActions() {
+        // The agent has already executed the first two actions of the plan
+        PDDLProblem parsedProblem = PDDLParser.parseProblem(problem);
+        JSONObject prefix = EmbeddedPlanner.createResponse(null);
+        prefix.put("status", "ok");
+        prefix.getJSONObject("result").put("plan", new JSONArray()
+                .put(new JSONObject().put("name", plan.get(0)))
+                .put(new JSONObject().put("name", plan.get(1))));
+
+        String header = problem.substring(0, problem.indexOf("(:init"));
+        String advancedProblem = String.format("%s(:init %s) (:goal (AND (got g_5_3))))", header,
+                String.join(" ", new PlanCache(1, null).simulate(domain, parsedProblem.getInit(), prefix)));
+
+        GroundTask task = PDDLGrounder.ground(PDDLParser.parseDomain(domain), PDDLParser.parseProblem(advancedProblem));
+        List<GroundAction> repairedPlan = new PlanRepairer(PlanRepairer.DEFAULT_MAX_DEPTH, PlanRepairer.DEFAULT_MAX_NODES)
+                .repair(task, plan, PlanningDeadline.none());
+
+        assertEquals(repairedPlan.size(), plan.size() - 2);
+        assertTrue(isValid(advancedProblem, repairedPlan));
+    }
+
+    @Test
+    public void testReconnectToPlan() {
+        // The avatar has been pushed to the cell on its left, so the plan can't be executed
+        String movedProblem = problem.replace("(at p c_11_7)", "(at p c_10_7)");
+
+        GroundTask task = PDDLGrounder.ground(PDDLParser.parseDomain(domain), PDDLParser.parseProblem(movedProblem));
+        List<GroundAction> repairedPlan = new PlanRepairer(PlanRepairer.DEFAULT_MAX_DEPTH, PlanRepairer.DEFAULT_MAX_NODES)
+                .repair(task, plan, PlanningDeadline.none());
+
+        assertEquals(repairedPlan.get(0).getInstance(), "(move-right p c_10_7 c_11_7)");
+        assertEquals(repairedPlan.subList(1, repairedPlan.size()).toString(), plan.toString());
+        assertTrue(isValid(movedProblem, repairedPlan));
+    }
+
+    @Test
+    public void testKeepStepsWithoutGVGAIAction() {
+        // Exiting the level has no GVGAI action, so it isn't executed by the agent but it is needed to reach the goal
+        String exitProblem = problem.replace("(got g_5_3)", "(exited-level)");
+        PDDLDomain parsedDomain = PDDLParser.parseDomain(domain);
+        Map<String, Types.ACTIONS> actionCorrespondence = new HashMap<>();
+        parsedDomain.getActions().keySet().stream()
+                .filter(action -> !action.equals("exit-level"))
+                .forEach(action -> actionCorrespondence.put(action.toUpperCase(), Types.ACTIONS.ACTION_USE));
+
+        PDDLPlan exitPlan = new PDDLPlan(new EmbeddedPlanner().solve(domain, exitProblem), actionCorrespondence,
+                new AtomTable(), parsedDomain);
+        List<String> remainingSteps = exitPlan.getRemainingSteps(0);
+
+        assertEquals(exitPlan.getPDDLActions().size(), exitPlan.getSteps().size() - 1);
+        assertEquals(remainingSteps.size(), exitPlan.getSteps().size());
+        assertTrue(remainingSteps.get(remainingSteps.size() - 1).startsWith("(exit-level"));
+
+        // The avatar has been pushed to the cell on its left, and the repaired plan still exits the level
+        String movedProblem = exitProblem.replace("(at p c_11_7)", "(at p c_10_7)");
+        GroundTask task = PDDLGrounder.ground(parsedDomain, PDDLParser.parseProblem(movedProblem));
+        List<GroundAction> repairedPlan = new PlanRepairer(PlanRepairer.DEFAULT_MAX_DEPTH, PlanRepairer.DEFAULT_MAX_NODES)
+                .repair(task, remainingSteps, PlanningDeadline.none());
+
+        assertEquals(repairedPlan.get(0).getInstance(), "(move-right p c_10_7 c_11_7)");
+        assertTrue(repairedPlan.get(repairedPlan.size() - 1).getInstance().startsWith("(exit-level"));
+        assertTrue(isValid(movedProblem, repairedPlan));
+    }
+
+    @Test
+    public void testRepairFails() {
+        String movedProblem = problem.replace("(at p c_11_7)", "(at p c_10_7)");
+
+        GroundTask task = PDDLGrounder.ground(PDDLParser.parseDomain(domain), PDDLParser.parseProblem(movedProblem));
+
+        assertNull(new PlanRepairer(0, PlanRepairer.DEFAULT_MAX_NODES).repair(task, plan, PlanningDeadline.none()));
+    }
+}
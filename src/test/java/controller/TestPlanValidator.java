@@ -0,0 +1,108 @@
+package controller;
+
+import kong.unirest.json.JSONObject;
+import ontology.Types;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class TestPlanValidator {
+    private static PDDLDomain domain;
+    private static PDDLProblem problem;
+    private static JSONObject response;
+
+    @BeforeClass
+    public static void solveProblem() throws IOException {
+        String domainText = new String(Files.readAllBytes(Paths.get("src/test/resources/domain.pddl")));
+        String problemText = new String(Files.readAllBytes(Paths.get("src/test/resources/problem.pddl")));
+
+        domain = PDDLParser.parseDomain(domainText);
+        problem = PDDLParser.parseProblem(problemText);
+        response = new EmbeddedPlanner().solve(domainText, problemText);
+    }
+
+    /**
+     * Method that creates the correspondence between PDDL and GVGAI actions. The
+     * turns can be left without GVGAI action.
+     */
+    private static Map<String, Types.ACTIONS> createActionCorrespondence(boolean turns) {
+        Map<String, Types.ACTIONS> actionCorrespondence = new HashMap<>();
+
+        for (String action : domain.getActions().keySet()) {
+            if (turns || !action.startsWith("turn-")) {
+                actionCorrespondence.put(action.toUpperCase(), Types.ACTIONS.ACTION_USE);
+            }
+        }
+
+        return actionCorrespondence;
+    }
+
+    private static BitSet createInitialState(AtomTable atomTable) {
+        BitSet state = new BitSet();
+        problem.getInit().forEach(atom -> state.set(atomTable.intern(atom)));
+
+        return state;
+    }
+
+    @Test
+    public void testValidPlan() {
+        AtomTable atomTable = new AtomTable();
+        PDDLPlan plan = new PDDLPlan(response, createActionCorrespondence(true), atomTable, domain);
+        BitSet state = createInitialState(atomTable);
+
+        assertEquals(new PlanValidator().findFailedAction(plan, 0, state), -1);
+    }
+
+    @Test
+    public void testStepsWithoutGVGAIAction() {
+        // The turns aren't executed, but the orientation they change is needed by the moves
+        AtomTable atomTable = new AtomTable();
+        PDDLPlan plan = new PDDLPlan(response, createActionCorrespondence(false), atomTable, domain);
+        BitSet state = createInitialState(atomTable);
+
+        assertTrue(plan.getPDDLActions().size() < plan.getSteps().size());
+        assertEquals(new PlanValidator().findFailedAction(plan, 0, state), -1);
+    }
+
+    @Test
+    public void testUpcomingDiscrepancy() {
+        AtomTable atomTable = new AtomTable();
+        PDDLPlan plan = new PDDLPlan(response, createActionCorrespondence(true), atomTable, domain);
+        BitSet state = createInitialState(atomTable);
+        // Block the last cell entered by the plan
+        String blockedCell = null;
+
+        for (PDDLAction action : plan.getPDDLActions()) {
+            for (String precondition : action.getPreconditions()) {
+                if (precondition.startsWith("(not (occupied ")) {
+                    blockedCell = precondition.substring("(not (occupied ".length(), precondition.length() - 2);
+                }
+            }
+        }
+
+        state.set(atomTable.intern(String.format("(occupied %s)", blockedCell)));
+
+        int expectedIndex = 0;
+
+        while (!plan.getPDDLActions().get(expectedIndex).getPreconditions()
+                .contains(String.format("(not (occupied %s))", blockedCell))) {
+            expectedIndex++;
+        }
+
+        PlanValidator validator = new PlanValidator();
+
+        assertEquals(validator.findFailedAction(plan, 0, state), expectedIndex);
+        assertEquals(validator.findFailedAction(plan, expectedIndex, state), expectedIndex);
+        assertEquals(validator.findFailedAction(plan, plan.getPDDLActions().size(), state), -1);
+    }
+}
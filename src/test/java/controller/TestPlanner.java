@@ -0,0 +1,286 @@
+package controller;
+
+import kong.unirest.json.JSONObject;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.BiFunction;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class TestPlanner {
+    private static String domain;
+    private static String problem;
+
+    @BeforeClass
+    public static void readFiles() throws IOException {
+        domain = new String(Files.readAllBytes(Paths.get("src/test/resources/domain.pddl")));
+        problem = new String(Files.readAllBytes(Paths.get("src/test/resources/problem.pddl")));
+    }
+
+    @Test
+    public void testDeadline() {
+        PlanningDeadline none = PlanningDeadline.none();
+        PlanningDeadline expired = PlanningDeadline.after(0);
+
+        assertFalse(none.isExpired());
+        assertEquals(none.remainingMillis(), Long.MAX_VALUE);
+        assertTrue(expired.isExpired());
+        assertEquals(expired.remainingMillis(), 0);
+
+        boolean[] notified = {false};
+        none.onCancel(() -> notified[0] = true);
+        none.cancel();
+
+        assertTrue(none.isExpired());
+        assertTrue(notified[0]);
+    }
+
+    @Test(expected = PlannerTimeoutException.class)
+    public void testEmbeddedPlannerExpiredDeadline() {
+        new EmbeddedPlanner().solve(domain, problem, PlanningDeadline.after(0));
+    }
+
+    @Test(expected = PlannerTimeoutException.class)
+    public void testEmbeddedPlannerCancelledDeadline() {
+        PlanningDeadline deadline = PlanningDeadline.none();
+        deadline.cancel();
+
+        new EmbeddedPlanner().solve(domain, problem, deadline);
+    }
+
+    @Test
+    public void testReadSteps() {
+        String plan = "; plan found\n0.000: (MOVE-UP p c_1_2 c_1_1) [1]\n(turn-left   p)\n; cost = 2 (unit cost)\n";
+        List<String> steps = SubprocessPlanner.readSteps(plan);
+
+        assertEquals(steps, Arrays.asList("(move-up p c_1_2 c_1_1)", "(turn-left p)"));
+    }
+
+    @Test
+    public void testSubprocessPlanner() {
+        SubprocessPlanner planner = new SubprocessPlanner(
+                Arrays.asList("sh", "-c", "echo '(turn-up p)' > {plan}"));
+        JSONObject response = planner.solve(domain, problem, PlanningDeadline.after(10000));
+        JSONObject step = response.getJSONObject("result").getJSONArray("plan").getJSONObject(0);
+
+        assertEquals(response.getString("status"), "ok");
+        assertEquals(step.getString("name"), "(turn-up p)");
+        assertTrue(step.getString("action").contains("(:action turn-up"));
+    }
+
+    @Test(expected = PlannerTimeoutException.class)
+    public void testSubprocessPlannerTimeout() {
+        new SubprocessPlanner(Arrays.asList("sleep", "10")).solve(domain, problem, PlanningDeadline.after(200));
+    }
+
+    @Test
+    public void testSpeculativePlanner() {
+        PlanCache cache = new PlanCache(PlanCache.DEFAULT_CAPACITY, null);
+        SpeculativePlanner speculativePlanner = new SpeculativePlanner(new EmbeddedPlanner(), cache);
+        PDDLProblem parsedProblem = PDDLParser.parseProblem(problem);
+        String header = problem.substring(0, problem.indexOf("(:init"));
+        List<String> goals = Arrays.asList("(got g_5_3)", "(got g_6_1)");
+
+        speculativePlanner.speculate(domain, parsedProblem.getInit(), goals,
+                (init, goal) -> String.format("%s(:init %s) (:goal (AND %s)))", header, String.join(" ", init), goal));
+
+        // The first goal is planned from the given state
+        JSONObject response = speculativePlanner.take(goals.get(0), domain, parsedProblem, PlanningDeadline.none());
+        assertTrue(cache.isValid(domain, parsedProblem, response));
+
+        // The second goal is planned from the state reached by the first plan
+        PDDLProblem nextProblem = PDDLParser.parseProblem(
+                String.format("%s(:init %s) (:goal (AND %s)))", header,
+                        String.join(" ", cache.simulate(domain, parsedProblem.getInit(), response)), goals.get(1)));
+        assertTrue(cache.isValid(domain, nextProblem,
+                speculativePlanner.take(goals.get(1), domain, nextProblem, PlanningDeadline.none())));
+
+        // Speculative plans can only be taken once and aren't valid for other states
+        assertNull(speculativePlanner.take(goals.get(0), domain, parsedProblem, PlanningDeadline.none()));
+
+        speculativePlanner.speculate(domain, parsedProblem.getInit(), goals.subList(1, 2),
+                (init, goal) -> String.format("%s(:init %s) (:goal (AND %s)))", header, String.join(" ", init), goal));
+        assertNull(speculativePlanner.take(goals.get(1), domain, nextProblem, PlanningDeadline.none()));
+
+        speculativePlanner.close();
+    }
+
+    @Test
+    public void testSpeculativePlannerContinuation() {
+        PlanCache cache = new PlanCache(PlanCache.DEFAULT_CAPACITY, null);
+        SpeculativePlanner speculativePlanner = new SpeculativePlanner(new EmbeddedPlanner(), cache);
+        PDDLProblem parsedProblem = PDDLParser.parseProblem(problem);
+        String header = problem.substring(0, problem.indexOf("(:init"));
+        List<String> goals = Arrays.asList("(got g_5_3)", "(got g_6_1)");
+        BiFunction<Collection<String>, String, String> problemWriter = (init, goal) ->
+                String.format("%s(:init %s) (:goal (AND %s)))", header, String.join(" ", init), goal);
+
+        assertEquals(speculativePlanner.speculate(domain, parsedProblem.getInit(), goals, problemWriter), 2);
+        JSONObject response = speculativePlanner.take(goals.get(0), domain, parsedProblem, PlanningDeadline.none());
+        Set<String> predictedInit = cache.simulate(domain, parsedProblem.getInit(), response);
+
+        // Speculating from the predicted state keeps the pending plan instead of cancelling it
+        assertEquals(speculativePlanner.speculate(domain, predictedInit, goals.subList(1, 2), problemWriter), 0);
+        PDDLProblem nextProblem = PDDLParser.parseProblem(problemWriter.apply(predictedInit, goals.get(1)));
+        assertTrue(cache.isValid(domain, nextProblem,
+                speculativePlanner.take(goals.get(1), domain, nextProblem, PlanningDeadline.none())));
+
+        // Speculating from another state plans every goal again
+        assertEquals(speculativePlanner.speculate(domain, parsedProblem.getInit(), goals, problemWriter), 2);
+        assertEquals(speculativePlanner.speculate(domain, predictedInit, goals.subList(1, 2), problemWriter), 1);
+
+        speculativePlanner.close();
+    }
+
+    @Test
+    public void testGoalSelector() {
+        PlanCache cache = new PlanCache(PlanCache.DEFAULT_CAPACITY, null);
+        GoalSelector goalSelector = new GoalSelector(new EmbeddedPlanner(), cache, 2);
+        String header = problem.substring(0, problem.lastIndexOf("(:goal"));
+        Map<String, String> problems = new LinkedHashMap<>();
+        String shortestGoal = null;
+        int shortestLength = Integer.MAX_VALUE;
+
+        for (String goal : Arrays.asList("(got g_5_3)", "(got g_6_1)")) {
+            problems.put(goal, String.format("%s(:goal (AND %s)))", header, goal));
+            int length = new EmbeddedPlanner().solve(domain, problems.get(goal))
+                    .getJSONObject("result").getJSONArray("plan").length();
+
+            if (length < shortestLength) {
+                shortestGoal = goal;
+                shortestLength = length;
+            }
+        }
+
+        // The goal with the shortest plan is chosen and every plan is cached
+        assertEquals(goalSelector.select(domain, problems, PlanningDeadline.none()), shortestGoal);
+
+        for (String problem : problems.values()) {
+            assertNotNull(cache.get(domain, PDDLParser.parseProblem(problem)));
+        }
+
+        // If no plan is found before the deadline expires, no goal is chosen
+        problems.replaceAll((goal, problem) -> problem.replace(goal, "(got g_1_1)"));
+        assertNull(goalSelector.select(domain, problems, PlanningDeadline.after(0)));
+
+        goalSelector.close();
+    }
+
+    @Test
+    public void testPortfolioPlanner() {
+        Planner invalidPlanner = new Planner() {
+            @Override
+            public JSONObject solve(String domain, String problem, PlanningDeadline deadline) {
+                return new JSONObject("{\"status\": \"ok\", \"result\": {\"plan\": "
+                        + "[{\"name\": \"(move-up p c_1_1 c_1_0)\", \"action\": \"\"}]}}");
+            }
+
+            @Override
+            public String getName() {
+                return "invalid";
+            }
+        };
+        Planner slowPlanner = new SubprocessPlanner(Arrays.asList("sleep", "10"));
+        Map<String, PortfolioPlanner.BackendStats> stats = PortfolioPlanner.createStats();
+        PlanCache cache = new PlanCache(PlanCache.DEFAULT_CAPACITY, null);
+        PortfolioPlanner portfolio = new PortfolioPlanner(
+                Arrays.asList(invalidPlanner, slowPlanner, new EmbeddedPlanner()), cache, stats);
+
+        // The valid plan is returned without waiting for the slow backend
+        long start = System.currentTimeMillis();
+        JSONObject response = portfolio.solve(domain, problem, PlanningDeadline.after(5000));
+        assertTrue(System.currentTimeMillis() - start < 5000);
+        assertTrue(cache.isValid(domain, PDDLParser.parseProblem(problem), response));
+
+        assertEquals(stats.get("embedded").getWins(), 1);
+        assertEquals(stats.get("invalid").getWins(), 0);
+        assertEquals(stats.get("invalid").getInvalidPlans(), 1);
+        assertEquals(stats.get(slowPlanner.getName()).getCalls(), 1);
+        assertEquals(stats.get(slowPlanner.getName()).getAnswers(), 0);
+
+        portfolio.close();
+    }
+
+    @Test
+    public void testPortfolioPlannerBrokenBackends() {
+        Planner throwingPlanner = new Planner() {
+            @Override
+            public JSONObject solve(String domain, String problem, PlanningDeadline deadline) {
+                throw new IllegalStateException("broken backend");
+            }
+
+            @Override
+            public String getName() {
+                return "throwing";
+            }
+        };
+        Planner malformedPlanner = new Planner() {
+            @Override
+            public JSONObject solve(String domain, String problem, PlanningDeadline deadline) {
+                return new JSONObject("{\"status\": \"ok\", \"result\": {\"plan\": [{\"name\": \"\"}]}}");
+            }
+
+            @Override
+            public String getName() {
+                return "malformed";
+            }
+        };
+        Map<String, PortfolioPlanner.BackendStats> stats = PortfolioPlanner.createStats();
+        PlanCache cache = new PlanCache(PlanCache.DEFAULT_CAPACITY, null);
+        PortfolioPlanner portfolio = new PortfolioPlanner(
+                Arrays.asList(throwingPlanner, malformedPlanner), cache, stats);
+
+        // The broken backends don't abort the portfolio, which returns the response with the invalid plan
+        JSONObject response = portfolio.solve(domain, problem, PlanningDeadline.after(5000));
+        assertEquals(response.getJSONObject("result").getJSONArray("plan").length(), 1);
+
+        assertEquals(stats.get("throwing").getFailures(), 1);
+        assertEquals(stats.get("malformed").getInvalidPlans(), 1);
+
+        portfolio.close();
+    }
+
+    @Test
+    public void testHierarchicalPlanner() {
+        String[] abstractProblem = {null};
+        Planner backend = new Planner() {
+            @Override
+            public JSONObject solve(String domain, String problem, PlanningDeadline deadline) {
+                abstractProblem[0] = problem;
+                return new EmbeddedPlanner().solve(domain, problem, deadline);
+            }
+
+            @Override
+            public String getName() {
+                return "embedded";
+            }
+        };
+        HierarchicalPlanner hierarchicalPlanner = new HierarchicalPlanner(backend);
+        JSONObject response = hierarchicalPlanner.solve(domain, problem, PlanningDeadline.none());
+
+        // The planner only receives the abstract problem, but the plan is valid for the original one
+        PlanCache cache = new PlanCache(PlanCache.DEFAULT_CAPACITY, null);
+        assertTrue(cache.isValid(domain, PDDLParser.parseProblem(problem), response));
+        assertTrue(abstractProblem[0].contains(HierarchicalPlanner.REGION_PREDICATE));
+        assertFalse(response.toString().contains(HierarchicalPlanner.ENTER_ACTION));
+
+        assertEquals(hierarchicalPlanner.getAbstractPlans(), 1);
+        assertEquals(hierarchicalPlanner.getFallbacks(), 0);
+        assertTrue(hierarchicalPlanner.getAbstractFacts() < hierarchicalPlanner.getFacts());
+    }
+}
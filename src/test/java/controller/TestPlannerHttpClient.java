@@ -0,0 +1,190 @@
+package controller;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import kong.unirest.json.JSONObject;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class TestPlannerHttpClient {
+    private HttpServer server;
+    private String url;
+
+    // Number of requests received and number of them answered with a 503 status
+    private AtomicInteger requests;
+    private volatile int failures;
+
+    @Before
+    public void startServer() throws IOException {
+        this.requests = new AtomicInteger();
+        this.failures = 0;
+        this.server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        this.server.createContext("/solve", this::handle);
+        this.server.start();
+        this.url = String.format("http://localhost:%d/solve", this.server.getAddress().getPort());
+    }
+
+    @After
+    public void stopServer() {
+        this.server.stop(0);
+    }
+
+    /**
+     * Method that answers with the problem of the request, compressing and
+     * decompressing the bodies when the client asks for it.
+     */
+    private void handle(HttpExchange exchange) throws IOException {
+        if (this.requests.incrementAndGet() <= this.failures) {
+            exchange.sendResponseHeaders(503, -1);
+            exchange.close();
+            return;
+        }
+
+        InputStream input = exchange.getRequestBody();
+
+        if ("gzip".equals(exchange.getRequestHeaders().getFirst("Content-Encoding"))) {
+            input = new GZIPInputStream(input);
+        }
+
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        byte[] chunk = new byte[4096];
+
+        for (int read = input.read(chunk); read != -1; read = input.read(chunk)) {
+            buffer.write(chunk, 0, read);
+        }
+
+        JSONObject request = new JSONObject(new String(buffer.toByteArray(), StandardCharsets.UTF_8));
+        JSONObject response = new JSONObject();
+        response.put("problem", request.getString("problem"));
+        response.put("compressed", exchange.getRequestHeaders().containsKey("Content-Encoding"));
+
+        byte[] body = response.toString().getBytes(StandardCharsets.UTF_8);
+        String acceptedEncoding = exchange.getRequestHeaders().getFirst("Accept-Encoding");
+
+        if (acceptedEncoding != null && acceptedEncoding.contains("gzip")) {
+            exchange.getResponseHeaders().set("Content-Encoding", "gzip");
+            exchange.sendResponseHeaders(200, 0);
+
+            try (OutputStream output = new GZIPOutputStream(exchange.getResponseBody())) {
+                output.write(body);
+            }
+        } else {
+            exchange.sendResponseHeaders(200, body.length);
+
+            try (OutputStream output = exchange.getResponseBody()) {
+                output.write(body);
+            }
+        }
+    }
+
+    private static JSONObject createRequest(String problem) {
+        JSONObject request = new JSONObject();
+        request.put("domain", "(define (domain d))");
+        request.put("problem", problem);
+
+        return request;
+    }
+
+    @Test
+    public void testCompression() {
+        PlannerHttpClient client = new PlannerHttpClient(1000, 0, 0, true);
+        JSONObject response = client.post(this.url, createRequest("(define (problem p))"), PlanningDeadline.after(5000));
+
+        assertEquals(response.getString("problem"), "(define (problem p))");
+        assertTrue(response.getBoolean("compressed"));
+
+        client.close();
+    }
+
+    @Test
+    public void testMetrics() {
+        PlannerHttpClient client = new PlannerHttpClient(1000, 0, 1, false);
+        AgentMetrics metrics = new AgentMetrics();
+        this.failures = 1;
+
+        client.post(this.url, createRequest("p"), PlanningDeadline.after(5000), metrics);
+
+        // Every request is timed, but only the successful response is parsed
+        assertEquals(metrics.getHistogram(AgentMetrics.HTTP_REQUEST).getCount(), 2);
+        assertEquals(metrics.getHistogram(AgentMetrics.JSON_PARSING).getCount(), 1);
+
+        client.close();
+    }
+
+    @Test
+    public void testRetries() {
+        PlannerHttpClient client = new PlannerHttpClient(1000, 0, 2, false);
+        this.failures = 2;
+
+        // The connections are reused between calls
+        for (int i = 0; i < 3; i++) {
+            JSONObject response = client.post(this.url, createRequest("p" + i), PlanningDeadline.after(5000));
+            assertEquals(response.getString("problem"), "p" + i);
+        }
+
+        assertEquals(client.getCalls(), 3);
+        assertEquals(client.getRetries(), 2);
+        assertEquals(this.requests.get(), 5);
+
+        client.close();
+    }
+
+    @Test
+    public void testCircuitBreaker() throws IOException, InterruptedException {
+        PlannerHttpClient client = new PlannerHttpClient(1000, 0, 0, false, 2, 300);
+        String domain = new String(Files.readAllBytes(Paths.get("src/test/resources/domain.pddl")));
+        String problem = new String(Files.readAllBytes(Paths.get("src/test/resources/problem.pddl")));
+        HttpPlanner planner = new HttpPlanner(this.url, client, new EmbeddedPlanner());
+        this.failures = Integer.MAX_VALUE;
+
+        // After two failed calls, the problems are solved by the fallback planner without calling the server
+        for (int i = 0; i < 3; i++) {
+            JSONObject response = planner.solve(domain, problem, PlanningDeadline.after(5000));
+            assertEquals(response.getString("status"), "ok");
+        }
+
+        assertEquals(client.getCircuitState(), PlannerHttpClient.CircuitState.OPEN);
+        assertEquals(client.getRejectedCalls(), 1);
+        assertEquals(planner.getFallbackCalls(), 3);
+        assertEquals(this.requests.get(), 2);
+
+        // Once the server works again, a call is let through and the breaker is closed
+        this.failures = 0;
+        Thread.sleep(400);
+
+        JSONObject response = client.post(this.url, createRequest("p"), PlanningDeadline.after(5000));
+        assertEquals(response.getString("problem"), "p");
+        assertEquals(client.getCircuitState(), PlannerHttpClient.CircuitState.CLOSED);
+
+        client.close();
+    }
+
+    @Test(expected = PlannerException.class)
+    public void testUnreachablePlanner() {
+        PlannerHttpClient client = new PlannerHttpClient(200, 0, 1, false);
+        this.server.stop(0);
+
+        try {
+            client.post(this.url, createRequest("p"), PlanningDeadline.after(5000));
+        } finally {
+            client.close();
+        }
+    }
+}
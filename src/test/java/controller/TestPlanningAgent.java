@@ -39,8 +39,9 @@ public class TestPlanningAgent {
         stateObservation = toPlay.getObservation();
         ElapsedCpuTimer timer = new ElapsedCpuTimer();
 
-        PlanningAgent.setGameConfigFile("src/test/resources/config.yaml");
-        agent = new PlanningAgent(stateObservation, timer);
+        AgentConfiguration configuration = new AgentConfiguration();
+        configuration.setGameConfigFile("src/test/resources/config.yaml");
+        agent = new PlanningAgent(stateObservation, timer, configuration, new AgentStatistics());
     }
 
     @Test
@@ -122,4 +123,13 @@ public class TestPlanningAgent {
         assertTrue(agent.checkEarlyReachedGoals(effectsReached));
         assertFalse(agent.checkEarlyReachedGoals(effectsNotReached));
     }
-}
\ No newline at end of file
+
+    @Test
+    public void testSafeFallbackPolicy() {
+        FallbackPolicy policy = new SafeFallbackPolicy();
+
+        assertEquals(policy.act(stateObservation, PlanningDeadline.none()), Types.ACTIONS.ACTION_NIL);
+        assertEquals(policy.act(stateObservation, PlanningDeadline.after(0)), Types.ACTIONS.ACTION_NIL);
+        assertFalse(stateObservation.isGameOver());
+    }
+}
@@ -0,0 +1,71 @@
+package controller;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class TestProblemPruner {
+    private static String domain;
+    private static PDDLProblem problem;
+    private static String goal;
+
+    @BeforeClass
+    public static void readFiles() throws IOException {
+        domain = new String(Files.readAllBytes(Paths.get("src/test/resources/domain.pddl")));
+        problem = PDDLParser.parseProblem(
+                new String(Files.readAllBytes(Paths.get("src/test/resources/problem.pddl"))));
+        goal = problem.getGoal().toString();
+    }
+
+    private static String writeProblem(ProblemPruner.Result pruned) {
+        StringBuilder builder = new StringBuilder("(define (problem pruned) (:domain boulderdash) (:objects");
+
+        problem.getObjects().forEach((object, type) -> {
+            if (!pruned.getRemovedObjects().contains(object)) {
+                builder.append(' ').append(object).append(" - ").append(type);
+            }
+        });
+
+        return builder.append(") (:init ").append(String.join(" ", pruned.getInit()))
+                .append(") (:goal ").append(goal).append("))").toString();
+    }
+
+    @Test
+    public void testPruneUnusableCells() {
+        ProblemPruner.Result pruned = new ProblemPruner(PDDLParser.parseDomain(domain))
+                .prune(problem.getObjects(), problem.getInit(), goal);
+
+        // Corner walls can't be used by any action, while the avatar's cell is kept
+        assertTrue(pruned.getRemovedObjects().contains("c_0_0"));
+        assertFalse(pruned.getRemovedObjects().contains("c_11_7"));
+        assertFalse(pruned.getInit().contains("(terrain-wall c_0_0)"));
+        assertTrue(pruned.getInit().contains("(at p c_11_7)"));
+        assertTrue(pruned.getInit().size() < problem.getInit().size());
+
+        // The pruned problem has the same ground actions and plans
+        GroundTask task = PDDLGrounder.ground(PDDLParser.parseDomain(domain),
+                PDDLParser.parseProblem(writeProblem(pruned)));
+        GroundTask originalTask = PDDLGrounder.ground(PDDLParser.parseDomain(domain), problem);
+
+        assertEquals(task.getActions().size(), originalTask.getActions().size());
+        assertEquals(new EmbeddedPlanner().search(task).size(), new EmbeddedPlanner().search(originalTask).size());
+    }
+
+    @Test
+    public void testNoMovements() {
+        PDDLDomain staticDomain = PDDLParser.parseDomain("(define (domain static) (:predicates (at ?o ?c)) "
+                + "(:action wait :parameters (?o) :precondition (at ?o ?o) :effect (and)))");
+        ProblemPruner.Result pruned = new ProblemPruner(staticDomain)
+                .prune(problem.getObjects(), problem.getInit(), goal);
+
+        assertTrue(pruned.getRemovedObjects().isEmpty());
+        assertEquals(pruned.getInit().size(), problem.getInit().size());
+    }
+}
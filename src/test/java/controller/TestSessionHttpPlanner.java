@@ -0,0 +1,150 @@
+package controller;
+
+import kong.unirest.json.JSONObject;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class TestSessionHttpPlanner {
+    private static String domain;
+    private static String problem;
+    private static String nextProblem;
+
+    private PlannerServer server;
+    private PlannerHttpClient client;
+
+    @BeforeClass
+    public static void readFiles() throws IOException {
+        domain = new String(Files.readAllBytes(Paths.get("src/test/resources/domain.pddl")));
+        problem = new String(Files.readAllBytes(Paths.get("src/test/resources/problem.pddl")));
+
+        // The gem g_6_1 has been collected and the next goal is another gem
+        nextProblem = problem.replace(" g_6_1 g_7_1 ", " g_7_1 ")
+                .replace("(at g_6_1 c_6_1)", "")
+                .replace("(occupied c_6_1)", "")
+                .replace("(got g_5_3)", "(got g_7_1)");
+    }
+
+    @Before
+    public void startServer() throws IOException {
+        this.server = new PlannerServer(0, new EmbeddedPlanner());
+        this.server.start();
+        // The JDK server closes the connections of the requests to unknown paths, so they are retried
+        this.client = new PlannerHttpClient(PlannerHttpClient.DEFAULT_CONNECT_TIMEOUT, 0,
+                PlannerHttpClient.DEFAULT_MAX_RETRIES, false);
+    }
+
+    @After
+    public void stopServer() {
+        this.client.close();
+        this.server.close();
+    }
+
+    private SessionHttpPlanner createPlanner(String sessionPath) {
+        String url = String.format("http://localhost:%d", this.server.getPort());
+
+        return new SessionHttpPlanner(url + "/solve", url + sessionPath, this.client, null);
+    }
+
+    private static String getPlan(JSONObject response) {
+        return response.getJSONObject("result").getJSONArray("plan").toString();
+    }
+
+    @Test
+    public void testDeltaProblems() {
+        SessionHttpPlanner planner = this.createPlanner("/session");
+        JSONObject response = planner.solve(domain, problem, PlanningDeadline.none());
+
+        assertEquals(response.getString("status"), "ok");
+        assertEquals(planner.getSessions(), 1);
+        assertEquals(planner.getDeltaCalls(), 0);
+
+        long sentCharacters = planner.getSentCharacters();
+        response = planner.solve(domain, nextProblem, PlanningDeadline.none());
+
+        // The session's problem must be the same as the one sent in full
+        assertEquals(response.getString("status"), "ok");
+        assertEquals(getPlan(response), getPlan(new EmbeddedPlanner().solve(domain, nextProblem)));
+        assertEquals(planner.getSessions(), 1);
+        assertEquals(planner.getDeltaCalls(), 1);
+        assertTrue(planner.getSentCharacters() - sentCharacters < 200);
+
+        // Going back to the first problem adds the removed facts again
+        response = planner.solve(domain, problem, PlanningDeadline.none());
+
+        assertEquals(getPlan(response), getPlan(new EmbeddedPlanner().solve(domain, problem)));
+        assertEquals(planner.getDeltaCalls(), 2);
+        assertEquals(this.server.getSessions(), 1);
+    }
+
+    @Test
+    public void testForgottenSession() throws IOException {
+        SessionHttpPlanner planner = this.createPlanner("/session");
+        planner.solve(domain, problem, PlanningDeadline.none());
+
+        // The restarted server doesn't know the session, so a new one is opened
+        int port = this.server.getPort();
+        this.server.close();
+        this.server = new PlannerServer(port, new EmbeddedPlanner());
+        this.server.start();
+
+        JSONObject response = planner.solve(domain, nextProblem, PlanningDeadline.none());
+
+        assertEquals(response.getString("status"), "ok");
+        assertEquals(planner.getSessions(), 2);
+        assertEquals(planner.getDeltaCalls(), 0);
+        assertEquals(this.server.getSessions(), 1);
+    }
+
+    @Test(expected = PlannerStatusException.class)
+    public void testUnexpectedPlannerError() throws IOException {
+        this.server.close();
+        this.server = new PlannerServer(0, new Planner() {
+            @Override
+            public JSONObject solve(String domain, String problem, PlanningDeadline deadline) {
+                throw new IllegalStateException("broken planner");
+            }
+
+            @Override
+            public String getName() {
+                return "broken";
+            }
+        });
+        this.server.start();
+
+        JSONObject body = new JSONObject().put("domain", domain).put("problem", problem);
+        String url = String.format("http://localhost:%d/solve", this.server.getPort());
+
+        // The error is answered instead of dropping the connection, so the request isn't retried
+        try {
+            this.client.post(url, body, PlanningDeadline.none());
+        } finally {
+            assertEquals(this.client.getRetries(), 0);
+        }
+    }
+
+    @Test
+    public void testSessionsNotSupported() {
+        SessionHttpPlanner planner = this.createPlanner("/unknown");
+        JSONObject response = planner.solve(domain, problem, PlanningDeadline.none());
+
+        assertEquals(response.getString("status"), "ok");
+        assertFalse(planner.isSessionsSupported());
+
+        response = planner.solve(domain, nextProblem, PlanningDeadline.none());
+
+        assertEquals(response.getString("status"), "ok");
+        assertEquals(planner.getSessions(), 0);
+        assertEquals(this.client.getCalls(), 3);
+    }
+}
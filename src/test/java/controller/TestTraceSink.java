@@ -0,0 +1,136 @@
+package controller;
+
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.logging.Logger;
+import java.util.zip.GZIPInputStream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class TestTraceSink {
+    private static Logger createLogger(TraceSink sink) {
+        Logger logger = Logger.getAnonymousLogger();
+        logger.setUseParentHandlers(false);
+        logger.addHandler(sink.createLogHandler());
+
+        return logger;
+    }
+
+    @Test
+    public void testWriteTraces() throws IOException {
+        Path directory = Files.createTempDirectory("traces");
+        TraceSink sink = new TraceSink(directory);
+        Logger logger = createLogger(sink);
+
+        logger.info("first message");
+        assertTrue(sink.write("problems/problem_turn_0.pddl", "(define (problem p0))"));
+        logger.info("second message");
+        assertTrue(sink.write("plans/plan_turn_0.txt", "(move p c_1_1 c_1_2)"));
+        logger.warning("third message");
+        sink.close();
+
+        // Writing after closing the sink drops the trace
+        assertFalse(sink.write("plans/plan_turn_1.txt", "(move p c_1_2 c_1_3)"));
+        assertEquals(sink.getDroppedTraces(), 1);
+
+        TraceArchive archive = new TraceArchive(directory);
+        assertEquals(archive.read("problems/problem_turn_0.pddl"), "(define (problem p0))");
+        assertEquals(archive.read("plans/plan_turn_0.txt"), "(move p c_1_1 c_1_2)");
+        assertNull(archive.read("plans/plan_turn_1.txt"));
+
+        String log = archive.read(TraceArchive.LOG_NAME);
+        assertTrue(log.indexOf("first message") < log.indexOf("second message"));
+        assertTrue(log.contains("WARNING: third message"));
+        assertTrue(log.contains("TestTraceSink testWriteTraces"));
+    }
+
+    @Test
+    public void testSkipInvalidTrace() throws IOException {
+        Path directory = Files.createTempDirectory("traces");
+        TraceSink sink = new TraceSink(directory);
+        Logger logger = createLogger(sink);
+
+        // A trace without content can't be written, but it doesn't stop the sink
+        logger.info("first message");
+        sink.write("invalid.txt", null);
+        logger.info("second message");
+        sink.write("valid.txt", "content");
+        sink.close();
+
+        TraceArchive archive = new TraceArchive(directory);
+        assertNull(archive.read("invalid.txt"));
+        assertEquals(archive.read("valid.txt"), "content");
+        assertTrue(archive.read(TraceArchive.LOG_NAME).contains("second message"));
+    }
+
+    @Test
+    public void testArchiveIsGzip() throws IOException {
+        Path directory = Files.createTempDirectory("traces");
+        TraceSink sink = new TraceSink(directory);
+        sink.write("a.txt", "first trace, ");
+        sink.close();
+
+        // The archive of another game in the same directory is replaced
+        sink = new TraceSink(directory);
+
+        for (int i = 0; i < 100; i++) {
+            sink.write("b.txt", "trace " + i + ", ");
+        }
+
+        sink.close();
+
+        StringBuilder expected = new StringBuilder();
+
+        for (int i = 0; i < 100; i++) {
+            expected.append("trace ").append(i).append(", ");
+        }
+
+        ByteArrayOutputStream content = new ByteArrayOutputStream();
+
+        Path archive = directory.resolve(TraceArchive.ARCHIVE_FILE);
+
+        try (InputStream input = new GZIPInputStream(Files.newInputStream(archive))) {
+            byte[] buffer = new byte[1024];
+
+            for (int read = input.read(buffer); read != -1; read = input.read(buffer)) {
+                content.write(buffer, 0, read);
+            }
+        }
+
+        assertEquals(new String(content.toByteArray(), StandardCharsets.UTF_8), expected.toString());
+        assertEquals(new TraceArchive(directory).getEntries().size(), 100);
+    }
+
+    @Test
+    public void testExtract() throws IOException {
+        Path directory = Files.createTempDirectory("traces");
+        TraceSink sink = new TraceSink(directory);
+        Logger logger = createLogger(sink);
+        logger.info("message");
+        sink.write("problems/problem_turn_3.pddl", "(define (problem p3))");
+        sink.close();
+
+        // An incomplete line at the end of the index is ignored
+        Files.write(directory.resolve(TraceArchive.INDEX_FILE), "{\"name\": \"pro".getBytes(),
+                StandardOpenOption.APPEND);
+
+        Path target = directory.resolve("extracted");
+        TraceArchive archive = new TraceArchive(directory);
+        archive.extract(target);
+        archive.extract(target);
+
+        assertEquals(new String(Files.readAllBytes(target.resolve("problems/problem_turn_3.pddl"))),
+                "(define (problem p3))");
+        assertEquals(Files.readAllLines(target.resolve(TraceArchive.LOG_NAME)).size(), 2);
+    }
+}